@@ -0,0 +1,112 @@
+package com.neurofleetx.benchmark;
+
+import com.neurofleetx.fleet.FleetJobScheduler;
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.model.Vehicle;
+import com.neurofleetx.repository.JobCheckpointRepository;
+import com.neurofleetx.repository.VehicleHealthLogRepository;
+import com.neurofleetx.repository.VehicleRepository;
+import com.neurofleetx.service.MaintenanceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MaintenanceService.getDashboardAnalytics over synthetic fleets. The repository is
+ * an in-memory stub, so this measures the live-state overlay and the aggregation,
+ * not the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class DashboardAnalyticsBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    int fleetSize;
+
+    private MaintenanceService maintenanceService;
+
+    @Setup
+    public void setUp() {
+        List<Vehicle> fleet = syntheticFleet(fleetSize, new Random(42));
+        VehicleRepository vehicles = stub(VehicleRepository.class, fleet);
+        VehicleHealthLogRepository logs = stub(VehicleHealthLogRepository.class, List.of());
+        FleetStateStore fleetState = new FleetStateStore(new JdbcTemplate(), 500, fleetSize);
+        fleet.forEach(fleetState::register);
+        // The fleet jobs are never registered or run here
+        maintenanceService = new MaintenanceService(vehicles, logs, stub(JobCheckpointRepository.class, List.of()),
+                null, fleetState, new FleetJobScheduler(fleetState, 16, 1), new TransactionTemplate(), 0, 500);
+    }
+
+    @Benchmark
+    public Map<String, Object> getDashboardAnalytics() {
+        return maintenanceService.getDashboardAnalytics();
+    }
+
+    // Status mix and health spread roughly as the health simulation produces them
+    static List<Vehicle> syntheticFleet(int size, Random random) {
+        String[] types = { "SEDAN", "SUV", "TRUCK", "EV" };
+        List<Vehicle> fleet = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Vehicle v = new Vehicle();
+            v.setId((long) i + 1);
+            v.setName("Vehicle " + i);
+            v.setLicensePlate(String.format("NF-%07d", i));
+            v.setType(types[i & 3]);
+            double roll = random.nextDouble();
+            v.setStatus(roll < 0.6 ? Vehicle.VehicleStatus.AVAILABLE
+                    : roll < 0.85 ? Vehicle.VehicleStatus.IN_USE
+                            : roll < 0.97 ? Vehicle.VehicleStatus.MAINTENANCE : Vehicle.VehicleStatus.CRITICAL);
+            v.setEngineHealth(40 + random.nextDouble() * 60);
+            v.setTirePressure(24 + random.nextDouble() * 10);
+            v.setOilLevel(random.nextDouble() * 100);
+            v.setMileage(random.nextDouble() * 200000);
+            v.setLatitude(40.7 + random.nextDouble() * 0.2);
+            v.setLongitude(-74.0 + random.nextDouble() * 0.2);
+            fleet.add(v);
+        }
+        return fleet;
+    }
+
+    /** Repository whose findAll returns the given rows; other methods return null. */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(Class<T> repository, List<?> rows) {
+        return (T) Proxy.newProxyInstance(repository.getClassLoader(), new Class<?>[] { repository },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findAll":
+                            return rows;
+                        case "count":
+                            return (long) rows.size();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return repository.getSimpleName() + " stub";
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,135 @@
+package com.neurofleetx.benchmark;
+
+import com.neurofleetx.NeuroFleetXApplication;
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.model.Vehicle;
+import com.neurofleetx.repository.VehicleRepository;
+import com.neurofleetx.service.MaintenanceService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One MaintenanceService.simulateFleetHealth cycle over a 10k-vehicle fleet in an
+ * in-memory H2 database, with Hibernate JDBC batching off (jdbcBatchSize 0, which
+ * issues the same one-statement-per-row writes IDENTITY ids forced) and on. The
+ * statements counter is the JDBC executions per cycle (JMH reports the sum over the
+ * measurement iterations): an executeBatch counts once, as it goes over the wire
+ * with MySQL's rewriteBatchedStatements.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class FleetHealthPersistenceBenchmark {
+
+    @Param({ "10000" })
+    int fleetSize;
+
+    @Param({ "0", "50" })
+    int jdbcBatchSize;
+
+    private final AtomicLong executions = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private MaintenanceService maintenanceService;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Statements {
+        public long statements;
+    }
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(NeuroFleetXApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+                    @Override
+                    public Object postProcessAfterInitialization(Object bean, String name) {
+                        return bean instanceof DataSource ? counting(bean, DataSource.class) : bean;
+                    }
+                }))
+                // Arguments, so they override application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driverClassName=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize,
+                        // Keep background jobs out of the counts
+                        "--fleet.write-behind.interval-ms=3600000",
+                        "--fleet.jobs.movement-interval-ms=3600000",
+                        "--traffic.publish-interval-ms=3600000");
+
+        List<Vehicle> fleet = DashboardAnalyticsBenchmark.syntheticFleet(fleetSize, new Random(42));
+        fleet.forEach(v -> v.setId(null));
+        VehicleRepository vehicles = context.getBean(VehicleRepository.class);
+        FleetStateStore fleetState = context.getBean(FleetStateStore.class);
+        vehicles.saveAll(fleet).forEach(fleetState::register);
+        maintenanceService = context.getBean(MaintenanceService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounter() {
+        executions.set(0);
+    }
+
+    @Benchmark
+    public void simulateFleetHealth(Statements counters) {
+        maintenanceService.simulateFleetHealth();
+        counters.statements = executions.get();
+    }
+
+    /** Wraps a DataSource, Connection or Statement so every statement execution is counted. */
+    private Object counting(Object target, Class<?> type) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                executions.incrementAndGet();
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            Class<?> returned = method.getReturnType();
+            if (result != null && (returned == Connection.class || Statement.class.isAssignableFrom(returned))) {
+                return counting(result, returned);
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,122 @@
+package com.neurofleetx.benchmark;
+
+import com.neurofleetx.geo.GeoMath;
+import com.neurofleetx.service.RouteService.Coordinate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path length and one-to-many distance kernels against the loops they replaced:
+ * the List&lt;Coordinate&gt; haversine in RouteService.calculateDistance and a plain
+ * haversine scan for the nearest point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeoMathBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    int points;
+
+    // 0.001 deg ~ 100 m (road geometry), 0.1 deg ~ 11 km (approximate intercity paths)
+    @Param({ "0.001", "0.1" })
+    double stepDegrees;
+
+    private double[] latLng;
+    private List<Coordinate> coordinates;
+    private double[] lats;
+    private double[] lngs;
+    private double[] out;
+    private double queryLat;
+    private double queryLng;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        latLng = new double[points * 2];
+        coordinates = new ArrayList<>(points);
+        lats = new double[points];
+        lngs = new double[points];
+        out = new double[points];
+        double lat = 12.9716, lng = 77.5946;
+        for (int i = 0; i < points; i++) {
+            lat += (random.nextDouble() - 0.3) * stepDegrees;
+            lng += (random.nextDouble() - 0.3) * stepDegrees;
+            latLng[2 * i] = lat;
+            latLng[2 * i + 1] = lng;
+            coordinates.add(new Coordinate(lat, lng));
+            lats[i] = 12.9716 + (random.nextDouble() - 0.5) * 0.3;
+            lngs[i] = 77.5946 + (random.nextDouble() - 0.5) * 0.3;
+        }
+        queryLat = 12.95;
+        queryLng = 77.60;
+    }
+
+    @Benchmark
+    public double pathLengthLegacy() {
+        double total = 0;
+        for (int i = 0; i < coordinates.size() - 1; i++) {
+            Coordinate c1 = coordinates.get(i);
+            Coordinate c2 = coordinates.get(i + 1);
+            double R = 6371;
+            double dLat = Math.toRadians(c2.getLat() - c1.getLat());
+            double dLon = Math.toRadians(c2.getLng() - c1.getLng());
+            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                    Math.cos(Math.toRadians(c1.getLat())) * Math.cos(Math.toRadians(c2.getLat())) *
+                            Math.sin(dLon / 2) * Math.sin(dLon / 2);
+            double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+            total += R * c;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double pathLengthKernel() {
+        return GeoMath.pathLengthMeters(latLng) / 1000;
+    }
+
+    @Benchmark
+    public int nearestHaversine() {
+        int best = -1;
+        double bestDist = Double.MAX_VALUE;
+        for (int i = 0; i < points; i++) {
+            double d = GeoMath.haversineMeters(queryLat, queryLng, lats[i], lngs[i]);
+            if (d < bestDist) {
+                bestDist = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Benchmark
+    public int nearestKernel() {
+        GeoMath.distancesMeters(queryLat, queryLng, lats, lngs, points, out);
+        int best = -1;
+        double bestDist = Double.MAX_VALUE;
+        for (int i = 0; i < points; i++) {
+            if (out[i] < bestDist) {
+                bestDist = out[i];
+                best = i;
+            }
+        }
+        return best;
+    }
+}
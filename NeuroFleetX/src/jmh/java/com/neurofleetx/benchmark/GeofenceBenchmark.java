@@ -0,0 +1,90 @@
+package com.neurofleetx.benchmark;
+
+import com.neurofleetx.geofence.GeofenceIndex;
+import com.neurofleetx.model.Geofence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fence lookup for one position update: the cell-covering index against testing
+ * every fence's bounding box and polygon. Fences are 8-24 sided, 100 m to 2 km
+ * across, scattered over a 50 km square; points fall on the same square.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeofenceBenchmark {
+
+    private static final int POINTS = 1 << 16;
+
+    @Param({ "1000", "10000" })
+    int fences;
+
+    private GeofenceIndex index;
+    private GeofenceIndex.Fence[] all;
+    private double[] lats;
+    private double[] lngs;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new GeofenceIndex(0.005);
+        all = new GeofenceIndex.Fence[fences];
+        for (int f = 0; f < fences; f++) {
+            double centerLat = 40.5 + random.nextDouble() * 0.45;
+            double centerLng = -74.2 + random.nextDouble() * 0.6;
+            double radius = 0.0005 + random.nextDouble() * 0.009;
+            int sides = 8 + random.nextInt(17);
+            double[] fenceLats = new double[sides];
+            double[] fenceLngs = new double[sides];
+            for (int i = 0; i < sides; i++) {
+                double angle = 2 * Math.PI * i / sides;
+                double r = radius * (0.6 + random.nextDouble() * 0.4);
+                fenceLats[i] = centerLat + r * Math.sin(angle);
+                fenceLngs[i] = centerLng + r * Math.cos(angle) / 0.76;
+            }
+            all[f] = new GeofenceIndex.Fence(f + 1, "Fence " + f, Geofence.GeofenceType.DEPOT, fenceLats, fenceLngs);
+            index.add(all[f]);
+        }
+        lats = new double[POINTS];
+        lngs = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = 40.5 + random.nextDouble() * 0.45;
+            lngs[i] = -74.2 + random.nextDouble() * 0.6;
+        }
+    }
+
+    @Benchmark
+    public long[] indexLookup() {
+        int i = next++ & (POINTS - 1);
+        return index.containing(lats[i], lngs[i]);
+    }
+
+    @Benchmark
+    public int scanAllFences() {
+        int i = next++ & (POINTS - 1);
+        int inside = 0;
+        for (GeofenceIndex.Fence fence : all) {
+            if (fence.contains(lats[i], lngs[i])) {
+                inside++;
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,66 @@
+package com.neurofleetx.benchmark;
+
+import com.neurofleetx.security.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token work done on every authenticated request (JwtAuthenticationFilter parses
+ * and validates) and on every login (generate).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+
+    private JwtUtil jwtUtil;
+    private UserDetails user;
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        jwtUtil = new JwtUtil();
+        // Same values as application.properties; JwtUtil takes them by field injection
+        set(jwtUtil, "secret", "neurofleetx-secret-key-2026-change-this-in-production");
+        set(jwtUtil, "expirationMs", 3600000L);
+        user = User.withUsername("admin@neurofleetx.com").password("unused").roles("ADMIN").build();
+        token = jwtUtil.generateToken(user);
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtUtil.extractUsername(token);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtil.validateToken(token, user);
+    }
+}
@@ -0,0 +1,91 @@
+package com.neurofleetx.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file against a baseline and exits with status 1 if
+ * any benchmark got slower by more than the allowed percentage and by more than
+ * the two runs' combined error.
+ *
+ * Usage: RegressionCheck baseline.json current.json [maxRegressionPercent]
+ */
+public final class RegressionCheck {
+
+    private RegressionCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RegressionCheck baseline.json current.json [maxRegressionPercent]");
+            System.exit(2);
+        }
+        double maxRegression = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+
+        // Change is reported as percent slower: positive is worse in every mode
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : new TreeMap<>(current).entrySet()) {
+            JsonNode now = entry.getValue();
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("NEW      %s: %s%n", entry.getKey(), describe(now));
+                continue;
+            }
+            double base = score(before);
+            double cur = score(now);
+            // Throughput is better when higher; every other JMH mode reports time
+            boolean higherIsBetter = "thrpt".equals(now.path("mode").asText());
+            double change = base == 0 ? 0 : (cur - base) / base * 100 * (higherIsBetter ? -1 : 1);
+            double noise = error(before) + error(now);
+            boolean regressed = change > maxRegression && Math.abs(cur - base) > noise;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-8s %s: %s -> %s (%+.1f%%)%n", regressed ? "REGRESS" : "ok", entry.getKey(),
+                    describe(before), describe(now), change);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println("MISSING  " + key);
+            }
+        }
+        System.out.println(regressions == 0 ? "No regressions above " + maxRegression + "%"
+                : regressions + " benchmark(s) regressed by more than " + maxRegression + "%");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /** Results keyed by benchmark name, mode and parameters. */
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText())
+                    .append(" [").append(run.path("mode").asText()).append(']');
+            Map<String, String> params = new TreeMap<>();
+            run.path("params").fields().forEachRemaining(p -> params.put(p.getKey(), p.getValue().asText()));
+            params.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            results.put(key.toString(), run);
+        }
+        return results;
+    }
+
+    private static double score(JsonNode run) {
+        return run.path("primaryMetric").path("score").asDouble();
+    }
+
+    private static double error(JsonNode run) {
+        double error = run.path("primaryMetric").path("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static String describe(JsonNode run) {
+        return String.format("%.3f %s", score(run), run.path("primaryMetric").path("scoreUnit").asText());
+    }
+}
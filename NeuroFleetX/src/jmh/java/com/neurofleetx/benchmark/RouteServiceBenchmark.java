@@ -0,0 +1,82 @@
+package com.neurofleetx.benchmark;
+
+import com.neurofleetx.geo.GeoMath;
+import com.neurofleetx.geocoding.Gazetteer;
+import com.neurofleetx.routing.RoutingEngine;
+import com.neurofleetx.service.RouteService;
+import com.neurofleetx.service.RouteService.RouteOption;
+import com.neurofleetx.traffic.TrafficLayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RouteService request path without a road graph (approximate paths), which is
+ * what a default deployment serves. Set -Dbenchmark.graph=path/to/graph.csv to
+ * route over a road network instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteServiceBenchmark {
+
+    private static final String[] PLACES = { "Chennai", "Bangalore", "Mumbai", "Pune", "Hyderabad", "Delhi",
+            "Kolkata", "Coimbatore" };
+
+    private RouteService cached;
+    private RouteService uncached;
+    private double[] path;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        RoutingEngine engine = new RoutingEngine(System.getProperty("benchmark.graph", ""), 3000, false);
+        Gazetteer gazetteer = new Gazetteer(new ClassPathResource("gazetteer.csv"));
+        TrafficLayer traffic = new TrafficLayer(engine, true, 250, 0.01, 600, 3, 200000, 5, 0.05);
+        cached = new RouteService(engine, gazetteer, traffic, 10000, 300);
+        // One entry while cycling through many pairs: every call computes its routes
+        uncached = new RouteService(engine, gazetteer, traffic, 1, 300);
+        path = cached.optimizeRoutes("Chennai", "Bangalore", "Sedan").get(0).getPath();
+    }
+
+    @Benchmark
+    public List<RouteOption> optimizeRoutesCacheHit() {
+        return cached.optimizeRoutes("Chennai", "Bangalore", "Sedan");
+    }
+
+    @Benchmark
+    public List<RouteOption> optimizeRoutesCacheMiss() {
+        int i = next++ & 63;
+        return uncached.optimizeRoutes(PLACES[i & 7], PLACES[(i >> 3) ^ 1], "Sedan");
+    }
+
+    @Benchmark
+    public double[] resolveCoordinatesGazetteer() {
+        return cached.resolveCoordinates("Bangalore");
+    }
+
+    @Benchmark
+    public double[] resolveCoordinatesFallback() {
+        return cached.resolveCoordinates("Unlisted Town 42");
+    }
+
+    /** Body of RouteService.calculateDistance, over a generated Chennai-Bangalore path. */
+    @Benchmark
+    public double calculateDistance() {
+        return GeoMath.pathLengthMeters(path) / 1000;
+    }
+}
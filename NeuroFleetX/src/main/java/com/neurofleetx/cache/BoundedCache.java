@@ -0,0 +1,202 @@
+package com.neurofleetx.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * In-process cache bounded by entry count (least recently used goes first) and
+ * time to live.
+ *
+ * Loads are single-flight: concurrent callers asking for the same missing key
+ * wait on one computation instead of each running the loader. The loader runs
+ * on the first caller's thread, outside the cache lock.
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+
+    public BoundedCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value for key, loading it with loader on a miss.
+     * Exceptions thrown by the loader propagate to every waiting caller and
+     * nothing is cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> future;
+        boolean owner = false;
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            long now = System.nanoTime();
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(key);
+                expirations.increment();
+                entry = null;
+            }
+            if (entry != null) {
+                hits.increment();
+                future = entry.value;
+            } else {
+                misses.increment();
+                future = new CompletableFuture<>();
+                entries.put(key, new Entry<>(future, now + ttlNanos));
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            long start = System.nanoTime();
+            try {
+                future.complete(loader.apply(key));
+            } catch (RuntimeException | Error e) {
+                loadFailures.increment();
+                synchronized (entries) {
+                    Entry<V> current = entries.get(key);
+                    if (current != null && current.value == future) {
+                        entries.remove(key);
+                    }
+                }
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                totalLoadNanos.add(System.nanoTime() - start);
+            }
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), loadFailures.sum(), evictions.sum(), expirations.sum(),
+                totalLoadNanos.sum(), size(), maxSize);
+    }
+
+    private static final class Entry<V> {
+        final CompletableFuture<V> value;
+        final long expiresAt;
+
+        Entry(CompletableFuture<V> value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+
+    /**
+     * Point-in-time counters; serialized as-is by the stats endpoints.
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long loadFailures;
+        private final long evictions;
+        private final long expirations;
+        private final long totalLoadNanos;
+        private final int size;
+        private final int maxSize;
+
+        Stats(long hits, long misses, long loadFailures, long evictions, long expirations, long totalLoadNanos,
+                int size, int maxSize) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loadFailures = loadFailures;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.totalLoadNanos = totalLoadNanos;
+            this.size = size;
+            this.maxSize = maxSize;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getLoadFailures() {
+            return loadFailures;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        public double getAverageLoadMillis() {
+            return misses == 0 ? 0 : totalLoadNanos / 1e6 / misses;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.neurofleetx.config;
+
+import com.neurofleetx.model.IdGenerators;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Moves each id generator row past the ids already in its table. Databases created
+ * while the entities used IDENTITY columns have rows but a generator table that
+ * Hibernate just created at 0, which would hand out ids that are taken. Runs once
+ * the schema is up to date and before anything is inserted; a no-op once aligned.
+ */
+@Component
+public class IdGeneratorAligner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // The factory is only here so the schema update has run first
+    public IdGeneratorAligner(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void align() {
+        for (String table : IdGenerators.ENTITY_TABLES) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+            if (maxId == null) {
+                continue;
+            }
+            // The pooled optimizer hands out the block ending at the stored value
+            long floor = maxId + IdGenerators.ALLOCATION_SIZE;
+            List<Long> stored = jdbcTemplate.queryForList("SELECT " + IdGenerators.VALUE_COLUMN + " FROM "
+                    + IdGenerators.TABLE + " WHERE " + IdGenerators.NAME_COLUMN + " = ?", Long.class, table);
+            if (stored.isEmpty()) {
+                jdbcTemplate.update("INSERT INTO " + IdGenerators.TABLE + " (" + IdGenerators.NAME_COLUMN + ", "
+                        + IdGenerators.VALUE_COLUMN + ") VALUES (?, ?)", table, floor);
+            } else if (stored.get(0) == null || stored.get(0) < floor) {
+                jdbcTemplate.update("UPDATE " + IdGenerators.TABLE + " SET " + IdGenerators.VALUE_COLUMN
+                        + " = ? WHERE " + IdGenerators.NAME_COLUMN + " = ?", floor, table);
+            } else {
+                continue;
+            }
+            System.out.println("Aligned id generator " + table + " past existing id " + maxId);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.neurofleetx.config;
 
 import com.neurofleetx.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -41,10 +42,21 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(authz -> authz
-                        .requestMatchers("/", "/health", "/api/auth/**", "/ws/**").permitAll()
+                        // Streamed responses finish on an async dispatch of a request already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        .requestMatchers("/", "/health", "/api/auth/**", "/ws/**", "/ws-native").permitAll()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/api/simulation/**").hasRole("ADMIN")
                         .requestMatchers("/api/manager/**").hasAnyRole("ADMIN", "MANAGER")
                         .requestMatchers("/api/maintenance/**").hasAnyRole("ADMIN", "MANAGER")
+                        .requestMatchers("/api/dispatch/**").hasAnyRole("ADMIN", "MANAGER")
+                        .requestMatchers("/api/telemetry/stats").hasAnyRole("ADMIN", "MANAGER")
+                        .requestMatchers("/api/fleet-stream/**").hasAnyRole("ADMIN", "MANAGER")
+                        .requestMatchers("/api/geofences/**").hasAnyRole("ADMIN", "MANAGER")
+                        .requestMatchers("/api/trajectories/**").hasAnyRole("ADMIN", "MANAGER")
+                        .requestMatchers("/api/replay/**").hasAnyRole("ADMIN", "MANAGER")
+                        .requestMatchers("/api/bookings/map-matching/**").hasAnyRole("ADMIN", "MANAGER")
+                        .requestMatchers("/api/telemetry/**").hasAnyRole("ADMIN", "MANAGER", "DRIVER")
                         .requestMatchers("/api/driver/**").hasAnyRole("ADMIN", "MANAGER", "DRIVER")
                         .requestMatchers("/api/customer/**").hasAnyRole("ADMIN", "MANAGER", "DRIVER", "CUSTOMER")
                         .anyRequest().authenticated())
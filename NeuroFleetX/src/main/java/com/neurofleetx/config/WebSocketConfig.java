@@ -1,11 +1,19 @@
 package com.neurofleetx.config;
 
+import com.neurofleetx.fleet.FleetBroadcaster;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -22,5 +30,31 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        // Plain WebSocket for clients that can take binary frames (SockJS only carries text)
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(new HandshakeInterceptor() {
+                    @Override
+                    public boolean beforeHandshake(@NonNull ServerHttpRequest request,
+                            @NonNull ServerHttpResponse response, @NonNull WebSocketHandler wsHandler,
+                            @NonNull Map<String, Object> attributes) {
+                        attributes.put(FleetBroadcaster.NATIVE_WEBSOCKET_ATTRIBUTE, true);
+                        return true;
+                    }
+
+                    @Override
+                    public void afterHandshake(@NonNull ServerHttpRequest request,
+                            @NonNull ServerHttpResponse response, @NonNull WebSocketHandler wsHandler,
+                            Exception exception) {
+                    }
+                });
+    }
+
+    @Override
+    public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(FleetBroadcaster::trackWrites);
+        // Fleet keyframes of a large fleet outgrow the default 512 KB; the broadcaster
+        // caps what it queues per subscriber, so a slow socket is throttled, not closed
+        registration.setSendBufferSizeLimit(16 * 1024 * 1024);
     }
 }
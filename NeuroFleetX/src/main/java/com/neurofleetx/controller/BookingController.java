@@ -1,6 +1,8 @@
 package com.neurofleetx.controller;
 
+import com.neurofleetx.matching.MapMatcher;
 import com.neurofleetx.model.Booking;
+import com.neurofleetx.service.BookingCandidateService;
 import com.neurofleetx.service.BookingService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
@@ -27,6 +29,13 @@ public class BookingController {
         return ResponseEntity.ok(bookingService.createBooking(booking));
     }
 
+    /** Nearest available vehicles to a pending booking's pickup; updates go to /topic/bookings/{id}/candidates */
+    @GetMapping("/{id}/candidates")
+    public ResponseEntity<BookingCandidateService.CandidateList> getCandidates(@PathVariable @NonNull Long id,
+            @RequestParam(required = false) Integer k) {
+        return ResponseEntity.ok(bookingService.getCandidates(id, k));
+    }
+
     @GetMapping("/pending")
     public ResponseEntity<List<Booking>> getPendingBookings() {
         return ResponseEntity.ok(bookingService.getPendingBookings());
@@ -52,6 +61,11 @@ public class BookingController {
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/map-matching/stats")
+    public ResponseEntity<MapMatcher.Stats> getMapMatchingStats() {
+        return ResponseEntity.ok(bookingService.getMapMatchingStats());
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Booking> getBooking(@PathVariable @NonNull Long id) {
         return ResponseEntity.ok(bookingService.getBooking(id));
@@ -61,4 +75,9 @@ public class BookingController {
     public ResponseEntity<List<Booking>> getHistory(@RequestParam Long userId, @RequestParam String role) {
         return ResponseEntity.ok(bookingService.getUserBookings(userId, role));
     }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
 }
@@ -0,0 +1,57 @@
+package com.neurofleetx.controller;
+
+import com.neurofleetx.service.DispatchService;
+import com.neurofleetx.service.DispatchService.DispatchPlan;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/dispatch")
+@CrossOrigin(origins = "http://localhost:3000")
+public class DispatchController {
+
+    private final DispatchService dispatchService;
+
+    public DispatchController(DispatchService dispatchService) {
+        this.dispatchService = dispatchService;
+    }
+
+    /**
+     * Plans all pending bookings over the available fleet. The body is optional:
+     * {"timeBudgetMs": 2000, "apply": false}.
+     */
+    @PostMapping("/optimize")
+    public ResponseEntity<DispatchPlan> optimize(@RequestBody(required = false) DispatchRequest request) {
+        Long timeBudgetMs = request != null ? request.getTimeBudgetMs() : null;
+        boolean apply = request != null && Boolean.TRUE.equals(request.getApply());
+        return ResponseEntity.ok(dispatchService.optimize(timeBudgetMs, apply));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    public static class DispatchRequest {
+        private Long timeBudgetMs;
+        private Boolean apply;
+
+        public Long getTimeBudgetMs() {
+            return timeBudgetMs;
+        }
+
+        public void setTimeBudgetMs(Long timeBudgetMs) {
+            this.timeBudgetMs = timeBudgetMs;
+        }
+
+        public Boolean getApply() {
+            return apply;
+        }
+
+        public void setApply(Boolean apply) {
+            this.apply = apply;
+        }
+    }
+}
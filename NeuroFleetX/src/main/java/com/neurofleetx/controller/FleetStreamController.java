@@ -0,0 +1,35 @@
+package com.neurofleetx.controller;
+
+import com.neurofleetx.fleet.FleetBroadcaster;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/fleet-stream")
+public class FleetStreamController {
+
+    private final FleetBroadcaster fleetBroadcaster;
+
+    public FleetStreamController(FleetBroadcaster fleetBroadcaster) {
+        this.fleetBroadcaster = fleetBroadcaster;
+    }
+
+    /** Moves the sender's /topic/fleet viewport, given as {"minLat":..,"minLng":..,"maxLat":..,"maxLng":..} */
+    @MessageMapping("/fleet/viewport")
+    public void setViewport(@Payload Map<String, Double> viewport, @Header("simpSessionId") String sessionId) {
+        fleetBroadcaster.setViewport(sessionId, FleetBroadcaster.Viewport.of(viewport.get("minLat"),
+                viewport.get("minLng"), viewport.get("maxLat"), viewport.get("maxLng")));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<FleetBroadcaster.Stats> getStats() {
+        return ResponseEntity.ok(fleetBroadcaster.stats());
+    }
+}
@@ -0,0 +1,34 @@
+package com.neurofleetx.controller;
+
+import com.neurofleetx.geocoding.Gazetteer;
+import com.neurofleetx.geocoding.Place;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/geocode")
+@CrossOrigin(origins = { "http://localhost:3000", "http://localhost:5173" })
+public class GeocodingController {
+
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final Gazetteer gazetteer;
+
+    public GeocodingController(Gazetteer gazetteer) {
+        this.gazetteer = gazetteer;
+    }
+
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<Place>> autocomplete(@RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit) {
+        return ResponseEntity.ok(gazetteer.autocomplete(q, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
+    @GetMapping("/resolve")
+    public ResponseEntity<Place> resolve(@RequestParam String q) {
+        Place place = gazetteer.resolve(q);
+        return place != null ? ResponseEntity.ok(place) : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.neurofleetx.controller;
+
+import com.neurofleetx.geofence.GeofenceEngine;
+import com.neurofleetx.model.Geofence;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/geofences")
+@CrossOrigin(origins = "http://localhost:3000")
+public class GeofenceController {
+
+    private final GeofenceEngine geofenceEngine;
+
+    public GeofenceController(GeofenceEngine geofenceEngine) {
+        this.geofenceEngine = geofenceEngine;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<Geofence>> getAllGeofences() {
+        return ResponseEntity.ok(geofenceEngine.getAllGeofences());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Geofence> getGeofence(@PathVariable Long id) {
+        return ResponseEntity.of(geofenceEngine.getGeofence(id));
+    }
+
+    /** Body: {"name":..,"type":"DEPOT|RESTRICTED_ZONE|SERVICE_AREA","polygon":"lat,lng;lat,lng;..."} */
+    @PostMapping
+    public ResponseEntity<Geofence> createGeofence(@RequestBody Geofence geofence) {
+        return ResponseEntity.ok(geofenceEngine.createGeofence(geofence));
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<Geofence> updateGeofence(@PathVariable Long id, @RequestBody Geofence geofence) {
+        return ResponseEntity.of(geofenceEngine.updateGeofence(id, geofence));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteGeofence(@PathVariable Long id) {
+        return geofenceEngine.deleteGeofence(id) ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    /** Fences the vehicle is currently in. */
+    @GetMapping("/vehicle/{vehicleId}")
+    public ResponseEntity<List<Geofence>> getGeofencesForVehicle(@PathVariable long vehicleId) {
+        return ResponseEntity.ok(geofenceEngine.getGeofencesContaining(vehicleId));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<GeofenceEngine.Stats> getStats() {
+        return ResponseEntity.ok(geofenceEngine.stats());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+}
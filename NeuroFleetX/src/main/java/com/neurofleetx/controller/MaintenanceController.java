@@ -1,10 +1,14 @@
 package com.neurofleetx.controller;
 
+import com.neurofleetx.health.HealthRollupStore;
 import com.neurofleetx.model.VehicleHealthLog;
 import com.neurofleetx.service.MaintenanceService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -29,9 +33,39 @@ public class MaintenanceController {
         return ResponseEntity.ok(maintenanceService.getVehicleHistory(vehicleId));
     }
 
+    /**
+     * Health over a range (default the last 7 days) from the rollups, at the finest
+     * resolution that gives at most points buckets, or at ?resolution=MINUTE|HOUR|DAY.
+     */
+    @GetMapping("/history/{vehicleId}/series")
+    public ResponseEntity<HealthRollupStore.Series> getHistorySeries(@PathVariable Long vehicleId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) Integer points,
+            @RequestParam(required = false) String resolution) {
+        return ResponseEntity.ok(maintenanceService.getHealthSeries(vehicleId, from, to, points, resolution));
+    }
+
+    @GetMapping("/rollups/stats")
+    public ResponseEntity<HealthRollupStore.Stats> getRollupStats() {
+        return ResponseEntity.ok(maintenanceService.getHealthRollupStats());
+    }
+
     @PostMapping("/simulate")
     public ResponseEntity<String> runSimulation() {
-        maintenanceService.simulateFleetHealth();
+        if (!maintenanceService.simulateFleetHealth()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Fleet Health Simulation already running");
+        }
         return ResponseEntity.ok("Fleet Health Simulated");
     }
+
+    @GetMapping("/simulate/stats")
+    public ResponseEntity<MaintenanceService.HealthJobStats> getSimulationStats() {
+        return ResponseEntity.ok(maintenanceService.getHealthJobStats());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
 }
@@ -0,0 +1,51 @@
+package com.neurofleetx.controller;
+
+import com.neurofleetx.cache.BoundedCache;
+import com.neurofleetx.trajectory.ReplayService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/replay")
+@CrossOrigin(origins = "http://localhost:3000")
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    public ReplayController(ReplayService replayService) {
+        this.replayService = replayService;
+    }
+
+    /**
+     * A vehicle's path between from and to (ISO-8601, the last hour by default),
+     * simplified for map zoom level zoom (0-22, default 15) to at most maxPoints points.
+     */
+    @GetMapping("/vehicles/{vehicleId}")
+    public ResponseEntity<ReplayService.Replay> replayVehicle(@PathVariable long vehicleId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) Integer zoom, @RequestParam(required = false) Integer maxPoints) {
+        return ResponseEntity.ok(replayService.replayVehicle(vehicleId, from, to, zoom, maxPoints));
+    }
+
+    /** The driver's path for a booking, as posted to /api/bookings/{id}/location. */
+    @GetMapping("/bookings/{bookingId}")
+    public ResponseEntity<ReplayService.Replay> replayBooking(@PathVariable long bookingId,
+            @RequestParam(required = false) Integer zoom, @RequestParam(required = false) Integer maxPoints) {
+        return ResponseEntity.of(replayService.replayBooking(bookingId, zoom, maxPoints));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<BoundedCache.Stats> getStats() {
+        return ResponseEntity.ok(replayService.cacheStats());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+}
@@ -1,10 +1,17 @@
 package com.neurofleetx.controller;
 
+import com.neurofleetx.routing.DistanceMatrix;
+import com.neurofleetx.service.BatchRouteService;
+import com.neurofleetx.service.DistanceMatrixService;
 import com.neurofleetx.service.RouteService;
+import com.neurofleetx.service.RouteService.Coordinate;
 import com.neurofleetx.service.RouteService.RouteOption; // Using inner class for now or move to DTO
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
 import java.util.*;
 
 @RestController
@@ -12,10 +19,19 @@ import java.util.*;
 @CrossOrigin(origins = "http://localhost:3000")
 public class RouteController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    // Same response with each route's geometry as an encoded polyline string
+    static final String POLYLINE_JSON = "application/vnd.neurofleetx.polyline+json";
+
     private final RouteService routeService;
+    private final BatchRouteService batchRouteService;
+    private final DistanceMatrixService distanceMatrixService;
 
-    public RouteController(RouteService routeService) {
+    public RouteController(RouteService routeService, BatchRouteService batchRouteService,
+            DistanceMatrixService distanceMatrixService) {
         this.routeService = routeService;
+        this.batchRouteService = batchRouteService;
+        this.distanceMatrixService = distanceMatrixService;
     }
 
     @PostMapping("/optimize")
@@ -32,6 +48,90 @@ public class RouteController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Chosen over {@link #optimizeRoute} when the client sends
+     * Accept: application/vnd.neurofleetx.polyline+json.
+     */
+    @PostMapping(value = "/optimize", produces = POLYLINE_JSON)
+    public ResponseEntity<EncodedRouteResponse> optimizeRouteEncoded(@RequestBody RouteRequest request) {
+        String vType = request.getVehicleType() != null ? request.getVehicleType() : "Standard";
+        List<RouteOption> routes = routeService.optimizeRoutes(request.getOrigin(), request.getDestination(), vType);
+
+        List<EncodedRoute> encoded = new ArrayList<>(routes.size());
+        for (RouteOption route : routes) {
+            encoded.add(new EncodedRoute(route));
+        }
+        EncodedRouteResponse response = new EncodedRouteResponse();
+        response.setRoutes(encoded);
+        response.setStatus("success");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Optimizes many pairs at once. Results stream back as newline-delimited JSON in
+     * completion order (each carries its request index), followed by a summary line.
+     */
+    @PostMapping("/optimize/batch")
+    public ResponseEntity<ResponseBodyEmitter> optimizeBatch(@RequestBody BatchRouteRequest request) {
+        List<RouteRequest> pairs = request.getRequests();
+        if (pairs == null || pairs.isEmpty()) {
+            throw new IllegalArgumentException("No route requests given");
+        }
+        if (pairs.size() > batchRouteService.getMaxBatchSize()) {
+            throw new IllegalArgumentException("Batch exceeds " + batchRouteService.getMaxBatchSize() + " requests");
+        }
+
+        List<BatchRouteService.Item> items = new ArrayList<>(pairs.size());
+        for (RouteRequest pair : pairs) {
+            String vType = pair.getVehicleType() != null ? pair.getVehicleType() : "Standard";
+            items.add(new BatchRouteService.Item(pair.getOrigin(), pair.getDestination(), vType));
+        }
+
+        long deadlineMs = request.getDeadlineMs() != null ? request.getDeadlineMs() : 0;
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchRouteService.getMaxDeadlineMs() + 5000);
+        batchRouteService.optimizeBatch(items, deadlineMs,
+                result -> sendLine(emitter, result),
+                summary -> {
+                    sendLine(emitter, summary);
+                    emitter.complete();
+                });
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    private void sendLine(ResponseBodyEmitter emitter, Object line) {
+        try {
+            emitter.send(line, MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the emitter already timed out; remaining results are dropped
+        }
+    }
+
+    /**
+     * Travel time (seconds) and distance (meters) from every source to every target,
+     * as row-major arrays; -1 marks unreachable pairs.
+     */
+    @PostMapping("/matrix")
+    public ResponseEntity<DistanceMatrix> computeMatrix(@RequestBody MatrixRequest request) {
+        return ResponseEntity.ok(distanceMatrixService.computeMatrix(request.getSources(), request.getTargets(),
+                request.getMetric()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.ok(routeService.getCacheStats());
+    }
+
+    @GetMapping("/traffic/stats")
+    public ResponseEntity<?> getTrafficStats() {
+        return ResponseEntity.ok(routeService.getTrafficStats());
+    }
+
     // Request DTO
     public static class RouteRequest {
         private String origin;
@@ -63,6 +163,58 @@ public class RouteController {
         }
     }
 
+    // Batch request DTO
+    public static class BatchRouteRequest {
+        private List<RouteRequest> requests;
+        private Long deadlineMs;
+
+        public List<RouteRequest> getRequests() {
+            return requests;
+        }
+
+        public void setRequests(List<RouteRequest> requests) {
+            this.requests = requests;
+        }
+
+        public Long getDeadlineMs() {
+            return deadlineMs;
+        }
+
+        public void setDeadlineMs(Long deadlineMs) {
+            this.deadlineMs = deadlineMs;
+        }
+    }
+
+    public static class MatrixRequest {
+        private List<Coordinate> sources;
+        private List<Coordinate> targets;
+        private String metric; // time (default), distance or eco
+
+        public List<Coordinate> getSources() {
+            return sources;
+        }
+
+        public void setSources(List<Coordinate> sources) {
+            this.sources = sources;
+        }
+
+        public List<Coordinate> getTargets() {
+            return targets;
+        }
+
+        public void setTargets(List<Coordinate> targets) {
+            this.targets = targets;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public void setMetric(String metric) {
+            this.metric = metric;
+        }
+    }
+
     // Response DTO
     public static class RouteOptimizationResponse {
         private List<RouteOption> routes;
@@ -84,4 +236,57 @@ public class RouteController {
             this.status = status;
         }
     }
-}
\ No newline at end of file
+
+    public static class EncodedRouteResponse {
+        private List<EncodedRoute> routes;
+        private String status;
+
+        public List<EncodedRoute> getRoutes() {
+            return routes;
+        }
+
+        public void setRoutes(List<EncodedRoute> routes) {
+            this.routes = routes;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+    }
+
+    public static class EncodedRoute {
+        private final RouteOption route;
+
+        EncodedRoute(RouteOption route) {
+            this.route = route;
+        }
+
+        public String getType() {
+            return route.getType();
+        }
+
+        public String getDistance() {
+            return route.getDistance();
+        }
+
+        public String getEstimatedTime() {
+            return route.getEstimatedTime();
+        }
+
+        public String getTrafficLevel() {
+            return route.getTrafficLevel();
+        }
+
+        public String getPolyline() {
+            return route.getEncodedPath();
+        }
+
+        public int getPointCount() {
+            return route.getPointCount();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.neurofleetx.controller;
+
+import com.neurofleetx.simulation.LoadSimulator;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/simulation")
+@CrossOrigin(origins = "http://localhost:3000")
+public class SimulationController {
+
+    private final LoadSimulator loadSimulator;
+
+    public SimulationController(LoadSimulator loadSimulator) {
+        this.loadSimulator = loadSimulator;
+    }
+
+    /** Achieved rates, call latencies and backlog of the load simulation. */
+    @GetMapping("/stats")
+    public ResponseEntity<LoadSimulator.Stats> getStats() {
+        return ResponseEntity.ok(loadSimulator.stats());
+    }
+
+    @PostMapping("/start")
+    public ResponseEntity<LoadSimulator.Stats> start() {
+        loadSimulator.start();
+        return ResponseEntity.ok(loadSimulator.stats());
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<LoadSimulator.Stats> stop() {
+        loadSimulator.stop();
+        return ResponseEntity.ok(loadSimulator.stats());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+}
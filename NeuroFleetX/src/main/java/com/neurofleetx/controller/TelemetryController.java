@@ -0,0 +1,51 @@
+package com.neurofleetx.controller;
+
+import com.neurofleetx.telemetry.TelemetryPipeline;
+import com.neurofleetx.telemetry.TelemetryPipeline.IngestResult;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/telemetry")
+@CrossOrigin(origins = "http://localhost:3000")
+public class TelemetryController {
+
+    private final TelemetryPipeline telemetryPipeline;
+
+    public TelemetryController(TelemetryPipeline telemetryPipeline) {
+        this.telemetryPipeline = telemetryPipeline;
+    }
+
+    /**
+     * Batched readings as NDJSON (application/x-ndjson) or binary frames
+     * (application/octet-stream); see TelemetryDecoder for both formats. The body is
+     * streamed, not buffered. 202 when every record was taken, 503 with resumeFrom
+     * when the pipeline was full (resend from that record), 400 with error on
+     * malformed input. Records taken before a 400 or 503 are kept.
+     */
+    @PostMapping(value = "/ingest", consumes = { "application/x-ndjson", "application/octet-stream" })
+    public ResponseEntity<IngestResult> ingest(HttpServletRequest request) throws IOException {
+        boolean binary = MediaType.APPLICATION_OCTET_STREAM.isCompatibleWith(
+                MediaType.parseMediaType(request.getContentType()));
+        IngestResult result = binary
+                ? telemetryPipeline.ingestBinary(request.getInputStream())
+                : telemetryPipeline.ingestNdjson(request.getInputStream());
+        if (result.getError() != null) {
+            return ResponseEntity.badRequest().body(result);
+        }
+        if (result.getResumeFrom() != null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(result);
+        }
+        return ResponseEntity.accepted().body(result);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<TelemetryPipeline.Stats> getStats() {
+        return ResponseEntity.ok(telemetryPipeline.stats());
+    }
+}
@@ -0,0 +1,111 @@
+package com.neurofleetx.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neurofleetx.trajectory.TrajectoryStore;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/trajectories")
+@CrossOrigin(origins = "http://localhost:3000")
+public class TrajectoryController {
+
+    private static final int DEFAULT_LIMIT = 10_000;
+    private static final int MAX_LIMIT = 100_000;
+
+    private final TrajectoryStore trajectoryStore;
+    private final JsonFactory jsonFactory;
+
+    public TrajectoryController(TrajectoryStore trajectoryStore, ObjectMapper objectMapper) {
+        this.trajectoryStore = trajectoryStore;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Recorded positions of a vehicle between from and to (ISO-8601 instants, the
+     * last hour by default), oldest first, as {"points":[[epochMillis,lat,lng,speed],..]}.
+     * Speed is null when unknown. If the limit cuts the range short, nextFrom is the
+     * from of the next page.
+     */
+    @GetMapping(value = "/{vehicleId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getTrajectory(@PathVariable long vehicleId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) Integer limit) {
+        if (!trajectoryStore.isEnabled()) {
+            throw new IllegalArgumentException("Trajectory recording is disabled (trajectory.enabled=false)");
+        }
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(1, ChronoUnit.HOURS);
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        int pageSize = limit != null ? limit : DEFAULT_LIMIT;
+        if (pageSize < 1 || pageSize > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+                json.writeStartObject();
+                json.writeNumberField("vehicleId", vehicleId);
+                json.writeArrayFieldStart("points");
+                int[] written = {0};
+                long[] nextFrom = {-1};
+                trajectoryStore.scan(vehicleId, start.toEpochMilli(), end.toEpochMilli(),
+                        (timestamp, lat, lng, speed) -> {
+                            if (written[0] == pageSize) {
+                                nextFrom[0] = timestamp;
+                                return false;
+                            }
+                            try {
+                                json.writeStartArray();
+                                json.writeNumber(timestamp);
+                                json.writeNumber(lat);
+                                json.writeNumber(lng);
+                                if (speed < 0) {
+                                    json.writeNull();
+                                } else {
+                                    json.writeNumber(speed);
+                                }
+                                json.writeEndArray();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            written[0]++;
+                            return true;
+                        });
+                json.writeEndArray();
+                json.writeNumberField("count", written[0]);
+                if (nextFrom[0] >= 0) {
+                    json.writeStringField("nextFrom", Instant.ofEpochMilli(nextFrom[0]).toString());
+                } else {
+                    json.writeNullField("nextFrom");
+                }
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<TrajectoryStore.Stats> getStats() {
+        return ResponseEntity.ok(trajectoryStore.stats());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+}
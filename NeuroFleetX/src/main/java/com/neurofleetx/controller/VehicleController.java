@@ -1,11 +1,19 @@
 package com.neurofleetx.controller;
 
+import com.neurofleetx.fleet.FleetJobScheduler;
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleSpatialIndex;
+import com.neurofleetx.fleet.VehicleState;
 import com.neurofleetx.model.Vehicle;
+import com.neurofleetx.service.VehicleListingService;
 import com.neurofleetx.service.VehicleService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/vehicles")
@@ -13,9 +21,11 @@ import java.util.List;
 public class VehicleController {
     
     private final VehicleService vehicleService;
+    private final VehicleListingService vehicleListingService;
     
-    public VehicleController(VehicleService vehicleService) {
+    public VehicleController(VehicleService vehicleService, VehicleListingService vehicleListingService) {
         this.vehicleService = vehicleService;
+        this.vehicleListingService = vehicleListingService;
     }
     
     @GetMapping
@@ -23,6 +33,60 @@ public class VehicleController {
         return ResponseEntity.ok(vehicleService.getAllVehicles());
     }
     
+    /**
+     * One keyset page of vehicles, e.g. ?after=1200&limit=500&status=AVAILABLE&type=EV
+     * &minLat=40.6&minLng=-74.1&maxLat=40.9&maxLng=-73.8&fields=name,status,latitude,longitude.
+     * Pass the response's nextAfter as after for the next page.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<StreamingResponseBody> getVehiclePage(@RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) List<Vehicle.VehicleStatus> status,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) Double minLat, @RequestParam(required = false) Double minLng,
+            @RequestParam(required = false) Double maxLat, @RequestParam(required = false) Double maxLng,
+            @RequestParam(required = false) String fields) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(vehicleListingService
+                .listVehicles(after, limit, status, type, minLat, minLng, maxLat, maxLng, fields));
+    }
+    
+    @GetMapping("/fleet-state/stats")
+    public ResponseEntity<FleetStateStore.Stats> getFleetStateStats() {
+        return ResponseEntity.ok(vehicleService.getFleetStateStats());
+    }
+    
+    /** Per-job and per-shard timing, skipped ticks and overruns of the fleet jobs. */
+    @GetMapping("/fleet-jobs/stats")
+    public ResponseEntity<FleetJobScheduler.Stats> getFleetJobStats() {
+        return ResponseEntity.ok(vehicleService.getFleetJobStats());
+    }
+    
+    /** k nearest vehicles by live position, e.g. ?lat=40.75&lng=-73.98&k=5&status=AVAILABLE&type=EV */
+    @GetMapping("/nearest")
+    public ResponseEntity<List<VehicleSpatialIndex.Hit>> getNearest(@RequestParam double lat, @RequestParam double lng,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "50000") double maxRadiusMeters,
+            @RequestParam(required = false) List<Vehicle.VehicleStatus> status,
+            @RequestParam(required = false) String type) {
+        return ResponseEntity.ok(vehicleService.findNearest(lat, lng, k, maxRadiusMeters, status, type));
+    }
+    
+    @GetMapping("/within-radius")
+    public ResponseEntity<List<VehicleSpatialIndex.Hit>> getWithinRadius(@RequestParam double lat,
+            @RequestParam double lng, @RequestParam double radiusMeters,
+            @RequestParam(required = false) List<Vehicle.VehicleStatus> status,
+            @RequestParam(required = false) String type) {
+        return ResponseEntity.ok(vehicleService.findWithinRadius(lat, lng, radiusMeters, status, type));
+    }
+    
+    @GetMapping("/within-box")
+    public ResponseEntity<List<VehicleState>> getWithinBox(@RequestParam double minLat, @RequestParam double minLng,
+            @RequestParam double maxLat, @RequestParam double maxLng,
+            @RequestParam(required = false) List<Vehicle.VehicleStatus> status,
+            @RequestParam(required = false) String type) {
+        return ResponseEntity.ok(vehicleService.findWithinBox(minLat, minLng, maxLat, maxLng, status, type));
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<Vehicle> getVehicleById(@PathVariable Long id) {
         return ResponseEntity.ok(vehicleService.getVehicleById(id));
@@ -32,4 +96,9 @@ public class VehicleController {
     public ResponseEntity<Vehicle> createVehicle(@RequestBody Vehicle vehicle) {
         return ResponseEntity.status(201).body(vehicleService.createVehicle(vehicle));
     }
+    
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.neurofleetx.dispatch;
+
+/**
+ * Assignment problem for {@link VrpSolver}: V vehicles at their current positions
+ * and B bookings, each a trip from a pickup to a dropoff. A vehicle serves its
+ * bookings one after another, so the only cost that depends on the plan is the
+ * empty driving (deadhead) to each pickup: from the vehicle's position for its
+ * first booking, from the previous booking's dropoff otherwise.
+ *
+ * All costs are in meters; {@link #UNREACHABLE} marks pairs with no path.
+ */
+public final class VrpProblem {
+
+    public static final int UNREACHABLE = -1;
+
+    final int vehicles;
+    final int bookings;
+    final int[] startCost; // [v * B + b]: vehicle v to pickup of b
+    final int[] linkCost; // [a * B + b]: dropoff of a to pickup of b
+    final int[] tripCost; // [b]: pickup to dropoff of b
+    final long[] range; // [v]: meters vehicle v may still drive
+    final boolean[] allowed; // [v * B + b]: vehicle v may serve b
+    final int maxStops;
+
+    public VrpProblem(int vehicles, int bookings, int[] startCost, int[] linkCost, int[] tripCost, long[] range,
+            boolean[] allowed, int maxStops) {
+        if (startCost.length != vehicles * bookings || allowed.length != vehicles * bookings
+                || linkCost.length != bookings * bookings || tripCost.length != bookings
+                || range.length != vehicles) {
+            throw new IllegalArgumentException("Cost arrays do not match " + vehicles + " vehicles and "
+                    + bookings + " bookings");
+        }
+        if (maxStops <= 0) {
+            throw new IllegalArgumentException("maxStops must be positive");
+        }
+        this.vehicles = vehicles;
+        this.bookings = bookings;
+        this.startCost = startCost;
+        this.linkCost = linkCost;
+        this.tripCost = tripCost;
+        this.range = range;
+        this.allowed = allowed;
+        this.maxStops = maxStops;
+    }
+
+    public int getVehicles() {
+        return vehicles;
+    }
+
+    public int getBookings() {
+        return bookings;
+    }
+}
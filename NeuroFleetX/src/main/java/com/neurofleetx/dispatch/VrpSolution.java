@@ -0,0 +1,67 @@
+package com.neurofleetx.dispatch;
+
+/**
+ * Result of {@link VrpSolver}: the ordered bookings each vehicle serves and the
+ * bookings no vehicle could take. Booking and vehicle numbers are indexes into the
+ * {@link VrpProblem}.
+ */
+public final class VrpSolution {
+
+    private final int[][] routes;
+    private final long[] routeDeadhead;
+    private final long[] routeDistance;
+    private final int[] unassigned;
+    private final long totalDeadhead;
+    private final long constructionDeadhead;
+    private final int constructionUnassigned;
+    private final long iterations;
+
+    VrpSolution(int[][] routes, long[] routeDeadhead, long[] routeDistance, int[] unassigned, long totalDeadhead,
+            long constructionDeadhead, int constructionUnassigned, long iterations) {
+        this.routes = routes;
+        this.routeDeadhead = routeDeadhead;
+        this.routeDistance = routeDistance;
+        this.unassigned = unassigned;
+        this.totalDeadhead = totalDeadhead;
+        this.constructionDeadhead = constructionDeadhead;
+        this.constructionUnassigned = constructionUnassigned;
+        this.iterations = iterations;
+    }
+
+    /** Bookings served by the vehicle, in order. */
+    public int[] route(int vehicle) {
+        return routes[vehicle];
+    }
+
+    /** Empty driving of the vehicle's route, in meters. */
+    public long deadhead(int vehicle) {
+        return routeDeadhead[vehicle];
+    }
+
+    /** Empty plus loaded driving of the vehicle's route, in meters. */
+    public long distance(int vehicle) {
+        return routeDistance[vehicle];
+    }
+
+    public int[] getUnassigned() {
+        return unassigned;
+    }
+
+    public long getTotalDeadhead() {
+        return totalDeadhead;
+    }
+
+    /** Deadhead of the cheapest-insertion plan local search started from. */
+    public long getConstructionDeadhead() {
+        return constructionDeadhead;
+    }
+
+    public int getConstructionUnassigned() {
+        return constructionUnassigned;
+    }
+
+    /** Local search moves evaluated across all threads. */
+    public long getIterations() {
+        return iterations;
+    }
+}
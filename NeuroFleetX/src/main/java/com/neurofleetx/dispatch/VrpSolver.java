@@ -0,0 +1,501 @@
+package com.neurofleetx.dispatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heuristic solver for {@link VrpProblem}, minimizing total deadhead while serving
+ * as many bookings as possible (every unserved booking costs more than any plan's
+ * deadhead).
+ *
+ * A cheapest-insertion plan is built first. Several threads then improve copies
+ * of it independently with iterated local search, each with its own random seed,
+ * until the time budget runs out; the best plan wins. Moves are relocate,
+ * exchange, 2-opt within a route, 2-opt* between routes (swapping tails) and
+ * insertion of still unserved bookings. When a thread stops finding improvements
+ * it restarts from its best plan after a few random relocations.
+ */
+public final class VrpSolver {
+
+    private static final long UNASSIGNED_PENALTY = 1_000_000_000L;
+    private static final long INFEASIBLE = -1;
+
+    private final VrpProblem p;
+
+    public VrpSolver(VrpProblem problem) {
+        this.p = problem;
+    }
+
+    /**
+     * Solves within roughly timeBudgetMillis, running local search as threads tasks
+     * on the given executor.
+     */
+    public VrpSolution solve(long timeBudgetMillis, int threads, ExecutorService executor) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        Plan initial = construct();
+        long constructionDeadhead = initial.deadhead();
+        int constructionUnassigned = initial.unassignedCount;
+
+        List<Future<Plan>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < Math.max(1, threads); t++) {
+            long seed = 0x9E3779B97F4A7C15L * (t + 1);
+            futures.add(executor.submit(() -> improve(initial.copy(), new SplittableRandom(seed), deadline)));
+        }
+        Plan best = initial;
+        long iterations = 0;
+        for (Future<Plan> future : futures) {
+            Plan candidate;
+            try {
+                candidate = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while optimizing dispatch", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Dispatch local search failed", e.getCause());
+            }
+            iterations += candidate.iterations;
+            if (candidate.objective() < best.objective()) {
+                best = candidate;
+            }
+        }
+        return best.toSolution(constructionDeadhead, constructionUnassigned, iterations);
+    }
+
+    /** Deadhead from the end of the previous stop (or the vehicle, if from < 0) to a pickup. */
+    private int arc(int vehicle, int from, int to) {
+        return from < 0 ? p.startCost[vehicle * p.bookings + to] : p.linkCost[from * p.bookings + to];
+    }
+
+    /** Repeatedly inserts the booking whose cheapest feasible insertion adds the least deadhead. */
+    private Plan construct() {
+        Plan plan = new Plan();
+        int n = p.bookings;
+        long[] bestDelta = new long[n];
+        int[] bestRoute = new int[n];
+        int[] bestPos = new int[n];
+        for (int b = 0; b < n; b++) {
+            bestRoute[b] = -1;
+            for (int v = 0; v < p.vehicles; v++) {
+                plan.bestInsertion(b, v, bestDelta, bestRoute, bestPos);
+            }
+        }
+
+        while (true) {
+            int pick = -1;
+            for (int b = 0; b < n; b++) {
+                if (plan.isUnassigned(b) && bestRoute[b] >= 0 && (pick < 0 || bestDelta[b] < bestDelta[pick])) {
+                    pick = b;
+                }
+            }
+            if (pick < 0) {
+                break;
+            }
+            int route = bestRoute[pick];
+            plan.insert(pick, route, bestPos[pick]);
+
+            // Only the changed route's insertions moved; bookings whose best slot was there start over
+            for (int b = 0; b < n; b++) {
+                if (!plan.isUnassigned(b)) {
+                    continue;
+                }
+                if (bestRoute[b] == route) {
+                    bestRoute[b] = -1;
+                    for (int v = 0; v < p.vehicles; v++) {
+                        plan.bestInsertion(b, v, bestDelta, bestRoute, bestPos);
+                    }
+                } else {
+                    plan.bestInsertion(b, route, bestDelta, bestRoute, bestPos);
+                }
+            }
+        }
+        return plan;
+    }
+
+    private Plan improve(Plan current, SplittableRandom random, long deadline) {
+        Plan best = current.copy();
+        if (p.vehicles == 0 || p.bookings == 0) {
+            return best;
+        }
+        long stallLimit = 20L * (p.bookings + p.vehicles);
+        long sinceImprovement = 0;
+        long iterations = 0;
+        while ((iterations & 255) != 0 || System.nanoTime() < deadline) {
+            iterations++;
+            current.randomMove(random, false);
+            if (current.objective() < best.objective()) {
+                best.copyFrom(current);
+                sinceImprovement = 0;
+            } else if (++sinceImprovement > stallLimit) {
+                // Local optimum: kick the best plan and search from there
+                current.copyFrom(best);
+                int kicks = 2 + random.nextInt(4);
+                for (int attempt = 0; attempt < 50 && kicks > 0; attempt++) {
+                    if (current.relocate(random, true)) {
+                        kicks--;
+                    }
+                }
+                sinceImprovement = 0;
+            }
+        }
+        best.iterations = iterations;
+        return best;
+    }
+
+    /** Mutable plan owned by one thread. */
+    private final class Plan {
+        final int[][] seq = new int[p.vehicles][p.maxStops];
+        final int[] len = new int[p.vehicles];
+        final long[] dead = new long[p.vehicles];
+        final long[] dist = new long[p.vehicles];
+        long totalDead;
+        final int[] unassigned = new int[p.bookings];
+        final int[] unassignedAt = new int[p.bookings]; // position in unassigned, -1 if served
+        int unassignedCount;
+        long iterations;
+
+        // Scratch routes and the driven distance of the last evaluation
+        final int[] a = new int[p.maxStops + 1];
+        final int[] b = new int[p.maxStops + 1];
+        long evalDistance;
+
+        Plan() {
+            for (int i = 0; i < p.bookings; i++) {
+                unassigned[i] = i;
+                unassignedAt[i] = i;
+            }
+            unassignedCount = p.bookings;
+        }
+
+        Plan copy() {
+            Plan copy = new Plan();
+            copy.copyFrom(this);
+            return copy;
+        }
+
+        void copyFrom(Plan other) {
+            for (int v = 0; v < p.vehicles; v++) {
+                System.arraycopy(other.seq[v], 0, seq[v], 0, other.len[v]);
+            }
+            System.arraycopy(other.len, 0, len, 0, p.vehicles);
+            System.arraycopy(other.dead, 0, dead, 0, p.vehicles);
+            System.arraycopy(other.dist, 0, dist, 0, p.vehicles);
+            System.arraycopy(other.unassigned, 0, unassigned, 0, p.bookings);
+            System.arraycopy(other.unassignedAt, 0, unassignedAt, 0, p.bookings);
+            unassignedCount = other.unassignedCount;
+            totalDead = other.totalDead;
+        }
+
+        long deadhead() {
+            return totalDead;
+        }
+
+        long objective() {
+            return deadhead() + UNASSIGNED_PENALTY * unassignedCount;
+        }
+
+        boolean isUnassigned(int booking) {
+            return unassignedAt[booking] >= 0;
+        }
+
+        /**
+         * Deadhead of serving route[0..n) with vehicle v, or INFEASIBLE; sets
+         * evalDistance to the total driven distance.
+         */
+        long evaluate(int v, int[] route, int n) {
+            if (n > p.maxStops) {
+                return INFEASIBLE;
+            }
+            long deadhead = 0;
+            long trips = 0;
+            int prev = -1;
+            for (int k = 0; k < n; k++) {
+                int booking = route[k];
+                int cost = arc(v, prev, booking);
+                if (!p.allowed[v * p.bookings + booking] || cost < 0 || p.tripCost[booking] < 0) {
+                    return INFEASIBLE;
+                }
+                deadhead += cost;
+                trips += p.tripCost[booking];
+                prev = booking;
+            }
+            if (deadhead + trips > p.range[v]) {
+                return INFEASIBLE;
+            }
+            evalDistance = deadhead + trips;
+            return deadhead;
+        }
+
+        /** Updates the best insertion of booking into route v if it beats the current one. */
+        void bestInsertion(int booking, int v, long[] bestDelta, int[] bestRoute, int[] bestPos) {
+            int n = len[v];
+            if (n >= p.maxStops || !p.allowed[v * p.bookings + booking]) {
+                return;
+            }
+            for (int pos = 0; pos <= n; pos++) {
+                long d = evaluate(v, withInserted(seq[v], n, booking, pos, a), n + 1);
+                if (d != INFEASIBLE && (bestRoute[booking] < 0 || d - dead[v] < bestDelta[booking])) {
+                    bestDelta[booking] = d - dead[v];
+                    bestRoute[booking] = v;
+                    bestPos[booking] = pos;
+                }
+            }
+        }
+
+        void insert(int booking, int v, int pos) {
+            int n = len[v];
+            withInserted(seq[v], n, booking, pos, a);
+            commit(v, a, n + 1, evaluate(v, a, n + 1), evalDistance);
+            removeUnassigned(booking);
+        }
+
+        void randomMove(SplittableRandom random, boolean force) {
+            switch (random.nextInt(unassignedCount > 0 ? 5 : 4)) {
+                case 0:
+                    relocate(random, force);
+                    break;
+                case 1:
+                    exchange(random, force);
+                    break;
+                case 2:
+                    twoOpt(random, force);
+                    break;
+                case 3:
+                    twoOptStar(random, force);
+                    break;
+                default:
+                    insertUnassigned(random);
+            }
+        }
+
+        /** Moves one booking to another position, in the same or another route. */
+        boolean relocate(SplittableRandom random, boolean force) {
+            int r1 = nonEmptyRoute(random);
+            if (r1 < 0) {
+                return false;
+            }
+            int n1 = len[r1];
+            int i = random.nextInt(n1);
+            int booking = seq[r1][i];
+            int r2 = random.nextInt(p.vehicles);
+            if (r1 == r2) {
+                int j = random.nextInt(n1);
+                if (j == i) {
+                    return false;
+                }
+                withRemoved(seq[r1], n1, i, b);
+                withInserted(b, n1 - 1, booking, j, a);
+                long d = evaluate(r1, a, n1);
+                if (d == INFEASIBLE || !accept(d - dead[r1], random, force)) {
+                    return false;
+                }
+                commit(r1, a, n1, d, evalDistance);
+                return true;
+            }
+            int n2 = len[r2];
+            if (n2 >= p.maxStops) {
+                return false;
+            }
+            long d1 = evaluate(r1, withRemoved(seq[r1], n1, i, a), n1 - 1);
+            long dist1 = evalDistance;
+            long d2 = d1 == INFEASIBLE ? INFEASIBLE
+                    : evaluate(r2, withInserted(seq[r2], n2, booking, random.nextInt(n2 + 1), b), n2 + 1);
+            if (d2 == INFEASIBLE || !accept(d1 + d2 - dead[r1] - dead[r2], random, force)) {
+                return false;
+            }
+            commit(r1, a, n1 - 1, d1, dist1);
+            commit(r2, b, n2 + 1, d2, evalDistance);
+            return true;
+        }
+
+        /** Swaps two served bookings, or a served booking with an unserved one. */
+        boolean exchange(SplittableRandom random, boolean force) {
+            int r1 = nonEmptyRoute(random);
+            if (r1 < 0) {
+                return false;
+            }
+            int n1 = len[r1];
+            int i = random.nextInt(n1);
+            if (unassignedCount > 0 && random.nextInt(4) == 0) {
+                int slot = random.nextInt(unassignedCount);
+                int incoming = unassigned[slot];
+                System.arraycopy(seq[r1], 0, a, 0, n1);
+                int outgoing = a[i];
+                a[i] = incoming;
+                long d = evaluate(r1, a, n1);
+                if (d == INFEASIBLE || !accept(d - dead[r1], random, force)) {
+                    return false;
+                }
+                commit(r1, a, n1, d, evalDistance);
+                unassigned[slot] = outgoing;
+                unassignedAt[outgoing] = slot;
+                unassignedAt[incoming] = -1;
+                return true;
+            }
+            int r2 = nonEmptyRoute(random);
+            if (r2 < 0) {
+                return false;
+            }
+            int n2 = len[r2];
+            int j = random.nextInt(n2);
+            if (r1 == r2) {
+                if (i == j) {
+                    return false;
+                }
+                System.arraycopy(seq[r1], 0, a, 0, n1);
+                a[i] = seq[r1][j];
+                a[j] = seq[r1][i];
+                long d = evaluate(r1, a, n1);
+                if (d == INFEASIBLE || !accept(d - dead[r1], random, force)) {
+                    return false;
+                }
+                commit(r1, a, n1, d, evalDistance);
+                return true;
+            }
+            System.arraycopy(seq[r1], 0, a, 0, n1);
+            System.arraycopy(seq[r2], 0, b, 0, n2);
+            a[i] = seq[r2][j];
+            b[j] = seq[r1][i];
+            long d1 = evaluate(r1, a, n1);
+            long dist1 = evalDistance;
+            long d2 = d1 == INFEASIBLE ? INFEASIBLE : evaluate(r2, b, n2);
+            if (d2 == INFEASIBLE || !accept(d1 + d2 - dead[r1] - dead[r2], random, force)) {
+                return false;
+            }
+            commit(r1, a, n1, d1, dist1);
+            commit(r2, b, n2, d2, evalDistance);
+            return true;
+        }
+
+        /** Reverses a segment of one route. */
+        boolean twoOpt(SplittableRandom random, boolean force) {
+            int r = nonEmptyRoute(random);
+            if (r < 0 || len[r] < 2) {
+                return false;
+            }
+            int n = len[r];
+            int i = random.nextInt(n);
+            int j = random.nextInt(n);
+            if (i == j) {
+                return false;
+            }
+            int lo = Math.min(i, j), hi = Math.max(i, j);
+            System.arraycopy(seq[r], 0, a, 0, n);
+            for (int k = lo; k <= hi; k++) {
+                a[k] = seq[r][hi - (k - lo)];
+            }
+            long d = evaluate(r, a, n);
+            if (d == INFEASIBLE || !accept(d - dead[r], random, force)) {
+                return false;
+            }
+            commit(r, a, n, d, evalDistance);
+            return true;
+        }
+
+        /** Cuts two routes and swaps their tails. */
+        boolean twoOptStar(SplittableRandom random, boolean force) {
+            int r1 = nonEmptyRoute(random);
+            int r2 = random.nextInt(p.vehicles);
+            if (r1 < 0 || r1 == r2) {
+                return false;
+            }
+            int n1 = len[r1], n2 = len[r2];
+            int i = random.nextInt(n1 + 1);
+            int j = random.nextInt(n2 + 1);
+            int m1 = i + (n2 - j);
+            int m2 = j + (n1 - i);
+            if (m1 > p.maxStops || m2 > p.maxStops || (i == n1 && j == n2) || (i == 0 && j == 0)) {
+                return false;
+            }
+            System.arraycopy(seq[r1], 0, a, 0, i);
+            System.arraycopy(seq[r2], j, a, i, n2 - j);
+            System.arraycopy(seq[r2], 0, b, 0, j);
+            System.arraycopy(seq[r1], i, b, j, n1 - i);
+            long d1 = evaluate(r1, a, m1);
+            long dist1 = evalDistance;
+            long d2 = d1 == INFEASIBLE ? INFEASIBLE : evaluate(r2, b, m2);
+            if (d2 == INFEASIBLE || !accept(d1 + d2 - dead[r1] - dead[r2], random, force)) {
+                return false;
+            }
+            commit(r1, a, m1, d1, dist1);
+            commit(r2, b, m2, d2, evalDistance);
+            return true;
+        }
+
+        /** Serves an unserved booking if some slot can take it. */
+        boolean insertUnassigned(SplittableRandom random) {
+            int booking = unassigned[random.nextInt(unassignedCount)];
+            int r = random.nextInt(p.vehicles);
+            int n = len[r];
+            if (n >= p.maxStops) {
+                return false;
+            }
+            long d = evaluate(r, withInserted(seq[r], n, booking, random.nextInt(n + 1), a), n + 1);
+            if (d == INFEASIBLE) {
+                return false;
+            }
+            commit(r, a, n + 1, d, evalDistance);
+            removeUnassigned(booking);
+            return true;
+        }
+
+        boolean accept(long delta, SplittableRandom random, boolean force) {
+            // Equal-cost moves are taken now and then to drift across plateaus
+            return force || delta < 0 || (delta == 0 && random.nextInt(4) == 0);
+        }
+
+        int nonEmptyRoute(SplittableRandom random) {
+            for (int attempt = 0; attempt < 16; attempt++) {
+                int v = random.nextInt(p.vehicles);
+                if (len[v] > 0) {
+                    return v;
+                }
+            }
+            return -1;
+        }
+
+        void commit(int v, int[] route, int n, long deadhead, long distance) {
+            System.arraycopy(route, 0, seq[v], 0, n);
+            len[v] = n;
+            totalDead += deadhead - dead[v];
+            dead[v] = deadhead;
+            dist[v] = distance;
+        }
+
+        void removeUnassigned(int booking) {
+            int slot = unassignedAt[booking];
+            int last = unassigned[--unassignedCount];
+            unassigned[slot] = last;
+            unassignedAt[last] = slot;
+            unassignedAt[booking] = -1;
+        }
+
+        VrpSolution toSolution(long constructionDeadhead, int constructionUnassigned, long totalIterations) {
+            int[][] routes = new int[p.vehicles][];
+            for (int v = 0; v < p.vehicles; v++) {
+                routes[v] = Arrays.copyOf(seq[v], len[v]);
+            }
+            return new VrpSolution(routes, dead.clone(), dist.clone(),
+                    Arrays.copyOf(unassigned, unassignedCount), deadhead(), constructionDeadhead,
+                    constructionUnassigned, totalIterations);
+        }
+    }
+
+    private static int[] withInserted(int[] route, int n, int booking, int pos, int[] out) {
+        System.arraycopy(route, 0, out, 0, pos);
+        out[pos] = booking;
+        System.arraycopy(route, pos, out, pos + 1, n - pos);
+        return out;
+    }
+
+    private static int[] withRemoved(int[] route, int n, int pos, int[] out) {
+        System.arraycopy(route, 0, out, 0, pos);
+        System.arraycopy(route, pos + 1, out, pos, n - pos - 1);
+        return out;
+    }
+}
@@ -0,0 +1,469 @@
+package com.neurofleetx.fleet;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live fleet stream on /topic/fleet. Changes from {@link FleetStateStore} are
+ * coalesced for fleet.broadcast.interval-ms; each tick then sends every subscriber
+ * one frame with the vehicles in its viewport that changed (only the changed
+ * fields), entered or left it. Subscribers get a keyframe of everything in view
+ * when they subscribe or change viewport, after missing frames, and every
+ * fleet.broadcast.keyframe-interval-ms so clients can resync.
+ *
+ * SUBSCRIBE headers: "viewport: minLat,minLng,maxLat,maxLng" (whole fleet if absent)
+ * and "format: binary" for {@link FleetFrameEncoder}'s binary frames, which need the
+ * plain WebSocket endpoint (/ws-native; SockJS sessions get JSON). A client moves
+ * its viewport by sending the four values to /app/fleet/viewport.
+ *
+ * Frames go straight to each subscription, not through the broker. A subscriber
+ * with fleet.broadcast.max-pending-frames frames still waiting to be written to its
+ * socket misses ticks instead of queueing more, and resyncs from a keyframe. Writes
+ * are only seen on sessions whose handler went through {@link #trackWrites}.
+ */
+@Component
+public class FleetBroadcaster implements FleetStateStore.Listener {
+
+    public static final String DESTINATION = "/topic/fleet";
+    /** Session attribute set by the handshake of the plain WebSocket endpoint. */
+    public static final String NATIVE_WEBSOCKET_ATTRIBUTE = "fleet.nativeWebSocket";
+
+    // Subscription id -> frames not yet written, kept in the session attributes for trackWrites
+    private static final String PENDING_FRAMES_ATTRIBUTE = "fleet.pendingFrames";
+
+    private final FleetStateStore fleetState;
+    private final MessageChannel clientOutboundChannel;
+    private final JsonFactory jsonFactory;
+    private final long keyframeIntervalMs;
+    private final int maxPendingFrames;
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    // What every up-to-date subscriber has been sent; only touched by tick()
+    private final Map<Long, VehicleSnapshot> sent = new HashMap<>();
+    private volatile long seq;
+    private long lastKeyframeAt;
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private volatile int vehicles;
+    private volatile int lastChanges;
+    private volatile long lastTickMicros;
+
+    public FleetBroadcaster(FleetStateStore fleetState,
+            @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+            ObjectMapper objectMapper,
+            @Value("${fleet.broadcast.keyframe-interval-ms:30000}") long keyframeIntervalMs,
+            @Value("${fleet.broadcast.max-pending-frames:4}") int maxPendingFrames) {
+        this.fleetState = fleetState;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.jsonFactory = objectMapper.getFactory();
+        this.keyframeIntervalMs = keyframeIntervalMs;
+        this.maxPendingFrames = maxPendingFrames;
+        fleetState.addListener(this);
+    }
+
+    @Override
+    public void onChange(VehicleState previous, VehicleState current) {
+        dirty.add(current != null ? current.getId() : previous.getId());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (!DESTINATION.equals(accessor.getDestination())) {
+            return;
+        }
+        Viewport viewport;
+        try {
+            viewport = Viewport.parse(accessor.getFirstNativeHeader("viewport"));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ignoring fleet subscription of session " + accessor.getSessionId() + ": "
+                    + e.getMessage());
+            return;
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes == null) {
+            return;
+        }
+        boolean binary = "binary".equalsIgnoreCase(accessor.getFirstNativeHeader("format"))
+                && Boolean.TRUE.equals(attributes.get(NATIVE_WEBSOCKET_ATTRIBUTE));
+        Subscriber subscriber = new Subscriber(accessor.getSessionId(), accessor.getSubscriptionId(), binary,
+                viewport);
+        pendingFrames(attributes).put(escape(subscriber.subscriptionId), subscriber.pending);
+        subscribers.put(subscriber.key(), subscriber);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        subscribers.remove(accessor.getSessionId() + "/" + accessor.getSubscriptionId());
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes != null && accessor.getSubscriptionId() != null) {
+            pendingFrames(attributes).remove(escape(accessor.getSubscriptionId()));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        subscribers.values().removeIf(s -> s.sessionId.equals(event.getSessionId()));
+    }
+
+    /** Moves the viewport of every fleet subscription of the session; they get a keyframe next tick. */
+    public void setViewport(String sessionId, Viewport viewport) {
+        for (Subscriber s : subscribers.values()) {
+            if (s.sessionId.equals(sessionId)) {
+                s.viewport = viewport;
+                s.needsKeyframe.set(true);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fleet.broadcast.interval-ms:1000}")
+    public void tick() {
+        long started = System.nanoTime();
+        long now = System.currentTimeMillis();
+        seq = seq + 1;
+
+        // Each vehicle changed since the last tick once, with the fields that differ from what was sent
+        List<VehicleSnapshot> previous = new ArrayList<>();
+        List<VehicleSnapshot> current = new ArrayList<>();
+        List<Integer> fields = new ArrayList<>();
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext();) {
+            Long id = it.next();
+            it.remove();
+            VehicleState state = fleetState.get(id);
+            VehicleSnapshot before = sent.get(id);
+            VehicleSnapshot after = state != null ? VehicleSnapshot.of(state) : null;
+            int changed = after != null ? after.changedFields(before) : FleetFrameEncoder.ALL;
+            if ((after == null && before == null) || changed == 0) {
+                continue;
+            }
+            if (after != null) {
+                sent.put(id, after);
+            } else {
+                sent.remove(id);
+            }
+            previous.add(before);
+            current.add(after);
+            fields.add(changed);
+        }
+
+        boolean keyframeDue = now - lastKeyframeAt >= keyframeIntervalMs;
+        if (keyframeDue) {
+            lastKeyframeAt = now;
+        }
+        // Frames for subscribers that see the whole fleet, shared by format and kind
+        Map<String, byte[]> shared = new HashMap<>();
+        for (Subscriber s : subscribers.values()) {
+            boolean keyframe = s.needsKeyframe.getAndSet(false) || keyframeDue;
+            if (s.pending.get() >= maxPendingFrames) {
+                s.needsKeyframe.set(true);
+                droppedFrames.incrementAndGet();
+                continue;
+            }
+            Viewport viewport = s.viewport;
+            byte[] frame = viewport == null
+                    ? shared.computeIfAbsent((s.binary ? "binary/" : "json/") + keyframe,
+                            k -> encode(s.binary, keyframe, null, now, previous, current, fields))
+                    : encode(s.binary, keyframe, viewport, now, previous, current, fields);
+            if (frame != null) {
+                send(s, frame);
+            }
+        }
+        vehicles = sent.size();
+        lastChanges = current.size();
+        lastTickMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+    }
+
+    /** The subscriber's frame for this tick, or null if it has nothing new. */
+    private byte[] encode(boolean binary, boolean keyframe, Viewport viewport, long now,
+            List<VehicleSnapshot> previous, List<VehicleSnapshot> current, List<Integer> fields) {
+        FleetFrameEncoder encoder = FleetFrameEncoder.create(binary, jsonFactory, keyframe, seq, now);
+        if (keyframe) {
+            for (VehicleSnapshot v : sent.values()) {
+                if (Viewport.contains(viewport, v)) {
+                    encoder.vehicle(v, FleetFrameEncoder.ALL);
+                }
+            }
+            return encoder.finish();
+        }
+        for (int i = 0; i < current.size(); i++) {
+            VehicleSnapshot before = previous.get(i);
+            VehicleSnapshot after = current.get(i);
+            boolean wasInView = before != null && Viewport.contains(viewport, before);
+            boolean isInView = after != null && Viewport.contains(viewport, after);
+            if (isInView) {
+                encoder.vehicle(after, wasInView ? fields.get(i) : FleetFrameEncoder.ALL);
+            } else if (wasInView) {
+                encoder.removed(before.getId());
+            }
+        }
+        return encoder.entries() > 0 ? encoder.finish() : null;
+    }
+
+    private void send(Subscriber s, byte[] frame) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(s.sessionId);
+        accessor.setSubscriptionId(s.subscriptionId);
+        accessor.setDestination(DESTINATION);
+        accessor.setContentType(s.binary ? MimeTypeUtils.APPLICATION_OCTET_STREAM : MimeTypeUtils.APPLICATION_JSON);
+        s.pending.incrementAndGet();
+        try {
+            clientOutboundChannel.send(MessageBuilder.createMessage(frame, accessor.getMessageHeaders()));
+            frames.incrementAndGet();
+            bytes.addAndGet(frame.length);
+        } catch (RuntimeException e) {
+            s.pending.decrementAndGet();
+            s.needsKeyframe.set(true);
+            System.out.println("Fleet frame to session " + s.sessionId + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Wraps a STOMP endpoint's handler so fleet frames count as pending until they are
+     * written to the socket. The outbound channel hands frames to a per-session buffer,
+     * so only the write shows that the client is keeping up.
+     */
+    public static WebSocketHandler trackWrites(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(new WebSocketSessionDecorator(session) {
+                    @Override
+                    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                        super.sendMessage(message);
+                        Object pending = getAttributes().get(PENDING_FRAMES_ATTRIBUTE);
+                        if (pending instanceof Map<?, ?> bySubscription && !bySubscription.isEmpty()) {
+                            String subscription = fleetSubscription(message);
+                            if (subscription != null
+                                    && bySubscription.get(subscription) instanceof AtomicInteger count) {
+                                count.decrementAndGet();
+                            }
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, AtomicInteger> pendingFrames(Map<String, Object> attributes) {
+        return (Map<String, AtomicInteger>) attributes.computeIfAbsent(PENDING_FRAMES_ATTRIBUTE,
+                k -> new ConcurrentHashMap<String, AtomicInteger>());
+    }
+
+    /** The (escaped) subscription header of an encoded STOMP MESSAGE frame for DESTINATION, else null. */
+    private static String fleetSubscription(WebSocketMessage<?> message) {
+        String headers;
+        if (message instanceof TextMessage text) {
+            String frame = text.getPayload();
+            int end = frame.indexOf("\n\n");
+            headers = end > 0 ? frame.substring(0, end + 1) : null;
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer frame = binary.getPayload();
+            StringBuilder sb = new StringBuilder(128);
+            for (int i = frame.position(); i < frame.limit() - 1 && sb.length() < 1024; i++) {
+                char c = (char) (frame.get(i) & 0xFF);
+                sb.append(c);
+                if (c == '\n' && frame.get(i + 1) == '\n') {
+                    break;
+                }
+            }
+            headers = sb.toString();
+        } else {
+            return null;
+        }
+        if (headers == null || !headers.startsWith("MESSAGE\n")
+                || !headers.contains("\ndestination:" + DESTINATION + "\n")) {
+            return null;
+        }
+        int start = headers.indexOf("\nsubscription:");
+        if (start < 0) {
+            return null;
+        }
+        start += "\nsubscription:".length();
+        return headers.substring(start, headers.indexOf('\n', start));
+    }
+
+    /** A header value as STOMP writes it in MESSAGE frames. */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace(":", "\\c").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    public Stats stats() {
+        long slow = subscribers.values().stream().filter(s -> s.pending.get() >= maxPendingFrames).count();
+        return new Stats(subscribers.size(), slow, vehicles, seq, frames.get(), bytes.get(),
+                droppedFrames.get(), lastChanges, lastTickMicros);
+    }
+
+    private static final class Subscriber {
+        final String sessionId;
+        final String subscriptionId;
+        final boolean binary;
+        volatile Viewport viewport;
+        final AtomicBoolean needsKeyframe = new AtomicBoolean(true);
+        final AtomicInteger pending = new AtomicInteger();
+
+        Subscriber(String sessionId, String subscriptionId, boolean binary, Viewport viewport) {
+            this.sessionId = sessionId;
+            this.subscriptionId = subscriptionId;
+            this.binary = binary;
+            this.viewport = viewport;
+        }
+
+        String key() {
+            return sessionId + "/" + subscriptionId;
+        }
+    }
+
+    /** A lat/lng box; vehicles without a position are only in the whole-fleet (null) viewport. */
+    public static final class Viewport {
+        private final int minLat;
+        private final int minLng;
+        private final int maxLat;
+        private final int maxLng;
+
+        private Viewport(double minLat, double minLng, double maxLat, double maxLng) {
+            this.minLat = (int) Math.floor(minLat * FleetFrameEncoder.COORDINATE_SCALE);
+            this.minLng = (int) Math.floor(minLng * FleetFrameEncoder.COORDINATE_SCALE);
+            this.maxLat = (int) Math.ceil(maxLat * FleetFrameEncoder.COORDINATE_SCALE);
+            this.maxLng = (int) Math.ceil(maxLng * FleetFrameEncoder.COORDINATE_SCALE);
+        }
+
+        public static Viewport of(Double minLat, Double minLng, Double maxLat, Double maxLng) {
+            if (minLat == null || minLng == null || maxLat == null || maxLng == null) {
+                throw new IllegalArgumentException("Viewport needs minLat, minLng, maxLat and maxLng");
+            }
+            if (Math.abs(minLat) > 90 || Math.abs(maxLat) > 90 || Math.abs(minLng) > 180 || Math.abs(maxLng) > 180
+                    || minLat > maxLat || minLng > maxLng) {
+                throw new IllegalArgumentException("Invalid viewport: " + minLat + "," + minLng + " to " + maxLat
+                        + "," + maxLng);
+            }
+            return new Viewport(minLat, minLng, maxLat, maxLng);
+        }
+
+        /** Parses "minLat,minLng,maxLat,maxLng"; null or blank is the whole fleet. */
+        static Viewport parse(String header) {
+            if (header == null || header.isBlank()) {
+                return null;
+            }
+            String[] parts = header.split(",");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("viewport must be minLat,minLng,maxLat,maxLng");
+            }
+            try {
+                return of(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()),
+                        Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("viewport must be minLat,minLng,maxLat,maxLng");
+            }
+        }
+
+        static boolean contains(Viewport viewport, VehicleSnapshot v) {
+            if (viewport == null) {
+                return true;
+            }
+            return v.hasPosition() && v.getLat() >= viewport.minLat && v.getLat() <= viewport.maxLat
+                    && v.getLng() >= viewport.minLng && v.getLng() <= viewport.maxLng;
+        }
+    }
+
+    public static class Stats {
+        private final int subscribers;
+        private final long slowSubscribers;
+        private final int vehicles;
+        private final long ticks;
+        private final long frames;
+        private final long bytes;
+        private final long droppedFrames;
+        private final int lastTickChanges;
+        private final long lastTickMicros;
+
+        Stats(int subscribers, long slowSubscribers, int vehicles, long ticks, long frames, long bytes,
+                long droppedFrames, int lastTickChanges, long lastTickMicros) {
+            this.subscribers = subscribers;
+            this.slowSubscribers = slowSubscribers;
+            this.vehicles = vehicles;
+            this.ticks = ticks;
+            this.frames = frames;
+            this.bytes = bytes;
+            this.droppedFrames = droppedFrames;
+            this.lastTickChanges = lastTickChanges;
+            this.lastTickMicros = lastTickMicros;
+        }
+
+        public int getSubscribers() {
+            return subscribers;
+        }
+
+        /** Subscribers currently missing ticks because their socket is behind. */
+        public long getSlowSubscribers() {
+            return slowSubscribers;
+        }
+
+        public int getVehicles() {
+            return vehicles;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** Frames not sent to slow subscribers. */
+        public long getDroppedFrames() {
+            return droppedFrames;
+        }
+
+        /** Vehicles whose broadcast fields changed in the last tick. */
+        public int getLastTickChanges() {
+            return lastTickChanges;
+        }
+
+        public long getLastTickMicros() {
+            return lastTickMicros;
+        }
+    }
+}
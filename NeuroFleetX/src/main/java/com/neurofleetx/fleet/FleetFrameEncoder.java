@@ -0,0 +1,227 @@
+package com.neurofleetx.fleet;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes one /topic/fleet frame: the vehicles that changed (only the fields that
+ * changed) and the vehicles that left, or for a keyframe every vehicle in view.
+ *
+ * JSON: {"kind":"delta","seq":42,"timestamp":1718000000000,
+ * "vehicles":[{"id":7,"lat":40.71234,"lng":-74.00567,"speed":38}],"removed":[9]}.
+ * A vehicle new to the subscriber carries every field, including "type"; null
+ * means the value is unknown.
+ *
+ * Binary: a big-endian header (int magic "NFF1", byte kind 0 delta / 1 keyframe,
+ * long seq, long timestamp, int vehicle count, int removed count), then per vehicle
+ * long id, byte field mask and the fields present in mask order: bit 0 int lat and
+ * int lng (degrees * 1e5), bit 1 short speed, bit 2 byte status (Vehicle.VehicleStatus
+ * ordinal), bit 3 byte battery, bit 4 byte fuel, bit 5 short length + UTF-8 type.
+ * Unknown values are -1 (lat/lng Integer.MIN_VALUE). Then the removed ids as longs.
+ */
+abstract class FleetFrameEncoder {
+
+    static final int MAGIC = 0x4E464631; // "NFF1"
+
+    static final int POSITION = 1;
+    static final int SPEED = 1 << 1;
+    static final int STATUS = 1 << 2;
+    static final int BATTERY = 1 << 3;
+    static final int FUEL = 1 << 4;
+    static final int TYPE = 1 << 5;
+    static final int ALL = POSITION | SPEED | STATUS | BATTERY | FUEL | TYPE;
+
+    static final double COORDINATE_SCALE = 1e5;
+
+    static FleetFrameEncoder create(boolean binary, JsonFactory jsonFactory, boolean keyframe, long seq,
+            long timestamp) {
+        return binary ? new Binary(keyframe, seq, timestamp) : new Json(jsonFactory, keyframe, seq, timestamp);
+    }
+
+    abstract void vehicle(VehicleSnapshot vehicle, int fields);
+
+    abstract void removed(long vehicleId);
+
+    /** Vehicles plus removals written so far. */
+    abstract int entries();
+
+    abstract byte[] finish();
+
+    private static final class Json extends FleetFrameEncoder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        private final JsonGenerator generator;
+        private final List<Long> removed = new ArrayList<>();
+        private int vehicles;
+
+        Json(JsonFactory factory, boolean keyframe, long seq, long timestamp) {
+            try {
+                generator = factory.createGenerator(out);
+                generator.writeStartObject();
+                generator.writeStringField("kind", keyframe ? "keyframe" : "delta");
+                generator.writeNumberField("seq", seq);
+                generator.writeNumberField("timestamp", timestamp);
+                generator.writeArrayFieldStart("vehicles");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void vehicle(VehicleSnapshot v, int fields) {
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("id", v.getId());
+                if ((fields & POSITION) != 0) {
+                    if (v.hasPosition()) {
+                        generator.writeNumberField("lat", v.getLat() / COORDINATE_SCALE);
+                        generator.writeNumberField("lng", v.getLng() / COORDINATE_SCALE);
+                    } else {
+                        generator.writeNullField("lat");
+                        generator.writeNullField("lng");
+                    }
+                }
+                if ((fields & SPEED) != 0) {
+                    writeOptional("speed", v.getSpeed());
+                }
+                if ((fields & STATUS) != 0) {
+                    generator.writeStringField("status", v.getStatus() != null ? v.getStatus().name() : null);
+                }
+                if ((fields & BATTERY) != 0) {
+                    writeOptional("battery", v.getBattery());
+                }
+                if ((fields & FUEL) != 0) {
+                    writeOptional("fuel", v.getFuel());
+                }
+                if ((fields & TYPE) != 0) {
+                    generator.writeStringField("type", v.getType());
+                }
+                generator.writeEndObject();
+                vehicles++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeOptional(String field, int value) throws IOException {
+            if (value < 0) {
+                generator.writeNullField(field);
+            } else {
+                generator.writeNumberField(field, value);
+            }
+        }
+
+        @Override
+        void removed(long vehicleId) {
+            removed.add(vehicleId);
+        }
+
+        @Override
+        int entries() {
+            return vehicles + removed.size();
+        }
+
+        @Override
+        byte[] finish() {
+            try {
+                generator.writeEndArray();
+                generator.writeArrayFieldStart("removed");
+                for (long id : removed) {
+                    generator.writeNumber(id);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static final class Binary extends FleetFrameEncoder {
+        private static final int COUNTS_OFFSET = 21;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final List<Long> removed = new ArrayList<>();
+        private int vehicles;
+
+        Binary(boolean keyframe, long seq, long timestamp) {
+            try {
+                out.writeInt(MAGIC);
+                out.writeByte(keyframe ? 1 : 0);
+                out.writeLong(seq);
+                out.writeLong(timestamp);
+                out.writeInt(0); // counts, filled in by finish
+                out.writeInt(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void vehicle(VehicleSnapshot v, int fields) {
+            try {
+                out.writeLong(v.getId());
+                out.writeByte(fields);
+                if ((fields & POSITION) != 0) {
+                    out.writeInt(v.hasPosition() ? v.getLat() : Integer.MIN_VALUE);
+                    out.writeInt(v.hasPosition() ? v.getLng() : Integer.MIN_VALUE);
+                }
+                if ((fields & SPEED) != 0) {
+                    out.writeShort(Math.min(v.getSpeed(), Short.MAX_VALUE));
+                }
+                if ((fields & STATUS) != 0) {
+                    out.writeByte(v.getStatus() != null ? v.getStatus().ordinal() : -1);
+                }
+                if ((fields & BATTERY) != 0) {
+                    out.writeByte(v.getBattery());
+                }
+                if ((fields & FUEL) != 0) {
+                    out.writeByte(v.getFuel());
+                }
+                if ((fields & TYPE) != 0) {
+                    byte[] type = v.getType() != null ? v.getType().getBytes(StandardCharsets.UTF_8) : new byte[0];
+                    out.writeShort(type.length);
+                    out.write(type);
+                }
+                vehicles++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void removed(long vehicleId) {
+            removed.add(vehicleId);
+        }
+
+        @Override
+        int entries() {
+            return vehicles + removed.size();
+        }
+
+        @Override
+        byte[] finish() {
+            try {
+                for (long id : removed) {
+                    out.writeLong(id);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            byte[] frame = bytes.toByteArray();
+            ByteBuffer.wrap(frame).putInt(COUNTS_OFFSET, vehicles).putInt(COUNTS_OFFSET + 4, removed.size());
+            return frame;
+        }
+    }
+}
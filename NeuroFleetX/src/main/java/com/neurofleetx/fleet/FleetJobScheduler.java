@@ -0,0 +1,391 @@
+package com.neurofleetx.fleet;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runs jobs that walk the whole fleet, such as the movement simulation and fleet
+ * health, off Spring's single scheduler thread. Each run splits the tracked
+ * vehicles into fleet.jobs.shards shards by a hash of their id (a vehicle always
+ * lands in the same shard) and processes the shards in parallel. Every job has its
+ * own pool of fleet.jobs.threads threads, so a long run of one job (fleet health
+ * takes minutes on a large fleet) cannot hold up the shards of another.
+ *
+ * A job is ticked at its interval by one dispatcher thread that only hands shards
+ * to the pool. If the previous run is still going when a tick comes, the tick is
+ * skipped rather than queued, so a job that falls behind does not pile up runs;
+ * a run that takes longer than the interval counts as an overrun. Jobs with no
+ * interval only run on demand ({@link #runNow}). A task can hook the start and
+ * end of each run, e.g. to checkpoint it ({@link ShardTask#beforeRun}).
+ */
+@Component
+public class FleetJobScheduler {
+
+    /** Work on one shard: the live states of the vehicles in it, in no particular order. */
+    public interface ShardTask {
+        void run(List<VehicleState> vehicles);
+
+        /** Called before a run's shards are handed out; throwing cancels the run. */
+        default void beforeRun() {
+        }
+
+        /** Called once every shard of a run has finished; failed if any of them threw. */
+        default void afterRun(boolean failed) {
+        }
+    }
+
+    private final FleetStateStore fleetState;
+    private final int shardCount;
+    private final int threads;
+    private final ScheduledExecutorService dispatcher;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public FleetJobScheduler(FleetStateStore fleetState,
+            @Value("${fleet.jobs.shards:16}") int shardCount,
+            @Value("${fleet.jobs.threads:0}") int threads) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("fleet.jobs.shards must be at least 1");
+        }
+        this.fleetState = fleetState;
+        this.shardCount = shardCount;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "fleet-jobs"));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+        jobs.values().forEach(job -> job.pool.shutdownNow());
+    }
+
+    /**
+     * Adds a job, first run one interval from now. An interval of 0 or less means on
+     * demand only.
+     */
+    public synchronized void register(String name, long intervalMs, ShardTask task) {
+        if (jobs.containsKey(name)) {
+            throw new IllegalArgumentException("Fleet job already registered: " + name);
+        }
+        AtomicInteger workerNumber = new AtomicInteger();
+        Job job = new Job(name, intervalMs, task, shardCount, Executors.newFixedThreadPool(threads,
+                r -> daemon(r, "fleet-job-" + name + "-" + workerNumber.incrementAndGet())));
+        jobs.put(name, job);
+        if (intervalMs > 0) {
+            dispatcher.scheduleAtFixedRate(() -> {
+                try {
+                    if (start(job) == null) {
+                        job.skippedTicks.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    // Thrown by beforeRun; the next tick tries again
+                    System.out.println("Fleet job " + name + " could not start: " + e);
+                }
+            }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Runs a job now and waits for it to finish. Returns false, without running, if
+     * the job is already running.
+     */
+    public boolean runNow(String name) {
+        Job job = jobs.get(name);
+        if (job == null) {
+            throw new IllegalArgumentException("Unknown fleet job: " + name);
+        }
+        CompletableFuture<Void> run = start(job);
+        if (run == null) {
+            return false;
+        }
+        run.join();
+        return true;
+    }
+
+    /** Hands the job's shards to the pool; null if its previous run has not finished. */
+    private CompletableFuture<Void> start(Job job) {
+        if (!job.running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            job.task.beforeRun();
+        } catch (RuntimeException e) {
+            job.running.set(false);
+            throw e;
+        }
+        long started = System.nanoTime();
+        List<List<VehicleState>> shards = new ArrayList<>(shardCount);
+        int expected = fleetState.size() / shardCount + 1;
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>(expected));
+        }
+        for (VehicleState state : fleetState.states()) {
+            shards.get(shardOf(state.getId())).add(state);
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(shardCount);
+        AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            List<VehicleState> vehicles = shards.get(i);
+            job.pool.execute(() -> {
+                long shardStart = System.nanoTime();
+                try {
+                    job.task.run(vehicles);
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    job.shardErrors.incrementAndGet(shard);
+                    System.out.println("Fleet job " + job.name + " failed on shard " + shard + ": " + e);
+                } finally {
+                    job.recordShard(shard, vehicles.size(), System.nanoTime() - shardStart);
+                    if (remaining.decrementAndGet() == 0) {
+                        try {
+                            job.task.afterRun(failed.get());
+                        } catch (RuntimeException e) {
+                            System.out.println("Fleet job " + job.name + " failed finishing its run: " + e);
+                        }
+                        job.recordRun(System.nanoTime() - started);
+                        job.running.set(false);
+                        done.complete(null);
+                    }
+                }
+            });
+        }
+        return done;
+    }
+
+    /** The shard a vehicle belongs to; ids are mixed first so sequential ids spread evenly. */
+    public int shardOf(long vehicleId) {
+        return (int) Long.remainderUnsigned(vehicleId * 0x9E3779B97F4A7C15L >>> 16, shardCount);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public Stats stats() {
+        List<JobStats> jobStats = new ArrayList<>();
+        jobs.values().forEach(job -> jobStats.add(job.stats()));
+        jobStats.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return new Stats(shardCount, threads, jobStats);
+    }
+
+    private static final class Job {
+        final String name;
+        final long intervalMs;
+        final ShardTask task;
+        final ExecutorService pool;
+        final AtomicBoolean running = new AtomicBoolean();
+        final AtomicLong runs = new AtomicLong();
+        final AtomicLong skippedTicks = new AtomicLong();
+        final AtomicLong overruns = new AtomicLong();
+        final AtomicLongArray shardVehicles;
+        final AtomicLongArray shardRuns;
+        final AtomicLongArray shardLastNanos;
+        final AtomicLongArray shardMaxNanos;
+        final AtomicLongArray shardTotalNanos;
+        final AtomicLongArray shardErrors;
+        volatile long lastRunNanos;
+        volatile long maxRunNanos;
+
+        Job(String name, long intervalMs, ShardTask task, int shards, ExecutorService pool) {
+            this.name = name;
+            this.intervalMs = intervalMs;
+            this.task = task;
+            this.pool = pool;
+            this.shardVehicles = new AtomicLongArray(shards);
+            this.shardRuns = new AtomicLongArray(shards);
+            this.shardLastNanos = new AtomicLongArray(shards);
+            this.shardMaxNanos = new AtomicLongArray(shards);
+            this.shardTotalNanos = new AtomicLongArray(shards);
+            this.shardErrors = new AtomicLongArray(shards);
+        }
+
+        void recordShard(int shard, int vehicles, long nanos) {
+            shardVehicles.set(shard, vehicles);
+            shardRuns.incrementAndGet(shard);
+            shardLastNanos.set(shard, nanos);
+            shardTotalNanos.addAndGet(shard, nanos);
+            shardMaxNanos.accumulateAndGet(shard, nanos, Math::max);
+        }
+
+        // Called once per run, by the worker that finished its last shard
+        void recordRun(long nanos) {
+            runs.incrementAndGet();
+            lastRunNanos = nanos;
+            maxRunNanos = Math.max(maxRunNanos, nanos);
+            if (intervalMs > 0 && nanos > TimeUnit.MILLISECONDS.toNanos(intervalMs)) {
+                overruns.incrementAndGet();
+                System.out.println("Fleet job " + name + " overran its " + intervalMs + " ms interval: "
+                        + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+            }
+        }
+
+        JobStats stats() {
+            List<ShardStats> shards = new ArrayList<>(shardRuns.length());
+            for (int i = 0; i < shardRuns.length(); i++) {
+                long shardRunCount = shardRuns.get(i);
+                shards.add(new ShardStats(i, (int) shardVehicles.get(i), millis(shardLastNanos.get(i)),
+                        millis(shardMaxNanos.get(i)),
+                        shardRunCount > 0 ? millis(shardTotalNanos.get(i)) / shardRunCount : 0, shardErrors.get(i)));
+            }
+            return new JobStats(name, intervalMs, running.get(), runs.get(), skippedTicks.get(), overruns.get(),
+                    millis(lastRunNanos), millis(maxRunNanos), shards);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    public static class Stats {
+        private final int shards;
+        private final int threads;
+        private final List<JobStats> jobs;
+
+        Stats(int shards, int threads, List<JobStats> jobs) {
+            this.shards = shards;
+            this.threads = threads;
+            this.jobs = jobs;
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public List<JobStats> getJobs() {
+            return jobs;
+        }
+    }
+
+    public static class JobStats {
+        private final String name;
+        private final long intervalMs;
+        private final boolean running;
+        private final long runs;
+        private final long skippedTicks;
+        private final long overruns;
+        private final double lastRunMillis;
+        private final double maxRunMillis;
+        private final List<ShardStats> shards;
+
+        JobStats(String name, long intervalMs, boolean running, long runs, long skippedTicks, long overruns,
+                double lastRunMillis, double maxRunMillis, List<ShardStats> shards) {
+            this.name = name;
+            this.intervalMs = intervalMs;
+            this.running = running;
+            this.runs = runs;
+            this.skippedTicks = skippedTicks;
+            this.overruns = overruns;
+            this.lastRunMillis = lastRunMillis;
+            this.maxRunMillis = maxRunMillis;
+            this.shards = shards;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** 0 for jobs that only run on demand. */
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        /** Ticks dropped because the previous run was still going. */
+        public long getSkippedTicks() {
+            return skippedTicks;
+        }
+
+        /** Runs that took longer than the interval. */
+        public long getOverruns() {
+            return overruns;
+        }
+
+        public double getLastRunMillis() {
+            return lastRunMillis;
+        }
+
+        public double getMaxRunMillis() {
+            return maxRunMillis;
+        }
+
+        public List<ShardStats> getShards() {
+            return shards;
+        }
+    }
+
+    public static class ShardStats {
+        private final int shard;
+        private final int vehicles;
+        private final double lastMillis;
+        private final double maxMillis;
+        private final double meanMillis;
+        private final long errors;
+
+        ShardStats(int shard, int vehicles, double lastMillis, double maxMillis, double meanMillis, long errors) {
+            this.shard = shard;
+            this.vehicles = vehicles;
+            this.lastMillis = lastMillis;
+            this.maxMillis = maxMillis;
+            this.meanMillis = meanMillis;
+            this.errors = errors;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+
+        /** Vehicles in the shard on its last run. */
+        public int getVehicles() {
+            return vehicles;
+        }
+
+        public double getLastMillis() {
+            return lastMillis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+    }
+}
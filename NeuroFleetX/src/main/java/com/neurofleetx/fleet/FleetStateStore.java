@@ -0,0 +1,455 @@
+package com.neurofleetx.fleet;
+
+import com.neurofleetx.model.Vehicle;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Authoritative in-memory state of every vehicle's telemetry: position, speed,
+ * battery, fuel, mileage, health readings, status and last update time. Telemetry writes go here
+ * instead of the database; the vehicles table catches up through write-behind.
+ *
+ * Writers replace a vehicle's state atomically (copy-on-write per key) and mark it
+ * dirty. A dirty vehicle is queued once, however many times it changes before the
+ * next flush. If the bounded queue is full the vehicle stays marked and the next
+ * flush sweeps all marked vehicles instead. Every fleet.write-behind.interval-ms the
+ * flusher writes the latest state of each dirty vehicle with batched JDBC updates.
+ *
+ * Code that saves Vehicle entities must first overlay the store's state
+ * ({@link #overlay}) and route changes of the owned fields through
+ * {@link #update}, otherwise the next flush overwrites them.
+ *
+ * Derived views (e.g. the spatial index) follow changes through a {@link Listener}.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class FleetStateStore {
+
+    private static final String SELECT_SQL = "SELECT id, type, status, latitude, longitude, speed, battery, fuel, "
+            + "mileage, engine_health, tire_pressure, oil_level, last_updated FROM vehicles";
+    private static final String UPDATE_SQL = "UPDATE vehicles SET status = ?, latitude = ?, longitude = ?, "
+            + "speed = ?, battery = ?, fuel = ?, mileage = ?, engine_health = ?, tire_pressure = ?, oil_level = ?, "
+            + "last_updated = ? WHERE id = ?";
+    private static final Calendar UTC = Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    private final ConcurrentHashMap<Long, VehicleState> states = new ConcurrentHashMap<>();
+    // Vehicle id -> time (ms) of its oldest change not yet written
+    private final ConcurrentHashMap<Long, Long> dirtySince = new ConcurrentHashMap<>();
+    private final BlockingQueue<Long> dirtyQueue;
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong queueOverflows = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile int lastFlushRows;
+    private volatile long lastFlushMillis;
+    private volatile long lastFlushMaxLagMs;
+    private volatile Instant lastFlushAt;
+    // Hibernate maps Instant to TIMESTAMP WITH TIME ZONE where the database has it, else to a UTC TIMESTAMP
+    private boolean zonedTimestamps;
+
+    public FleetStateStore(JdbcTemplate jdbcTemplate,
+            @Value("${fleet.write-behind.batch-size:500}") int batchSize,
+            @Value("${fleet.write-behind.queue-capacity:100000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.dirtyQueue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    void load() {
+        zonedTimestamps = Boolean.TRUE.equals(jdbcTemplate.execute((Connection c) -> {
+            DatabaseMetaData meta = c.getMetaData();
+            for (String[] names : new String[][] { { "vehicles", "last_updated" }, { "VEHICLES", "LAST_UPDATED" } }) {
+                try (ResultSet rs = meta.getColumns(c.getCatalog(), null, names[0], names[1])) {
+                    if (rs.next()) {
+                        return rs.getInt("DATA_TYPE") == Types.TIMESTAMP_WITH_TIMEZONE;
+                    }
+                }
+            }
+            return false;
+        }));
+        long start = System.currentTimeMillis();
+        jdbcTemplate.query(SELECT_SQL, rs -> {
+            VehicleState state = new VehicleState(rs.getLong("id"));
+            state.setType(rs.getString("type"));
+            String status = rs.getString("status");
+            state.setStatus(status != null ? Vehicle.VehicleStatus.valueOf(status) : null);
+            state.setLatitude(rs.getObject("latitude", Double.class));
+            state.setLongitude(rs.getObject("longitude", Double.class));
+            state.setSpeed(rs.getObject("speed", Integer.class));
+            state.setBattery(rs.getObject("battery", Integer.class));
+            state.setFuel(rs.getObject("fuel", Integer.class));
+            state.setMileage(rs.getObject("mileage", Double.class));
+            state.setEngineHealth(rs.getObject("engine_health", Double.class));
+            state.setTirePressure(rs.getObject("tire_pressure", Double.class));
+            state.setOilLevel(rs.getObject("oil_level", Double.class));
+            state.setLastUpdated(readInstant(rs));
+            states.put(state.getId(), state);
+        });
+        System.out.println("Fleet state loaded: " + states.size() + " vehicles in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /** Starts tracking a vehicle that was just saved, e.g. newly created. */
+    public void register(Vehicle vehicle) {
+        if (vehicle.getId() != null) {
+            states.compute(vehicle.getId(), (id, current) -> notifyListeners(current, new VehicleState(vehicle)));
+        }
+    }
+
+    /**
+     * Subscribes to state changes. Vehicles already tracked are then replayed to the
+     * listener as new (previous null), each under its own entry so the replay cannot
+     * interleave with that vehicle's changes.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        for (Long id : states.keySet()) {
+            states.computeIfPresent(id, (key, current) -> {
+                listener.onChange(null, current);
+                return current;
+            });
+        }
+    }
+
+    public VehicleState get(long vehicleId) {
+        return states.get(vehicleId);
+    }
+
+    /** Live view of all tracked states. */
+    public Collection<VehicleState> states() {
+        return Collections.unmodifiableCollection(states.values());
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public List<Long> idsWithStatus(Vehicle.VehicleStatus status) {
+        List<Long> ids = new ArrayList<>();
+        for (VehicleState state : states.values()) {
+            if (state.getStatus() == status) {
+                ids.add(state.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Applies a change to a copy of the vehicle's state, publishes the copy and
+     * schedules it for write-behind. Changes to one vehicle are serialized: the
+     * change runs once, holding that vehicle's entry, so it must be short and must
+     * not call back into the store. Returns false if the vehicle is not tracked.
+     */
+    public boolean update(long vehicleId, Consumer<VehicleState> change) {
+        VehicleState updated = states.computeIfPresent(vehicleId, (id, current) -> {
+            VehicleState next = new VehicleState(current);
+            change.accept(next);
+            next.setLastUpdated(Instant.now());
+            return notifyListeners(current, next);
+        });
+        if (updated == null) {
+            return false;
+        }
+        markDirty(vehicleId);
+        return true;
+    }
+
+    /** Replaces the owned fields of an entity with the live state, if the vehicle is tracked. */
+    public Vehicle overlay(Vehicle vehicle) {
+        VehicleState state = vehicle.getId() != null ? states.get(vehicle.getId()) : null;
+        if (state != null) {
+            state.applyTo(vehicle);
+        }
+        return vehicle;
+    }
+
+    // Runs inside the map's per-key update, so each vehicle's changes reach listeners in order
+    private VehicleState notifyListeners(VehicleState previous, VehicleState current) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onChange(previous, current);
+            } catch (RuntimeException e) {
+                System.out.println("Fleet state listener failed: " + e);
+            }
+        }
+        return current;
+    }
+
+    private void markDirty(long vehicleId) {
+        if (dirtySince.putIfAbsent(vehicleId, System.currentTimeMillis()) == null && !dirtyQueue.offer(vehicleId)) {
+            queueOverflows.incrementAndGet();
+            overflowed.set(true);
+        }
+    }
+
+    /** Writes the latest state of every dirty vehicle. */
+    @Scheduled(fixedDelayString = "${fleet.write-behind.interval-ms:5000}")
+    public synchronized void flush() {
+        long started = System.currentTimeMillis();
+        List<Long> ids = new ArrayList<>(dirtyQueue.size());
+        dirtyQueue.drainTo(ids);
+        if (overflowed.getAndSet(false)) {
+            ids.addAll(dirtySince.keySet()); // ids also still queued are skipped below once written
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        int written = 0;
+        long maxLag = 0;
+        List<VehicleState> batch = new ArrayList<>(batchSize);
+        List<Long> batchSince = new ArrayList<>(batchSize);
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            // Unmark before reading, so a change racing with this flush marks the vehicle again
+            Long since = dirtySince.remove(id);
+            VehicleState state = since != null ? states.get(id) : null;
+            if (state != null) {
+                batch.add(state);
+                batchSince.add(since);
+                maxLag = Math.max(maxLag, started - since);
+            }
+            if (batch.size() == batchSize || (i == ids.size() - 1 && !batch.isEmpty())) {
+                if (!writeBatch(batch)) {
+                    // Mark the batch dirty again; the sweep on the next run also picks up ids drained but not reached
+                    for (int j = 0; j < batch.size(); j++) {
+                        dirtySince.merge(batch.get(j).getId(), batchSince.get(j), Math::min);
+                    }
+                    overflowed.set(true);
+                    break;
+                }
+                written += batch.size();
+                batch.clear();
+                batchSince.clear();
+            }
+        }
+
+        flushes.incrementAndGet();
+        flushedRows.addAndGet(written);
+        lastFlushRows = written;
+        lastFlushMillis = System.currentTimeMillis() - started;
+        lastFlushMaxLagMs = maxLag;
+        lastFlushAt = Instant.ofEpochMilli(started);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private boolean writeBatch(List<VehicleState> batch) {
+        int[] counts;
+        try {
+            counts = jdbcTemplate.batchUpdate(UPDATE_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    bind(ps, batch.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+        } catch (DataAccessException e) {
+            failedFlushes.incrementAndGet();
+            System.out.println("Fleet state flush failed for " + batch.size() + " vehicles: " + e.getMessage());
+            return false;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                // Row deleted
+                states.computeIfPresent(batch.get(i).getId(), (id, current) -> notifyListeners(current, null));
+            }
+        }
+        return true;
+    }
+
+    private void bind(PreparedStatement ps, VehicleState s) throws SQLException {
+        setNullable(ps, 1, s.getStatus() != null ? s.getStatus().name() : null, Types.VARCHAR);
+        setNullable(ps, 2, s.getLatitude(), Types.DOUBLE);
+        setNullable(ps, 3, s.getLongitude(), Types.DOUBLE);
+        setNullable(ps, 4, s.getSpeed(), Types.INTEGER);
+        setNullable(ps, 5, s.getBattery(), Types.INTEGER);
+        setNullable(ps, 6, s.getFuel(), Types.INTEGER);
+        setNullable(ps, 7, s.getMileage(), Types.DOUBLE);
+        setNullable(ps, 8, s.getEngineHealth(), Types.DOUBLE);
+        setNullable(ps, 9, s.getTirePressure(), Types.DOUBLE);
+        setNullable(ps, 10, s.getOilLevel(), Types.DOUBLE);
+        Instant updated = s.getLastUpdated();
+        if (updated == null) {
+            ps.setNull(11, zonedTimestamps ? Types.TIMESTAMP_WITH_TIMEZONE : Types.TIMESTAMP);
+        } else if (zonedTimestamps) {
+            ps.setObject(11, updated.atOffset(ZoneOffset.UTC), Types.TIMESTAMP_WITH_TIMEZONE);
+        } else {
+            ps.setTimestamp(11, Timestamp.from(updated), (Calendar) UTC.clone());
+        }
+        ps.setLong(12, s.getId());
+    }
+
+    private static void setNullable(PreparedStatement ps, int index, Object value, int sqlType) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else {
+            ps.setObject(index, value, sqlType);
+        }
+    }
+
+    private Instant readInstant(ResultSet rs) throws SQLException {
+        if (zonedTimestamps) {
+            OffsetDateTime value = rs.getObject("last_updated", OffsetDateTime.class);
+            return value != null ? value.toInstant() : null;
+        }
+        Timestamp value = rs.getTimestamp("last_updated", (Calendar) UTC.clone());
+        return value != null ? value.toInstant() : null;
+    }
+
+    public Stats stats() {
+        long now = System.currentTimeMillis();
+        long oldest = 0;
+        for (Long since : dirtySince.values()) {
+            oldest = Math.max(oldest, now - since);
+        }
+        return new Stats(states.size(), dirtySince.size(), dirtyQueue.size(), queueCapacity, queueOverflows.get(),
+                flushes.get(), flushedRows.get(), failedFlushes.get(), lastFlushRows, lastFlushMillis,
+                lastFlushMaxLagMs, oldest, lastFlushAt);
+    }
+
+    /**
+     * Receives every change of a vehicle's state: previous is null for a newly
+     * tracked vehicle, current is null when it is dropped. Called while the change
+     * is being made, so it must be quick and must not call back into the store.
+     */
+    public interface Listener {
+        void onChange(VehicleState previous, VehicleState current);
+    }
+
+    public static final class Stats {
+        private final int trackedVehicles;
+        private final int pendingRows;
+        private final int queuedIds;
+        private final int queueCapacity;
+        private final long queueOverflows;
+        private final long flushes;
+        private final long flushedRows;
+        private final long failedFlushes;
+        private final int lastFlushRows;
+        private final long lastFlushMillis;
+        private final long lastFlushMaxLagMs;
+        private final long oldestPendingLagMs;
+        private final Instant lastFlushAt;
+
+        Stats(int trackedVehicles, int pendingRows, int queuedIds, int queueCapacity, long queueOverflows,
+                long flushes, long flushedRows, long failedFlushes, int lastFlushRows, long lastFlushMillis,
+                long lastFlushMaxLagMs, long oldestPendingLagMs, Instant lastFlushAt) {
+            this.trackedVehicles = trackedVehicles;
+            this.pendingRows = pendingRows;
+            this.queuedIds = queuedIds;
+            this.queueCapacity = queueCapacity;
+            this.queueOverflows = queueOverflows;
+            this.flushes = flushes;
+            this.flushedRows = flushedRows;
+            this.failedFlushes = failedFlushes;
+            this.lastFlushRows = lastFlushRows;
+            this.lastFlushMillis = lastFlushMillis;
+            this.lastFlushMaxLagMs = lastFlushMaxLagMs;
+            this.oldestPendingLagMs = oldestPendingLagMs;
+            this.lastFlushAt = lastFlushAt;
+        }
+
+        public int getTrackedVehicles() {
+            return trackedVehicles;
+        }
+
+        /** Vehicles changed since their last write. */
+        public int getPendingRows() {
+            return pendingRows;
+        }
+
+        public int getQueuedIds() {
+            return queuedIds;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public long getQueueOverflows() {
+            return queueOverflows;
+        }
+
+        public long getFlushes() {
+            return flushes;
+        }
+
+        public long getFlushedRows() {
+            return flushedRows;
+        }
+
+        public long getFailedFlushes() {
+            return failedFlushes;
+        }
+
+        public int getLastFlushRows() {
+            return lastFlushRows;
+        }
+
+        public long getLastFlushMillis() {
+            return lastFlushMillis;
+        }
+
+        /** Longest time a change written by the last flush had waited in memory. */
+        public long getLastFlushMaxLagMs() {
+            return lastFlushMaxLagMs;
+        }
+
+        /** Age of the oldest change not yet written. */
+        public long getOldestPendingLagMs() {
+            return oldestPendingLagMs;
+        }
+
+        public Instant getLastFlushAt() {
+            return lastFlushAt;
+        }
+    }
+}
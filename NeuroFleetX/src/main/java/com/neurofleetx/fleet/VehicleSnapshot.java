@@ -0,0 +1,108 @@
+package com.neurofleetx.fleet;
+
+import com.neurofleetx.model.Vehicle;
+
+import java.util.Objects;
+
+/**
+ * The fields of a vehicle the live fleet stream carries, as last broadcast, with
+ * the position rounded to about a metre so jitter below that is not a change.
+ * Unknown numbers are -1.
+ */
+final class VehicleSnapshot {
+
+    private final long id;
+    private final String type;
+    private final Vehicle.VehicleStatus status;
+    private final boolean hasPosition;
+    private final int lat;
+    private final int lng;
+    private final int speed;
+    private final int battery;
+    private final int fuel;
+
+    private VehicleSnapshot(VehicleState state) {
+        id = state.getId();
+        type = state.getType();
+        status = state.getStatus();
+        hasPosition = state.getLatitude() != null && state.getLongitude() != null;
+        lat = hasPosition ? (int) Math.round(state.getLatitude() * FleetFrameEncoder.COORDINATE_SCALE) : 0;
+        lng = hasPosition ? (int) Math.round(state.getLongitude() * FleetFrameEncoder.COORDINATE_SCALE) : 0;
+        speed = state.getSpeed() != null ? Math.max(0, state.getSpeed()) : -1;
+        battery = percent(state.getBattery());
+        fuel = percent(state.getFuel());
+    }
+
+    static VehicleSnapshot of(VehicleState state) {
+        return new VehicleSnapshot(state);
+    }
+
+    private static int percent(Integer value) {
+        return value != null ? Math.max(0, Math.min(100, value)) : -1;
+    }
+
+    /** FleetFrameEncoder field bits that differ from previous; every field if previous is null. */
+    int changedFields(VehicleSnapshot previous) {
+        if (previous == null) {
+            return FleetFrameEncoder.ALL;
+        }
+        int fields = 0;
+        if (hasPosition != previous.hasPosition || lat != previous.lat || lng != previous.lng) {
+            fields |= FleetFrameEncoder.POSITION;
+        }
+        if (speed != previous.speed) {
+            fields |= FleetFrameEncoder.SPEED;
+        }
+        if (status != previous.status) {
+            fields |= FleetFrameEncoder.STATUS;
+        }
+        if (battery != previous.battery) {
+            fields |= FleetFrameEncoder.BATTERY;
+        }
+        if (fuel != previous.fuel) {
+            fields |= FleetFrameEncoder.FUEL;
+        }
+        if (!Objects.equals(type, previous.type)) {
+            fields |= FleetFrameEncoder.TYPE;
+        }
+        return fields;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    Vehicle.VehicleStatus getStatus() {
+        return status;
+    }
+
+    boolean hasPosition() {
+        return hasPosition;
+    }
+
+    /** Latitude in units of 1e-5 degrees. */
+    int getLat() {
+        return lat;
+    }
+
+    /** Longitude in units of 1e-5 degrees. */
+    int getLng() {
+        return lng;
+    }
+
+    int getSpeed() {
+        return speed;
+    }
+
+    int getBattery() {
+        return battery;
+    }
+
+    int getFuel() {
+        return fuel;
+    }
+}
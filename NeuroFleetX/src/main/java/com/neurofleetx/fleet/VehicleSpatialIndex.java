@@ -0,0 +1,268 @@
+package com.neurofleetx.fleet;
+
+import com.neurofleetx.geo.GeoMath;
+import com.neurofleetx.model.Vehicle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Grid index over live vehicle positions, kept current by listening to
+ * {@link FleetStateStore}.
+ *
+ * Positions are bucketed into cells of fleet.index.cell-degrees square. Each cell
+ * is an immutable array of the vehicle states in it; a move replaces the affected
+ * cells' arrays through the map's per-key compute, so writers only contend when
+ * they touch the same cell and readers never lock at all. A query sees each cell as
+ * of some moment during the query, which for a vehicle changing cells can mean
+ * seeing it in both; results are de-duplicated by vehicle.
+ */
+@Component
+public class VehicleSpatialIndex implements FleetStateStore.Listener {
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * GeoMath.EARTH_RADIUS_M;
+    private static final VehicleState[] EMPTY = new VehicleState[0];
+
+    private final double cellDegrees;
+    private final ConcurrentHashMap<Long, VehicleState[]> cells = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public VehicleSpatialIndex(FleetStateStore fleetState,
+            @Value("${fleet.index.cell-degrees:0.01}") double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        fleetState.addListener(this);
+    }
+
+    /** Matches vehicles in any of the statuses (all if null or empty) and of the type (any if null). */
+    public static Predicate<VehicleState> matching(Collection<Vehicle.VehicleStatus> statuses, String type) {
+        Set<Vehicle.VehicleStatus> wanted = statuses == null || statuses.isEmpty()
+                ? EnumSet.allOf(Vehicle.VehicleStatus.class)
+                : EnumSet.copyOf(statuses);
+        return v -> wanted.contains(v.getStatus()) && (type == null || type.equalsIgnoreCase(v.getType()));
+    }
+
+    @Override
+    public void onChange(VehicleState previous, VehicleState current) {
+        boolean wasIndexed = previous != null && previous.getLatitude() != null && previous.getLongitude() != null;
+        boolean isIndexed = current != null && current.getLatitude() != null && current.getLongitude() != null;
+        long oldCell = wasIndexed ? cellKey(previous.getLatitude(), previous.getLongitude()) : 0;
+        long newCell = isIndexed ? cellKey(current.getLatitude(), current.getLongitude()) : 0;
+        if (wasIndexed && (!isIndexed || oldCell != newCell)) {
+            cells.computeIfPresent(oldCell, (key, vehicles) -> without(vehicles, previous.getId()));
+        }
+        if (isIndexed) {
+            cells.compute(newCell, (key, vehicles) -> with(vehicles, current));
+        }
+    }
+
+    private VehicleState[] with(VehicleState[] vehicles, VehicleState state) {
+        if (vehicles == null) {
+            vehicles = EMPTY;
+        }
+        for (int i = 0; i < vehicles.length; i++) {
+            if (vehicles[i].getId() == state.getId()) {
+                VehicleState[] copy = vehicles.clone();
+                copy[i] = state;
+                return copy;
+            }
+        }
+        VehicleState[] copy = Arrays.copyOf(vehicles, vehicles.length + 1);
+        copy[vehicles.length] = state;
+        size.incrementAndGet();
+        return copy;
+    }
+
+    private VehicleState[] without(VehicleState[] vehicles, long vehicleId) {
+        for (int i = 0; i < vehicles.length; i++) {
+            if (vehicles[i].getId() == vehicleId) {
+                size.decrementAndGet();
+                if (vehicles.length == 1) {
+                    return null; // drops the cell
+                }
+                VehicleState[] copy = new VehicleState[vehicles.length - 1];
+                System.arraycopy(vehicles, 0, copy, 0, i);
+                System.arraycopy(vehicles, i + 1, copy, i, vehicles.length - i - 1);
+                return copy;
+            }
+        }
+        return vehicles;
+    }
+
+    /** Vehicles with a known position. */
+    public int size() {
+        return size.get();
+    }
+
+    public int cellCount() {
+        return cells.size();
+    }
+
+    /** Vehicles inside the box, in no particular order. */
+    public List<VehicleState> withinBox(double minLat, double minLng, double maxLat, double maxLng,
+            Predicate<VehicleState> filter) {
+        List<VehicleState> result = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        forEachCell(minLat, minLng, maxLat, maxLng, vehicles -> {
+            for (VehicleState v : vehicles) {
+                if (v.getLatitude() >= minLat && v.getLatitude() <= maxLat && v.getLongitude() >= minLng
+                        && v.getLongitude() <= maxLng && filter.test(v) && seen.add(v.getId())) {
+                    result.add(v);
+                }
+            }
+        });
+        return result;
+    }
+
+    /** Vehicles within radiusMeters of the point, nearest first. */
+    public List<Hit> withinRadius(double lat, double lng, double radiusMeters, Predicate<VehicleState> filter) {
+        double cosLat = GeoMath.cosLat(lat);
+        double dLat = radiusMeters / METERS_PER_DEGREE;
+        double dLng = Math.min(180, dLat / Math.max(cosLat, 1e-6));
+        List<Hit> result = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        forEachCell(lat - dLat, lng - dLng, lat + dLat, lng + dLng, vehicles -> {
+            for (VehicleState v : vehicles) {
+                double d = GeoMath.equirectangularMeters(lat, lng, v.getLatitude(), v.getLongitude(), cosLat);
+                if (d <= radiusMeters && filter.test(v) && seen.add(v.getId())) {
+                    result.add(new Hit(v, d));
+                }
+            }
+        });
+        result.sort(Comparator.comparingDouble(Hit::getDistanceMeters));
+        return result;
+    }
+
+    /**
+     * Up to k vehicles nearest to the point within maxRadiusMeters, nearest first.
+     * Searches rings of cells outwards and stops once no unvisited cell can hold
+     * anything closer than the k-th hit; falls back to scanning every occupied cell
+     * once it would have probed more cells than the index holds.
+     */
+    public List<Hit> nearest(double lat, double lng, int k, double maxRadiusMeters, Predicate<VehicleState> filter) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        double cosLat = GeoMath.cosLat(lat);
+        PriorityQueue<Hit> best = new PriorityQueue<>(k,
+                Comparator.comparingDouble(Hit::getDistanceMeters).reversed()); // farthest on top
+        Set<Long> ids = new HashSet<>();
+        CellVisitor offer = vehicles -> {
+            for (VehicleState v : vehicles) {
+                double d = GeoMath.equirectangularMeters(lat, lng, v.getLatitude(), v.getLongitude(), cosLat);
+                if (d > maxRadiusMeters || (best.size() == k && d >= best.peek().getDistanceMeters())
+                        || ids.contains(v.getId()) || !filter.test(v)) {
+                    continue;
+                }
+                best.add(new Hit(v, d));
+                ids.add(v.getId());
+                if (best.size() > k) {
+                    ids.remove(best.poll().getVehicle().getId());
+                }
+            }
+        };
+
+        int row = (int) Math.floor(lat / cellDegrees);
+        int col = (int) Math.floor(lng / cellDegrees);
+        long probed = 0;
+        for (int ring = 0;; ring++) {
+            probed += ring == 0 ? 1 : 8L * ring;
+            if (probed > cells.size()) {
+                cells.values().forEach(offer::visit);
+                break;
+            }
+            visitRing(row, col, ring, offer);
+            // Every cell of the next ring is at least ring whole cells away; the narrowest
+            // cell width is the east-west one at the ring's latitude furthest from the equator
+            double edgeLat = Math.min(90, Math.abs(lat) + (ring + 1) * cellDegrees);
+            double reach = ring * cellDegrees * METERS_PER_DEGREE * Math.min(1, GeoMath.cosLat(edgeLat));
+            if (reach > maxRadiusMeters || (best.size() == k && best.peek().getDistanceMeters() <= reach)) {
+                break;
+            }
+        }
+
+        List<Hit> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Hit::getDistanceMeters));
+        return result;
+    }
+
+    private void visitRing(int row, int col, int ring, CellVisitor visitor) {
+        if (ring == 0) {
+            visit(row, col, visitor);
+            return;
+        }
+        for (int c = col - ring; c <= col + ring; c++) {
+            visit(row - ring, c, visitor);
+            visit(row + ring, c, visitor);
+        }
+        for (int r = row - ring + 1; r <= row + ring - 1; r++) {
+            visit(r, col - ring, visitor);
+            visit(r, col + ring, visitor);
+        }
+    }
+
+    private void visit(int row, int col, CellVisitor visitor) {
+        VehicleState[] vehicles = cells.get(key(row, col));
+        if (vehicles != null) {
+            visitor.visit(vehicles);
+        }
+    }
+
+    private void forEachCell(double minLat, double minLng, double maxLat, double maxLng, CellVisitor visitor) {
+        int minRow = (int) Math.floor(minLat / cellDegrees);
+        int maxRow = (int) Math.floor(maxLat / cellDegrees);
+        int minCol = (int) Math.floor(minLng / cellDegrees);
+        int maxCol = (int) Math.floor(maxLng / cellDegrees);
+        if ((long) (maxRow - minRow + 1) * (maxCol - minCol + 1) > cells.size()) {
+            cells.values().forEach(visitor::visit); // cheaper than probing mostly empty cells
+            return;
+        }
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol; c <= maxCol; c++) {
+                visit(r, c, visitor);
+            }
+        }
+    }
+
+    private long cellKey(double lat, double lng) {
+        return key((int) Math.floor(lat / cellDegrees), (int) Math.floor(lng / cellDegrees));
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private interface CellVisitor {
+        void visit(VehicleState[] vehicles);
+    }
+
+    public static final class Hit {
+        private final VehicleState vehicle;
+        private final double distanceMeters;
+
+        Hit(VehicleState vehicle, double distanceMeters) {
+            this.vehicle = vehicle;
+            this.distanceMeters = distanceMeters;
+        }
+
+        public VehicleState getVehicle() {
+            return vehicle;
+        }
+
+        /** Straight-line distance from the query point. */
+        public double getDistanceMeters() {
+            return distanceMeters;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.neurofleetx.fleet;
+
+import com.neurofleetx.model.Vehicle;
+
+import java.time.Instant;
+
+/**
+ * Live telemetry of one vehicle as held by {@link FleetStateStore}. Instances are
+ * copy-on-write: the store hands out published states, which must be treated as
+ * read-only, and applies every change to a fresh copy.
+ */
+public final class VehicleState {
+
+    private final long id;
+    private String type;
+    private Vehicle.VehicleStatus status;
+    private Double latitude;
+    private Double longitude;
+    private Integer speed;
+    private Integer battery;
+    private Integer fuel;
+    private Double mileage;
+    private Double engineHealth;
+    private Double tirePressure;
+    private Double oilLevel;
+    private Instant lastUpdated;
+
+    VehicleState(long id) {
+        this.id = id;
+    }
+
+    VehicleState(Vehicle vehicle) {
+        this(vehicle.getId());
+        type = vehicle.getType();
+        status = vehicle.getStatus();
+        latitude = vehicle.getLatitude();
+        longitude = vehicle.getLongitude();
+        speed = vehicle.getSpeed();
+        battery = vehicle.getBattery();
+        fuel = vehicle.getFuel();
+        mileage = vehicle.getMileage();
+        engineHealth = vehicle.getEngineHealth();
+        tirePressure = vehicle.getTirePressure();
+        oilLevel = vehicle.getOilLevel();
+        lastUpdated = vehicle.getLastUpdated();
+    }
+
+    VehicleState(VehicleState other) {
+        this(other.id);
+        type = other.type;
+        status = other.status;
+        latitude = other.latitude;
+        longitude = other.longitude;
+        speed = other.speed;
+        battery = other.battery;
+        fuel = other.fuel;
+        mileage = other.mileage;
+        engineHealth = other.engineHealth;
+        tirePressure = other.tirePressure;
+        oilLevel = other.oilLevel;
+        lastUpdated = other.lastUpdated;
+    }
+
+    /** Copies the fields the store owns onto an entity loaded from the database. */
+    void applyTo(Vehicle vehicle) {
+        vehicle.setStatus(status);
+        vehicle.setLatitude(latitude);
+        vehicle.setLongitude(longitude);
+        vehicle.setSpeed(speed);
+        vehicle.setBattery(battery);
+        vehicle.setFuel(fuel);
+        vehicle.setMileage(mileage);
+        vehicle.setEngineHealth(engineHealth);
+        vehicle.setTirePressure(tirePressure);
+        vehicle.setOilLevel(oilLevel);
+        vehicle.setLastUpdated(lastUpdated);
+    }
+
+    public boolean isElectric() {
+        return "EV".equals(type);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    void setType(String type) {
+        this.type = type;
+    }
+
+    public Vehicle.VehicleStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(Vehicle.VehicleStatus status) {
+        this.status = status;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    public Integer getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(Integer speed) {
+        this.speed = speed;
+    }
+
+    public Integer getBattery() {
+        return battery;
+    }
+
+    public void setBattery(Integer battery) {
+        this.battery = battery;
+    }
+
+    public Integer getFuel() {
+        return fuel;
+    }
+
+    public void setFuel(Integer fuel) {
+        this.fuel = fuel;
+    }
+
+    public Double getMileage() {
+        return mileage;
+    }
+
+    public void setMileage(Double mileage) {
+        this.mileage = mileage;
+    }
+
+    public Double getEngineHealth() {
+        return engineHealth;
+    }
+
+    public void setEngineHealth(Double engineHealth) {
+        this.engineHealth = engineHealth;
+    }
+
+    public Double getTirePressure() {
+        return tirePressure;
+    }
+
+    public void setTirePressure(Double tirePressure) {
+        this.tirePressure = tirePressure;
+    }
+
+    public Double getOilLevel() {
+        return oilLevel;
+    }
+
+    public void setOilLevel(Double oilLevel) {
+        this.oilLevel = oilLevel;
+    }
+
+    public Instant getLastUpdated() {
+        return lastUpdated;
+    }
+
+    void setLastUpdated(Instant lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+}
@@ -0,0 +1,106 @@
+package com.neurofleetx.geo;
+
+/**
+ * Distance kernels on primitive coordinates, shared by routing, route geometry,
+ * telemetry and vehicle search.
+ *
+ * Paths are interleaved arrays (lat0, lng0, lat1, lng1, ...) in degrees. Path length
+ * converts each point to radians and takes its cosine once, reusing it for both
+ * adjacent segments. Segments shorter than about 10 km use the equirectangular
+ * approximation (no trigonometry; error well below a meter at that length), longer
+ * ones fall back to haversine.
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_M = 6_371_000;
+
+    // Squared angular length (rad^2) below which a segment counts as short (~10 km)
+    private static final double SHORT_SEGMENT_RAD2 = (10_000 / EARTH_RADIUS_M) * (10_000 / EARTH_RADIUS_M);
+
+    private GeoMath() {
+    }
+
+    /** Great-circle distance in meters. */
+    public static double haversineMeters(double lat1, double lng1, double lat2, double lng2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLambda = Math.toRadians(lng2 - lng1);
+        return EARTH_RADIUS_M * centralAngle(phi1, phi2, Math.cos(phi1), Math.cos(phi2), dLambda);
+    }
+
+    /**
+     * Planar approximation for nearby points, with the cosine of a reference
+     * latitude supplied by the caller (usually the query point's, see
+     * {@link #cosLat}). Accurate to well under 1% within a few tens of kilometers;
+     * use it for ranking and radius checks, not for long distances.
+     */
+    public static double equirectangularMeters(double lat1, double lng1, double lat2, double lng2,
+            double cosLat) {
+        double x = Math.toRadians(lng2 - lng1) * cosLat;
+        double y = Math.toRadians(lat2 - lat1);
+        return EARTH_RADIUS_M * Math.sqrt(x * x + y * y);
+    }
+
+    public static double cosLat(double lat) {
+        return Math.cos(Math.toRadians(lat));
+    }
+
+    /** Length in meters of an interleaved lat/lng path. */
+    public static double pathLengthMeters(double[] latLng) {
+        return pathLengthMeters(latLng, 0, latLng.length / 2);
+    }
+
+    /** Length in meters of points [from, to) of an interleaved lat/lng path. */
+    public static double pathLengthMeters(double[] latLng, int from, int to) {
+        if (to - from < 2) {
+            return 0;
+        }
+        double prevPhi = Math.toRadians(latLng[2 * from]);
+        double prevLambda = Math.toRadians(latLng[2 * from + 1]);
+        double prevCos = Math.cos(prevPhi);
+        double total = 0;
+        for (int i = from + 1; i < to; i++) {
+            double phi = Math.toRadians(latLng[2 * i]);
+            double lambda = Math.toRadians(latLng[2 * i + 1]);
+            double cos = Math.cos(phi);
+            double dPhi = phi - prevPhi;
+            double dLambda = lambda - prevLambda;
+            double x = dLambda * 0.5 * (cos + prevCos);
+            double planar = x * x + dPhi * dPhi;
+            if (planar < SHORT_SEGMENT_RAD2) {
+                total += Math.sqrt(planar);
+            } else {
+                total += centralAngle(prevPhi, phi, prevCos, cos, dLambda);
+            }
+            prevPhi = phi;
+            prevLambda = lambda;
+            prevCos = cos;
+        }
+        return total * EARTH_RADIUS_M;
+    }
+
+    /**
+     * Equirectangular distances in meters from one point to count others, written to
+     * out. The loop is branch-free so the JIT can vectorize it; meant for scoring
+     * candidates within a city, not for long distances.
+     */
+    public static void distancesMeters(double lat, double lng, double[] lats, double[] lngs, int count,
+            double[] out) {
+        double cosLat = cosLat(lat);
+        double degToRad = Math.PI / 180;
+        double kx = degToRad * cosLat;
+        for (int i = 0; i < count; i++) {
+            double x = (lngs[i] - lng) * kx;
+            double y = (lats[i] - lat) * degToRad;
+            out[i] = EARTH_RADIUS_M * Math.sqrt(x * x + y * y);
+        }
+    }
+
+    /** Haversine central angle in radians, given both latitudes' cosines. */
+    private static double centralAngle(double phi1, double phi2, double cos1, double cos2, double dLambda) {
+        double sinPhi = Math.sin((phi2 - phi1) / 2);
+        double sinLambda = Math.sin(dLambda / 2);
+        double a = sinPhi * sinPhi + cos1 * cos2 * sinLambda * sinLambda;
+        return 2 * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,327 @@
+package com.neurofleetx.geocoding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Place name index loaded once at startup from geocoding.gazetteer.path
+ * (CSV rows of name,lat,lng,rank).
+ *
+ * Everything is built up front and immutable afterwards:
+ * - a hash map for exact lookups,
+ * - the names sorted lexicographically, so any prefix maps to a contiguous range,
+ *   plus a sparse table answering "highest ranked place in a range" for autocomplete,
+ * - a trigram index for typo-tolerant matching.
+ */
+@Component
+public class Gazetteer {
+
+    private static final double MIN_FUZZY_SIMILARITY = 0.5;
+
+    private final Place[] places; // sorted by key
+    private final String[] keys;
+    private final Map<String, Place> exact;
+    private final int[][] bestInRange; // bestInRange[j][i]: index of best rank in [i, i + 2^j)
+    private final Map<Long, int[]> trigramPostings;
+    private final int[] trigramCounts;
+    private final ThreadLocal<int[]> overlapCounts;
+
+    public Gazetteer(@Value("${geocoding.gazetteer.path:classpath:gazetteer.csv}") Resource source)
+            throws IOException {
+        List<Place> loaded = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(source.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] f = line.split(",");
+                if (f.length < 3) {
+                    throw new IOException("Malformed gazetteer row at line " + lineNo + ": " + line);
+                }
+                try {
+                    int rank = f.length > 3 ? Integer.parseInt(f[3].trim()) : 0;
+                    loaded.add(new Place(f[0].trim(), Double.parseDouble(f[1].trim()),
+                            Double.parseDouble(f[2].trim()), rank));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed gazetteer row at line " + lineNo + ": " + line, e);
+                }
+            }
+        }
+
+        loaded.sort(Comparator.comparing((Place p) -> normalize(p.getName())));
+        int n = loaded.size();
+        this.places = loaded.toArray(new Place[0]);
+        this.keys = new String[n];
+        Map<String, Place> byKey = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            keys[i] = normalize(places[i].getName());
+            Place existing = byKey.get(keys[i]);
+            if (existing == null || existing.getRank() < places[i].getRank()) {
+                byKey.put(keys[i], places[i]);
+            }
+        }
+        this.exact = Map.copyOf(byKey);
+
+        // Sparse table for range "best rank" queries
+        int levels = 1;
+        while ((1 << levels) <= n) {
+            levels++;
+        }
+        this.bestInRange = new int[levels][];
+        bestInRange[0] = new int[n];
+        for (int i = 0; i < n; i++) {
+            bestInRange[0][i] = i;
+        }
+        for (int j = 1; j < levels; j++) {
+            int span = 1 << j;
+            bestInRange[j] = new int[Math.max(0, n - span + 1)];
+            for (int i = 0; i + span <= n; i++) {
+                bestInRange[j][i] = better(bestInRange[j - 1][i], bestInRange[j - 1][i + (span >> 1)]);
+            }
+        }
+
+        // Trigram postings over padded keys
+        Map<Long, List<Integer>> postings = new HashMap<>();
+        this.trigramCounts = new int[n];
+        for (int i = 0; i < n; i++) {
+            String padded = " " + keys[i] + " ";
+            for (int c = 0; c + 3 <= padded.length(); c++) {
+                postings.computeIfAbsent(trigram(padded, c), k -> new ArrayList<>()).add(i);
+            }
+            trigramCounts[i] = Math.max(0, padded.length() - 2);
+        }
+        Map<Long, int[]> packed = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<Long, List<Integer>> entry : postings.entrySet()) {
+            packed.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        this.trigramPostings = Collections.unmodifiableMap(packed);
+        this.overlapCounts = ThreadLocal.withInitial(() -> new int[n]);
+
+        System.out.println("Loaded gazetteer: " + n + " places");
+    }
+
+    /**
+     * Normalizes free text the way place names are indexed: lower case, only the
+     * part before the first comma ("Koramangala, Bangalore" -> "koramangala"),
+     * single spaces.
+     */
+    public static String normalize(String input) {
+        if (input == null) {
+            return "";
+        }
+        int comma = input.indexOf(',');
+        String head = comma >= 0 ? input.substring(0, comma) : input;
+        StringBuilder sb = new StringBuilder(head.length());
+        boolean space = false;
+        for (int i = 0; i < head.length(); i++) {
+            char c = Character.toLowerCase(head.charAt(i));
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    public int size() {
+        return places.length;
+    }
+
+    /**
+     * Best single match for free text: exact name, then a place named inside the
+     * text ("near MG Road"), then the highest ranked prefix match, then the most
+     * similar name by trigrams. Returns null if nothing is close enough.
+     */
+    public Place resolve(String input) {
+        String key = normalize(input);
+        if (key.isEmpty()) {
+            return null;
+        }
+        Place place = exact.get(key);
+        if (place != null) {
+            return place;
+        }
+        place = containedPlace(key);
+        if (place != null) {
+            return place;
+        }
+        int lo = lowerBound(key);
+        int hi = prefixEnd(key, lo);
+        if (lo < hi) {
+            return places[bestIn(lo, hi)];
+        }
+        int fuzzy = mostSimilar(key);
+        return fuzzy >= 0 ? places[fuzzy] : null;
+    }
+
+    /**
+     * Up to limit places whose name starts with the given text, highest rank first.
+     * Falls back to the closest fuzzy match when no name has that prefix.
+     */
+    public List<Place> autocomplete(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int lo = lowerBound(key);
+        int hi = prefixEnd(key, lo);
+        if (lo >= hi) {
+            int fuzzy = mostSimilar(key);
+            return fuzzy >= 0 ? List.of(places[fuzzy]) : List.of();
+        }
+
+        // Repeatedly take the best of the open ranges and split around it
+        int max = Math.min(limit, hi - lo);
+        int[] rangeLo = new int[max + 1];
+        int[] rangeHi = new int[max + 1];
+        int ranges = 1;
+        rangeLo[0] = lo;
+        rangeHi[0] = hi;
+        List<Place> result = new ArrayList<>(max);
+        while (result.size() < max) {
+            int pick = -1;
+            int pickIndex = -1;
+            for (int r = 0; r < ranges; r++) {
+                int candidate = bestIn(rangeLo[r], rangeHi[r]);
+                if (pickIndex < 0 || better(candidate, pickIndex) == candidate) {
+                    pick = r;
+                    pickIndex = candidate;
+                }
+            }
+            result.add(places[pickIndex]);
+            int splitHi = rangeHi[pick];
+            rangeHi[pick] = pickIndex;
+            if (pickIndex + 1 < splitHi) {
+                rangeLo[ranges] = pickIndex + 1;
+                rangeHi[ranges] = splitHi;
+                ranges++;
+            }
+            if (rangeLo[pick] >= rangeHi[pick]) {
+                rangeLo[pick] = rangeLo[ranges - 1];
+                rangeHi[pick] = rangeHi[ranges - 1];
+                ranges--;
+            }
+        }
+        return result;
+    }
+
+    private Place containedPlace(String key) {
+        if (key.indexOf(' ') < 0) {
+            return null;
+        }
+        String[] tokens = key.split(" ");
+        // Longest phrase first so "mg road" wins over "road"
+        for (int len = tokens.length - 1; len >= 1; len--) {
+            for (int start = 0; start + len <= tokens.length; start++) {
+                Place place = exact.get(String.join(" ", Arrays.copyOfRange(tokens, start, start + len)));
+                if (place != null) {
+                    return place;
+                }
+            }
+        }
+        return null;
+    }
+
+    private int lowerBound(String key) {
+        int lo = 0, hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int prefixEnd(String key, int from) {
+        int lo = from, hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].startsWith(key)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int bestIn(int lo, int hi) {
+        int level = 31 - Integer.numberOfLeadingZeros(hi - lo);
+        return better(bestInRange[level][lo], bestInRange[level][hi - (1 << level)]);
+    }
+
+    private int better(int a, int b) {
+        if (places[a].getRank() != places[b].getRank()) {
+            return places[a].getRank() > places[b].getRank() ? a : b;
+        }
+        return Math.min(a, b);
+    }
+
+    private int mostSimilar(String key) {
+        String padded = " " + key + " ";
+        int queryGrams = padded.length() - 2;
+        if (queryGrams <= 0) {
+            return -1;
+        }
+        int[] counts = overlapCounts.get();
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        for (int c = 0; c + 3 <= padded.length(); c++) {
+            int[] posting = trigramPostings.get(trigram(padded, c));
+            if (posting == null) {
+                continue;
+            }
+            for (int idx : posting) {
+                if (counts[idx]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = idx;
+                }
+            }
+        }
+        int best = -1;
+        double bestScore = MIN_FUZZY_SIMILARITY;
+        for (int t = 0; t < touchedCount; t++) {
+            int idx = touched[t];
+            // Dice coefficient over trigram counts
+            double score = 2.0 * counts[idx] / (queryGrams + trigramCounts[idx]);
+            counts[idx] = 0;
+            if (score > bestScore || (score == bestScore && best >= 0 && better(idx, best) == idx)) {
+                bestScore = score;
+                best = idx;
+            }
+        }
+        return best;
+    }
+
+    private static long trigram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+}
@@ -0,0 +1,35 @@
+package com.neurofleetx.geocoding;
+
+/**
+ * A named location from the gazetteer.
+ */
+public final class Place {
+
+    private final String name;
+    private final double lat;
+    private final double lng;
+    private final int rank;
+
+    public Place(String name, double lat, double lng, int rank) {
+        this.name = name;
+        this.lat = lat;
+        this.lng = lng;
+        this.rank = rank;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public double getLng() {
+        return lng;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+}
@@ -0,0 +1,283 @@
+package com.neurofleetx.geofence;
+
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleState;
+import com.neurofleetx.model.Geofence;
+import com.neurofleetx.repository.GeofenceRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Depot, restricted-zone and service-area fences, with ENTER and EXIT events when
+ * vehicles cross them.
+ *
+ * Every position change in {@link FleetStateStore} is looked up in a
+ * {@link GeofenceIndex} and compared with the fences the vehicle was in before;
+ * the store serializes changes per vehicle, so each vehicle's inside/outside state
+ * needs no further locking. Transitions are queued and published in batches on
+ * /topic/geofences every geofence.publish-interval-ms. If more than
+ * geofence.max-queued-events are waiting, new ones are dropped and counted.
+ *
+ * A vehicle seen for the first time (at startup or when created) starts in the
+ * fences it is in without an event. Fence changes take effect for each vehicle at
+ * its next update; a deleted fence produces no EXIT events.
+ */
+@Component
+public class GeofenceEngine implements FleetStateStore.Listener {
+
+    private static final String TOPIC = "/topic/geofences";
+    private static final int MAX_BATCH = 1000;
+    private static final long[] NONE = new long[0];
+
+    private final GeofenceRepository geofenceRepository;
+    private final FleetStateStore fleetState;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final GeofenceIndex index;
+    private final int maxQueuedEvents;
+
+    // Vehicle id -> ids of the fences it is in, ascending
+    private final ConcurrentHashMap<Long, long[]> memberships = new ConcurrentHashMap<>();
+    private final Queue<GeofenceEvent> events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedEvents = new AtomicInteger();
+    private final AtomicLong evaluations = new AtomicLong();
+    private final AtomicLong enters = new AtomicLong();
+    private final AtomicLong exits = new AtomicLong();
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    public GeofenceEngine(GeofenceRepository geofenceRepository, FleetStateStore fleetState,
+            SimpMessagingTemplate messagingTemplate,
+            @Value("${geofence.cell-degrees:0.005}") double cellDegrees,
+            @Value("${geofence.max-queued-events:100000}") int maxQueuedEvents) {
+        this.geofenceRepository = geofenceRepository;
+        this.fleetState = fleetState;
+        this.messagingTemplate = messagingTemplate;
+        this.index = new GeofenceIndex(cellDegrees);
+        this.maxQueuedEvents = maxQueuedEvents;
+    }
+
+    @PostConstruct
+    void load() {
+        long start = System.currentTimeMillis();
+        for (Geofence geofence : geofenceRepository.findAll()) {
+            try {
+                index.add(GeofenceIndex.Fence.of(geofence.getId(), geofence));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Skipping geofence " + geofence.getId() + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Geofences loaded: " + index.size() + " fences in " + index.cellCount() + " cells in "
+                + (System.currentTimeMillis() - start) + " ms");
+        fleetState.addListener(this);
+    }
+
+    public List<Geofence> getAllGeofences() {
+        return geofenceRepository.findAll();
+    }
+
+    public Optional<Geofence> getGeofence(Long id) {
+        return geofenceRepository.findById(id);
+    }
+
+    public Geofence createGeofence(Geofence geofence) {
+        geofence.setId(null);
+        return save(geofence);
+    }
+
+    public Optional<Geofence> updateGeofence(Long id, Geofence changes) {
+        return geofenceRepository.findById(id).map(geofence -> {
+            geofence.setName(changes.getName());
+            geofence.setType(changes.getType());
+            geofence.setPolygon(changes.getPolygon());
+            return save(geofence);
+        });
+    }
+
+    private Geofence save(Geofence geofence) {
+        if (geofence.getName() == null || geofence.getName().isBlank()) {
+            throw new IllegalArgumentException("Geofence name is required");
+        }
+        if (geofence.getType() == null) {
+            throw new IllegalArgumentException("Geofence type is required");
+        }
+        GeofenceIndex.Fence candidate = GeofenceIndex.Fence.of(0, geofence);
+        if (index.coveringSize(candidate) > GeofenceIndex.MAX_CELLS_PER_FENCE) {
+            throw new IllegalArgumentException("Geofence is too large for geofence.cell-degrees (more than "
+                    + GeofenceIndex.MAX_CELLS_PER_FENCE + " cells)");
+        }
+        Geofence saved = geofenceRepository.save(geofence);
+        index.add(GeofenceIndex.Fence.of(saved.getId(), saved));
+        return saved;
+    }
+
+    public boolean deleteGeofence(Long id) {
+        if (!geofenceRepository.existsById(id)) {
+            return false;
+        }
+        geofenceRepository.deleteById(id);
+        index.remove(id);
+        return true;
+    }
+
+    /** Fences the vehicle was in at its last update. */
+    public List<Geofence> getGeofencesContaining(long vehicleId) {
+        long[] ids = memberships.getOrDefault(vehicleId, NONE);
+        return geofenceRepository.findAllById(Arrays.stream(ids).boxed().collect(Collectors.toList()));
+    }
+
+    @Override
+    public void onChange(VehicleState previous, VehicleState current) {
+        if (current == null) {
+            memberships.remove(previous.getId());
+            return;
+        }
+        if (current.getLatitude() == null || current.getLongitude() == null) {
+            return;
+        }
+        double lat = current.getLatitude();
+        double lng = current.getLongitude();
+        long[] inside = index.containing(lat, lng);
+        evaluations.incrementAndGet();
+        long[] before = memberships.put(current.getId(), inside);
+        if (previous == null || Arrays.equals(before, inside)) {
+            return;
+        }
+        if (before == null) {
+            before = NONE;
+        }
+        long timestamp = current.getLastUpdated() != null ? current.getLastUpdated().toEpochMilli()
+                : System.currentTimeMillis();
+        // Both ascending: walk them together
+        int i = 0;
+        int j = 0;
+        while (i < before.length || j < inside.length) {
+            if (j == inside.length || (i < before.length && before[i] < inside[j])) {
+                emit(current.getId(), before[i++], GeofenceEvent.Transition.EXIT, lat, lng, timestamp);
+            } else if (i == before.length || inside[j] < before[i]) {
+                emit(current.getId(), inside[j++], GeofenceEvent.Transition.ENTER, lat, lng, timestamp);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    private void emit(long vehicleId, long fenceId, GeofenceEvent.Transition transition, double lat, double lng,
+            long timestamp) {
+        GeofenceIndex.Fence fence = index.get(fenceId);
+        if (fence == null) {
+            return; // deleted since the vehicle entered it
+        }
+        (transition == GeofenceEvent.Transition.ENTER ? enters : exits).incrementAndGet();
+        if (queuedEvents.incrementAndGet() > maxQueuedEvents) {
+            queuedEvents.decrementAndGet();
+            droppedEvents.incrementAndGet();
+            return;
+        }
+        events.add(new GeofenceEvent(vehicleId, fenceId, fence.getName(), fence.getType(), transition, lat, lng,
+                timestamp));
+    }
+
+    @Scheduled(fixedDelayString = "${geofence.publish-interval-ms:250}")
+    public void publish() {
+        List<GeofenceEvent> batch = new ArrayList<>();
+        for (GeofenceEvent event; (event = events.poll()) != null;) {
+            queuedEvents.decrementAndGet();
+            batch.add(event);
+            if (batch.size() == MAX_BATCH) {
+                send(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(List<GeofenceEvent> batch) {
+        messagingTemplate.convertAndSend(TOPIC, batch);
+        publishedEvents.addAndGet(batch.size());
+    }
+
+    public Stats stats() {
+        return new Stats(index.size(), index.cellCount(), memberships.size(), evaluations.get(), enters.get(),
+                exits.get(), queuedEvents.get(), publishedEvents.get(), droppedEvents.get());
+    }
+
+    public static class Stats {
+        private final int fences;
+        private final int indexCells;
+        private final int trackedVehicles;
+        private final long evaluations;
+        private final long enters;
+        private final long exits;
+        private final int queuedEvents;
+        private final long publishedEvents;
+        private final long droppedEvents;
+
+        Stats(int fences, int indexCells, int trackedVehicles, long evaluations, long enters, long exits,
+                int queuedEvents, long publishedEvents, long droppedEvents) {
+            this.fences = fences;
+            this.indexCells = indexCells;
+            this.trackedVehicles = trackedVehicles;
+            this.evaluations = evaluations;
+            this.enters = enters;
+            this.exits = exits;
+            this.queuedEvents = queuedEvents;
+            this.publishedEvents = publishedEvents;
+            this.droppedEvents = droppedEvents;
+        }
+
+        public int getFences() {
+            return fences;
+        }
+
+        public int getIndexCells() {
+            return indexCells;
+        }
+
+        public int getTrackedVehicles() {
+            return trackedVehicles;
+        }
+
+        /** Position updates looked up in the index. */
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        public long getEnters() {
+            return enters;
+        }
+
+        public long getExits() {
+            return exits;
+        }
+
+        public int getQueuedEvents() {
+            return queuedEvents;
+        }
+
+        public long getPublishedEvents() {
+            return publishedEvents;
+        }
+
+        /** Events lost because too many were waiting to be published. */
+        public long getDroppedEvents() {
+            return droppedEvents;
+        }
+    }
+}
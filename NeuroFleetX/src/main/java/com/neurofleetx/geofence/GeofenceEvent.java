@@ -0,0 +1,66 @@
+package com.neurofleetx.geofence;
+
+import com.neurofleetx.model.Geofence;
+
+/** A vehicle crossing a geofence, as published on /topic/geofences. */
+public class GeofenceEvent {
+
+    public enum Transition {
+        ENTER, EXIT
+    }
+
+    private final long vehicleId;
+    private final long geofenceId;
+    private final String geofenceName;
+    private final Geofence.GeofenceType geofenceType;
+    private final Transition transition;
+    private final double latitude;
+    private final double longitude;
+    private final long timestamp;
+
+    GeofenceEvent(long vehicleId, long geofenceId, String geofenceName, Geofence.GeofenceType geofenceType,
+            Transition transition, double latitude, double longitude, long timestamp) {
+        this.vehicleId = vehicleId;
+        this.geofenceId = geofenceId;
+        this.geofenceName = geofenceName;
+        this.geofenceType = geofenceType;
+        this.transition = transition;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timestamp = timestamp;
+    }
+
+    public long getVehicleId() {
+        return vehicleId;
+    }
+
+    public long getGeofenceId() {
+        return geofenceId;
+    }
+
+    public String getGeofenceName() {
+        return geofenceName;
+    }
+
+    public Geofence.GeofenceType getGeofenceType() {
+        return geofenceType;
+    }
+
+    public Transition getTransition() {
+        return transition;
+    }
+
+    /** Position of the update that crossed the boundary. */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /** Epoch milliseconds of that update. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,364 @@
+package com.neurofleetx.geofence;
+
+import com.neurofleetx.model.Geofence;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Grid index over geofence polygons, for finding the fences that contain a point
+ * in about constant time however many fences there are.
+ *
+ * Each fence is stored as its covering: the grid cells of cellDegrees square that it
+ * touches. A cell the boundary does not cross is entirely inside the fence, so a
+ * point in it is inside without any test; only for the few cells on the boundary is
+ * the point tested against the polygon. A lookup is one map read and a handful of
+ * point-in-polygon tests at most.
+ *
+ * Like the vehicle spatial index, each cell is an immutable entry that writers
+ * replace through the map's per-key compute, so lookups never lock. Fence changes
+ * are serialized; a lookup during one may see the fence in some of its cells only.
+ *
+ * Coordinates are treated as planar (degrees), which is exact enough for fences of
+ * city size; fences may not cross the antimeridian.
+ */
+public final class GeofenceIndex {
+
+    public static final int MAX_VERTICES = 10_000;
+    public static final int MAX_CELLS_PER_FENCE = 250_000;
+
+    private static final long[] NONE = new long[0];
+    private static final byte BOUNDARY = 1;
+    private static final byte INSIDE = 2;
+
+    private final double cellDegrees;
+    private final ConcurrentHashMap<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final Map<Long, Fence> fences = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> coverings = new ConcurrentHashMap<>();
+
+    public GeofenceIndex(double cellDegrees) {
+        if (!(cellDegrees > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellDegrees = cellDegrees;
+    }
+
+    /** Adds a fence, or replaces the fence with the same id. */
+    public synchronized void add(Fence fence) {
+        long[] keys = cover(fence);
+        remove(fence.getId());
+        for (long key : keys) {
+            boolean inside = (key & 1) != 0;
+            cells.compute(key >> 1, (k, cell) -> (cell != null ? cell : Cell.EMPTY).with(fence, inside));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] >>= 1;
+        }
+        coverings.put(fence.getId(), keys);
+        fences.put(fence.getId(), fence);
+    }
+
+    public synchronized boolean remove(long fenceId) {
+        long[] keys = coverings.remove(fenceId);
+        if (keys == null) {
+            return false;
+        }
+        fences.remove(fenceId);
+        for (long key : keys) {
+            cells.computeIfPresent(key, (k, cell) -> cell.without(fenceId));
+        }
+        return true;
+    }
+
+    public Fence get(long fenceId) {
+        return fences.get(fenceId);
+    }
+
+    public int size() {
+        return fences.size();
+    }
+
+    public int cellCount() {
+        return cells.size();
+    }
+
+    /** Ids of the fences containing the point, ascending. The array is shared: do not modify it. */
+    public long[] containing(double lat, double lng) {
+        Cell cell = cells.get(cellKey(cellIndex(lat), cellIndex(lng)));
+        if (cell == null) {
+            return NONE;
+        }
+        long[] hits = null;
+        int count = 0;
+        for (Fence fence : cell.boundary) {
+            if (fence.contains(lat, lng)) {
+                if (hits == null) {
+                    hits = Arrays.copyOf(cell.inside, cell.inside.length + cell.boundary.length);
+                    count = cell.inside.length;
+                }
+                hits[count++] = fence.getId();
+            }
+        }
+        if (hits == null) {
+            return cell.inside;
+        }
+        hits = Arrays.copyOf(hits, count);
+        Arrays.sort(hits);
+        return hits;
+    }
+
+    /** Number of cells the fence would take, to reject oversized fences before they are stored. */
+    public long coveringSize(Fence fence) {
+        return (long) (cellIndex(fence.maxLat) - cellIndex(fence.minLat) + 1)
+                * (cellIndex(fence.maxLng) - cellIndex(fence.minLng) + 1);
+    }
+
+    /**
+     * The fence's cells as cell key << 1 | 1 if inside, 0 if on the boundary. Boundary
+     * cells are those an edge passes through; of the rest, a scanline through each
+     * row's cell centers finds the ones inside.
+     */
+    private long[] cover(Fence fence) {
+        if (coveringSize(fence) > MAX_CELLS_PER_FENCE) {
+            throw new IllegalArgumentException("Geofence " + fence.getName() + " covers more than "
+                    + MAX_CELLS_PER_FENCE + " index cells");
+        }
+        int x0 = cellIndex(fence.minLng);
+        int y0 = cellIndex(fence.minLat);
+        int width = cellIndex(fence.maxLng) - x0 + 1;
+        int height = cellIndex(fence.maxLat) - y0 + 1;
+        byte[] kinds = new byte[width * height];
+        double[] lats = fence.lats;
+        double[] lngs = fence.lngs;
+        int n = lats.length;
+
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            int cx0 = cellIndex(Math.min(lngs[i], lngs[j])) - x0;
+            int cx1 = cellIndex(Math.max(lngs[i], lngs[j])) - x0;
+            int cy0 = cellIndex(Math.min(lats[i], lats[j])) - y0;
+            int cy1 = cellIndex(Math.max(lats[i], lats[j])) - y0;
+            for (int cy = cy0; cy <= cy1; cy++) {
+                for (int cx = cx0; cx <= cx1; cx++) {
+                    double minLng = (x0 + cx) * cellDegrees;
+                    double minLat = (y0 + cy) * cellDegrees;
+                    if (segmentCrossesBox(lngs[j], lats[j], lngs[i], lats[i], minLng, minLat,
+                            minLng + cellDegrees, minLat + cellDegrees)) {
+                        kinds[cy * width + cx] = BOUNDARY;
+                    }
+                }
+            }
+        }
+
+        double[] crossings = new double[n];
+        for (int cy = 0; cy < height; cy++) {
+            double lat = (y0 + cy + 0.5) * cellDegrees;
+            int count = 0;
+            for (int i = 0, j = n - 1; i < n; j = i++) {
+                if ((lats[i] > lat) != (lats[j] > lat)) {
+                    crossings[count++] = lngs[i] + (lat - lats[i]) * (lngs[j] - lngs[i]) / (lats[j] - lats[i]);
+                }
+            }
+            Arrays.sort(crossings, 0, count);
+            for (int k = 0; k + 1 < count; k += 2) {
+                // Cells whose center lies between an entering and the following leaving crossing
+                int from = Math.max(0, (int) Math.ceil(crossings[k] / cellDegrees - 0.5) - x0);
+                int to = Math.min(width - 1, (int) Math.floor(crossings[k + 1] / cellDegrees - 0.5) - x0);
+                for (int cx = from; cx <= to; cx++) {
+                    if (kinds[cy * width + cx] == 0) {
+                        kinds[cy * width + cx] = INSIDE;
+                    }
+                }
+            }
+        }
+
+        int covered = 0;
+        for (byte kind : kinds) {
+            if (kind != 0) {
+                covered++;
+            }
+        }
+        long[] keys = new long[covered];
+        int k = 0;
+        for (int cy = 0; cy < height; cy++) {
+            for (int cx = 0; cx < width; cx++) {
+                byte kind = kinds[cy * width + cx];
+                if (kind != 0) {
+                    keys[k++] = cellKey(y0 + cy, x0 + cx) << 1 | (kind == INSIDE ? 1 : 0);
+                }
+            }
+        }
+        return keys;
+    }
+
+    /** Liang-Barsky clipping: whether the segment has a point in the (closed) box. */
+    static boolean segmentCrossesBox(double ax, double ay, double bx, double by, double minX, double minY,
+            double maxX, double maxY) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double[] p = { -dx, dx, -dy, dy };
+        double[] q = { ax - minX, maxX - ax, ay - minY, maxY - ay };
+        double t0 = 0;
+        double t1 = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) {
+                    return false;
+                }
+            } else {
+                double t = q[i] / p[i];
+                if (p[i] < 0) {
+                    if (t > t1) {
+                        return false;
+                    }
+                    t0 = Math.max(t0, t);
+                } else {
+                    if (t < t0) {
+                        return false;
+                    }
+                    t1 = Math.min(t1, t);
+                }
+            }
+        }
+        return true;
+    }
+
+    private int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    // Row in the high half, column in the low half; keeps one bit free for cover()
+    private static long cellKey(int row, int column) {
+        return (long) row << 31 | (column & 0x7fffffffL);
+    }
+
+    /** One cell's fences: ids of those containing the whole cell, and those whose boundary crosses it. */
+    private static final class Cell {
+        static final Cell EMPTY = new Cell(NONE, new Fence[0]);
+
+        final long[] inside; // ascending
+        final Fence[] boundary;
+
+        Cell(long[] inside, Fence[] boundary) {
+            this.inside = inside;
+            this.boundary = boundary;
+        }
+
+        Cell with(Fence fence, boolean containsCell) {
+            if (containsCell) {
+                long[] ids = Arrays.copyOf(inside, inside.length + 1);
+                ids[inside.length] = fence.getId();
+                Arrays.sort(ids);
+                return new Cell(ids, boundary);
+            }
+            Fence[] crossing = Arrays.copyOf(boundary, boundary.length + 1);
+            crossing[boundary.length] = fence;
+            return new Cell(inside, crossing);
+        }
+
+        /** Null, which drops the cell, when no fence is left. */
+        Cell without(long fenceId) {
+            long[] ids = Arrays.stream(inside).filter(id -> id != fenceId).toArray();
+            Fence[] crossing = Arrays.stream(boundary).filter(f -> f.getId() != fenceId).toArray(Fence[]::new);
+            if (ids.length == 0 && crossing.length == 0) {
+                return null;
+            }
+            return new Cell(ids.length == 0 ? NONE : ids, crossing);
+        }
+    }
+
+    /** A fence as indexed: its polygon in arrays, with its bounding box. */
+    public static final class Fence {
+        private final long id;
+        private final String name;
+        private final Geofence.GeofenceType type;
+        private final double[] lats;
+        private final double[] lngs;
+        private final double minLat;
+        private final double minLng;
+        private final double maxLat;
+        private final double maxLng;
+
+        public Fence(long id, String name, Geofence.GeofenceType type, double[] lats, double[] lngs) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.lats = lats;
+            this.lngs = lngs;
+            this.minLat = Arrays.stream(lats).min().orElse(0);
+            this.maxLat = Arrays.stream(lats).max().orElse(0);
+            this.minLng = Arrays.stream(lngs).min().orElse(0);
+            this.maxLng = Arrays.stream(lngs).max().orElse(0);
+        }
+
+        /** Parses a stored geofence; throws IllegalArgumentException if its polygon is invalid. */
+        public static Fence of(long id, Geofence geofence) {
+            double[][] polygon = parsePolygon(geofence.getPolygon());
+            return new Fence(id, geofence.getName(), geofence.getType(), polygon[0], polygon[1]);
+        }
+
+        /** "lat,lng;lat,lng;..." as {lats, lngs}, without a repeated closing vertex. */
+        public static double[][] parsePolygon(String polygon) {
+            if (polygon == null || polygon.isBlank()) {
+                throw new IllegalArgumentException("Polygon is required");
+            }
+            String[] vertices = polygon.trim().split("\\s*;\\s*");
+            if (vertices.length > MAX_VERTICES + 1) {
+                throw new IllegalArgumentException("Polygon has more than " + MAX_VERTICES + " vertices");
+            }
+            double[] lats = new double[vertices.length];
+            double[] lngs = new double[vertices.length];
+            int n = 0;
+            for (String vertex : vertices) {
+                String[] parts = vertex.split("\\s*,\\s*");
+                try {
+                    if (parts.length != 2) {
+                        throw new NumberFormatException();
+                    }
+                    lats[n] = Double.parseDouble(parts[0]);
+                    lngs[n] = Double.parseDouble(parts[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Polygon vertex must be lat,lng: " + vertex);
+                }
+                if (!(Math.abs(lats[n]) <= 90 && Math.abs(lngs[n]) <= 180)) {
+                    throw new IllegalArgumentException("Polygon vertex out of range: " + vertex);
+                }
+                n++;
+            }
+            if (n > 1 && lats[0] == lats[n - 1] && lngs[0] == lngs[n - 1]) {
+                n--;
+            }
+            if (n < 3) {
+                throw new IllegalArgumentException("Polygon needs at least 3 vertices");
+            }
+            return new double[][] { Arrays.copyOf(lats, n), Arrays.copyOf(lngs, n) };
+        }
+
+        /** Even-odd ray casting; points on the boundary may fall either way. */
+        public boolean contains(double lat, double lng) {
+            if (lat < minLat || lat > maxLat || lng < minLng || lng > maxLng) {
+                return false;
+            }
+            boolean inside = false;
+            for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+                if ((lats[i] > lat) != (lats[j] > lat)
+                        && lng < lngs[i] + (lat - lats[i]) * (lngs[j] - lngs[i]) / (lats[j] - lats[i])) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Geofence.GeofenceType getType() {
+            return type;
+        }
+    }
+}
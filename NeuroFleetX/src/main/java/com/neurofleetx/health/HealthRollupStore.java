@@ -0,0 +1,701 @@
+package com.neurofleetx.health;
+
+import com.neurofleetx.model.VehicleHealthLog;
+import com.neurofleetx.model.VehicleHealthRollup.Resolution;
+import com.neurofleetx.repository.VehicleHealthLogRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Health history rolled up per vehicle into 1-minute, hourly and daily buckets:
+ * min, max and average of engine health, tire pressure, oil level and battery
+ * health. The rollups are kept up to date as logs are written, so a chart over
+ * months reads a few hundred bucket rows instead of every log.
+ *
+ * Logs are added to in-memory deltas once their transaction commits. Every
+ * health.rollups.flush-interval-ms the deltas are merged into vehicle_health_rollups
+ * in one transaction: a batched UPDATE takes the min of the mins and the max of
+ * the maxes and adds sums and counts, then the buckets it found no row for are
+ * inserted. Only the flush writes the table, so update-then-insert needs no
+ * locking. A failed flush keeps its deltas for the next one; a crash loses at most
+ * the last interval's. Reads merge in the deltas not flushed yet.
+ *
+ * Minute buckets are deleted after health.rollups.minute-retention-days, and raw
+ * logs after health.rollups.log-retention-days if set; hourly and daily buckets are
+ * kept. If the table is empty at startup, the existing logs are rolled up once in
+ * the background.
+ */
+@Component
+public class HealthRollupStore {
+
+    public static final int DEFAULT_POINTS = 500;
+    public static final int MAX_POINTS = 2_000;
+    private static final int BACKFILL_PAGE = 5_000;
+
+    // Column prefixes, in the order of Delta's arrays
+    private static final String[] METRICS = { "engine_health", "tire_pressure", "oil_level", "battery_health" };
+    private static final String UPDATE_SQL;
+    private static final String INSERT_SQL;
+    private static final String SELECT_SQL;
+
+    static {
+        StringBuilder update = new StringBuilder("UPDATE vehicle_health_rollups SET samples = samples + ?");
+        StringBuilder columns = new StringBuilder("vehicle_id, resolution, bucket_start, samples");
+        StringBuilder values = new StringBuilder("?, ?, ?, ?");
+        for (String m : METRICS) {
+            // LEAST/GREATEST return NULL on a NULL argument in MySQL (not in H2); COALESCE covers both
+            update.append(", ").append(m).append("_min = COALESCE(LEAST(").append(m).append("_min, ?), ")
+                    .append(m).append("_min, ?)");
+            update.append(", ").append(m).append("_max = COALESCE(GREATEST(").append(m).append("_max, ?), ")
+                    .append(m).append("_max, ?)");
+            update.append(", ").append(m).append("_sum = ").append(m).append("_sum + ?");
+            update.append(", ").append(m).append("_count = ").append(m).append("_count + ?");
+            columns.append(", ").append(m).append("_min, ").append(m).append("_max, ").append(m).append("_sum, ")
+                    .append(m).append("_count");
+            values.append(", ?, ?, ?, ?");
+        }
+        update.append(" WHERE vehicle_id = ? AND resolution = ? AND bucket_start = ?");
+        UPDATE_SQL = update.toString();
+        INSERT_SQL = "INSERT INTO vehicle_health_rollups (" + columns + ") VALUES (" + values + ")";
+        SELECT_SQL = "SELECT " + columns + " FROM vehicle_health_rollups"
+                + " WHERE vehicle_id = ? AND resolution = ? AND bucket_start >= ? AND bucket_start < ?"
+                + " ORDER BY bucket_start";
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VehicleHealthLogRepository logRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long minuteRetentionMillis;
+    private final int logRetentionDays;
+
+    private final Object pendingLock = new Object();
+    private Map<Key, Delta> pending = new HashMap<>();
+
+    private final AtomicLong recordedLogs = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedBuckets = new AtomicLong();
+    private final AtomicLong insertedBuckets = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong backfilledLogs = new AtomicLong();
+    private volatile boolean backfilling;
+    private volatile long lastFlushMillis;
+    private volatile int lastFlushBuckets;
+
+    public HealthRollupStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            VehicleHealthLogRepository logRepository,
+            @Value("${health.rollups.enabled:true}") boolean enabled,
+            @Value("${health.rollups.batch-size:500}") int batchSize,
+            @Value("${health.rollups.minute-retention-days:30}") int minuteRetentionDays,
+            @Value("${health.rollups.log-retention-days:0}") int logRetentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.logRepository = logRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.minuteRetentionMillis = minuteRetentionDays > 0 ? TimeUnit.DAYS.toMillis(minuteRetentionDays) : 0;
+        this.logRetentionDays = logRetentionDays;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        Long rollups = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM vehicle_health_rollups", Long.class);
+        Long lastLogId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM vehicle_health_logs", Long.class);
+        if (rollups != null && rollups == 0 && lastLogId != null) {
+            // Logs written from now on get ids above lastLogId (ids come in fresh blocks) and are recorded as usual
+            backfilling = true;
+            Thread backfill = new Thread(() -> backfill(lastLogId), "health-rollup-backfill");
+            backfill.setDaemon(true);
+            backfill.start();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds logs to the rollups once the current transaction commits, or now if there
+     * is none. The logs need their vehicle (a reference is enough) and timestamp.
+     */
+    public void recordAfterCommit(Collection<VehicleHealthLog> logs) {
+        if (!enabled || logs.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(logs);
+            return;
+        }
+        List<VehicleHealthLog> committed = new ArrayList<>(logs);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(committed);
+            }
+        });
+    }
+
+    private void record(Collection<VehicleHealthLog> logs) {
+        int recorded = 0;
+        synchronized (pendingLock) {
+            for (VehicleHealthLog log : logs) {
+                if (log.getVehicle() == null || log.getVehicle().getId() == null || log.getTimestamp() == null) {
+                    continue;
+                }
+                long vehicleId = log.getVehicle().getId();
+                long timestamp = log.getTimestamp().toEpochMilli();
+                for (Resolution resolution : Resolution.values()) {
+                    pending.computeIfAbsent(new Key(vehicleId, resolution, resolution.bucketOf(timestamp)),
+                            k -> new Delta()).add(log);
+                }
+                recorded++;
+            }
+        }
+        recordedLogs.addAndGet(recorded);
+    }
+
+    /** Merges the pending deltas into the table. */
+    @Scheduled(fixedDelayString = "${health.rollups.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<Key, Delta> deltas;
+        synchronized (pendingLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            deltas = pending;
+            pending = new HashMap<>();
+        }
+        long started = System.currentTimeMillis();
+        List<Map.Entry<Key, Delta>> entries = new ArrayList<>(deltas.entrySet());
+        try {
+            Integer inserted = transactionTemplate.execute(tx -> write(entries));
+            insertedBuckets.addAndGet(inserted != null ? inserted : 0);
+        } catch (DataAccessException | TransactionException e) {
+            // Nothing was written; the deltas go back for the next flush
+            failedFlushes.incrementAndGet();
+            System.out.println("Health rollup flush failed for " + entries.size() + " buckets: " + e.getMessage());
+            synchronized (pendingLock) {
+                deltas.forEach((key, delta) -> pending.merge(key, delta, Delta::merge));
+            }
+            return;
+        }
+        flushes.incrementAndGet();
+        flushedBuckets.addAndGet(entries.size());
+        lastFlushBuckets = entries.size();
+        lastFlushMillis = System.currentTimeMillis() - started;
+    }
+
+    private int write(List<Map.Entry<Key, Delta>> entries) {
+        int inserted = 0;
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<Map.Entry<Key, Delta>> batch = entries.subList(from, Math.min(entries.size(), from + batchSize));
+            int[] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, setter(batch, false));
+            List<Map.Entry<Key, Delta>> missing = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    missing.add(batch.get(i));
+                }
+            }
+            if (!missing.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, setter(missing, true));
+                inserted += missing.size();
+            }
+        }
+        return inserted;
+    }
+
+    private static BatchPreparedStatementSetter setter(List<Map.Entry<Key, Delta>> batch, boolean insert) {
+        return new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Key key = batch.get(i).getKey();
+                Delta delta = batch.get(i).getValue();
+                int p = 1;
+                if (insert) {
+                    p = bindKey(ps, p, key);
+                }
+                ps.setInt(p++, delta.samples);
+                for (int m = 0; m < METRICS.length; m++) {
+                    Double min = delta.count[m] > 0 ? delta.min[m] : null;
+                    Double max = delta.count[m] > 0 ? delta.max[m] : null;
+                    setNullable(ps, p++, min);
+                    if (!insert) {
+                        setNullable(ps, p++, min);
+                    }
+                    setNullable(ps, p++, max);
+                    if (!insert) {
+                        setNullable(ps, p++, max);
+                    }
+                    ps.setDouble(p++, delta.sum[m]);
+                    ps.setInt(p++, delta.count[m]);
+                }
+                if (!insert) {
+                    bindKey(ps, p, key);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        };
+    }
+
+    private static int bindKey(PreparedStatement ps, int p, Key key) throws SQLException {
+        ps.setLong(p++, key.vehicleId);
+        ps.setString(p++, key.resolution.name());
+        ps.setLong(p++, key.bucketStart);
+        return p;
+    }
+
+    private static void setNullable(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    private void backfill(long lastLogId) {
+        long started = System.currentTimeMillis();
+        long after = 0;
+        try {
+            while (after < lastLogId) {
+                List<VehicleHealthLog> page = logRepository.findByIdGreaterThanOrderByIdAsc(after,
+                        PageRequest.of(0, BACKFILL_PAGE));
+                List<VehicleHealthLog> logs = new ArrayList<>(page.size());
+                for (VehicleHealthLog log : page) {
+                    if (log.getId() <= lastLogId) {
+                        logs.add(log);
+                    }
+                }
+                if (logs.isEmpty()) {
+                    break;
+                }
+                record(logs);
+                flush();
+                backfilledLogs.addAndGet(logs.size());
+                after = logs.get(logs.size() - 1).getId();
+            }
+            System.out.println("Health rollups built from " + backfilledLogs.get() + " existing logs in "
+                    + (System.currentTimeMillis() - started) + " ms");
+        } catch (RuntimeException e) {
+            System.out.println("Health rollup backfill stopped after log " + after + ": " + e);
+        } finally {
+            backfilling = false;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${health.rollups.expire-interval-ms:3600000}")
+    public void expire() {
+        if (!enabled) {
+            return;
+        }
+        if (minuteRetentionMillis > 0) {
+            long cutoff = System.currentTimeMillis() - minuteRetentionMillis;
+            jdbcTemplate.update("DELETE FROM vehicle_health_rollups WHERE resolution = ? AND bucket_start < ?",
+                    Resolution.MINUTE.name(), Resolution.MINUTE.bucketOf(cutoff));
+        }
+        if (logRetentionDays > 0 && !backfilling) {
+            int deleted = logRepository.deleteByTimestampBefore(
+                    Instant.now().minus(logRetentionDays, ChronoUnit.DAYS));
+            if (deleted > 0) {
+                System.out.println("Deleted " + deleted + " health logs older than " + logRetentionDays + " days");
+            }
+        }
+    }
+
+    /**
+     * A vehicle's health from from to to, at the finest resolution that gives no more
+     * than points buckets over the range (or at the given resolution). Minute buckets
+     * are only used while they are kept; past that, hours are the finest. A range
+     * that takes more than MAX_POINTS buckets at the resolution is rejected.
+     */
+    public Series series(long vehicleId, Instant from, Instant to, Integer points, String resolution) {
+        if (!enabled) {
+            throw new IllegalArgumentException("Health rollups are disabled (health.rollups.enabled=false)");
+        }
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(7, ChronoUnit.DAYS);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        int wanted = points != null ? points : DEFAULT_POINTS;
+        if (wanted < 1 || wanted > MAX_POINTS) {
+            throw new IllegalArgumentException("points must be between 1 and " + MAX_POINTS);
+        }
+        Resolution chosen;
+        if (resolution != null) {
+            try {
+                chosen = Resolution.valueOf(resolution.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("resolution must be one of MINUTE, HOUR, DAY");
+            }
+        } else {
+            chosen = pick(start.toEpochMilli(), end.toEpochMilli(), wanted);
+        }
+        long buckets = bucketCount(chosen, start.toEpochMilli(), end.toEpochMilli());
+        if (buckets > MAX_POINTS) {
+            String hint = chosen == Resolution.DAY ? "narrow the range"
+                    : "narrow the range or use a coarser resolution";
+            throw new IllegalArgumentException("Range spans " + buckets + " " + chosen + " buckets, more than "
+                    + MAX_POINTS + "; " + hint);
+        }
+        return new Series(vehicleId, start, end, chosen, wanted,
+                query(vehicleId, chosen, start.toEpochMilli(), end.toEpochMilli()));
+    }
+
+    private Resolution pick(long from, long to, int points) {
+        boolean minutesKept = minuteRetentionMillis == 0
+                || from >= System.currentTimeMillis() - minuteRetentionMillis;
+        Resolution[] fineFirst = { Resolution.MINUTE, Resolution.HOUR, Resolution.DAY };
+        for (Resolution resolution : fineFirst) {
+            if ((resolution != Resolution.MINUTE || minutesKept) && bucketCount(resolution, from, to) <= points) {
+                return resolution;
+            }
+        }
+        return Resolution.DAY;
+    }
+
+    private static long bucketCount(Resolution resolution, long from, long to) {
+        return (resolution.bucketOf(to - 1) - resolution.bucketOf(from)) / resolution.getMillis() + 1;
+    }
+
+    /** Buckets overlapping [from, to), oldest first, including deltas not flushed yet. */
+    private List<Bucket> query(long vehicleId, Resolution resolution, long from, long to) {
+        long first = resolution.bucketOf(from);
+        TreeMap<Long, Delta> buckets = new TreeMap<>();
+        jdbcTemplate.query(SELECT_SQL, (ResultSet rs) -> {
+            Delta delta = new Delta();
+            delta.samples = rs.getInt("samples");
+            for (int m = 0; m < METRICS.length; m++) {
+                delta.count[m] = rs.getInt(METRICS[m] + "_count");
+                delta.sum[m] = rs.getDouble(METRICS[m] + "_sum");
+                if (delta.count[m] > 0) {
+                    delta.min[m] = rs.getDouble(METRICS[m] + "_min");
+                    delta.max[m] = rs.getDouble(METRICS[m] + "_max");
+                }
+            }
+            buckets.put(rs.getLong("bucket_start"), delta);
+        }, vehicleId, resolution.name(), first, to);
+        synchronized (pendingLock) {
+            pending.forEach((key, delta) -> {
+                if (key.vehicleId == vehicleId && key.resolution == resolution && key.bucketStart >= first
+                        && key.bucketStart < to) {
+                    buckets.merge(key.bucketStart, delta.copy(), Delta::merge);
+                }
+            });
+        }
+        List<Bucket> result = new ArrayList<>(buckets.size());
+        buckets.forEach((start, delta) -> result.add(new Bucket(start, delta)));
+        return result;
+    }
+
+    public Stats stats() {
+        int pendingBuckets;
+        synchronized (pendingLock) {
+            pendingBuckets = pending.size();
+        }
+        return new Stats(enabled, recordedLogs.get(), pendingBuckets, flushes.get(), flushedBuckets.get(),
+                insertedBuckets.get(), failedFlushes.get(), lastFlushBuckets, lastFlushMillis, backfilling,
+                backfilledLogs.get());
+    }
+
+    private static final class Key {
+        final long vehicleId;
+        final Resolution resolution;
+        final long bucketStart;
+
+        Key(long vehicleId, Resolution resolution, long bucketStart) {
+            this.vehicleId = vehicleId;
+            this.resolution = resolution;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return vehicleId == other.vehicleId && resolution == other.resolution
+                    && bucketStart == other.bucketStart;
+        }
+
+        @Override
+        public int hashCode() {
+            return (Long.hashCode(vehicleId) * 31 + resolution.ordinal()) * 31 + Long.hashCode(bucketStart);
+        }
+    }
+
+    /** Readings of one bucket; a metric's min and max mean nothing while its count is 0. */
+    private static final class Delta {
+        int samples;
+        final double[] min = new double[METRICS.length];
+        final double[] max = new double[METRICS.length];
+        final double[] sum = new double[METRICS.length];
+        final int[] count = new int[METRICS.length];
+
+        void add(VehicleHealthLog log) {
+            samples++;
+            add(0, log.getEngineHealth());
+            add(1, log.getTirePressure());
+            add(2, log.getOilLevel());
+            add(3, log.getBatteryHealth() != null ? log.getBatteryHealth().doubleValue() : null);
+        }
+
+        private void add(int m, Double value) {
+            if (value == null) {
+                return;
+            }
+            min[m] = count[m] > 0 ? Math.min(min[m], value) : value;
+            max[m] = count[m] > 0 ? Math.max(max[m], value) : value;
+            sum[m] += value;
+            count[m]++;
+        }
+
+        Delta merge(Delta other) {
+            samples += other.samples;
+            for (int m = 0; m < METRICS.length; m++) {
+                if (other.count[m] == 0) {
+                    continue;
+                }
+                min[m] = count[m] > 0 ? Math.min(min[m], other.min[m]) : other.min[m];
+                max[m] = count[m] > 0 ? Math.max(max[m], other.max[m]) : other.max[m];
+                sum[m] += other.sum[m];
+                count[m] += other.count[m];
+            }
+            return this;
+        }
+
+        Delta copy() {
+            return new Delta().merge(this);
+        }
+    }
+
+    public static class Series {
+        private final long vehicleId;
+        private final Instant from;
+        private final Instant to;
+        private final Resolution resolution;
+        private final int requestedPoints;
+        private final List<Bucket> buckets;
+
+        Series(long vehicleId, Instant from, Instant to, Resolution resolution, int requestedPoints,
+                List<Bucket> buckets) {
+            this.vehicleId = vehicleId;
+            this.from = from;
+            this.to = to;
+            this.resolution = resolution;
+            this.requestedPoints = requestedPoints;
+            this.buckets = buckets;
+        }
+
+        public long getVehicleId() {
+            return vehicleId;
+        }
+
+        public Instant getFrom() {
+            return from;
+        }
+
+        public Instant getTo() {
+            return to;
+        }
+
+        public Resolution getResolution() {
+            return resolution;
+        }
+
+        public int getRequestedPoints() {
+            return requestedPoints;
+        }
+
+        /** Buckets with data; empty buckets are left out, so this can be less than requested. */
+        public int getCount() {
+            return buckets.size();
+        }
+
+        public List<Bucket> getBuckets() {
+            return buckets;
+        }
+    }
+
+    public static class Bucket {
+        private final long start;
+        private final Delta delta;
+
+        Bucket(long start, Delta delta) {
+            this.start = start;
+            this.delta = delta;
+        }
+
+        public Instant getTimestamp() {
+            return Instant.ofEpochMilli(start);
+        }
+
+        /** Logs in the bucket. */
+        public int getSamples() {
+            return delta.samples;
+        }
+
+        public Stat getEngineHealth() {
+            return stat(0);
+        }
+
+        public Stat getTirePressure() {
+            return stat(1);
+        }
+
+        public Stat getOilLevel() {
+            return stat(2);
+        }
+
+        public Stat getBatteryHealth() {
+            return stat(3);
+        }
+
+        private Stat stat(int m) {
+            int count = delta.count[m];
+            return count > 0 ? new Stat(delta.min[m], delta.max[m], delta.sum[m] / count) : null;
+        }
+    }
+
+    public static class Stat {
+        private final double min;
+        private final double max;
+        private final double avg;
+
+        Stat(double min, double max, double avg) {
+            this.min = min;
+            this.max = max;
+            this.avg = avg;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getAvg() {
+            return avg;
+        }
+    }
+
+    public static class Stats {
+        private final boolean enabled;
+        private final long recordedLogs;
+        private final int pendingBuckets;
+        private final long flushes;
+        private final long flushedBuckets;
+        private final long insertedBuckets;
+        private final long failedFlushes;
+        private final int lastFlushBuckets;
+        private final long lastFlushMillis;
+        private final boolean backfilling;
+        private final long backfilledLogs;
+
+        Stats(boolean enabled, long recordedLogs, int pendingBuckets, long flushes, long flushedBuckets,
+                long insertedBuckets, long failedFlushes, int lastFlushBuckets, long lastFlushMillis,
+                boolean backfilling, long backfilledLogs) {
+            this.enabled = enabled;
+            this.recordedLogs = recordedLogs;
+            this.pendingBuckets = pendingBuckets;
+            this.flushes = flushes;
+            this.flushedBuckets = flushedBuckets;
+            this.insertedBuckets = insertedBuckets;
+            this.failedFlushes = failedFlushes;
+            this.lastFlushBuckets = lastFlushBuckets;
+            this.lastFlushMillis = lastFlushMillis;
+            this.backfilling = backfilling;
+            this.backfilledLogs = backfilledLogs;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /** Logs added to the rollups since startup. */
+        public long getRecordedLogs() {
+            return recordedLogs;
+        }
+
+        /** Buckets with deltas waiting for the next flush. */
+        public int getPendingBuckets() {
+            return pendingBuckets;
+        }
+
+        public long getFlushes() {
+            return flushes;
+        }
+
+        /** Bucket rows written, updated or inserted. */
+        public long getFlushedBuckets() {
+            return flushedBuckets;
+        }
+
+        /** Of those, buckets seen for the first time. */
+        public long getInsertedBuckets() {
+            return insertedBuckets;
+        }
+
+        public long getFailedFlushes() {
+            return failedFlushes;
+        }
+
+        public int getLastFlushBuckets() {
+            return lastFlushBuckets;
+        }
+
+        public long getLastFlushMillis() {
+            return lastFlushMillis;
+        }
+
+        /** True while existing logs are being rolled up after the table was found empty. */
+        public boolean isBackfilling() {
+            return backfilling;
+        }
+
+        public long getBackfilledLogs() {
+            return backfilledLogs;
+        }
+    }
+}
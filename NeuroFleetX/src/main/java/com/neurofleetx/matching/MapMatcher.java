@@ -0,0 +1,486 @@
+package com.neurofleetx.matching;
+
+import com.neurofleetx.geo.GeoMath;
+import com.neurofleetx.routing.BoundedDijkstra;
+import com.neurofleetx.routing.RoadGraph;
+import com.neurofleetx.routing.RoadSegmentIndex;
+import com.neurofleetx.routing.RoutingEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Online map matching of location pings to the road graph, for trip distance.
+ *
+ * Each track (a booking's trip) runs a hidden Markov model after Newson and Krumm.
+ * The hidden states are the road edges within mapmatch.search-radius-m of a ping
+ * (the nearest mapmatch.max-candidates, from a {@link RoadSegmentIndex}). The
+ * emission probability falls off with the ping's distance to the edge (Gaussian,
+ * mapmatch.gps-sigma-m) and the transition probability with the difference between
+ * the road distance and the straight-line distance between two pings (exponential,
+ * mapmatch.beta-m). Road distances come from one {@link BoundedDijkstra} per
+ * previous candidate, cut off at mapmatch.max-detour-factor times the straight-line
+ * distance.
+ *
+ * Viterbi runs incrementally: a ping extends the best path to each of its candidates
+ * by one step and returns at once the best snap and the road distance along its
+ * path. The last mapmatch.window steps are kept to backtrack through; a step
+ * leaving the window is final, and the distance up to it is reported as confirmed.
+ *
+ * Pings within 2 sigma of the last one used are skipped, being noise around a
+ * standing vehicle that would only add distance, and so are pings with no road
+ * nearby. A ping no road path can explain, or one after a gap of more than
+ * mapmatch.max-gap-seconds, restarts the model; the break is bridged with the
+ * straight-line distance. Without a road graph the distance is the straight-line
+ * sum of the pings that pass the same filter.
+ *
+ * Tracks idle for mapmatch.track-ttl-minutes are dropped, and no more than
+ * mapmatch.max-tracks are kept.
+ */
+@Component
+public class MapMatcher {
+
+    private final RoadGraph graph;
+    private final RoadSegmentIndex index;
+    private final boolean enabled;
+    private final double sigma;
+    private final double beta;
+    private final double searchRadius;
+    private final int maxCandidates;
+    private final int windowSize;
+    private final double maxDetourFactor;
+    private final long maxGapMillis;
+    private final long trackTtlMillis;
+    private final int maxTracks;
+
+    private final ConcurrentHashMap<Long, Track> tracks = new ConcurrentHashMap<>();
+    private final ThreadLocal<BoundedDijkstra> searches;
+
+    private final AtomicLong pings = new AtomicLong();
+    private final AtomicLong matchedPings = new AtomicLong();
+    private final AtomicLong stationaryPings = new AtomicLong();
+    private final AtomicLong offRoadPings = new AtomicLong();
+    private final AtomicLong rejectedPings = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+    private final AtomicLong matchNanos = new AtomicLong();
+    private final AtomicLong maxMatchNanos = new AtomicLong();
+
+    public MapMatcher(RoutingEngine routingEngine,
+            @Value("${mapmatch.enabled:true}") boolean enabled,
+            @Value("${mapmatch.gps-sigma-m:10}") double sigma,
+            @Value("${mapmatch.beta-m:10}") double beta,
+            @Value("${mapmatch.search-radius-m:50}") double searchRadius,
+            @Value("${mapmatch.max-candidates:8}") int maxCandidates,
+            @Value("${mapmatch.window:10}") int windowSize,
+            @Value("${mapmatch.max-detour-factor:3.0}") double maxDetourFactor,
+            @Value("${mapmatch.max-gap-seconds:120}") long maxGapSeconds,
+            @Value("${mapmatch.track-ttl-minutes:30}") long trackTtlMinutes,
+            @Value("${mapmatch.max-tracks:50000}") int maxTracks) {
+        if (maxCandidates < 1 || windowSize < 1) {
+            throw new IllegalArgumentException("mapmatch.max-candidates and mapmatch.window must be at least 1");
+        }
+        this.graph = routingEngine.getGraph();
+        this.index = graph != null ? new RoadSegmentIndex(graph) : null;
+        this.enabled = enabled;
+        this.sigma = sigma;
+        this.beta = beta;
+        this.searchRadius = searchRadius;
+        this.maxCandidates = maxCandidates;
+        this.windowSize = windowSize;
+        this.maxDetourFactor = maxDetourFactor;
+        this.maxGapMillis = TimeUnit.SECONDS.toMillis(maxGapSeconds);
+        this.trackTtlMillis = TimeUnit.MINUTES.toMillis(trackTtlMinutes);
+        this.maxTracks = maxTracks;
+        this.searches = ThreadLocal.withInitial(() -> new BoundedDijkstra(graph));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds a ping to a track and returns where it puts the vehicle now. A track not
+     * open yet (first ping, or lost to a restart or the TTL) starts at baseMeters, the
+     * distance already recorded for the trip. Null if matching is disabled or the
+     * track is new and mapmatch.max-tracks are open.
+     */
+    public Match match(long trackId, long timestampMillis, double lat, double lng, double baseMeters) {
+        if (!enabled) {
+            return null;
+        }
+        Track track = tracks.get(trackId);
+        if (track == null) {
+            if (tracks.size() >= maxTracks) {
+                rejectedPings.incrementAndGet();
+                return null;
+            }
+            track = tracks.computeIfAbsent(trackId, id -> new Track(baseMeters));
+        }
+        long started = System.nanoTime();
+        Match match;
+        synchronized (track) {
+            track.lastSeen = System.currentTimeMillis();
+            match = track.add(timestampMillis, lat, lng);
+        }
+        long nanos = System.nanoTime() - started;
+        pings.incrementAndGet();
+        matchNanos.addAndGet(nanos);
+        maxMatchNanos.accumulateAndGet(nanos, Math::max);
+        return match;
+    }
+
+    /** Ends a track and returns its final distance in meters, or -1 if it has no pings. */
+    public double finish(long trackId) {
+        Track track = tracks.remove(trackId);
+        if (track == null) {
+            return -1;
+        }
+        synchronized (track) {
+            return track.current().distanceMeters;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mapmatch.expire-interval-ms:60000}")
+    public void expire() {
+        long cutoff = System.currentTimeMillis() - trackTtlMillis;
+        tracks.values().removeIf(track -> track.lastSeen < cutoff);
+    }
+
+    public Stats stats() {
+        long count = pings.get();
+        return new Stats(enabled, index != null, tracks.size(), count, matchedPings.get(), stationaryPings.get(),
+                offRoadPings.get(), rejectedPings.get(), restarts.get(),
+                count > 0 ? matchNanos.get() / 1000.0 / count : 0, maxMatchNanos.get() / 1000.0);
+    }
+
+    /** Candidates of one ping: edge, position along it and on the map, and the Viterbi state. */
+    private static final class Step {
+        final int count;
+        final int[] edge;
+        final double[] offset;
+        final double[] gpsDistance;
+        final double[] lat;
+        final double[] lng;
+        final double[] score;
+        final int[] back;
+        final double[] distance; // road meters from the start of the track along the best path
+
+        Step(int maxCandidates) {
+            this.count = 0;
+            this.edge = new int[maxCandidates];
+            this.offset = new double[maxCandidates];
+            this.gpsDistance = new double[maxCandidates];
+            this.lat = null;
+            this.lng = null;
+            this.score = null;
+            this.back = null;
+            this.distance = null;
+        }
+
+        Step(Step found, int count) {
+            this.count = count;
+            this.edge = Arrays.copyOf(found.edge, count);
+            this.offset = Arrays.copyOf(found.offset, count);
+            this.gpsDistance = Arrays.copyOf(found.gpsDistance, count);
+            this.lat = new double[count];
+            this.lng = new double[count];
+            this.score = new double[count];
+            this.back = new int[count];
+            this.distance = new double[count];
+        }
+
+        int best() {
+            int best = 0;
+            for (int j = 1; j < count; j++) {
+                if (score[j] > score[best]) {
+                    best = j;
+                }
+            }
+            return best;
+        }
+    }
+
+    private final class Track {
+        final ArrayDeque<Step> window = new ArrayDeque<>();
+        final Step lookup = new Step(maxCandidates);
+        boolean hasPing;
+        double lastLat;
+        double lastLng;
+        long lastTime;
+        double baseMeters; // distance before the current model run
+        double confirmedMeters;
+        volatile long lastSeen;
+
+        Track(double baseMeters) {
+            this.baseMeters = baseMeters;
+            this.confirmedMeters = baseMeters;
+        }
+
+        Match add(long timestamp, double lat, double lng) {
+            boolean gap = hasPing && timestamp - lastTime > maxGapMillis;
+            double moved = hasPing ? GeoMath.haversineMeters(lastLat, lastLng, lat, lng) : 0;
+            if (hasPing && !gap && moved < 2 * sigma) {
+                stationaryPings.incrementAndGet();
+                return current();
+            }
+            if (index == null) {
+                baseMeters += moved;
+                remember(timestamp, lat, lng);
+                return new Match(lat, lng, -1, baseMeters, baseMeters, false);
+            }
+            int found = index.nearest(lat, lng, searchRadius, lookup.edge, lookup.gpsDistance, lookup.offset);
+            if (found == 0) {
+                offRoadPings.incrementAndGet();
+                return current();
+            }
+            Step step = new Step(lookup, found);
+            for (int j = 0; j < found; j++) {
+                int e = step.edge[j];
+                int u = index.tail(e);
+                int v = graph.head(e);
+                double t = graph.length(e) > 0 ? step.offset[j] / graph.length(e) : 0;
+                step.lat[j] = graph.lat(u) + t * (graph.lat(v) - graph.lat(u));
+                step.lng[j] = graph.lng(u) + t * (graph.lng(v) - graph.lng(u));
+            }
+            Step previous = window.peekLast();
+            if (previous == null || gap || !link(previous, step, moved)) {
+                if (previous != null) {
+                    restarts.incrementAndGet();
+                    int best = previous.best();
+                    baseMeters = previous.distance[best]
+                            + GeoMath.haversineMeters(previous.lat[best], previous.lng[best], lat, lng);
+                    confirmedMeters = previous.distance[best];
+                }
+                window.clear();
+                for (int j = 0; j < found; j++) {
+                    step.score[j] = emission(step.gpsDistance[j]);
+                    step.back[j] = -1;
+                    step.distance[j] = baseMeters;
+                }
+            }
+            double max = step.score[step.best()];
+            for (int j = 0; j < found; j++) {
+                step.score[j] -= max;
+            }
+            window.addLast(step);
+            if (window.size() > windowSize) {
+                confirmOldest();
+            }
+            remember(timestamp, lat, lng);
+            matchedPings.incrementAndGet();
+            return current();
+        }
+
+        /**
+         * One Viterbi step from previous to step. Returns false, leaving step unscored,
+         * if no candidate of step can be reached from any of previous.
+         */
+        private boolean link(Step previous, Step step, double straight) {
+            BoundedDijkstra search = searches.get();
+            double bound = maxDetourFactor * (straight + 2 * searchRadius);
+            int[] tails = new int[step.count];
+            for (int j = 0; j < step.count; j++) {
+                tails[j] = index.tail(step.edge[j]);
+                step.score[j] = Double.NEGATIVE_INFINITY;
+            }
+            double[] between = new double[step.count];
+            boolean linked = false;
+            for (int i = 0; i < previous.count; i++) {
+                int from = previous.edge[i];
+                double rest = graph.length(from) - previous.offset[i];
+                search.run(graph.head(from), bound - rest, tails, step.count, between);
+                for (int j = 0; j < step.count; j++) {
+                    double route;
+                    // Staying on the edge; a small step back is GPS noise, not a U-turn
+                    if (step.edge[j] == from && step.offset[j] >= previous.offset[i] - sigma) {
+                        route = Math.max(0, step.offset[j] - previous.offset[i]);
+                    } else if (between[j] != Double.POSITIVE_INFINITY) {
+                        route = rest + between[j] + step.offset[j];
+                    } else {
+                        continue;
+                    }
+                    if (route > bound) {
+                        continue;
+                    }
+                    double score = previous.score[i] - Math.abs(route - straight) / beta
+                            + emission(step.gpsDistance[j]);
+                    if (score > step.score[j]) {
+                        step.score[j] = score;
+                        step.back[j] = i;
+                        step.distance[j] = previous.distance[i] + route;
+                        linked = true;
+                    }
+                }
+            }
+            return linked;
+        }
+
+        /** Backtracks from the best current candidate to the oldest step, which becomes final. */
+        private void confirmOldest() {
+            Iterator<Step> steps = window.descendingIterator();
+            Step step = steps.next();
+            int candidate = step.best();
+            while (steps.hasNext()) {
+                Step earlier = steps.next();
+                candidate = step.back[candidate];
+                step = earlier;
+            }
+            confirmedMeters = Math.max(confirmedMeters, step.distance[candidate]);
+            window.removeFirst();
+        }
+
+        private void remember(long timestamp, double lat, double lng) {
+            hasPing = true;
+            lastLat = lat;
+            lastLng = lng;
+            lastTime = timestamp;
+        }
+
+        Match current() {
+            Step last = window.peekLast();
+            if (last == null) {
+                return new Match(lastLat, lastLng, -1, baseMeters, confirmedMeters, false);
+            }
+            int best = last.best();
+            return new Match(last.lat[best], last.lng[best], last.edge[best], last.distance[best], confirmedMeters,
+                    true);
+        }
+    }
+
+    private double emission(double gpsDistance) {
+        double z = gpsDistance / sigma;
+        return -0.5 * z * z;
+    }
+
+    public static class Match {
+        private final double lat;
+        private final double lng;
+        private final int edge;
+        private final double distanceMeters;
+        private final double confirmedMeters;
+        private final boolean onRoad;
+
+        Match(double lat, double lng, int edge, double distanceMeters, double confirmedMeters, boolean onRoad) {
+            this.lat = lat;
+            this.lng = lng;
+            this.edge = edge;
+            this.distanceMeters = distanceMeters;
+            this.confirmedMeters = confirmedMeters;
+            this.onRoad = onRoad;
+        }
+
+        /** Position snapped to the road, or the last ping used if not on a road. */
+        public double getLat() {
+            return lat;
+        }
+
+        public double getLng() {
+            return lng;
+        }
+
+        /** Graph edge the vehicle is on; -1 if not matched to a road. */
+        public int getEdge() {
+            return edge;
+        }
+
+        /** Distance driven since the first ping, along the current best path. */
+        public double getDistanceMeters() {
+            return distanceMeters;
+        }
+
+        /** The part of the distance that later pings can no longer change. */
+        public double getConfirmedMeters() {
+            return confirmedMeters;
+        }
+
+        public boolean isOnRoad() {
+            return onRoad;
+        }
+    }
+
+    public static class Stats {
+        private final boolean enabled;
+        private final boolean graphLoaded;
+        private final int tracks;
+        private final long pings;
+        private final long matchedPings;
+        private final long stationaryPings;
+        private final long offRoadPings;
+        private final long rejectedPings;
+        private final long restarts;
+        private final double meanMatchMicros;
+        private final double maxMatchMicros;
+
+        Stats(boolean enabled, boolean graphLoaded, int tracks, long pings, long matchedPings, long stationaryPings,
+                long offRoadPings, long rejectedPings, long restarts, double meanMatchMicros, double maxMatchMicros) {
+            this.enabled = enabled;
+            this.graphLoaded = graphLoaded;
+            this.tracks = tracks;
+            this.pings = pings;
+            this.matchedPings = matchedPings;
+            this.stationaryPings = stationaryPings;
+            this.offRoadPings = offRoadPings;
+            this.rejectedPings = rejectedPings;
+            this.restarts = restarts;
+            this.meanMatchMicros = meanMatchMicros;
+            this.maxMatchMicros = maxMatchMicros;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /** False when no road graph is loaded and distances are straight-line. */
+        public boolean isGraphLoaded() {
+            return graphLoaded;
+        }
+
+        public int getTracks() {
+            return tracks;
+        }
+
+        public long getPings() {
+            return pings;
+        }
+
+        /** Pings added to a track's model. */
+        public long getMatchedPings() {
+            return matchedPings;
+        }
+
+        /** Pings skipped as too close to the previous one. */
+        public long getStationaryPings() {
+            return stationaryPings;
+        }
+
+        /** Pings skipped for having no road within the search radius. */
+        public long getOffRoadPings() {
+            return offRoadPings;
+        }
+
+        /** Pings of new tracks refused because mapmatch.max-tracks were open. */
+        public long getRejectedPings() {
+            return rejectedPings;
+        }
+
+        /** Times a track's model was restarted after a gap or an unexplainable ping. */
+        public long getRestarts() {
+            return restarts;
+        }
+
+        public double getMeanMatchMicros() {
+            return meanMatchMicros;
+        }
+
+        public double getMaxMatchMicros() {
+            return maxMatchMicros;
+        }
+    }
+}
@@ -8,7 +8,10 @@ import java.time.LocalDateTime;
 public class Booking {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "bookings")
+    @TableGenerator(name = "bookings", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "bookings",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     private Long customerId;
@@ -27,6 +30,9 @@ public class Booking {
     private Double driverLat;
     private Double driverLng;
 
+    // Road distance driven so far on the trip, from the map-matched location pings
+    private Double matchedDistanceMeters;
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -113,6 +119,14 @@ public class Booking {
         this.distance = distance;
     }
 
+    public Double getMatchedDistanceMeters() {
+        return matchedDistanceMeters;
+    }
+
+    public void setMatchedDistanceMeters(Double matchedDistanceMeters) {
+        this.matchedDistanceMeters = matchedDistanceMeters;
+    }
+
     public BookingStatus getStatus() {
         return status;
     }
@@ -0,0 +1,33 @@
+package com.neurofleetx.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "geofences")
+@Data
+@NoArgsConstructor
+public class Geofence {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "geofences")
+    @TableGenerator(name = "geofences", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "geofences",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
+    private Long id;
+
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    private GeofenceType type;
+
+    // Vertices as "lat,lng;lat,lng;..." in order around the boundary; the closing vertex may be left out
+    @Lob
+    @Column(nullable = false)
+    private String polygon;
+
+    public enum GeofenceType {
+        DEPOT, RESTRICTED_ZONE, SERVICE_AREA
+    }
+}
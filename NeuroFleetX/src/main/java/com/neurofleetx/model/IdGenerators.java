@@ -0,0 +1,23 @@
+package com.neurofleetx.model;
+
+import java.util.List;
+
+/**
+ * Entity ids come from one generator table, a row per entity table, handed out in
+ * blocks of ALLOCATION_SIZE. Unlike IDENTITY columns, which make Hibernate insert
+ * each row on its own to learn its id, this lets inserts go out in JDBC batches.
+ */
+public final class IdGenerators {
+
+    public static final String TABLE = "id_generators";
+    public static final String NAME_COLUMN = "sequence_name";
+    public static final String VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 50;
+
+    /** Tables whose ids come from a generator row of the same name. */
+    public static final List<String> ENTITY_TABLES = List.of("users", "vehicles", "vehicle_health_logs", "bookings",
+            "verification_request", "geofences");
+
+    private IdGenerators() {
+    }
+}
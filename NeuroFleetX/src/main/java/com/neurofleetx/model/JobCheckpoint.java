@@ -0,0 +1,40 @@
+package com.neurofleetx.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * How far a chunked fleet job got. One row per job marks its current run and
+ * whether it finished; one row per shard, written in the same transaction as each
+ * chunk, records the last vehicle committed in that run. A run that dies part way
+ * is resumed: finished shards are skipped and the others pick up after
+ * lastVehicleId.
+ */
+@Entity
+@Table(name = "job_checkpoints")
+@Data
+@NoArgsConstructor
+public class JobCheckpoint {
+
+    // "<job>/<shards>" for the job, "<job>:<shard>/<shards>" for a shard; a different shard count starts over
+    @Id
+    private String id;
+
+    // Run the row belongs to; shard rows of an earlier run are stale
+    private Long runId;
+
+    // Shard rows only
+    private Long lastVehicleId;
+
+    // False while the run (or the shard's part of it) is in progress or was cut short
+    private boolean complete;
+
+    private Instant updatedAt;
+
+    public JobCheckpoint(String id) {
+        this.id = id;
+    }
+}
@@ -14,7 +14,10 @@ import java.util.Set;
 public class User {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "users")
+    @TableGenerator(name = "users", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "users",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
     
     @Column(unique = true, nullable = false)
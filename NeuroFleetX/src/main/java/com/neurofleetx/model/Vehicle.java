@@ -8,13 +8,19 @@ import java.time.Instant;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "vehicles")
+@Table(name = "vehicles", indexes = {
+        // Keyset listing filtered by status or type (VehicleListingService)
+        @Index(name = "idx_vehicles_status_id", columnList = "status, id"),
+        @Index(name = "idx_vehicles_type_id", columnList = "type, id") })
 @Data
 @NoArgsConstructor
 public class Vehicle {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "vehicles")
+    @TableGenerator(name = "vehicles", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "vehicles",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     private String name;
@@ -1,19 +1,27 @@
 package com.neurofleetx.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.time.Instant;
 
 @Entity
-@Table(name = "vehicle_health_logs")
+@Table(name = "vehicle_health_logs", indexes = {
+        // Retention deletes (health.rollups.log-retention-days)
+        @Index(name = "idx_health_logs_timestamp", columnList = "timestamp") })
 @Data
 @NoArgsConstructor
 public class VehicleHealthLog {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "vehicle_health_logs")
+    @TableGenerator(name = "vehicle_health_logs", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "vehicle_health_logs",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
+    // Not serialized: the history is always asked for by vehicle, and the lazy proxy cannot be
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "vehicle_id")
     private Vehicle vehicle;
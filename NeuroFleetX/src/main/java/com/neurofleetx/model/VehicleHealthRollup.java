@@ -0,0 +1,100 @@
+package com.neurofleetx.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Health readings of one vehicle summarized over one time bucket, kept at several
+ * resolutions so long ranges can be charted without reading every log row. Rows
+ * are written by HealthRollupStore with plain SQL; the entity defines the table.
+ */
+@Entity
+@Table(name = "vehicle_health_rollups", indexes = {
+        // Range reads of one vehicle at one resolution
+        @Index(name = "idx_health_rollups_vehicle", columnList = "vehicle_id, resolution, bucket_start",
+                unique = true) })
+@IdClass(VehicleHealthRollup.Key.class)
+@Data
+@NoArgsConstructor
+public class VehicleHealthRollup {
+
+    @Id
+    private Long vehicleId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 8)
+    private Resolution resolution;
+
+    // Epoch millis (UTC) at the start of the bucket
+    @Id
+    private Long bucketStart;
+
+    private int samples;
+
+    // Per reading: min, max, sum and count of the logs that had it, for the average
+    private Double engineHealthMin;
+    private Double engineHealthMax;
+    private double engineHealthSum;
+    private int engineHealthCount;
+
+    private Double tirePressureMin;
+    private Double tirePressureMax;
+    private double tirePressureSum;
+    private int tirePressureCount;
+
+    private Double oilLevelMin;
+    private Double oilLevelMax;
+    private double oilLevelSum;
+    private int oilLevelCount;
+
+    private Double batteryHealthMin;
+    private Double batteryHealthMax;
+    private double batteryHealthSum;
+    private int batteryHealthCount;
+
+    public enum Resolution {
+        MINUTE(60_000L), HOUR(3_600_000L), DAY(86_400_000L);
+
+        private final long millis;
+
+        Resolution(long millis) {
+            this.millis = millis;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public long bucketOf(long epochMillis) {
+            return Math.floorDiv(epochMillis, millis) * millis;
+        }
+    }
+
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long vehicleId;
+        private Resolution resolution;
+        private Long bucketStart;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Objects.equals(vehicleId, other.vehicleId) && resolution == other.resolution
+                    && Objects.equals(bucketStart, other.bucketStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(vehicleId, resolution, bucketStart);
+        }
+    }
+}
@@ -8,7 +8,10 @@ import java.time.LocalDateTime;
 public class VerificationRequest {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "verification_request")
+    @TableGenerator(name = "verification_request", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "verification_request",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     private String type; // POD or DOC
@@ -0,0 +1,9 @@
+package com.neurofleetx.repository;
+
+import com.neurofleetx.model.Geofence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GeofenceRepository extends JpaRepository<Geofence, Long> {
+}
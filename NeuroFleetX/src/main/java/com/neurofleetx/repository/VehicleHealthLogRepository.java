@@ -1,9 +1,15 @@
 package com.neurofleetx.repository;
 
 import com.neurofleetx.model.VehicleHealthLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -12,4 +18,12 @@ public interface VehicleHealthLogRepository extends JpaRepository<VehicleHealthL
 
     // Limit results for efficiency usually, but for now standard fetch
     List<VehicleHealthLog> findTop20ByVehicleIdOrderByTimestampDesc(Long vehicleId);
+
+    // Keyset pages over the whole table, e.g. to build the rollups from existing logs
+    List<VehicleHealthLog> findByIdGreaterThanOrderByIdAsc(Long id, Pageable page);
+
+    @Transactional
+    @Modifying
+    @Query("delete from VehicleHealthLog l where l.timestamp < :before")
+    int deleteByTimestampBefore(@Param("before") Instant before);
 }
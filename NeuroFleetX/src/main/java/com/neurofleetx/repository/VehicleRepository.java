@@ -1,12 +1,33 @@
 package com.neurofleetx.repository;
 
 import com.neurofleetx.model.Vehicle;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
 public interface VehicleRepository extends JpaRepository<Vehicle, Long> {
+    // Drivers in the same query instead of one select per driver
+    @Override
+    @EntityGraph(attributePaths = "driver")
+    List<Vehicle> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "driver")
+    List<Vehicle> findAllById(Iterable<Long> ids);
+
     List<Vehicle> findByStatus(Vehicle.VehicleStatus status);
+
+    // The rest of a vehicle's health is owned by FleetStateStore and written through it
+    @Transactional
+    @Modifying
+    @Query("update Vehicle v set v.nextServiceDate = :date where v.id = :id")
+    int updateNextServiceDate(@Param("id") Long id, @Param("date") LocalDate date);
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.neurofleetx.routing;
+
+import com.neurofleetx.geo.GeoMath;
+
+import java.util.Arrays;
+
+/**
+ * Bidirectional A* over a {@link RoadGraph} using the symmetric (average) potential
+ * p(v) = (h_t(v) - h_s(v)) / 2, which keeps both searches consistent so the
+ * search can stop as soon as the two frontiers' keys add up to the best meeting cost.
+ *
+ * Search buffers are allocated once per thread and invalidated by stamping, so
+ * a query does not allocate beyond the returned edge list.
+ */
+final class BidirectionalAStar {
+
+    private final RoadGraph graph;
+    private final ThreadLocal<SearchState> states;
+
+    BidirectionalAStar(RoadGraph graph) {
+        this.graph = graph;
+        this.states = ThreadLocal.withInitial(() -> new SearchState(graph.nodeCount()));
+    }
+
+    /**
+     * Forward edge ids of the cheapest path from source to target, or null if target
+     * is unreachable. Edge speeds are read from the given array (km/h, indexed by edge).
+     */
+    int[] shortestPath(int source, int target, RouteMetric metric, float[] speeds) {
+        if (source == target) {
+            return new int[0];
+        }
+        SearchState s = states.get();
+        s.reset();
+        float maxSpeed = graph.maxSpeed();
+        double sLat = graph.lat(source), sLng = graph.lng(source);
+        double tLat = graph.lat(target), tLng = graph.lng(target);
+
+        s.touchForward(source, 0, -1, -1);
+        s.touchBackward(target, 0, -1, -1);
+        s.heapF.push(source, s.potential(source, metric, maxSpeed, sLat, sLng, tLat, tLng));
+        s.heapB.push(target, -s.potential(target, metric, maxSpeed, sLat, sLng, tLat, tLng));
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+
+        while (!s.heapF.isEmpty() && !s.heapB.isEmpty()) {
+            double topF = s.heapF.peekKey();
+            double topB = s.heapB.peekKey();
+            if (topF + topB >= best) {
+                break;
+            }
+            if (topF <= topB) {
+                int u = s.heapF.peekNode();
+                s.heapF.pop();
+                if (topF > s.distF[u] + s.pot[u]) {
+                    continue; // stale entry
+                }
+                double du = s.distF[u];
+                for (int e = graph.firstOut(u), end = graph.endOut(u); e < end; e++) {
+                    int v = graph.head(e);
+                    double nd = du + metric.cost(graph.length(e), speeds[e]);
+                    if (s.seenF[v] != s.stamp || nd < s.distF[v]) {
+                        s.touchForward(v, nd, e, u);
+                        s.heapF.push(v, nd + s.potential(v, metric, maxSpeed, sLat, sLng, tLat, tLng));
+                        if (s.seenB[v] == s.stamp && nd + s.distB[v] < best) {
+                            best = nd + s.distB[v];
+                            meet = v;
+                        }
+                    }
+                }
+            } else {
+                int u = s.heapB.peekNode();
+                s.heapB.pop();
+                if (topB > s.distB[u] - s.pot[u]) {
+                    continue;
+                }
+                double du = s.distB[u];
+                for (int i = graph.firstIn(u), end = graph.endIn(u); i < end; i++) {
+                    int v = graph.tail(i);
+                    int e = graph.inEdge(i);
+                    double nd = du + metric.cost(graph.length(e), speeds[e]);
+                    if (s.seenB[v] != s.stamp || nd < s.distB[v]) {
+                        s.touchBackward(v, nd, e, u);
+                        s.heapB.push(v, nd - s.potential(v, metric, maxSpeed, sLat, sLng, tLat, tLng));
+                        if (s.seenF[v] == s.stamp && nd + s.distF[v] < best) {
+                            best = nd + s.distF[v];
+                            meet = v;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (meet < 0) {
+            return null;
+        }
+        return s.unpack(meet);
+    }
+
+    private final class SearchState {
+        final int[] seenF;
+        final int[] seenB;
+        final int[] potStamp;
+        final double[] distF;
+        final double[] distB;
+        final double[] pot;
+        final int[] predEdgeF;
+        final int[] predNodeF;
+        final int[] predEdgeB;
+        final int[] predNodeB;
+        final NodeHeap heapF = new NodeHeap();
+        final NodeHeap heapB = new NodeHeap();
+        int stamp;
+
+        SearchState(int n) {
+            seenF = new int[n];
+            seenB = new int[n];
+            potStamp = new int[n];
+            distF = new double[n];
+            distB = new double[n];
+            pot = new double[n];
+            predEdgeF = new int[n];
+            predNodeF = new int[n];
+            predEdgeB = new int[n];
+            predNodeB = new int[n];
+        }
+
+        void reset() {
+            heapF.clear();
+            heapB.clear();
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(seenF, 0);
+                Arrays.fill(seenB, 0);
+                Arrays.fill(potStamp, 0);
+                stamp = 1;
+            }
+        }
+
+        void touchForward(int v, double d, int edge, int from) {
+            seenF[v] = stamp;
+            distF[v] = d;
+            predEdgeF[v] = edge;
+            predNodeF[v] = from;
+        }
+
+        void touchBackward(int v, double d, int edge, int to) {
+            seenB[v] = stamp;
+            distB[v] = d;
+            predEdgeB[v] = edge;
+            predNodeB[v] = to;
+        }
+
+        double potential(int v, RouteMetric metric, float maxSpeed, double sLat, double sLng, double tLat,
+                double tLng) {
+            if (potStamp[v] != stamp) {
+                double lat = graph.lat(v), lng = graph.lng(v);
+                // Slightly under-estimate so rounding in stored edge lengths cannot break admissibility
+                double toTarget = metric.lowerBound(GeoMath.haversineMeters(lat, lng, tLat, tLng) * 0.999, maxSpeed);
+                double fromSource = metric.lowerBound(GeoMath.haversineMeters(sLat, sLng, lat, lng) * 0.999, maxSpeed);
+                pot[v] = (toTarget - fromSource) / 2;
+                potStamp[v] = stamp;
+            }
+            return pot[v];
+        }
+
+        int[] unpack(int meet) {
+            int forwardHops = 0;
+            for (int v = meet; predEdgeF[v] >= 0; v = predNodeF[v]) {
+                forwardHops++;
+            }
+            int backwardHops = 0;
+            for (int v = meet; predEdgeB[v] >= 0; v = predNodeB[v]) {
+                backwardHops++;
+            }
+            int[] edges = new int[forwardHops + backwardHops];
+            int i = forwardHops;
+            for (int v = meet; predEdgeF[v] >= 0; v = predNodeF[v]) {
+                edges[--i] = predEdgeF[v];
+            }
+            i = forwardHops;
+            for (int v = meet; predEdgeB[v] >= 0; v = predNodeB[v]) {
+                edges[i++] = predEdgeB[v];
+            }
+            return edges;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.neurofleetx.routing;
+
+import java.util.Arrays;
+
+/**
+ * Shortest road distances from one node to a few nearby ones, giving up past a
+ * bound. Meant for short hops such as between consecutive GPS fixes, where the
+ * search settles a few hundred nodes at most; distances are kept in a small hash
+ * table sized by the search rather than by the graph. Not thread-safe; reuse one
+ * instance per thread or per caller.
+ */
+public final class BoundedDijkstra {
+
+    private final RoadGraph graph;
+    private final NodeHeap heap = new NodeHeap();
+    // Open addressing: node + 1 (0 = empty) -> tentative distance
+    private int[] keys = new int[256];
+    private double[] values = new double[256];
+    private int size;
+
+    public BoundedDijkstra(RoadGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Fills distances[i] with the length in meters of the shortest path from source to
+     * targets[i] (i < count), or infinity if it is longer than bound. Stops as soon as
+     * every target is settled.
+     */
+    public void run(int source, double bound, int[] targets, int count, double[] distances) {
+        Arrays.fill(keys, 0);
+        size = 0;
+        heap.clear();
+        Arrays.fill(distances, 0, count, Double.POSITIVE_INFINITY);
+        int remaining = count;
+        put(source, 0);
+        heap.push(source, 0);
+        while (!heap.isEmpty() && remaining > 0) {
+            int u = heap.peekNode();
+            double d = heap.peekKey();
+            heap.pop();
+            if (d > bound) {
+                break;
+            }
+            if (d > get(u)) {
+                continue; // stale entry
+            }
+            for (int i = 0; i < count; i++) {
+                if (targets[i] == u && distances[i] == Double.POSITIVE_INFINITY) {
+                    distances[i] = d;
+                    remaining--;
+                }
+            }
+            for (int e = graph.firstOut(u); e < graph.endOut(u); e++) {
+                int v = graph.head(e);
+                double next = d + graph.length(e);
+                if (next <= bound && next < get(v)) {
+                    put(v, next);
+                    heap.push(v, next);
+                }
+            }
+        }
+    }
+
+    private double get(int node) {
+        int mask = keys.length - 1;
+        for (int i = mix(node) & mask;; i = (i + 1) & mask) {
+            if (keys[i] == 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            if (keys[i] == node + 1) {
+                return values[i];
+            }
+        }
+    }
+
+    private void put(int node, double value) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        for (int i = mix(node) & mask;; i = (i + 1) & mask) {
+            if (keys[i] == 0) {
+                keys[i] = node + 1;
+                values[i] = value;
+                size++;
+                return;
+            }
+            if (keys[i] == node + 1) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new double[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i] - 1, oldValues[i]);
+            }
+        }
+    }
+
+    private static int mix(int node) {
+        return node * 0x9E3779B9 >>> 7;
+    }
+}
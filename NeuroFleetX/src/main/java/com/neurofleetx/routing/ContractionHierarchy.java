@@ -0,0 +1,637 @@
+package com.neurofleetx.routing;
+
+import java.util.Arrays;
+
+/**
+ * Contraction hierarchy over a {@link RoadGraph} for one fixed metric.
+ *
+ * Nodes are contracted in order of importance (edge difference plus contracted
+ * neighbours); shortcuts are added whenever a bounded witness search cannot
+ * prove a cheaper detour. Queries then only relax edges leading to more important
+ * nodes, which keeps the search space to a few hundred nodes on city graphs.
+ *
+ * Every edge of the hierarchy has a global id. Original edges remember the road
+ * graph edge they came from, shortcuts remember the two edges they bridge, so a
+ * path can be unpacked back into road graph edges.
+ */
+final class ContractionHierarchy {
+
+    // Witness searches are cut short after this many settled nodes; a cheaper limit is
+    // enough to estimate priorities, the real contraction searches further to avoid
+    // superfluous shortcuts.
+    private static final int SIMULATION_SETTLE_LIMIT = 50;
+    private static final int CONTRACTION_SETTLE_LIMIT = 500;
+
+    private final RoadGraph graph;
+    private final int[] rank;
+
+    // Global edge table
+    private final double[] edgeWeight;
+    private final int[] edgeChildA; // -1 for original edges
+    private final int[] edgeChildB;
+    private final int[] edgeOrigin; // road graph edge id, -1 for shortcuts
+    private final int[] edgeTail;
+    private final int[] edgeHead;
+    private final double[] edgeMeters; // road length and free-flow travel time, whatever the metric
+    private final double[] edgeSeconds;
+
+    // Upward edges leaving each node: u -> x with rank[x] > rank[u]
+    private final int[] upFirst;
+    private final int[] upHead;
+    private final int[] upEdge;
+
+    // Upward edges entering each node, stored at the lower end: x <- w with rank[w] > rank[x]
+    private final int[] downFirst;
+    private final int[] downTail;
+    private final int[] downEdge;
+
+    private final ThreadLocal<QueryState> states;
+
+    private ContractionHierarchy(RoadGraph graph, int[] rank, double[] edgeWeight, int[] edgeChildA,
+            int[] edgeChildB, int[] edgeOrigin, int[] edgeTail, int[] edgeHead, double[] edgeMeters,
+            double[] edgeSeconds, int[] upFirst, int[] upHead, int[] upEdge, int[] downFirst, int[] downTail,
+            int[] downEdge) {
+        this.graph = graph;
+        this.rank = rank;
+        this.edgeWeight = edgeWeight;
+        this.edgeChildA = edgeChildA;
+        this.edgeChildB = edgeChildB;
+        this.edgeOrigin = edgeOrigin;
+        this.edgeTail = edgeTail;
+        this.edgeHead = edgeHead;
+        this.edgeMeters = edgeMeters;
+        this.edgeSeconds = edgeSeconds;
+        this.upFirst = upFirst;
+        this.upHead = upHead;
+        this.upEdge = upEdge;
+        this.downFirst = downFirst;
+        this.downTail = downTail;
+        this.downEdge = downEdge;
+        this.states = ThreadLocal.withInitial(() -> new QueryState(graph.nodeCount()));
+    }
+
+    int nodeCount() {
+        return rank.length;
+    }
+
+    int shortcutCount() {
+        int count = 0;
+        for (int origin : edgeOrigin) {
+            if (origin < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Road graph edge ids of the cheapest path, or null if unreachable. */
+    int[] shortestPath(int source, int target) {
+        if (source == target) {
+            return new int[0];
+        }
+        QueryState s = states.get();
+        s.reset();
+        s.touchF(source, 0, -1);
+        s.touchB(target, 0, -1);
+        s.heapF.push(source, 0);
+        s.heapB.push(target, 0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        boolean forwardDone = false;
+        boolean backwardDone = false;
+
+        while (!(forwardDone && backwardDone)) {
+            forwardDone = forwardDone || s.heapF.isEmpty() || s.heapF.peekKey() >= best;
+            backwardDone = backwardDone || s.heapB.isEmpty() || s.heapB.peekKey() >= best;
+            boolean forward;
+            if (!forwardDone && !backwardDone) {
+                forward = s.heapF.peekKey() <= s.heapB.peekKey();
+            } else if (!forwardDone) {
+                forward = true;
+            } else if (!backwardDone) {
+                forward = false;
+            } else {
+                break;
+            }
+
+            if (forward) {
+                int u = s.heapF.peekNode();
+                double du = s.heapF.peekKey();
+                s.heapF.pop();
+                if (du > s.distF[u] || isStalledForward(u, du, s.distF, s.seenF, s.stamp)) {
+                    continue;
+                }
+                if (s.seenB[u] == s.stamp && du + s.distB[u] < best) {
+                    best = du + s.distB[u];
+                    meet = u;
+                }
+                for (int i = upFirst[u], end = upFirst[u + 1]; i < end; i++) {
+                    int v = upHead[i];
+                    double nd = du + edgeWeight[upEdge[i]];
+                    if (s.seenF[v] != s.stamp || nd < s.distF[v]) {
+                        s.touchF(v, nd, upEdge[i]);
+                        s.heapF.push(v, nd);
+                    }
+                }
+            } else {
+                int u = s.heapB.peekNode();
+                double du = s.heapB.peekKey();
+                s.heapB.pop();
+                if (du > s.distB[u] || isStalledBackward(u, du, s.distB, s.seenB, s.stamp)) {
+                    continue;
+                }
+                if (s.seenF[u] == s.stamp && du + s.distF[u] < best) {
+                    best = du + s.distF[u];
+                    meet = u;
+                }
+                for (int i = downFirst[u], end = downFirst[u + 1]; i < end; i++) {
+                    int v = downTail[i];
+                    double nd = du + edgeWeight[downEdge[i]];
+                    if (s.seenB[v] != s.stamp || nd < s.distB[v]) {
+                        s.touchB(v, nd, downEdge[i]);
+                        s.heapB.push(v, nd);
+                    }
+                }
+            }
+        }
+
+        if (meet < 0) {
+            return null;
+        }
+        return unpackPath(s, source, target, meet);
+    }
+
+    private int[] unpackPath(QueryState s, int source, int target, int meet) {
+        s.path.clear();
+        // Forward half: collect hierarchy edges from meet back to source, then unpack in order
+        int[] chain = s.chain;
+        int count = 0;
+        for (int v = meet; v != source; v = edgeTail[s.predF[v]]) {
+            chain[count++] = s.predF[v];
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            unpackEdge(chain[i], s.path);
+        }
+        for (int v = meet; v != target; v = edgeHead[s.predB[v]]) {
+            unpackEdge(s.predB[v], s.path);
+        }
+        return s.path.toArray();
+    }
+
+    private void unpackEdge(int edge, IntList out) {
+        if (edgeOrigin[edge] >= 0) {
+            out.add(edgeOrigin[edge]);
+            return;
+        }
+        unpackEdge(edgeChildA[edge], out);
+        unpackEdge(edgeChildB[edge], out);
+    }
+
+    double weight(int edge) {
+        return edgeWeight[edge];
+    }
+
+    double meters(int edge) {
+        return edgeMeters[edge];
+    }
+
+    double seconds(int edge) {
+        return edgeSeconds[edge];
+    }
+
+    /**
+     * Stall-on-demand: if a more important node reaches the node more cheaply
+     * through an edge pointing down into it, the node cannot be on a shortest
+     * up-down path. distOf/seen/stamp describe the caller's forward search.
+     */
+    boolean isStalledForward(int node, double dist, double[] distOf, int[] seen, int stamp) {
+        for (int i = downFirst[node], end = downFirst[node + 1]; i < end; i++) {
+            int w = downTail[i];
+            if (seen[w] == stamp && distOf[w] + edgeWeight[downEdge[i]] < dist) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Same as {@link #isStalledForward} for a search running against edge direction. */
+    boolean isStalledBackward(int node, double dist, double[] distOf, int[] seen, int stamp) {
+        for (int i = upFirst[node], end = upFirst[node + 1]; i < end; i++) {
+            int w = upHead[i];
+            if (seen[w] == stamp && distOf[w] + edgeWeight[upEdge[i]] < dist) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int upFirst(int node) {
+        return upFirst[node];
+    }
+
+    int upEnd(int node) {
+        return upFirst[node + 1];
+    }
+
+    int upHead(int i) {
+        return upHead[i];
+    }
+
+    int upEdge(int i) {
+        return upEdge[i];
+    }
+
+    int downFirst(int node) {
+        return downFirst[node];
+    }
+
+    int downEnd(int node) {
+        return downFirst[node + 1];
+    }
+
+    int downTail(int i) {
+        return downTail[i];
+    }
+
+    int downEdge(int i) {
+        return downEdge[i];
+    }
+
+    private final class QueryState {
+        final int[] seenF;
+        final int[] seenB;
+        final double[] distF;
+        final double[] distB;
+        final int[] predF;
+        final int[] predB;
+        final int[] chain;
+        final NodeHeap heapF = new NodeHeap();
+        final NodeHeap heapB = new NodeHeap();
+        final IntList path = new IntList();
+        int stamp;
+
+        QueryState(int n) {
+            seenF = new int[n];
+            seenB = new int[n];
+            distF = new double[n];
+            distB = new double[n];
+            predF = new int[n];
+            predB = new int[n];
+            chain = new int[n];
+        }
+
+        void reset() {
+            heapF.clear();
+            heapB.clear();
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(seenF, 0);
+                Arrays.fill(seenB, 0);
+                stamp = 1;
+            }
+        }
+
+        void touchF(int v, double d, int edge) {
+            seenF[v] = stamp;
+            distF[v] = d;
+            predF[v] = edge;
+        }
+
+        void touchB(int v, double d, int edge) {
+            seenB[v] = stamp;
+            distB[v] = d;
+            predB[v] = edge;
+        }
+    }
+
+    /**
+     * Contracts every node of the graph under the given metric and edge speeds.
+     */
+    static ContractionHierarchy build(RoadGraph graph, RouteMetric metric, float[] speeds) {
+        return new Builder(graph, metric, speeds).build();
+    }
+
+    private static final class Builder {
+        final RoadGraph graph;
+        final float[] speeds;
+        final int n;
+
+        // Global edge table, grown as shortcuts are added
+        double[] weight;
+        int[] childA;
+        int[] childB;
+        int[] origin;
+        int[] hops; // number of road edges each hierarchy edge stands for
+        double[] meters;
+        double[] seconds;
+        int shortcutHops;
+        int edgeCount;
+
+        // Remaining (uncontracted) graph as per-node adjacency lists of global edge ids
+        final IntList[] out;
+        final IntList[] in;
+        int[] tailOf; // indexed by global edge id
+        int[] headOf;
+
+        final boolean[] contracted;
+        final int[] deletedNeighbours;
+        final double[] priority;
+        final int[] rank;
+
+        // Witness search buffers
+        final double[] dist;
+        final int[] seen;
+        int stamp;
+        final NodeHeap heap = new NodeHeap();
+
+        Builder(RoadGraph graph, RouteMetric metric, float[] speeds) {
+            this.graph = graph;
+            this.speeds = speeds;
+            this.n = graph.nodeCount();
+            int m = graph.edgeCount();
+            int capacity = Math.max(16, m * 2);
+            weight = new double[capacity];
+            childA = new int[capacity];
+            childB = new int[capacity];
+            origin = new int[capacity];
+            hops = new int[capacity];
+            meters = new double[capacity];
+            seconds = new double[capacity];
+            tailOf = new int[capacity];
+            headOf = new int[capacity];
+            out = new IntList[n];
+            in = new IntList[n];
+            for (int u = 0; u < n; u++) {
+                out[u] = new IntList();
+                in[u] = new IntList();
+            }
+            contracted = new boolean[n];
+            deletedNeighbours = new int[n];
+            priority = new double[n];
+            rank = new int[n];
+            dist = new double[n];
+            seen = new int[n];
+
+            for (int u = 0; u < n; u++) {
+                for (int e = graph.firstOut(u); e < graph.endOut(u); e++) {
+                    int v = graph.head(e);
+                    if (v == u) {
+                        continue;
+                    }
+                    double w = metric.cost(graph.length(e), speeds[e]);
+                    int existing = findEdge(u, v);
+                    if (existing >= 0) {
+                        // Keep only the cheapest parallel edge
+                        if (w < weight[existing]) {
+                            weight[existing] = w;
+                            origin[existing] = e;
+                            meters[existing] = graph.length(e);
+                            seconds[existing] = RouteMetric.TIME.cost(graph.length(e), speeds[e]);
+                        }
+                        continue;
+                    }
+                    addEdge(u, v, w, -1, -1, e);
+                }
+            }
+        }
+
+        int findEdge(int u, int v) {
+            IntList list = out[u];
+            for (int i = 0; i < list.size(); i++) {
+                int e = list.get(i);
+                if (headOf[e] == v) {
+                    return e;
+                }
+            }
+            return -1;
+        }
+
+        int addEdge(int u, int v, double w, int a, int b, int roadEdge) {
+            if (edgeCount == weight.length) {
+                int capacity = edgeCount * 2;
+                weight = Arrays.copyOf(weight, capacity);
+                childA = Arrays.copyOf(childA, capacity);
+                childB = Arrays.copyOf(childB, capacity);
+                origin = Arrays.copyOf(origin, capacity);
+                hops = Arrays.copyOf(hops, capacity);
+                meters = Arrays.copyOf(meters, capacity);
+                seconds = Arrays.copyOf(seconds, capacity);
+                tailOf = Arrays.copyOf(tailOf, capacity);
+                headOf = Arrays.copyOf(headOf, capacity);
+            }
+            int e = edgeCount++;
+            weight[e] = w;
+            childA[e] = a;
+            childB[e] = b;
+            origin[e] = roadEdge;
+            hops[e] = roadEdge >= 0 ? 1 : hops[a] + hops[b];
+            if (roadEdge >= 0) {
+                meters[e] = graph.length(roadEdge);
+                seconds[e] = RouteMetric.TIME.cost(graph.length(roadEdge), speeds[roadEdge]);
+            } else {
+                meters[e] = meters[a] + meters[b];
+                seconds[e] = seconds[a] + seconds[b];
+            }
+            tailOf[e] = u;
+            headOf[e] = v;
+            out[u].add(e);
+            in[v].add(e);
+            return e;
+        }
+
+        ContractionHierarchy build() {
+            NodeHeap queue = new NodeHeap();
+            for (int v = 0; v < n; v++) {
+                priority[v] = computePriority(v);
+                queue.push(v, priority[v]);
+            }
+
+            int nextRank = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.peekNode();
+                double key = queue.peekKey();
+                queue.pop();
+                if (contracted[v] || key != priority[v]) {
+                    continue;
+                }
+                // Lazy update: re-evaluate and defer if no longer the cheapest
+                double fresh = computePriority(v);
+                if (!queue.isEmpty() && fresh > queue.peekKey()) {
+                    priority[v] = fresh;
+                    queue.push(v, fresh);
+                    continue;
+                }
+                contract(v);
+                rank[v] = nextRank++;
+
+                // Neighbours' priorities changed
+                IntList neighbours = new IntList();
+                for (int i = 0; i < out[v].size(); i++) {
+                    neighbours.add(headOf[out[v].get(i)]);
+                }
+                for (int i = 0; i < in[v].size(); i++) {
+                    neighbours.add(tailOf[in[v].get(i)]);
+                }
+                for (int i = 0; i < neighbours.size(); i++) {
+                    int u = neighbours.get(i);
+                    if (!contracted[u]) {
+                        deletedNeighbours[u]++;
+                        priority[u] = computePriority(u);
+                        queue.push(u, priority[u]);
+                    }
+                }
+            }
+            return assemble();
+        }
+
+        double computePriority(int v) {
+            int shortcuts = processShortcuts(v, false);
+            int degree = out[v].size() + in[v].size();
+            int removedHops = 0;
+            for (int i = 0; i < out[v].size(); i++) {
+                removedHops += hops[out[v].get(i)];
+            }
+            for (int i = 0; i < in[v].size(); i++) {
+                removedHops += hops[in[v].get(i)];
+            }
+            // Edge difference dominates; shortcut depth and contracted neighbours spread contraction evenly
+            return 10.0 * (shortcuts - degree) + (shortcutHops - removedHops) + deletedNeighbours[v];
+        }
+
+        void contract(int v) {
+            processShortcuts(v, true);
+            contracted[v] = true;
+            // Detach v from its neighbours; v's own lists stay as its upward edges
+            for (int i = 0; i < in[v].size(); i++) {
+                int e = in[v].get(i);
+                out[tailOf[e]].remove(e);
+            }
+            for (int i = 0; i < out[v].size(); i++) {
+                int e = out[v].get(i);
+                in[headOf[e]].remove(e);
+            }
+        }
+
+        /** Counts (or adds) the shortcuts needed to bypass v among its uncontracted neighbours. */
+        int processShortcuts(int v, boolean add) {
+            IntList ins = in[v];
+            IntList outs = out[v];
+            if (ins.size() == 0 || outs.size() == 0) {
+                shortcutHops = 0;
+                return 0;
+            }
+            double maxOut = 0;
+            for (int j = 0; j < outs.size(); j++) {
+                maxOut = Math.max(maxOut, weight[outs.get(j)]);
+            }
+            int count = 0;
+            shortcutHops = 0;
+            for (int i = 0; i < ins.size(); i++) {
+                int inEdge = ins.get(i);
+                int u = tailOf[inEdge];
+                double wu = weight[inEdge];
+                witnessSearch(u, v, wu + maxOut, add ? CONTRACTION_SETTLE_LIMIT : SIMULATION_SETTLE_LIMIT);
+                for (int j = 0; j < outs.size(); j++) {
+                    int outEdge = outs.get(j);
+                    int x = headOf[outEdge];
+                    if (x == u) {
+                        continue;
+                    }
+                    double via = wu + weight[outEdge];
+                    if (seen[x] == stamp && dist[x] <= via) {
+                        continue; // witness found
+                    }
+                    count++;
+                    shortcutHops += hops[inEdge] + hops[outEdge];
+                    if (add) {
+                        int existing = findEdge(u, x);
+                        if (existing >= 0) {
+                            if (via < weight[existing]) {
+                                weight[existing] = via;
+                                childA[existing] = inEdge;
+                                childB[existing] = outEdge;
+                                origin[existing] = -1;
+                                hops[existing] = hops[inEdge] + hops[outEdge];
+                                meters[existing] = meters[inEdge] + meters[outEdge];
+                                seconds[existing] = seconds[inEdge] + seconds[outEdge];
+                            }
+                        } else {
+                            addEdge(u, x, via, inEdge, outEdge, -1);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /** Bounded Dijkstra from u in the remaining graph, ignoring v. */
+        void witnessSearch(int u, int v, double limit, int settleLimit) {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                stamp = 1;
+            }
+            heap.clear();
+            seen[u] = stamp;
+            dist[u] = 0;
+            heap.push(u, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && settled < settleLimit) {
+                int x = heap.peekNode();
+                double dx = heap.peekKey();
+                heap.pop();
+                if (dx > dist[x]) {
+                    continue;
+                }
+                if (dx > limit) {
+                    break;
+                }
+                settled++;
+                IntList list = out[x];
+                for (int i = 0; i < list.size(); i++) {
+                    int e = list.get(i);
+                    int y = headOf[e];
+                    if (y == v) {
+                        continue;
+                    }
+                    double nd = dx + weight[e];
+                    if (seen[y] != stamp || nd < dist[y]) {
+                        seen[y] = stamp;
+                        dist[y] = nd;
+                        heap.push(y, nd);
+                    }
+                }
+            }
+        }
+
+        ContractionHierarchy assemble() {
+            // After contraction each node's lists hold exactly its edges towards higher ranks
+            int[] upFirst = new int[n + 1];
+            int[] downFirst = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                upFirst[v + 1] = upFirst[v] + out[v].size();
+                downFirst[v + 1] = downFirst[v] + in[v].size();
+            }
+            int[] upHead = new int[upFirst[n]];
+            int[] upEdge = new int[upFirst[n]];
+            int[] downTail = new int[downFirst[n]];
+            int[] downEdge = new int[downFirst[n]];
+            for (int v = 0; v < n; v++) {
+                for (int i = 0; i < out[v].size(); i++) {
+                    int e = out[v].get(i);
+                    upHead[upFirst[v] + i] = headOf[e];
+                    upEdge[upFirst[v] + i] = e;
+                }
+                for (int i = 0; i < in[v].size(); i++) {
+                    int e = in[v].get(i);
+                    downTail[downFirst[v] + i] = tailOf[e];
+                    downEdge[downFirst[v] + i] = e;
+                }
+            }
+            return new ContractionHierarchy(graph, rank, Arrays.copyOf(weight, edgeCount),
+                    Arrays.copyOf(childA, edgeCount), Arrays.copyOf(childB, edgeCount),
+                    Arrays.copyOf(origin, edgeCount), Arrays.copyOf(tailOf, edgeCount),
+                    Arrays.copyOf(headOf, edgeCount), Arrays.copyOf(meters, edgeCount),
+                    Arrays.copyOf(seconds, edgeCount), upFirst, upHead, upEdge, downFirst, downTail, downEdge);
+        }
+    }
+}
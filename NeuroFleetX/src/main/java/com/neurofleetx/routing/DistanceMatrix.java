@@ -0,0 +1,50 @@
+package com.neurofleetx.routing;
+
+/**
+ * Travel durations and distances from every source to every target, stored
+ * row-major (entry i * targetCount + j is source i to target j). Unreachable
+ * pairs hold {@link #UNREACHABLE}.
+ */
+public final class DistanceMatrix {
+
+    public static final int UNREACHABLE = -1;
+
+    private final int sourceCount;
+    private final int targetCount;
+    private final int[] durations; // seconds
+    private final int[] distances; // meters
+
+    public DistanceMatrix(int sourceCount, int targetCount, int[] durations, int[] distances) {
+        if (durations.length != sourceCount * targetCount || distances.length != sourceCount * targetCount) {
+            throw new IllegalArgumentException("Matrix arrays do not match " + sourceCount + "x" + targetCount);
+        }
+        this.sourceCount = sourceCount;
+        this.targetCount = targetCount;
+        this.durations = durations;
+        this.distances = distances;
+    }
+
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    public int getTargetCount() {
+        return targetCount;
+    }
+
+    public int[] getDurations() {
+        return durations;
+    }
+
+    public int[] getDistances() {
+        return distances;
+    }
+
+    public int durationSeconds(int source, int target) {
+        return durations[source * targetCount + target];
+    }
+
+    public int distanceMeters(int source, int target) {
+        return distances[source * targetCount + target];
+    }
+}
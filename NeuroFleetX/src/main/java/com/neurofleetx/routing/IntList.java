@@ -0,0 +1,54 @@
+package com.neurofleetx.routing;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints.
+ */
+final class IntList {
+
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this(4);
+    }
+
+    IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /** Removes the first occurrence of value by swapping in the last element. */
+    boolean remove(int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                values[i] = values[--size];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,274 @@
+package com.neurofleetx.routing;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Shortest path costs between every source and every target node, computing
+ * each search once per endpoint instead of once per pair.
+ *
+ * With a contraction hierarchy this is the bucket algorithm: one upward search
+ * backwards from each target leaves (target, cost) entries in a bucket at every
+ * node it settles, then one upward search from each source scans the buckets of
+ * the nodes it settles. Without a hierarchy each source runs a single Dijkstra
+ * that stops once every target is settled.
+ *
+ * Searches run as parallel streams, so they use the pool of the calling thread
+ * when invoked from a ForkJoinPool task.
+ */
+final class ManyToManyRouter {
+
+    private final RoadGraph graph;
+    private final ThreadLocal<SearchState> states;
+
+    ManyToManyRouter(RoadGraph graph) {
+        this.graph = graph;
+        this.states = ThreadLocal.withInitial(() -> new SearchState(graph.nodeCount()));
+    }
+
+    /**
+     * Fills seconds and meters (row-major, sources x targets) with the travel time
+     * and length of the cheapest path under the hierarchy's metric; NaN where a
+     * node is -1 or no path exists.
+     */
+    void hierarchy(ContractionHierarchy ch, int[] sources, int[] targets, double[] seconds, double[] meters) {
+        int m = targets.length;
+        Arrays.fill(seconds, Double.NaN);
+        Arrays.fill(meters, Double.NaN);
+
+        // Backward searches, one per target
+        Bucket[] perTarget = new Bucket[m];
+        IntStream.range(0, m).parallel().forEach(j -> {
+            if (targets[j] >= 0) {
+                perTarget[j] = backwardSearch(ch, targets[j]);
+            }
+        });
+
+        // Regroup entries by node into one flat bucket table
+        int n = graph.nodeCount();
+        int[] bucketFirst = new int[n + 1];
+        for (Bucket b : perTarget) {
+            if (b != null) {
+                for (int k = 0; k < b.size; k++) {
+                    bucketFirst[b.nodes[k] + 1]++;
+                }
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            bucketFirst[v + 1] += bucketFirst[v];
+        }
+        int total = bucketFirst[n];
+        int[] bucketTarget = new int[total];
+        double[] bucketWeight = new double[total];
+        double[] bucketSeconds = new double[total];
+        double[] bucketMeters = new double[total];
+        int[] fill = Arrays.copyOf(bucketFirst, n);
+        for (int j = 0; j < m; j++) {
+            Bucket b = perTarget[j];
+            if (b == null) {
+                continue;
+            }
+            for (int k = 0; k < b.size; k++) {
+                int slot = fill[b.nodes[k]]++;
+                bucketTarget[slot] = j;
+                bucketWeight[slot] = b.weight[k];
+                bucketSeconds[slot] = b.seconds[k];
+                bucketMeters[slot] = b.meters[k];
+            }
+        }
+
+        // Forward searches, one per source, each writing only its own row
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            if (sources[i] < 0) {
+                return;
+            }
+            double[] best = new double[m];
+            Arrays.fill(best, Double.POSITIVE_INFINITY);
+            int row = i * m;
+            SearchState s = states.get();
+            s.reset();
+            s.touch(sources[i], 0, 0, 0);
+            s.heap.push(sources[i], 0);
+            while (!s.heap.isEmpty()) {
+                int u = s.heap.peekNode();
+                double du = s.heap.peekKey();
+                s.heap.pop();
+                if (du > s.weight[u] || ch.isStalledForward(u, du, s.weight, s.seen, s.stamp)) {
+                    continue;
+                }
+                for (int k = bucketFirst[u], end = bucketFirst[u + 1]; k < end; k++) {
+                    int j = bucketTarget[k];
+                    double d = du + bucketWeight[k];
+                    if (d < best[j]) {
+                        best[j] = d;
+                        seconds[row + j] = s.seconds[u] + bucketSeconds[k];
+                        meters[row + j] = s.meters[u] + bucketMeters[k];
+                    }
+                }
+                for (int k = ch.upFirst(u), end = ch.upEnd(u); k < end; k++) {
+                    int v = ch.upHead(k);
+                    int e = ch.upEdge(k);
+                    double nd = du + ch.weight(e);
+                    if (s.seen[v] != s.stamp || nd < s.weight[v]) {
+                        s.touch(v, nd, s.seconds[u] + ch.seconds(e), s.meters[u] + ch.meters(e));
+                        s.heap.push(v, nd);
+                    }
+                }
+            }
+        });
+    }
+
+    private Bucket backwardSearch(ContractionHierarchy ch, int target) {
+        SearchState s = states.get();
+        s.reset();
+        s.touch(target, 0, 0, 0);
+        s.heap.push(target, 0);
+        Bucket bucket = new Bucket();
+        while (!s.heap.isEmpty()) {
+            int u = s.heap.peekNode();
+            double du = s.heap.peekKey();
+            s.heap.pop();
+            if (du > s.weight[u] || ch.isStalledBackward(u, du, s.weight, s.seen, s.stamp)) {
+                continue;
+            }
+            bucket.add(u, du, s.seconds[u], s.meters[u]);
+            for (int k = ch.downFirst(u), end = ch.downEnd(u); k < end; k++) {
+                int v = ch.downTail(k);
+                int e = ch.downEdge(k);
+                double nd = du + ch.weight(e);
+                if (s.seen[v] != s.stamp || nd < s.weight[v]) {
+                    s.touch(v, nd, s.seconds[u] + ch.seconds(e), s.meters[u] + ch.meters(e));
+                    s.heap.push(v, nd);
+                }
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * Same contract as {@link #hierarchy}, searching the plain road graph with the
+     * given metric and edge speeds.
+     */
+    void dijkstra(RouteMetric metric, float[] speeds, int[] sources, int[] targets, double[] seconds,
+            double[] meters) {
+        int m = targets.length;
+        Arrays.fill(seconds, Double.NaN);
+        Arrays.fill(meters, Double.NaN);
+
+        // Target indices sorted by node, so settling a node finds its targets by binary search
+        Integer[] order = new Integer[m];
+        for (int j = 0; j < m; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(targets[a], targets[b]));
+        int[] sortedNodes = new int[m];
+        int[] sortedTargets = new int[m];
+        int distinct = 0;
+        for (int k = 0; k < m; k++) {
+            sortedTargets[k] = order[k];
+            sortedNodes[k] = targets[order[k]];
+            if (sortedNodes[k] >= 0 && (k == 0 || sortedNodes[k] != sortedNodes[k - 1])) {
+                distinct++;
+            }
+        }
+        int targetNodes = distinct;
+
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            if (sources[i] < 0 || targetNodes == 0) {
+                return;
+            }
+            int row = i * m;
+            int remaining = targetNodes;
+            SearchState s = states.get();
+            s.reset();
+            s.touch(sources[i], 0, 0, 0);
+            s.heap.push(sources[i], 0);
+            while (!s.heap.isEmpty() && remaining > 0) {
+                int u = s.heap.peekNode();
+                double du = s.heap.peekKey();
+                s.heap.pop();
+                if (du > s.weight[u] || s.settled[u] == s.stamp) {
+                    continue;
+                }
+                s.settled[u] = s.stamp;
+                int k = Arrays.binarySearch(sortedNodes, u);
+                if (k >= 0) {
+                    while (k > 0 && sortedNodes[k - 1] == u) {
+                        k--;
+                    }
+                    for (; k < m && sortedNodes[k] == u; k++) {
+                        seconds[row + sortedTargets[k]] = s.seconds[u];
+                        meters[row + sortedTargets[k]] = s.meters[u];
+                    }
+                    remaining--;
+                }
+                for (int e = graph.firstOut(u), end = graph.endOut(u); e < end; e++) {
+                    int v = graph.head(e);
+                    double nd = du + metric.cost(graph.length(e), speeds[e]);
+                    if (s.seen[v] != s.stamp || nd < s.weight[v]) {
+                        s.touch(v, nd, s.seconds[u] + RouteMetric.TIME.cost(graph.length(e), speeds[e]),
+                                s.meters[u] + graph.length(e));
+                        s.heap.push(v, nd);
+                    }
+                }
+            }
+        });
+    }
+
+    /** Nodes settled by one backward search with their costs to the target. */
+    private static final class Bucket {
+        int[] nodes = new int[64];
+        double[] weight = new double[64];
+        double[] seconds = new double[64];
+        double[] meters = new double[64];
+        int size;
+
+        void add(int node, double w, double sec, double m) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                weight = Arrays.copyOf(weight, size * 2);
+                seconds = Arrays.copyOf(seconds, size * 2);
+                meters = Arrays.copyOf(meters, size * 2);
+            }
+            nodes[size] = node;
+            weight[size] = w;
+            seconds[size] = sec;
+            meters[size] = m;
+            size++;
+        }
+    }
+
+    private static final class SearchState {
+        final int[] seen;
+        final int[] settled;
+        final double[] weight;
+        final double[] seconds;
+        final double[] meters;
+        final NodeHeap heap = new NodeHeap();
+        int stamp;
+
+        SearchState(int n) {
+            seen = new int[n];
+            settled = new int[n];
+            weight = new double[n];
+            seconds = new double[n];
+            meters = new double[n];
+        }
+
+        void reset() {
+            heap.clear();
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                Arrays.fill(settled, 0);
+                stamp = 1;
+            }
+        }
+
+        void touch(int v, double w, double sec, double m) {
+            seen[v] = stamp;
+            weight[v] = w;
+            seconds[v] = sec;
+            meters[v] = m;
+        }
+    }
+}
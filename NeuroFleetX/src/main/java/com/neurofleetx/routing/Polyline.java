@@ -0,0 +1,77 @@
+package com.neurofleetx.routing;
+
+import java.util.Arrays;
+
+/**
+ * Encoded polyline format (as used by Google Maps and most routing APIs): each
+ * coordinate is rounded to 5 decimals, stored as the delta from the previous point,
+ * zig-zag encoded and written as base64-like 5-bit chunks.
+ *
+ * Points are passed as one interleaved array: lat0, lng0, lat1, lng1, ...
+ */
+public final class Polyline {
+
+    private static final double SCALE = 1e5;
+
+    private Polyline() {
+    }
+
+    public static String encode(double[] latLng) {
+        if (latLng.length % 2 != 0) {
+            throw new IllegalArgumentException("Interleaved coordinates must have even length");
+        }
+        StringBuilder out = new StringBuilder(latLng.length * 3);
+        long prevLat = 0, prevLng = 0;
+        for (int i = 0; i < latLng.length; i += 2) {
+            // Delta of rounded values, so rounding errors do not accumulate along the line
+            long lat = Math.round(latLng[i] * SCALE);
+            long lng = Math.round(latLng[i + 1] * SCALE);
+            writeValue(out, lat - prevLat);
+            writeValue(out, lng - prevLng);
+            prevLat = lat;
+            prevLng = lng;
+        }
+        return out.toString();
+    }
+
+    public static double[] decode(String encoded) {
+        double[] latLng = new double[16];
+        int count = 0;
+        long lat = 0, lng = 0;
+        int[] pos = { 0 };
+        while (pos[0] < encoded.length()) {
+            lat += readValue(encoded, pos);
+            lng += readValue(encoded, pos);
+            if (count + 2 > latLng.length) {
+                latLng = Arrays.copyOf(latLng, latLng.length * 2);
+            }
+            latLng[count++] = lat / SCALE;
+            latLng[count++] = lng / SCALE;
+        }
+        return Arrays.copyOf(latLng, count);
+    }
+
+    private static void writeValue(StringBuilder out, long value) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+
+    private static long readValue(String encoded, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (pos[0] >= encoded.length()) {
+                throw new IllegalArgumentException("Truncated polyline");
+            }
+            b = encoded.charAt(pos[0]++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+}
@@ -0,0 +1,256 @@
+package com.neurofleetx.routing;
+
+import com.neurofleetx.geo.GeoMath;
+
+import java.util.Arrays;
+
+/**
+ * Immutable road network in compressed sparse row layout.
+ * Nodes and edges are dense int ids; every attribute lives in a primitive array
+ * so a city-scale graph stays a handful of flat allocations.
+ */
+public final class RoadGraph {
+
+    private static final double CELL_DEGREES = 0.01; // ~1.1 km grid used for snapping
+
+    private final int nodeCount;
+    private final double[] lat;
+    private final double[] lng;
+
+    // Forward adjacency: edges of node u are [firstOut[u], firstOut[u + 1])
+    private final int[] firstOut;
+    private final int[] head;
+    private final float[] length; // meters
+    private final float[] speed; // free-flow km/h
+
+    // Reverse adjacency: incoming edges of node v, pointing back into the forward arrays
+    private final int[] firstIn;
+    private final int[] tail;
+    private final int[] inEdge;
+
+    private final float maxSpeed;
+
+    // Uniform grid over nodes for nearest-node lookups
+    private final double gridMinLat;
+    private final double gridMinLng;
+    private final int gridRows;
+    private final int gridCols;
+    private final int[] cellStart;
+    private final int[] cellNodes;
+
+    private RoadGraph(double[] lat, double[] lng, int[] from, int[] to, float[] edgeLength, float[] edgeSpeed) {
+        this.nodeCount = lat.length;
+        this.lat = lat;
+        this.lng = lng;
+
+        int edgeCount = from.length;
+        this.firstOut = new int[nodeCount + 1];
+        this.head = new int[edgeCount];
+        this.length = new float[edgeCount];
+        this.speed = new float[edgeCount];
+        this.firstIn = new int[nodeCount + 1];
+        this.tail = new int[edgeCount];
+        this.inEdge = new int[edgeCount];
+
+        // Counting sort of edges by source, then by target for the reverse view
+        for (int e = 0; e < edgeCount; e++) {
+            firstOut[from[e] + 1]++;
+            firstIn[to[e] + 1]++;
+        }
+        for (int u = 0; u < nodeCount; u++) {
+            firstOut[u + 1] += firstOut[u];
+            firstIn[u + 1] += firstIn[u];
+        }
+        int[] outPos = Arrays.copyOf(firstOut, nodeCount);
+        float max = 1;
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = outPos[from[e]]++;
+            head[slot] = to[e];
+            length[slot] = edgeLength[e];
+            speed[slot] = edgeSpeed[e];
+            max = Math.max(max, edgeSpeed[e]);
+        }
+        this.maxSpeed = max;
+
+        int[] inPos = Arrays.copyOf(firstIn, nodeCount);
+        for (int u = 0; u < nodeCount; u++) {
+            for (int e = firstOut[u]; e < firstOut[u + 1]; e++) {
+                int slot = inPos[head[e]]++;
+                tail[slot] = u;
+                inEdge[slot] = e;
+            }
+        }
+
+        // Bucket nodes into grid cells
+        double minLat = Double.MAX_VALUE, minLng = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+        for (int u = 0; u < nodeCount; u++) {
+            minLat = Math.min(minLat, lat[u]);
+            maxLat = Math.max(maxLat, lat[u]);
+            minLng = Math.min(minLng, lng[u]);
+            maxLng = Math.max(maxLng, lng[u]);
+        }
+        if (nodeCount == 0) {
+            minLat = maxLat = minLng = maxLng = 0;
+        }
+        this.gridMinLat = minLat;
+        this.gridMinLng = minLng;
+        this.gridRows = (int) ((maxLat - minLat) / CELL_DEGREES) + 1;
+        this.gridCols = (int) ((maxLng - minLng) / CELL_DEGREES) + 1;
+        this.cellStart = new int[gridRows * gridCols + 1];
+        this.cellNodes = new int[nodeCount];
+        int[] cellOf = new int[nodeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            cellOf[u] = cellIndex(rowOf(lat[u]), colOf(lng[u]));
+            cellStart[cellOf[u] + 1]++;
+        }
+        for (int c = 0; c < gridRows * gridCols; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellPos = Arrays.copyOf(cellStart, gridRows * gridCols);
+        for (int u = 0; u < nodeCount; u++) {
+            cellNodes[cellPos[cellOf[u]]++] = u;
+        }
+    }
+
+    /**
+     * Builds a graph from parallel edge arrays. Edge lengths that are not positive
+     * are replaced by the great-circle distance between their endpoints.
+     */
+    public static RoadGraph build(double[] lat, double[] lng, int[] from, int[] to, float[] edgeLength,
+            float[] edgeSpeed) {
+        if (lat.length != lng.length) {
+            throw new IllegalArgumentException("Latitude and longitude arrays differ in length");
+        }
+        if (from.length != to.length || from.length != edgeLength.length || from.length != edgeSpeed.length) {
+            throw new IllegalArgumentException("Edge arrays differ in length");
+        }
+        for (int e = 0; e < from.length; e++) {
+            if (edgeLength[e] <= 0) {
+                edgeLength[e] = (float) GeoMath.haversineMeters(lat[from[e]], lng[from[e]], lat[to[e]], lng[to[e]]);
+            }
+        }
+        return new RoadGraph(lat, lng, from, to, edgeLength, edgeSpeed);
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int edgeCount() {
+        return head.length;
+    }
+
+    public double lat(int node) {
+        return lat[node];
+    }
+
+    public double lng(int node) {
+        return lng[node];
+    }
+
+    public int firstOut(int node) {
+        return firstOut[node];
+    }
+
+    public int endOut(int node) {
+        return firstOut[node + 1];
+    }
+
+    public int head(int edge) {
+        return head[edge];
+    }
+
+    public int firstIn(int node) {
+        return firstIn[node];
+    }
+
+    public int endIn(int node) {
+        return firstIn[node + 1];
+    }
+
+    /** Source node of the i-th entry in the reverse adjacency. */
+    public int tail(int inIndex) {
+        return tail[inIndex];
+    }
+
+    /** Forward edge id of the i-th entry in the reverse adjacency. */
+    public int inEdge(int inIndex) {
+        return inEdge[inIndex];
+    }
+
+    public float length(int edge) {
+        return length[edge];
+    }
+
+    public float speed(int edge) {
+        return speed[edge];
+    }
+
+    /** Free-flow speeds indexed by edge; shared, callers must not modify. */
+    float[] speeds() {
+        return speed;
+    }
+
+    public float maxSpeed() {
+        return maxSpeed;
+    }
+
+    /**
+     * Nearest node to the given point within maxDistanceMeters, or -1 if none.
+     */
+    public int nearestNode(double qLat, double qLng, double maxDistanceMeters) {
+        if (nodeCount == 0) {
+            return -1;
+        }
+        int row = rowOf(qLat);
+        int col = colOf(qLng);
+        double cosLat = GeoMath.cosLat(qLat);
+        double cellHeight = Math.toRadians(CELL_DEGREES) * GeoMath.EARTH_RADIUS_M;
+        double cellWidth = cellHeight * cosLat;
+        double ringStep = Math.max(1, Math.min(cellHeight, cellWidth));
+        int maxRing = (int) Math.ceil(maxDistanceMeters / ringStep) + 1;
+
+        int best = -1;
+        double bestDist = maxDistanceMeters;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Every node outside rings [0, ring) is at least (ring - 1) cells away
+            if (best >= 0 && (ring - 1) * ringStep > bestDist) {
+                break;
+            }
+            for (int r = row - ring; r <= row + ring; r++) {
+                if (r < 0 || r >= gridRows) {
+                    continue;
+                }
+                boolean edgeRow = r == row - ring || r == row + ring;
+                for (int c = col - ring; c <= col + ring; c++) {
+                    if (c < 0 || c >= gridCols || (!edgeRow && c != col - ring && c != col + ring)) {
+                        continue;
+                    }
+                    int cell = cellIndex(r, c);
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        int u = cellNodes[i];
+                        double d = GeoMath.equirectangularMeters(qLat, qLng, lat[u], lng[u], cosLat);
+                        if (d <= bestDist) {
+                            bestDist = d;
+                            best = u;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private int rowOf(double value) {
+        return (int) Math.floor((value - gridMinLat) / CELL_DEGREES);
+    }
+
+    private int colOf(double value) {
+        return (int) Math.floor((value - gridMinLng) / CELL_DEGREES);
+    }
+
+    private int cellIndex(int row, int col) {
+        return row * gridCols + col;
+    }
+}
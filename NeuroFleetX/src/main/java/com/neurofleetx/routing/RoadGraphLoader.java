@@ -0,0 +1,110 @@
+package com.neurofleetx.routing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a road network extract in CSV form, e.g. exported from OSM with osmium or ogr2ogr:
+ *
+ * <pre>
+ * node,&lt;id&gt;,&lt;lat&gt;,&lt;lng&gt;
+ * edge,&lt;fromId&gt;,&lt;toId&gt;,&lt;speedKmh&gt;,&lt;oneway 0|1&gt;[,&lt;lengthMeters&gt;]
+ * </pre>
+ *
+ * Node ids may be sparse (OSM ids); they are remapped to dense indexes. Blank lines
+ * and lines starting with '#' are ignored. Missing speeds default to 40 km/h and
+ * missing lengths are computed from the node coordinates.
+ */
+public final class RoadGraphLoader {
+
+    private static final float DEFAULT_SPEED_KMH = 40f;
+
+    private RoadGraphLoader() {
+    }
+
+    public static RoadGraph load(Path file) throws IOException {
+        Map<Long, Integer> nodeIndex = new HashMap<>();
+        double[] lat = new double[1024];
+        double[] lng = new double[1024];
+        int nodes = 0;
+
+        int[] from = new int[4096];
+        int[] to = new int[4096];
+        float[] length = new float[4096];
+        float[] speed = new float[4096];
+        int edges = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] f = line.split(",", -1);
+                try {
+                    if ("node".equals(f[0])) {
+                        if (nodes == lat.length) {
+                            lat = Arrays.copyOf(lat, nodes * 2);
+                            lng = Arrays.copyOf(lng, nodes * 2);
+                        }
+                        nodeIndex.put(Long.parseLong(f[1].trim()), nodes);
+                        lat[nodes] = Double.parseDouble(f[2].trim());
+                        lng[nodes] = Double.parseDouble(f[3].trim());
+                        nodes++;
+                    } else if ("edge".equals(f[0])) {
+                        Integer u = nodeIndex.get(Long.parseLong(f[1].trim()));
+                        Integer v = nodeIndex.get(Long.parseLong(f[2].trim()));
+                        if (u == null || v == null) {
+                            throw new IOException("Edge references unknown node at line " + lineNo);
+                        }
+                        float edgeSpeed = f.length > 3 && !f[3].isBlank() ? Float.parseFloat(f[3].trim())
+                                : DEFAULT_SPEED_KMH;
+                        if (edgeSpeed <= 0) {
+                            edgeSpeed = DEFAULT_SPEED_KMH;
+                        }
+                        boolean oneway = f.length > 4 && "1".equals(f[4].trim());
+                        float edgeLength = f.length > 5 && !f[5].isBlank() ? Float.parseFloat(f[5].trim()) : 0f;
+
+                        int needed = edges + (oneway ? 1 : 2);
+                        if (needed > from.length) {
+                            int capacity = Math.max(needed, from.length * 2);
+                            from = Arrays.copyOf(from, capacity);
+                            to = Arrays.copyOf(to, capacity);
+                            length = Arrays.copyOf(length, capacity);
+                            speed = Arrays.copyOf(speed, capacity);
+                        }
+                        from[edges] = u;
+                        to[edges] = v;
+                        length[edges] = edgeLength;
+                        speed[edges] = edgeSpeed;
+                        edges++;
+                        if (!oneway) {
+                            from[edges] = v;
+                            to[edges] = u;
+                            length[edges] = edgeLength;
+                            speed[edges] = edgeSpeed;
+                            edges++;
+                        }
+                    } else {
+                        throw new IOException("Unknown record type '" + f[0] + "' at line " + lineNo);
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Malformed record at line " + lineNo + ": " + line, e);
+                }
+            }
+        }
+
+        return RoadGraph.build(Arrays.copyOf(lat, nodes), Arrays.copyOf(lng, nodes),
+                Arrays.copyOf(from, edges), Arrays.copyOf(to, edges),
+                Arrays.copyOf(length, edges), Arrays.copyOf(speed, edges));
+    }
+}
@@ -0,0 +1,48 @@
+package com.neurofleetx.routing;
+
+/**
+ * A resolved path through the road graph, including the access legs from the
+ * requested endpoints to their snapped nodes.
+ */
+public final class RoadPath {
+
+    private final double[] lats;
+    private final double[] lngs;
+    private final double distanceMeters;
+    private final double durationSeconds;
+    private final double freeFlowDurationSeconds;
+
+    public RoadPath(double[] lats, double[] lngs, double distanceMeters, double durationSeconds,
+            double freeFlowDurationSeconds) {
+        this.lats = lats;
+        this.lngs = lngs;
+        this.distanceMeters = distanceMeters;
+        this.durationSeconds = durationSeconds;
+        this.freeFlowDurationSeconds = freeFlowDurationSeconds;
+    }
+
+    public int size() {
+        return lats.length;
+    }
+
+    public double lat(int i) {
+        return lats[i];
+    }
+
+    public double lng(int i) {
+        return lngs[i];
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /** Duration at free-flow speeds; equals the duration when routed without traffic. */
+    public double getFreeFlowDurationSeconds() {
+        return freeFlowDurationSeconds;
+    }
+}
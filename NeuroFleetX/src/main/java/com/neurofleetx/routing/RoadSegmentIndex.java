@@ -0,0 +1,167 @@
+package com.neurofleetx.routing;
+
+import com.neurofleetx.geo.GeoMath;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform grid over the graph's edges, for finding the road segments near a point
+ * (map matching). Each edge is the straight segment between its end nodes and is
+ * listed in every cell its bounding box touches, so a lookup only visits the cells
+ * around the query and projects onto the edges listed there.
+ */
+public final class RoadSegmentIndex {
+
+    private static final double CELL_DEGREES = 0.005; // ~550 m
+
+    private final RoadGraph graph;
+    private final int[] edgeTail;
+    private final double gridMinLat;
+    private final double gridMinLng;
+    private final int gridRows;
+    private final int gridCols;
+    private final int[] cellStart;
+    private final int[] cellEdges;
+
+    public RoadSegmentIndex(RoadGraph graph) {
+        this.graph = graph;
+        int edgeCount = graph.edgeCount();
+        this.edgeTail = new int[edgeCount];
+        for (int u = 0; u < graph.nodeCount(); u++) {
+            for (int e = graph.firstOut(u); e < graph.endOut(u); e++) {
+                edgeTail[e] = u;
+            }
+        }
+        double minLat = Double.MAX_VALUE, minLng = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+        for (int u = 0; u < graph.nodeCount(); u++) {
+            minLat = Math.min(minLat, graph.lat(u));
+            maxLat = Math.max(maxLat, graph.lat(u));
+            minLng = Math.min(minLng, graph.lng(u));
+            maxLng = Math.max(maxLng, graph.lng(u));
+        }
+        if (graph.nodeCount() == 0) {
+            minLat = maxLat = minLng = maxLng = 0;
+        }
+        this.gridMinLat = minLat;
+        this.gridMinLng = minLng;
+        this.gridRows = (int) ((maxLat - minLat) / CELL_DEGREES) + 1;
+        this.gridCols = (int) ((maxLng - minLng) / CELL_DEGREES) + 1;
+
+        // Counting sort of (cell, edge) pairs by cell
+        this.cellStart = new int[gridRows * gridCols + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            forEachCell(e, cell -> cellStart[cell + 1]++);
+        }
+        for (int c = 0; c < gridRows * gridCols; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        this.cellEdges = new int[cellStart[gridRows * gridCols]];
+        int[] fill = Arrays.copyOf(cellStart, gridRows * gridCols);
+        for (int e = 0; e < edgeCount; e++) {
+            int edge = e;
+            forEachCell(e, cell -> cellEdges[fill[cell]++] = edge);
+        }
+    }
+
+    /** Calls action with every cell the edge's bounding box touches. */
+    private void forEachCell(int edge, IntConsumer action) {
+        int u = edgeTail[edge];
+        int v = graph.head(edge);
+        int r1 = rowOf(Math.max(graph.lat(u), graph.lat(v)));
+        int c1 = colOf(Math.max(graph.lng(u), graph.lng(v)));
+        for (int r = rowOf(Math.min(graph.lat(u), graph.lat(v))); r <= r1; r++) {
+            for (int c = colOf(Math.min(graph.lng(u), graph.lng(v))); c <= c1; c++) {
+                action.accept(cellIndex(r, c));
+            }
+        }
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /** Source node of a forward edge. */
+    public int tail(int edge) {
+        return edgeTail[edge];
+    }
+
+    /**
+     * Finds up to edges.length edges passing within radiusMeters of the point, nearest
+     * first. For each, distances gets the distance to the edge and offsets the
+     * distance along it from its tail to the closest point. Returns how many were
+     * found.
+     */
+    public int nearest(double qLat, double qLng, double radiusMeters, int[] edges, double[] distances,
+            double[] offsets) {
+        int max = edges.length;
+        int found = 0;
+        double cosLat = GeoMath.cosLat(qLat);
+        double radiusDegrees = Math.toDegrees(radiusMeters / GeoMath.EARTH_RADIUS_M);
+        double lngDegrees = radiusDegrees / Math.max(cosLat, 0.01);
+        int r0 = rowOf(qLat - radiusDegrees);
+        int r1 = rowOf(qLat + radiusDegrees);
+        int c0 = colOf(qLng - lngDegrees);
+        int c1 = colOf(qLng + lngDegrees);
+        double meters = Math.toRadians(GeoMath.EARTH_RADIUS_M);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = cellIndex(r, c);
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int e = cellEdges[i];
+                    if (contains(edges, found, e)) {
+                        continue; // listed in several cells
+                    }
+                    int u = edgeTail[e];
+                    int v = graph.head(e);
+                    // Planar projection around the query point
+                    double ax = (graph.lng(u) - qLng) * cosLat * meters;
+                    double ay = (graph.lat(u) - qLat) * meters;
+                    double dx = (graph.lng(v) - graph.lng(u)) * cosLat * meters;
+                    double dy = (graph.lat(v) - graph.lat(u)) * meters;
+                    double length2 = dx * dx + dy * dy;
+                    double t = length2 == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / length2));
+                    double distance = Math.hypot(ax + t * dx, ay + t * dy);
+                    if (distance > radiusMeters || (found == max && distance >= distances[max - 1])) {
+                        continue;
+                    }
+                    // Insertion into the sorted result, dropping the farthest when full
+                    int at = found < max ? found++ : max - 1;
+                    while (at > 0 && distances[at - 1] > distance) {
+                        edges[at] = edges[at - 1];
+                        distances[at] = distances[at - 1];
+                        offsets[at] = offsets[at - 1];
+                        at--;
+                    }
+                    edges[at] = e;
+                    distances[at] = distance;
+                    offsets[at] = t * graph.length(e);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Clamped to the grid: points outside it look in the border cells
+    private int rowOf(double value) {
+        return Math.max(0, Math.min(gridRows - 1, (int) Math.floor((value - gridMinLat) / CELL_DEGREES)));
+    }
+
+    private int colOf(double value) {
+        return Math.max(0, Math.min(gridCols - 1, (int) Math.floor((value - gridMinLng) / CELL_DEGREES)));
+    }
+
+    private int cellIndex(int row, int col) {
+        return row * gridCols + col;
+    }
+}
@@ -0,0 +1,39 @@
+package com.neurofleetx.routing;
+
+/**
+ * Edge cost functions the router can optimize for.
+ */
+public enum RouteMetric {
+    /** Travel time at the edge speed. */
+    TIME,
+    /** Physical length in meters. */
+    DISTANCE,
+    /** Travel time with speeds capped, which favors steady low-consumption roads over fast highways. */
+    ECO;
+
+    static final float ECO_SPEED_CAP_KMH = 60f;
+
+    /** Cost of traversing an edge of the given length (m) at the given speed (km/h). */
+    double cost(float length, float speedKmh) {
+        switch (this) {
+            case DISTANCE:
+                return length;
+            case ECO:
+                return length / (Math.min(speedKmh, ECO_SPEED_CAP_KMH) / 3.6);
+            default:
+                return length / (speedKmh / 3.6);
+        }
+    }
+
+    /** Lower bound on the cost of covering a straight-line distance (m) when no edge is faster than maxSpeedKmh. */
+    double lowerBound(double meters, float maxSpeedKmh) {
+        switch (this) {
+            case DISTANCE:
+                return meters;
+            case ECO:
+                return meters / (Math.min(maxSpeedKmh, ECO_SPEED_CAP_KMH) / 3.6);
+            default:
+                return meters / (maxSpeedKmh / 3.6);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.neurofleetx.routing;
+
+import com.neurofleetx.geo.GeoMath;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Road network router. The graph is loaded once at startup from routing.graph.path;
+ * when no graph is configured the engine reports itself unavailable and callers fall
+ * back to their approximate path generation.
+ *
+ * Queries start out on bidirectional A*. Contraction hierarchies for each metric are
+ * built on a background thread and take over as soon as they are ready. Under
+ * traffic a hierarchy path is kept when none of its edges is slowed, and replaced by
+ * an A* search over current speeds otherwise.
+ */
+@Component
+public class RoutingEngine {
+
+    private final RoadGraph graph;
+    private final BidirectionalAStar search;
+    private final ManyToManyRouter matrixRouter;
+    private final AtomicReferenceArray<ContractionHierarchy> hierarchies =
+            new AtomicReferenceArray<>(RouteMetric.values().length);
+    private final double snapMaxDistance;
+    private final AtomicLong hierarchyRoutes = new AtomicLong();
+    private final AtomicLong searchRoutes = new AtomicLong();
+    private final AtomicLong trafficFallbacks = new AtomicLong();
+
+    public RoutingEngine(@Value("${routing.graph.path:}") String graphPath,
+            @Value("${routing.snap.max-distance-m:3000}") double snapMaxDistance,
+            @Value("${routing.ch.enabled:true}") boolean buildHierarchies) throws IOException {
+        this.snapMaxDistance = snapMaxDistance;
+        if (graphPath == null || graphPath.isBlank()) {
+            this.graph = null;
+            this.search = null;
+            this.matrixRouter = null;
+            return;
+        }
+        Path path = Path.of(graphPath);
+        if (!Files.isReadable(path)) {
+            throw new IOException("Road graph file not readable: " + path.toAbsolutePath());
+        }
+        long start = System.currentTimeMillis();
+        this.graph = RoadGraphLoader.load(path);
+        this.search = new BidirectionalAStar(graph);
+        this.matrixRouter = new ManyToManyRouter(graph);
+        System.out.println("Loaded road graph " + path.getFileName() + ": " + graph.nodeCount() + " nodes, "
+                + graph.edgeCount() + " edges in " + (System.currentTimeMillis() - start) + " ms");
+
+        if (buildHierarchies) {
+            Thread builder = new Thread(this::buildHierarchies, "routing-ch-builder");
+            builder.setDaemon(true);
+            builder.start();
+        }
+    }
+
+    private void buildHierarchies() {
+        for (RouteMetric metric : RouteMetric.values()) {
+            long start = System.currentTimeMillis();
+            ContractionHierarchy ch = ContractionHierarchy.build(graph, metric, graph.speeds());
+            hierarchies.set(metric.ordinal(), ch);
+            System.out.println("Contraction hierarchy for " + metric + " ready: " + ch.shortcutCount()
+                    + " shortcuts in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    public boolean isAvailable() {
+        return graph != null;
+    }
+
+    public RoadGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Routes between two coordinates, snapping each to its nearest road node.
+     * Returns null if the engine is unavailable, either endpoint is too far from
+     * the network, or no path exists.
+     */
+    public RoadPath route(double fromLat, double fromLng, double toLat, double toLng, RouteMetric metric) {
+        return route(fromLat, fromLng, toLat, toLng, metric, null);
+    }
+
+    /**
+     * As {@link #route(double, double, double, double, RouteMetric)}, with current
+     * edge speeds (km/h, never above free-flow) in place of the free-flow speeds,
+     * or null for free-flow. The hierarchies are built for free-flow speeds, and
+     * traffic only makes edges slower, so a hierarchy path none of whose edges costs
+     * more now than at free-flow is still the cheapest; otherwise the route is
+     * searched again with bidirectional A* over the current speeds. The duration
+     * always reflects the given speeds.
+     */
+    public RoadPath route(double fromLat, double fromLng, double toLat, double toLng, RouteMetric metric,
+            float[] currentSpeeds) {
+        if (graph == null) {
+            return null;
+        }
+        int source = graph.nearestNode(fromLat, fromLng, snapMaxDistance);
+        int target = graph.nearestNode(toLat, toLng, snapMaxDistance);
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        float[] freeFlow = graph.speeds();
+        float[] speeds = currentSpeeds != null ? currentSpeeds : freeFlow;
+        ContractionHierarchy ch = hierarchies.get(metric.ordinal());
+        int[] edges = null;
+        boolean searched = ch == null;
+        if (ch != null) {
+            edges = ch.shortestPath(source, target);
+            if (edges != null && currentSpeeds != null && slowed(edges, metric, currentSpeeds, freeFlow)) {
+                trafficFallbacks.incrementAndGet();
+                searched = true;
+            }
+        }
+        if (searched) {
+            searchRoutes.incrementAndGet();
+            edges = search.shortestPath(source, target, metric, speeds);
+        } else {
+            hierarchyRoutes.incrementAndGet();
+        }
+        if (edges == null) {
+            return null;
+        }
+
+        // Geometry: requested start, snapped nodes along the path, requested end
+        double[] lats = new double[edges.length + 3];
+        double[] lngs = new double[edges.length + 3];
+        lats[0] = fromLat;
+        lngs[0] = fromLng;
+        lats[1] = graph.lat(source);
+        lngs[1] = graph.lng(source);
+        double distance = GeoMath.haversineMeters(fromLat, fromLng, lats[1], lngs[1]);
+        double duration = 0;
+        double freeFlowDuration = 0;
+        for (int i = 0; i < edges.length; i++) {
+            int e = edges[i];
+            int v = graph.head(e);
+            lats[i + 2] = graph.lat(v);
+            lngs[i + 2] = graph.lng(v);
+            distance += graph.length(e);
+            duration += RouteMetric.TIME.cost(graph.length(e), speeds[e]);
+            freeFlowDuration += RouteMetric.TIME.cost(graph.length(e), freeFlow[e]);
+        }
+        lats[edges.length + 2] = toLat;
+        lngs[edges.length + 2] = toLng;
+        distance += GeoMath.haversineMeters(lats[edges.length + 1], lngs[edges.length + 1], toLat, toLng);
+        return new RoadPath(lats, lngs, distance, duration, freeFlowDuration);
+    }
+
+    private static boolean slowed(int[] edges, RouteMetric metric, float[] currentSpeeds, float[] freeFlow) {
+        for (int e : edges) {
+            if (currentSpeeds[e] < freeFlow[e]
+                    && metric.cost(1f, currentSpeeds[e]) > metric.cost(1f, freeFlow[e])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Routes answered from a contraction hierarchy since startup. */
+    public long getHierarchyRoutes() {
+        return hierarchyRoutes.get();
+    }
+
+    /** Routes answered by A*: before the hierarchies are ready, or after a traffic fallback. */
+    public long getSearchRoutes() {
+        return searchRoutes.get();
+    }
+
+    /** Hierarchy paths that crossed a slowed edge and were searched again with current speeds. */
+    public long getTrafficFallbacks() {
+        return trafficFallbacks.get();
+    }
+
+    /**
+     * Travel time and distance from every source to every target coordinate,
+     * following the cheapest path under the given metric. Distances include the
+     * access legs to the snapped nodes, as in {@link #route}; pairs with an
+     * endpoint too far from the network or no connecting path are unreachable.
+     * Returns null if the engine is unavailable.
+     *
+     * Searches run in parallel on the caller's ForkJoinPool, or the common pool.
+     */
+    public DistanceMatrix matrix(double[] sourceLats, double[] sourceLngs, double[] targetLats,
+            double[] targetLngs, RouteMetric metric) {
+        if (graph == null) {
+            return null;
+        }
+        int n = sourceLats.length;
+        int m = targetLats.length;
+        int[] sources = new int[n];
+        int[] targets = new int[m];
+        double[] sourceAccess = new double[n];
+        double[] targetAccess = new double[m];
+        for (int i = 0; i < n; i++) {
+            sources[i] = graph.nearestNode(sourceLats[i], sourceLngs[i], snapMaxDistance);
+            if (sources[i] >= 0) {
+                sourceAccess[i] = GeoMath.haversineMeters(sourceLats[i], sourceLngs[i], graph.lat(sources[i]),
+                        graph.lng(sources[i]));
+            }
+        }
+        for (int j = 0; j < m; j++) {
+            targets[j] = graph.nearestNode(targetLats[j], targetLngs[j], snapMaxDistance);
+            if (targets[j] >= 0) {
+                targetAccess[j] = GeoMath.haversineMeters(graph.lat(targets[j]), graph.lng(targets[j]),
+                        targetLats[j], targetLngs[j]);
+            }
+        }
+
+        double[] seconds = new double[n * m];
+        double[] meters = new double[n * m];
+        ContractionHierarchy ch = hierarchies.get(metric.ordinal());
+        if (ch != null) {
+            matrixRouter.hierarchy(ch, sources, targets, seconds, meters);
+        } else {
+            matrixRouter.dijkstra(metric, graph.speeds(), sources, targets, seconds, meters);
+        }
+
+        int[] durations = new int[n * m];
+        int[] distances = new int[n * m];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                int cell = i * m + j;
+                if (Double.isNaN(seconds[cell])) {
+                    durations[cell] = DistanceMatrix.UNREACHABLE;
+                    distances[cell] = DistanceMatrix.UNREACHABLE;
+                } else {
+                    durations[cell] = (int) Math.round(seconds[cell]);
+                    distances[cell] = (int) Math.round(meters[cell] + sourceAccess[i] + targetAccess[j]);
+                }
+            }
+        }
+        return new DistanceMatrix(n, m, durations, distances);
+    }
+}
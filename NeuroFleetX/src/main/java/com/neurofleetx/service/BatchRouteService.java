@@ -0,0 +1,239 @@
+package com.neurofleetx.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.neurofleetx.service.RouteService.RouteOption;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates many origin/destination pairs in parallel on a dedicated, bounded
+ * pool. Each pair is reported as soon as it finishes; pairs that fail or miss the
+ * batch deadline are reported individually without affecting the rest.
+ *
+ * At the deadline every unfinished item is cancelled on the pool, so items still
+ * queued never start. An item already computing its routes runs to the end: the
+ * computation is shared through the route cache with any other caller of the same
+ * pair, so it is not abandoned, and its result is cached for the next request.
+ *
+ * Results are handed to the caller on a thread of the batch's own, so a slow
+ * consumer (e.g. a client reading the stream slowly) holds up neither the routing
+ * pool nor the JVM-wide timer that fires the deadline.
+ */
+@Service
+public class BatchRouteService {
+
+    private final RouteService routeService;
+    private final ForkJoinPool pool;
+    private final int maxBatchSize;
+    private final long maxDeadlineMs;
+
+    public BatchRouteService(RouteService routeService,
+            @Value("${routing.batch.parallelism:0}") int parallelism,
+            @Value("${routing.batch.max-size:1000}") int maxBatchSize,
+            @Value("${routing.batch.max-deadline-ms:30000}") long maxDeadlineMs) {
+        this.routeService = routeService;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxBatchSize = maxBatchSize;
+        this.maxDeadlineMs = maxDeadlineMs;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxDeadlineMs() {
+        return maxDeadlineMs;
+    }
+
+    /**
+     * Starts evaluating the batch and returns immediately. onResult is called once
+     * per item, one at a time on the batch's emitting thread; onComplete is called
+     * there after the last item with the batch summary.
+     */
+    public void optimizeBatch(List<Item> items, long deadlineMs, Consumer<Result> onResult,
+            Consumer<Summary> onComplete) {
+        long budget = Math.min(deadlineMs > 0 ? deadlineMs : maxDeadlineMs, maxDeadlineMs);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+        long started = System.currentTimeMillis();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger timedOut = new AtomicInteger();
+        ExecutorService emitter = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "route-batch-emit");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            int index = i;
+            Item item = items.get(i);
+            CompletableFuture<List<RouteOption>> routes = new CompletableFuture<>();
+            ForkJoinTask<?> task = pool.submit(() -> {
+                try {
+                    routes.complete(routeService.optimizeRoutes(item.getOrigin(), item.getDestination(),
+                            item.getVehicleType()));
+                } catch (Throwable e) {
+                    routes.completeExceptionally(e);
+                }
+            });
+            futures[i] = routes
+                    .orTimeout(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            task.cancel(false); // drops it from the queue if it has not started
+                        }
+                    })
+                    .handleAsync((options, error) -> {
+                        Result result;
+                        if (error == null) {
+                            succeeded.incrementAndGet();
+                            result = Result.success(index, options);
+                        } else {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause()
+                                    : error;
+                            if (cause instanceof TimeoutException) {
+                                timedOut.incrementAndGet();
+                                result = Result.failure(index, "timeout", "Batch deadline exceeded");
+                            } else {
+                                failed.incrementAndGet();
+                                result = Result.failure(index, "error", String.valueOf(cause.getMessage()));
+                            }
+                        }
+                        onResult.accept(result);
+                        return null;
+                    }, emitter);
+        }
+
+        CompletableFuture.allOf(futures).whenCompleteAsync((ignored, error) -> {
+            try {
+                onComplete.accept(new Summary(items.size(), succeeded.get(), failed.get(), timedOut.get(),
+                        System.currentTimeMillis() - started));
+            } finally {
+                emitter.shutdown();
+            }
+        }, emitter);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public static class Item {
+        private final String origin;
+        private final String destination;
+        private final String vehicleType;
+
+        public Item(String origin, String destination, String vehicleType) {
+            this.origin = origin;
+            this.destination = destination;
+            this.vehicleType = vehicleType;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public String getVehicleType() {
+            return vehicleType;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Result {
+        private final int index;
+        private final String status; // success, error or timeout
+        private final List<RouteOption> routes;
+        private final String error;
+
+        private Result(int index, String status, List<RouteOption> routes, String error) {
+            this.index = index;
+            this.status = status;
+            this.routes = routes;
+            this.error = error;
+        }
+
+        static Result success(int index, List<RouteOption> routes) {
+            return new Result(index, "success", routes, null);
+        }
+
+        static Result failure(int index, String status, String error) {
+            return new Result(index, status, null, error);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public List<RouteOption> getRoutes() {
+            return routes;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    public static class Summary {
+        private final int total;
+        private final int succeeded;
+        private final int failed;
+        private final int timedOut;
+        private final long elapsedMs;
+
+        Summary(int total, int succeeded, int failed, int timedOut, long elapsedMs) {
+            this.total = total;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.timedOut = timedOut;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public String getStatus() {
+            return "complete";
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getTimedOut() {
+            return timedOut;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+    }
+}
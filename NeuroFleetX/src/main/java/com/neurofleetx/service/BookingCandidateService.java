@@ -0,0 +1,336 @@
+package com.neurofleetx.service;
+
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleSpatialIndex;
+import com.neurofleetx.fleet.VehicleState;
+import com.neurofleetx.model.Booking;
+import com.neurofleetx.model.Vehicle;
+import com.neurofleetx.repository.BookingRepository;
+import com.neurofleetx.routing.DistanceMatrix;
+import com.neurofleetx.service.RouteService.Coordinate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Vehicles that could take a pending booking: the k nearest available vehicles to
+ * the pickup by live position, with the road distance and ETA to reach it.
+ *
+ * Pending bookings are tracked from creation (or the first candidate request) with
+ * their pickup already resolved, so a query is an index lookup plus one k-by-1
+ * matrix. While a booking stays pending its candidates are recomputed every
+ * booking.candidates.refresh-ms and pushed to /topic/bookings/{id}/candidates
+ * whenever the set, its order or an ETA noticeably changes.
+ */
+@Service
+public class BookingCandidateService {
+
+    private static final int MAX_CANDIDATES = 20;
+    // Smaller ETA movements are not worth a push
+    private static final int ETA_CHANGE_SECONDS = 30;
+
+    private final BookingRepository bookingRepository;
+    private final VehicleSpatialIndex spatialIndex;
+    private final RouteService routeService;
+    private final DistanceMatrixService distanceMatrixService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final int defaultK;
+    private final double maxRadiusMeters;
+    private final long trackMillis;
+    private final Map<Long, Tracked> tracked = new ConcurrentHashMap<>();
+    // Vehicles per type (lower case), kept up to date from the fleet state
+    private final Map<String, Integer> fleetTypes = new ConcurrentHashMap<>();
+
+    public BookingCandidateService(BookingRepository bookingRepository, FleetStateStore fleetState,
+            VehicleSpatialIndex spatialIndex, RouteService routeService,
+            DistanceMatrixService distanceMatrixService, SimpMessagingTemplate messagingTemplate,
+            @Value("${booking.candidates.k:5}") int defaultK,
+            @Value("${booking.candidates.max-radius-m:20000}") double maxRadiusMeters,
+            @Value("${booking.candidates.track-minutes:30}") long trackMinutes) {
+        this.bookingRepository = bookingRepository;
+        this.spatialIndex = spatialIndex;
+        this.routeService = routeService;
+        this.distanceMatrixService = distanceMatrixService;
+        this.messagingTemplate = messagingTemplate;
+        this.defaultK = defaultK;
+        this.maxRadiusMeters = maxRadiusMeters;
+        this.trackMillis = trackMinutes * 60 * 1000;
+        fleetState.addListener(this::countType);
+    }
+
+    /** Starts following a newly created booking and pushes its first candidates. */
+    public void track(Booking booking) {
+        if (booking.getStatus() != Booking.BookingStatus.PENDING || booking.getOrigin() == null
+                || booking.getOrigin().isBlank()) {
+            return;
+        }
+        Tracked t = tracked.computeIfAbsent(booking.getId(), id -> newTracked(booking));
+        publish(t, compute(t, defaultK));
+    }
+
+    /** Stops following a booking, e.g. once it has been accepted or cancelled. */
+    public void untrack(Long bookingId) {
+        tracked.remove(bookingId);
+    }
+
+    /** Candidates for a pending booking, by ETA to the pickup (unreachable ones last). */
+    public CandidateList getCandidates(@NonNull Long bookingId, Integer k) {
+        int limit = k != null ? k : defaultK;
+        if (limit < 1 || limit > MAX_CANDIDATES) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_CANDIDATES);
+        }
+        Tracked t = tracked.get(bookingId);
+        if (t == null) {
+            Booking booking = bookingRepository.findById(bookingId)
+                    .orElseThrow(() -> new IllegalArgumentException("Booking not found: " + bookingId));
+            if (booking.getStatus() != Booking.BookingStatus.PENDING) {
+                throw new IllegalArgumentException("Booking " + bookingId + " is " + booking.getStatus());
+            }
+            t = tracked.computeIfAbsent(bookingId, id -> newTracked(booking));
+        }
+        return compute(t, limit);
+    }
+
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+
+    @Scheduled(fixedDelayString = "${booking.candidates.refresh-ms:3000}")
+    public void refresh() {
+        if (tracked.isEmpty()) {
+            return;
+        }
+        // Bookings can leave PENDING through paths that do not untrack them
+        Set<Long> stillPending = new HashSet<>();
+        for (Booking booking : bookingRepository.findAllById(new ArrayList<>(tracked.keySet()))) {
+            if (booking.getStatus() == Booking.BookingStatus.PENDING) {
+                stillPending.add(booking.getId());
+            }
+        }
+        long now = System.currentTimeMillis();
+        tracked.values().removeIf(t -> !stillPending.contains(t.bookingId) || now - t.since > trackMillis);
+
+        for (Tracked t : tracked.values()) {
+            try {
+                CandidateList candidates = compute(t, defaultK);
+                if (changed(t.lastPublished, candidates.getCandidates())) {
+                    publish(t, candidates);
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Candidate refresh failed for booking " + t.bookingId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Tracked newTracked(Booking booking) {
+        if (booking.getOrigin() == null || booking.getOrigin().isBlank()) {
+            throw new IllegalArgumentException("Booking " + booking.getId() + " has no origin");
+        }
+        double[] pickup = routeService.resolveCoordinates(booking.getOrigin());
+        return new Tracked(booking.getId(), pickup[0], pickup[1], fleetType(booking.getVehicleType()),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * The booking's vehicle type if the fleet has vehicles of that type, else null
+     * (any type): customers pick service levels such as "Standard" that are not
+     * vehicle types.
+     */
+    private String fleetType(String requested) {
+        if (requested == null || requested.isBlank()) {
+            return null;
+        }
+        String type = requested.trim();
+        return fleetTypes.containsKey(typeKey(type)) ? type : null;
+    }
+
+    private void countType(VehicleState previous, VehicleState current) {
+        String before = previous != null ? typeKey(previous.getType()) : null;
+        String after = current != null ? typeKey(current.getType()) : null;
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        if (before != null) {
+            fleetTypes.computeIfPresent(before, (type, count) -> count > 1 ? count - 1 : null);
+        }
+        if (after != null) {
+            fleetTypes.merge(after, 1, Integer::sum);
+        }
+    }
+
+    private static String typeKey(String type) {
+        return type != null ? type.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private CandidateList compute(Tracked t, int k) {
+        Predicate<VehicleState> available = VehicleSpatialIndex.matching(List.of(Vehicle.VehicleStatus.AVAILABLE),
+                t.vehicleType);
+        List<VehicleSpatialIndex.Hit> hits = spatialIndex.nearest(t.pickupLat, t.pickupLng, k, maxRadiusMeters,
+                available);
+        List<Candidate> candidates = new ArrayList<>(hits.size());
+        if (!hits.isEmpty()) {
+            List<Coordinate> sources = new ArrayList<>(hits.size());
+            for (VehicleSpatialIndex.Hit hit : hits) {
+                sources.add(new Coordinate(hit.getVehicle().getLatitude(), hit.getVehicle().getLongitude()));
+            }
+            DistanceMatrix matrix = distanceMatrixService.computeMatrix(sources,
+                    List.of(new Coordinate(t.pickupLat, t.pickupLng)), "time");
+            for (int i = 0; i < hits.size(); i++) {
+                VehicleState v = hits.get(i).getVehicle();
+                int eta = matrix.durationSeconds(i, 0);
+                boolean reachable = eta != DistanceMatrix.UNREACHABLE;
+                candidates.add(new Candidate(v.getId(), v.getType(), v.getLatitude(), v.getLongitude(),
+                        (int) Math.round(hits.get(i).getDistanceMeters()),
+                        reachable ? matrix.distanceMeters(i, 0) : null, reachable ? eta : null));
+            }
+            candidates.sort(Comparator.comparing(Candidate::getEtaSeconds,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+        }
+        return new CandidateList(t.bookingId, t.pickupLat, t.pickupLng, candidates, Instant.now());
+    }
+
+    private void publish(Tracked t, CandidateList candidates) {
+        t.lastPublished = candidates.getCandidates();
+        messagingTemplate.convertAndSend("/topic/bookings/" + t.bookingId + "/candidates", candidates);
+    }
+
+    private static boolean changed(List<Candidate> previous, List<Candidate> current) {
+        if (previous == null || previous.size() != current.size()) {
+            return true;
+        }
+        for (int i = 0; i < current.size(); i++) {
+            Candidate a = previous.get(i);
+            Candidate b = current.get(i);
+            if (a.getVehicleId() != b.getVehicleId()) {
+                return true;
+            }
+            if (a.getEtaSeconds() == null || b.getEtaSeconds() == null) {
+                if (!Objects.equals(a.getEtaSeconds(), b.getEtaSeconds())) {
+                    return true;
+                }
+            } else if (Math.abs(a.getEtaSeconds() - b.getEtaSeconds()) >= ETA_CHANGE_SECONDS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Tracked {
+        final long bookingId;
+        final double pickupLat;
+        final double pickupLng;
+        final String vehicleType;
+        final long since;
+        volatile List<Candidate> lastPublished;
+
+        Tracked(long bookingId, double pickupLat, double pickupLng, String vehicleType, long since) {
+            this.bookingId = bookingId;
+            this.pickupLat = pickupLat;
+            this.pickupLng = pickupLng;
+            this.vehicleType = vehicleType;
+            this.since = since;
+        }
+    }
+
+    public static class CandidateList {
+        private final long bookingId;
+        private final double pickupLat;
+        private final double pickupLng;
+        private final List<Candidate> candidates;
+        private final Instant computedAt;
+
+        CandidateList(long bookingId, double pickupLat, double pickupLng, List<Candidate> candidates,
+                Instant computedAt) {
+            this.bookingId = bookingId;
+            this.pickupLat = pickupLat;
+            this.pickupLng = pickupLng;
+            this.candidates = candidates;
+            this.computedAt = computedAt;
+        }
+
+        public long getBookingId() {
+            return bookingId;
+        }
+
+        public double getPickupLat() {
+            return pickupLat;
+        }
+
+        public double getPickupLng() {
+            return pickupLng;
+        }
+
+        public List<Candidate> getCandidates() {
+            return candidates;
+        }
+
+        public Instant getComputedAt() {
+            return computedAt;
+        }
+    }
+
+    public static class Candidate {
+        private final long vehicleId;
+        private final String type;
+        private final double latitude;
+        private final double longitude;
+        private final int straightLineMeters;
+        private final Integer roadMeters;
+        private final Integer etaSeconds;
+
+        Candidate(long vehicleId, String type, double latitude, double longitude, int straightLineMeters,
+                Integer roadMeters, Integer etaSeconds) {
+            this.vehicleId = vehicleId;
+            this.type = type;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.straightLineMeters = straightLineMeters;
+            this.roadMeters = roadMeters;
+            this.etaSeconds = etaSeconds;
+        }
+
+        public long getVehicleId() {
+            return vehicleId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public int getStraightLineMeters() {
+            return straightLineMeters;
+        }
+
+        /** Road distance to the pickup; null if the pickup cannot be reached by road. */
+        public Integer getRoadMeters() {
+            return roadMeters;
+        }
+
+        /** Estimated drive time to the pickup; null if it cannot be reached by road. */
+        public Integer getEtaSeconds() {
+            return etaSeconds;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.neurofleetx.service;
 
+import com.neurofleetx.matching.MapMatcher;
 import com.neurofleetx.model.Booking;
 import com.neurofleetx.repository.BookingRepository;
+import com.neurofleetx.traffic.TrafficLayer;
+import com.neurofleetx.trajectory.TrajectoryStore;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.lang.NonNull;
@@ -12,10 +15,20 @@ public class BookingService {
 
     private final BookingRepository bookingRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final TrafficLayer trafficLayer;
+    private final BookingCandidateService candidateService;
+    private final TrajectoryStore trajectoryStore;
+    private final MapMatcher mapMatcher;
 
-    public BookingService(BookingRepository bookingRepository, SimpMessagingTemplate messagingTemplate) {
+    public BookingService(BookingRepository bookingRepository, SimpMessagingTemplate messagingTemplate,
+            TrafficLayer trafficLayer, BookingCandidateService candidateService, TrajectoryStore trajectoryStore,
+            MapMatcher mapMatcher) {
         this.bookingRepository = bookingRepository;
         this.messagingTemplate = messagingTemplate;
+        this.trafficLayer = trafficLayer;
+        this.candidateService = candidateService;
+        this.trajectoryStore = trajectoryStore;
+        this.mapMatcher = mapMatcher;
     }
 
     public Booking createBooking(Booking booking) {
@@ -25,10 +38,16 @@ public class BookingService {
 
         // Broadcast to all drivers listening on /topic/bookings/available
         messagingTemplate.convertAndSend("/topic/bookings/available", savedBooking);
+        // Nearby vehicles go to /topic/bookings/{id}/candidates until it is taken
+        candidateService.track(savedBooking);
 
         return savedBooking;
     }
 
+    public BookingCandidateService.CandidateList getCandidates(@NonNull Long bookingId, Integer k) {
+        return candidateService.getCandidates(bookingId, k);
+    }
+
     public List<Booking> getPendingBookings() {
         return bookingRepository.findByStatus(Booking.BookingStatus.PENDING);
     }
@@ -43,6 +62,7 @@ public class BookingService {
 
         booking.setDriverId(driverId);
         booking.setStatus(Booking.BookingStatus.ACCEPTED);
+        candidateService.untrack(bookingId);
         // Set initial driver location (Mock: Depot) if needed, or wait for update
         Booking savedBooking = bookingRepository.save(booking);
         System.out.println("Sending WebSocket update for booking: " + savedBooking.getId());
@@ -54,6 +74,24 @@ public class BookingService {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
         booking.setStatus(Booking.BookingStatus.valueOf(status));
+        if (booking.getStatus() != Booking.BookingStatus.PENDING) {
+            candidateService.untrack(bookingId);
+        }
+        if (booking.getStatus() == Booking.BookingStatus.COMPLETED
+                || booking.getStatus() == Booking.BookingStatus.CANCELLED) {
+            trajectoryStore.finishBooking(bookingId);
+        }
+        if (booking.getStatus() == Booking.BookingStatus.COMPLETED) {
+            // The matched road distance is what the trip is billed on; without an open track
+            // (restart since the last ping) the persisted distance stands
+            double meters = Math.max(mapMatcher.finish(bookingId), recordedMeters(booking));
+            if (meters > 0) {
+                booking.setMatchedDistanceMeters(meters);
+                booking.setDistance(String.format("%.1f km", meters / 1000));
+            }
+        } else if (booking.getStatus() == Booking.BookingStatus.CANCELLED) {
+            mapMatcher.finish(bookingId);
+        }
         Booking savedBooking = bookingRepository.save(booking);
         messagingTemplate.convertAndSend("/topic/bookings/" + savedBooking.getId(), savedBooking);
         return savedBooking;
@@ -64,8 +102,30 @@ public class BookingService {
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
         booking.setDriverLat(lat);
         booking.setDriverLng(lng);
+        if (lat != null && lng != null && booking.getStatus() == Booking.BookingStatus.STARTED) {
+            // A track lost to a restart or a long stop carries on from the persisted distance
+            double recorded = recordedMeters(booking);
+            MapMatcher.Match match = mapMatcher.match(bookingId, System.currentTimeMillis(), lat, lng, recorded);
+            if (match != null) {
+                booking.setMatchedDistanceMeters(Math.max(recorded, match.getDistanceMeters()));
+            }
+        }
         bookingRepository.save(booking);
         messagingTemplate.convertAndSend("/topic/bookings/" + booking.getId(), booking);
+        if (lat != null && lng != null) {
+            // Consecutive pings of a trip double as traffic probes
+            trafficLayer.recordPing(bookingId, lat, lng, System.currentTimeMillis());
+            // Kept for trip replay (/api/replay/bookings/{id})
+            trajectoryStore.recordBookingLocation(bookingId, lat, lng);
+        }
+    }
+
+    private static double recordedMeters(Booking booking) {
+        return booking.getMatchedDistanceMeters() != null ? booking.getMatchedDistanceMeters() : 0;
+    }
+
+    public MapMatcher.Stats getMapMatchingStats() {
+        return mapMatcher.stats();
     }
 
     public Booking getBooking(@NonNull Long id) {
@@ -0,0 +1,434 @@
+package com.neurofleetx.service;
+
+import com.neurofleetx.dispatch.VrpProblem;
+import com.neurofleetx.dispatch.VrpSolution;
+import com.neurofleetx.dispatch.VrpSolver;
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleSpatialIndex;
+import com.neurofleetx.model.Booking;
+import com.neurofleetx.model.Vehicle;
+import com.neurofleetx.repository.BookingRepository;
+import com.neurofleetx.repository.VehicleRepository;
+import com.neurofleetx.routing.DistanceMatrix;
+import com.neurofleetx.service.RouteService.Coordinate;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Assigns pending bookings to available vehicles as a vehicle routing problem:
+ * each vehicle gets an ordered list of bookings so that the fleet serves as many
+ * as its range allows with the least empty driving to pickups. Road distances come
+ * from {@link DistanceMatrixService}; the search itself is {@link VrpSolver}.
+ *
+ * Only vehicles among the dispatch.vehicles-per-booking nearest (straight line) to
+ * some pickup are planned, which bounds the problem by the bookings rather than
+ * the fleet; a vehicle further than that from every pickup would not win one.
+ */
+@Service
+public class DispatchService {
+
+    // Energy kept in reserve; a vehicle is never planned below this level
+    private static final int RESERVE_PERCENT = 15;
+
+    private final BookingRepository bookingRepository;
+    private final VehicleRepository vehicleRepository;
+    private final FleetStateStore fleetState;
+    private final VehicleSpatialIndex spatialIndex;
+    private final BookingService bookingService;
+    private final RouteService routeService;
+    private final DistanceMatrixService distanceMatrixService;
+    private final ForkJoinPool pool;
+    private final int threads;
+    private final int maxBookings;
+    private final int maxStops;
+    private final int vehiclesPerBooking;
+    private final long defaultTimeBudgetMs;
+    private final long maxTimeBudgetMs;
+    private final double evRangeKm;
+    private final double fuelRangeKm;
+
+    public DispatchService(BookingRepository bookingRepository, VehicleRepository vehicleRepository,
+            FleetStateStore fleetState, VehicleSpatialIndex spatialIndex, BookingService bookingService,
+            RouteService routeService, DistanceMatrixService distanceMatrixService,
+            @Value("${dispatch.solver.threads:0}") int threads,
+            @Value("${dispatch.solver.time-budget-ms:2000}") long defaultTimeBudgetMs,
+            @Value("${dispatch.solver.max-time-budget-ms:10000}") long maxTimeBudgetMs,
+            @Value("${dispatch.max-bookings:500}") int maxBookings,
+            @Value("${dispatch.max-stops:8}") int maxStops,
+            @Value("${dispatch.vehicles-per-booking:20}") int vehiclesPerBooking,
+            @Value("${dispatch.ev-range-km:400}") double evRangeKm,
+            @Value("${dispatch.fuel-range-km:600}") double fuelRangeKm) {
+        this.bookingRepository = bookingRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.fleetState = fleetState;
+        this.spatialIndex = spatialIndex;
+        this.bookingService = bookingService;
+        this.routeService = routeService;
+        this.distanceMatrixService = distanceMatrixService;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(this.threads);
+        this.defaultTimeBudgetMs = defaultTimeBudgetMs;
+        this.maxTimeBudgetMs = maxTimeBudgetMs;
+        this.maxBookings = maxBookings;
+        this.maxStops = maxStops;
+        this.vehiclesPerBooking = vehiclesPerBooking;
+        this.evRangeKm = evRangeKm;
+        this.fuelRangeKm = fuelRangeKm;
+    }
+
+    /**
+     * Plans the oldest pending bookings (up to dispatch.max-bookings) over the
+     * available vehicles with a known position near them. With apply set, only
+     * vehicles with a driver are planned; bookings are accepted on behalf of each
+     * planned vehicle's driver and the vehicle is marked in use.
+     */
+    public DispatchPlan optimize(Long timeBudgetMs, boolean apply) {
+        long budget = timeBudgetMs == null ? defaultTimeBudgetMs : timeBudgetMs;
+        if (budget <= 0 || budget > maxTimeBudgetMs) {
+            throw new IllegalArgumentException("Time budget must be between 1 and " + maxTimeBudgetMs + " ms");
+        }
+        long started = System.currentTimeMillis();
+
+        List<Booking> bookings = bookingRepository.findByStatus(Booking.BookingStatus.PENDING).stream()
+                .sorted(Comparator.comparing(Booking::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(Booking::getId))
+                .limit(maxBookings)
+                .collect(Collectors.toList());
+        // Status and position come from the live fleet state, which may be ahead of the table
+        List<Vehicle> vehicles = vehicleRepository
+                .findAllById(fleetState.idsWithStatus(Vehicle.VehicleStatus.AVAILABLE)).stream()
+                .map(fleetState::overlay)
+                .filter(v -> v.getStatus() == Vehicle.VehicleStatus.AVAILABLE)
+                .filter(v -> v.getLatitude() != null && v.getLongitude() != null)
+                .filter(v -> !apply || v.getDriver() != null)
+                .collect(Collectors.toList());
+
+        List<Coordinate> pickups = coordinates(bookings, Booking::getOrigin);
+        List<Coordinate> dropoffs = coordinates(bookings, Booking::getDestination);
+        vehicles = nearPickups(vehicles, bookings, pickups);
+
+        DispatchPlan plan = new DispatchPlan();
+        if (bookings.isEmpty() || vehicles.isEmpty()) {
+            plan.setUnassignedBookingIds(bookings.stream().map(Booking::getId).collect(Collectors.toList()));
+            plan.setElapsedMs(System.currentTimeMillis() - started);
+            return plan;
+        }
+
+        VrpProblem problem = buildProblem(vehicles, bookings, pickups, dropoffs);
+        VrpSolution solution = new VrpSolver(problem).solve(budget, threads, pool);
+
+        List<Assignment> assignments = new ArrayList<>();
+        for (int v = 0; v < vehicles.size(); v++) {
+            int[] route = solution.route(v);
+            if (route.length == 0) {
+                continue;
+            }
+            Vehicle vehicle = vehicles.get(v);
+            Assignment assignment = new Assignment();
+            assignment.setVehicleId(vehicle.getId());
+            assignment.setVehicleName(vehicle.getName());
+            assignment.setDriverId(vehicle.getDriver() != null ? vehicle.getDriver().getId() : null);
+            List<Long> bookingIds = new ArrayList<>(route.length);
+            for (int b : route) {
+                bookingIds.add(bookings.get(b).getId());
+            }
+            assignment.setBookingIds(bookingIds);
+            assignment.setDeadheadMeters(solution.deadhead(v));
+            assignment.setDistanceMeters(solution.distance(v));
+            assignments.add(assignment);
+        }
+        List<Long> unassigned = new ArrayList<>();
+        for (int b : solution.getUnassigned()) {
+            unassigned.add(bookings.get(b).getId());
+        }
+
+        plan.setAssignments(assignments);
+        plan.setUnassignedBookingIds(unassigned);
+        plan.setTotalDeadheadMeters(solution.getTotalDeadhead());
+        plan.setConstructionDeadheadMeters(solution.getConstructionDeadhead());
+        plan.setIterations(solution.getIterations());
+        if (apply) {
+            applyPlan(plan);
+        }
+        plan.setElapsedMs(System.currentTimeMillis() - started);
+        System.out.println("Dispatch plan: " + bookings.size() + " bookings, " + vehicles.size() + " vehicles, "
+                + unassigned.size() + " unassigned, deadhead " + solution.getTotalDeadhead() + " m (construction "
+                + solution.getConstructionDeadhead() + " m), " + plan.getElapsedMs() + " ms");
+        return plan;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private List<Coordinate> coordinates(List<Booking> bookings, Function<Booking, String> place) {
+        List<Coordinate> points = new ArrayList<>(bookings.size());
+        for (Booking booking : bookings) {
+            double[] point = routeService.resolveCoordinates(place.apply(booking));
+            points.add(new Coordinate(point[0], point[1]));
+        }
+        return points;
+    }
+
+    /** The vehicles, in order, that are among the nearest eligible ones to at least one pickup. */
+    private List<Vehicle> nearPickups(List<Vehicle> vehicles, List<Booking> bookings, List<Coordinate> pickups) {
+        Set<Long> planned = new HashSet<>();
+        for (Vehicle vehicle : vehicles) {
+            planned.add(vehicle.getId());
+        }
+        Set<Long> near = new HashSet<>();
+        for (int b = 0; b < bookings.size(); b++) {
+            boolean needsEv = "EV".equalsIgnoreCase(bookings.get(b).getVehicleType());
+            for (VehicleSpatialIndex.Hit hit : spatialIndex.nearest(pickups.get(b).getLat(), pickups.get(b).getLng(),
+                    vehiclesPerBooking, Double.MAX_VALUE,
+                    v -> planned.contains(v.getId()) && (!needsEv || v.isElectric()))) {
+                near.add(hit.getVehicle().getId());
+            }
+        }
+        return vehicles.stream().filter(v -> near.contains(v.getId())).collect(Collectors.toList());
+    }
+
+    private VrpProblem buildProblem(List<Vehicle> vehicles, List<Booking> bookings, List<Coordinate> pickups,
+            List<Coordinate> dropoffs) {
+        int nv = vehicles.size();
+        int nb = bookings.size();
+
+        // Deadhead: rows are vehicles then dropoffs, columns are pickups
+        List<Coordinate> starts = new ArrayList<>(nv + nb);
+        for (Vehicle vehicle : vehicles) {
+            starts.add(new Coordinate(vehicle.getLatitude(), vehicle.getLongitude()));
+        }
+        starts.addAll(dropoffs);
+        int[] distances = distanceRows(starts, pickups);
+        int[] startCost = new int[nv * nb];
+        int[] linkCost = new int[nb * nb];
+        System.arraycopy(distances, 0, startCost, 0, nv * nb);
+        System.arraycopy(distances, nv * nb, linkCost, 0, nb * nb);
+        int[] tripCost = distanceMatrixService.computeLegs(pickups, dropoffs, "distance");
+
+        long[] range = new long[nv];
+        boolean[] allowed = new boolean[nv * nb];
+        for (int v = 0; v < nv; v++) {
+            Vehicle vehicle = vehicles.get(v);
+            range[v] = rangeMeters(vehicle);
+            for (int b = 0; b < nb; b++) {
+                // Bookings for an EV need an EV; other bookings take any vehicle
+                allowed[v * nb + b] = tripCost[b] != VrpProblem.UNREACHABLE
+                        && (!"EV".equalsIgnoreCase(bookings.get(b).getVehicleType()) || isElectric(vehicle));
+            }
+        }
+        return new VrpProblem(nv, nb, startCost, linkCost, tripCost, range, allowed, maxStops);
+    }
+
+    /** Source-to-target distances, row-major, in as many matrix calls as routing.matrix.max-cells needs. */
+    private int[] distanceRows(List<Coordinate> sources, List<Coordinate> targets) {
+        int columns = targets.size();
+        int rowsPerCall = Math.max(1, distanceMatrixService.getMaxCells() / columns);
+        int[] distances = new int[sources.size() * columns];
+        for (int from = 0; from < sources.size(); from += rowsPerCall) {
+            int to = Math.min(sources.size(), from + rowsPerCall);
+            DistanceMatrix part = distanceMatrixService.computeMatrix(sources.subList(from, to), targets, "distance");
+            System.arraycopy(part.getDistances(), 0, distances, from * columns, part.getDistances().length);
+        }
+        return distances;
+    }
+
+    /** Remaining driving range above the reserve; an unreported level counts as full. */
+    private long rangeMeters(Vehicle vehicle) {
+        Integer level = isElectric(vehicle) ? vehicle.getBattery() : vehicle.getFuel();
+        double fullRangeKm = isElectric(vehicle) ? evRangeKm : fuelRangeKm;
+        int usable = Math.max(0, (level != null ? level : 100) - RESERVE_PERCENT);
+        return Math.round(usable / 100.0 * fullRangeKm * 1000);
+    }
+
+    private static boolean isElectric(Vehicle vehicle) {
+        return "EV".equalsIgnoreCase(vehicle.getType());
+    }
+
+    private void applyPlan(DispatchPlan plan) {
+        List<Long> failed = new ArrayList<>();
+        for (Assignment assignment : plan.getAssignments()) {
+            if (assignment.getDriverId() == null) {
+                continue;
+            }
+            int accepted = 0;
+            for (Long bookingId : assignment.getBookingIds()) {
+                try {
+                    bookingService.acceptBooking(bookingId, assignment.getDriverId());
+                    accepted++;
+                } catch (RuntimeException e) {
+                    // Cancelled or taken by a driver since the plan was computed
+                    failed.add(bookingId);
+                }
+            }
+            if (accepted > 0) {
+                fleetState.update(assignment.getVehicleId(), v -> v.setStatus(Vehicle.VehicleStatus.IN_USE));
+            }
+            assignment.setApplied(accepted > 0);
+        }
+        plan.setFailedBookingIds(failed);
+        plan.setApplied(true);
+    }
+
+    public static class DispatchPlan {
+        private List<Assignment> assignments = new ArrayList<>();
+        private List<Long> unassignedBookingIds = new ArrayList<>();
+        private List<Long> failedBookingIds = new ArrayList<>();
+        private long totalDeadheadMeters;
+        private long constructionDeadheadMeters;
+        private long iterations;
+        private long elapsedMs;
+        private boolean applied;
+        private LocalDateTime generatedAt = LocalDateTime.now();
+
+        public List<Assignment> getAssignments() {
+            return assignments;
+        }
+
+        public void setAssignments(List<Assignment> assignments) {
+            this.assignments = assignments;
+        }
+
+        public List<Long> getUnassignedBookingIds() {
+            return unassignedBookingIds;
+        }
+
+        public void setUnassignedBookingIds(List<Long> unassignedBookingIds) {
+            this.unassignedBookingIds = unassignedBookingIds;
+        }
+
+        public List<Long> getFailedBookingIds() {
+            return failedBookingIds;
+        }
+
+        public void setFailedBookingIds(List<Long> failedBookingIds) {
+            this.failedBookingIds = failedBookingIds;
+        }
+
+        public long getTotalDeadheadMeters() {
+            return totalDeadheadMeters;
+        }
+
+        public void setTotalDeadheadMeters(long totalDeadheadMeters) {
+            this.totalDeadheadMeters = totalDeadheadMeters;
+        }
+
+        public long getConstructionDeadheadMeters() {
+            return constructionDeadheadMeters;
+        }
+
+        public void setConstructionDeadheadMeters(long constructionDeadheadMeters) {
+            this.constructionDeadheadMeters = constructionDeadheadMeters;
+        }
+
+        public long getIterations() {
+            return iterations;
+        }
+
+        public void setIterations(long iterations) {
+            this.iterations = iterations;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public void setElapsedMs(long elapsedMs) {
+            this.elapsedMs = elapsedMs;
+        }
+
+        public boolean isApplied() {
+            return applied;
+        }
+
+        public void setApplied(boolean applied) {
+            this.applied = applied;
+        }
+
+        public LocalDateTime getGeneratedAt() {
+            return generatedAt;
+        }
+
+        public void setGeneratedAt(LocalDateTime generatedAt) {
+            this.generatedAt = generatedAt;
+        }
+    }
+
+    public static class Assignment {
+        private Long vehicleId;
+        private String vehicleName;
+        private Long driverId;
+        private List<Long> bookingIds;
+        private long deadheadMeters;
+        private long distanceMeters;
+        private boolean applied;
+
+        public Long getVehicleId() {
+            return vehicleId;
+        }
+
+        public void setVehicleId(Long vehicleId) {
+            this.vehicleId = vehicleId;
+        }
+
+        public String getVehicleName() {
+            return vehicleName;
+        }
+
+        public void setVehicleName(String vehicleName) {
+            this.vehicleName = vehicleName;
+        }
+
+        public Long getDriverId() {
+            return driverId;
+        }
+
+        public void setDriverId(Long driverId) {
+            this.driverId = driverId;
+        }
+
+        public List<Long> getBookingIds() {
+            return bookingIds;
+        }
+
+        public void setBookingIds(List<Long> bookingIds) {
+            this.bookingIds = bookingIds;
+        }
+
+        public long getDeadheadMeters() {
+            return deadheadMeters;
+        }
+
+        public void setDeadheadMeters(long deadheadMeters) {
+            this.deadheadMeters = deadheadMeters;
+        }
+
+        public long getDistanceMeters() {
+            return distanceMeters;
+        }
+
+        public void setDistanceMeters(long distanceMeters) {
+            this.distanceMeters = distanceMeters;
+        }
+
+        public boolean isApplied() {
+            return applied;
+        }
+
+        public void setApplied(boolean applied) {
+            this.applied = applied;
+        }
+    }
+}
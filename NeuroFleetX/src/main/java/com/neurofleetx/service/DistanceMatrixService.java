@@ -0,0 +1,149 @@
+package com.neurofleetx.service;
+
+import com.neurofleetx.geo.GeoMath;
+import com.neurofleetx.routing.DistanceMatrix;
+import com.neurofleetx.routing.RoadPath;
+import com.neurofleetx.routing.RouteMetric;
+import com.neurofleetx.routing.RoutingEngine;
+import com.neurofleetx.service.RouteService.Coordinate;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Many-to-many travel times and distances for dispatch, e.g. every available
+ * vehicle to every pending booking. Road network searches run on a dedicated
+ * pool so large matrices do not compete with the common pool.
+ */
+@Service
+public class DistanceMatrixService {
+
+    // Used when no road graph is configured: straight-line distance stretched by a
+    // typical urban detour factor, at the default speed RouteService assumes
+    private static final double DETOUR_FACTOR = 1.3;
+    private static final double FALLBACK_SPEED_KMH = 60.0;
+
+    private final RoutingEngine routingEngine;
+    private final ForkJoinPool pool;
+    private final int maxCells;
+
+    public DistanceMatrixService(RoutingEngine routingEngine,
+            @Value("${routing.matrix.parallelism:0}") int parallelism,
+            @Value("${routing.matrix.max-cells:1000000}") int maxCells) {
+        this.routingEngine = routingEngine;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxCells = maxCells;
+    }
+
+    public DistanceMatrix computeMatrix(List<Coordinate> sources, List<Coordinate> targets, String metric) {
+        if (sources == null || sources.isEmpty() || targets == null || targets.isEmpty()) {
+            throw new IllegalArgumentException("Sources and targets must not be empty");
+        }
+        if ((long) sources.size() * targets.size() > maxCells) {
+            throw new IllegalArgumentException("Matrix exceeds " + maxCells + " cells");
+        }
+        RouteMetric routeMetric = parseMetric(metric);
+        double[] sourceLats = lats(sources, "source");
+        double[] sourceLngs = lngs(sources);
+        double[] targetLats = lats(targets, "target");
+        double[] targetLngs = lngs(targets);
+
+        if (routingEngine.isAvailable()) {
+            return pool.submit(() -> routingEngine.matrix(sourceLats, sourceLngs, targetLats, targetLngs,
+                    routeMetric)).join();
+        }
+        return estimateMatrix(sourceLats, sourceLngs, targetLats, targetLngs);
+    }
+
+    /**
+     * Distance in meters of each leg from source i to target i alone, with
+     * {@link DistanceMatrix#UNREACHABLE} where no path exists; for pairwise trips,
+     * where a full matrix would compute every cross pair only to read its diagonal.
+     */
+    public int[] computeLegs(List<Coordinate> sources, List<Coordinate> targets, String metric) {
+        if (sources == null || targets == null || sources.size() != targets.size()) {
+            throw new IllegalArgumentException("Sources and targets must pair up");
+        }
+        RouteMetric routeMetric = parseMetric(metric);
+        double[] sourceLats = lats(sources, "source");
+        double[] sourceLngs = lngs(sources);
+        double[] targetLats = lats(targets, "target");
+        double[] targetLngs = lngs(targets);
+
+        if (routingEngine.isAvailable()) {
+            return pool.submit(() -> IntStream.range(0, sourceLats.length).parallel().map(i -> {
+                RoadPath path = routingEngine.route(sourceLats[i], sourceLngs[i], targetLats[i], targetLngs[i],
+                        routeMetric);
+                return path != null ? (int) Math.round(path.getDistanceMeters()) : DistanceMatrix.UNREACHABLE;
+            }).toArray()).join();
+        }
+        int[] distances = new int[sourceLats.length];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = (int) Math.round(DETOUR_FACTOR
+                    * GeoMath.haversineMeters(sourceLats[i], sourceLngs[i], targetLats[i], targetLngs[i]));
+        }
+        return distances;
+    }
+
+    public int getMaxCells() {
+        return maxCells;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private DistanceMatrix estimateMatrix(double[] sourceLats, double[] sourceLngs, double[] targetLats,
+            double[] targetLngs) {
+        int n = sourceLats.length;
+        int m = targetLats.length;
+        int[] durations = new int[n * m];
+        int[] distances = new int[n * m];
+        double metersPerSecond = FALLBACK_SPEED_KMH / 3.6;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                double meters = DETOUR_FACTOR
+                        * GeoMath.haversineMeters(sourceLats[i], sourceLngs[i], targetLats[j], targetLngs[j]);
+                durations[i * m + j] = (int) Math.round(meters / metersPerSecond);
+                distances[i * m + j] = (int) Math.round(meters);
+            }
+        }
+        return new DistanceMatrix(n, m, durations, distances);
+    }
+
+    private static RouteMetric parseMetric(String metric) {
+        if (metric == null || metric.isBlank()) {
+            return RouteMetric.TIME;
+        }
+        try {
+            return RouteMetric.valueOf(metric.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown metric: " + metric);
+        }
+    }
+
+    private static double[] lats(List<Coordinate> points, String role) {
+        double[] values = new double[points.size()];
+        for (int i = 0; i < values.length; i++) {
+            Coordinate c = points.get(i);
+            if (c == null || c.getLat() == null || c.getLng() == null) {
+                throw new IllegalArgumentException("Missing coordinates for " + role + " " + i);
+            }
+            values[i] = c.getLat();
+        }
+        return values;
+    }
+
+    private static double[] lngs(List<Coordinate> points) {
+        double[] values = new double[points.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = points.get(i).getLng();
+        }
+        return values;
+    }
+}
@@ -1,52 +1,289 @@
 package com.neurofleetx.service;
 
+import com.neurofleetx.fleet.FleetJobScheduler;
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleState;
+import com.neurofleetx.health.HealthRollupStore;
+import com.neurofleetx.model.JobCheckpoint;
 import com.neurofleetx.model.Vehicle;
 import com.neurofleetx.model.VehicleHealthLog;
+import com.neurofleetx.repository.JobCheckpointRepository;
 import com.neurofleetx.repository.VehicleHealthLogRepository;
 import com.neurofleetx.repository.VehicleRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
 public class MaintenanceService {
 
+    private static final String HEALTH_JOB = "fleet-health";
+    private static final int RECENT_CHUNKS = 64;
+
     private final VehicleRepository vehicleRepository;
     private final VehicleHealthLogRepository logRepository;
-    private final Random random = new Random();
+    private final JobCheckpointRepository checkpointRepository;
+    private final HealthRollupStore healthRollups;
+    private final FleetStateStore fleetState;
+    private final FleetJobScheduler fleetJobs;
+    private final TransactionTemplate transactionTemplate;
+    private final long healthIntervalMs;
+    private final int healthChunkSize;
+
+    private final AtomicLong healthChunks = new AtomicLong();
+    private final AtomicLong healthVehicles = new AtomicLong();
+    private final AtomicLong healthChunkNanos = new AtomicLong();
+    private final AtomicLong maxHealthChunkNanos = new AtomicLong();
+    private final AtomicLong failedHealthChunks = new AtomicLong();
+    private final AtomicLong resumedHealthRuns = new AtomicLong();
+    private final AtomicLong resumedHealthShards = new AtomicLong();
+    private final Deque<ChunkStats> recentHealthChunks = new ArrayDeque<>();
+    // Run of the health job in progress (or last run), set before its shards start
+    private volatile JobCheckpoint healthRun;
 
-    public MaintenanceService(VehicleRepository vehicleRepository, VehicleHealthLogRepository logRepository) {
+    public MaintenanceService(VehicleRepository vehicleRepository, VehicleHealthLogRepository logRepository,
+            JobCheckpointRepository checkpointRepository, HealthRollupStore healthRollups, FleetStateStore fleetState,
+            FleetJobScheduler fleetJobs, TransactionTemplate transactionTemplate,
+            @Value("${fleet.jobs.health-interval-ms:0}") long healthIntervalMs,
+            @Value("${fleet.jobs.health-chunk-size:500}") int healthChunkSize) {
+        if (healthChunkSize < 1) {
+            throw new IllegalArgumentException("fleet.jobs.health-chunk-size must be at least 1");
+        }
         this.vehicleRepository = vehicleRepository;
         this.logRepository = logRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.healthRollups = healthRollups;
+        this.fleetState = fleetState;
+        this.fleetJobs = fleetJobs;
+        this.transactionTemplate = transactionTemplate;
+        this.healthIntervalMs = healthIntervalMs;
+        this.healthChunkSize = healthChunkSize;
+    }
+
+    @PostConstruct
+    void registerJobs() {
+        fleetJobs.register(HEALTH_JOB, healthIntervalMs, new FleetJobScheduler.ShardTask() {
+            @Override
+            public void beforeRun() {
+                startHealthRun();
+            }
+
+            @Override
+            public void run(List<VehicleState> shard) {
+                simulateShardHealth(shard);
+            }
+
+            @Override
+            public void afterRun(boolean failed) {
+                finishHealthRun(failed);
+            }
+        });
     }
 
     /**
      * Simulations run to update fleet health parameters randomly.
      * In real life, this would consume IoT data.
+     * Runs as a fleet job, shards in parallel; returns false if a run is already in progress.
      */
-    @Transactional
-    public void simulateFleetHealth() {
-        List<Vehicle> fleet = vehicleRepository.findAll();
+    public boolean simulateFleetHealth() {
+        return fleetJobs.runNow(HEALTH_JOB);
+    }
+
+    // Starts a new run, or resumes the last one if it did not finish
+    private void startHealthRun() {
+        String key = HEALTH_JOB + "/" + fleetJobs.getShardCount();
+        JobCheckpoint run = checkpointRepository.findById(key).orElseGet(() -> new JobCheckpoint(key));
+        if (run.getRunId() != null && !run.isComplete()) {
+            resumedHealthRuns.incrementAndGet();
+            System.out.println("Fleet health resuming unfinished run " + run.getRunId());
+        } else {
+            run.setRunId(run.getRunId() != null ? run.getRunId() + 1 : 1);
+            run.setComplete(false);
+            run.setUpdatedAt(Instant.now());
+            run = checkpointRepository.save(run);
+        }
+        healthRun = run;
+    }
+
+    // A failed run stays open, so the next one finishes it
+    private void finishHealthRun(boolean failed) {
+        if (!failed) {
+            JobCheckpoint run = healthRun;
+            run.setComplete(true);
+            run.setUpdatedAt(Instant.now());
+            checkpointRepository.save(run);
+        }
+    }
+
+    /**
+     * Works through a shard in ascending id order, fleet.jobs.health-chunk-size vehicles
+     * per transaction, so locks and the persistence context stay the size of a chunk.
+     * Each chunk commits with the shard's checkpoint. When an unfinished run is
+     * resumed, shards it finished are skipped and the others pick up after their last
+     * committed chunk, so no vehicle is worn twice in one run.
+     *
+     * A chunk's vehicles are read before its transaction, so they are not managed
+     * there: the wear reaches the live state once the chunk commits, and the table
+     * through the write-behind, while a chunk that rolls back leaves no trace.
+     */
+    private void simulateShardHealth(List<VehicleState> shard) {
+        if (shard.isEmpty()) {
+            return;
+        }
+        Long runId = healthRun.getRunId();
+        String key = HEALTH_JOB + ":" + fleetJobs.shardOf(shard.get(0).getId()) + "/" + fleetJobs.getShardCount();
+        JobCheckpoint checkpoint = checkpointRepository.findById(key).filter(c -> runId.equals(c.getRunId()))
+                .orElse(null);
+        long resumeAfter = 0;
+        if (checkpoint == null) {
+            checkpoint = new JobCheckpoint(key);
+            checkpoint.setRunId(runId);
+        } else if (checkpoint.isComplete()) {
+            return;
+        } else {
+            resumeAfter = checkpoint.getLastVehicleId();
+            resumedHealthShards.incrementAndGet();
+            System.out.println("Fleet health resuming shard " + key + " after vehicle " + resumeAfter);
+        }
+        JobCheckpoint shardCheckpoint = checkpoint;
+        long after = resumeAfter;
+        long[] ids = shard.stream().mapToLong(VehicleState::getId).filter(id -> id > after).sorted().toArray();
+        if (ids.length == 0) {
+            if (after > 0) {
+                transactionTemplate.executeWithoutResult(tx -> saveCheckpoint(shardCheckpoint, after, true));
+            }
+            return;
+        }
+        for (int from = 0; from < ids.length; from += healthChunkSize) {
+            int to = Math.min(ids.length, from + healthChunkSize);
+            List<Long> chunk = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                chunk.add(ids[i]);
+            }
+            long lastId = ids[to - 1];
+            boolean complete = to == ids.length;
+            long started = System.nanoTime();
+            try {
+                List<Vehicle> vehicles = vehicleRepository.findAllById(chunk);
+                transactionTemplate.executeWithoutResult(tx -> {
+                    simulateHealth(vehicles);
+                    saveCheckpoint(shardCheckpoint, lastId, complete);
+                });
+            } catch (RuntimeException e) {
+                // The rest of the shard waits for the next run, which starts at this chunk
+                failedHealthChunks.incrementAndGet();
+                throw e;
+            }
+            recordHealthChunk(key, ids[from], lastId, chunk.size(), System.nanoTime() - started);
+        }
+    }
+
+    private void saveCheckpoint(JobCheckpoint checkpoint, long lastVehicleId, boolean complete) {
+        checkpoint.setLastVehicleId(lastVehicleId);
+        checkpoint.setComplete(complete);
+        checkpoint.setUpdatedAt(Instant.now());
+        checkpointRepository.save(checkpoint);
+    }
+
+    private void recordHealthChunk(String shard, long firstId, long lastId, int vehicles, long nanos) {
+        healthChunks.incrementAndGet();
+        healthVehicles.addAndGet(vehicles);
+        healthChunkNanos.addAndGet(nanos);
+        maxHealthChunkNanos.accumulateAndGet(nanos, Math::max);
+        ChunkStats chunk = new ChunkStats(shard, firstId, lastId, vehicles, nanos / 1_000_000.0, Instant.now());
+        synchronized (recentHealthChunks) {
+            if (recentHealthChunks.size() == RECENT_CHUNKS) {
+                recentHealthChunks.removeFirst();
+            }
+            recentHealthChunks.addLast(chunk);
+        }
+    }
 
+    public HealthJobStats getHealthJobStats() {
+        List<ChunkStats> recent;
+        synchronized (recentHealthChunks) {
+            recent = new ArrayList<>(recentHealthChunks);
+        }
+        Collections.reverse(recent);
+        long chunks = healthChunks.get();
+        long vehicles = healthVehicles.get();
+        long nanos = healthChunkNanos.get();
+        JobCheckpoint run = healthRun;
+        return new HealthJobStats(healthChunkSize, run != null ? run.getRunId() : null, chunks, vehicles,
+                failedHealthChunks.get(), resumedHealthRuns.get(), resumedHealthShards.get(),
+                chunks > 0 ? nanos / 1_000_000.0 / chunks : 0,
+                maxHealthChunkNanos.get() / 1_000_000.0, nanos > 0 ? vehicles * 1e9 / nanos : 0, recent);
+    }
+
+    private void simulateHealth(List<Vehicle> fleet) {
+        List<VehicleHealthLog> logs = new ArrayList<>(fleet.size());
+        List<Runnable> stateUpdates = new ArrayList<>(fleet.size());
         for (Vehicle v : fleet) {
             if (v == null)
                 continue;
 
+            // Start from the live telemetry, which may be ahead of the table
+            fleetState.overlay(v);
+            double mileageBefore = v.getMileage() != null ? v.getMileage() : 0;
+            LocalDate serviceBefore = v.getNextServiceDate();
+
             // Degrade health based on mileage or random factors
             updateVehicleHealth(v);
 
             // Check thresholds
             checkThresholds(v);
 
-            // Save current state
-            vehicleRepository.save(v);
+            // The service date is the one field the store does not own
+            if (!Objects.equals(serviceBefore, v.getNextServiceDate())) {
+                vehicleRepository.updateNextServiceDate(v.getId(), v.getNextServiceDate());
+            }
+
+            // Status, health and mileage go through the store so concurrent telemetry isn't lost
+            long id = v.getId();
+            Vehicle.VehicleStatus status = v.getStatus();
+            Double engineHealth = v.getEngineHealth();
+            Double tirePressure = v.getTirePressure();
+            Double oilLevel = v.getOilLevel();
+            double addedMileage = v.getMileage() - mileageBefore;
+            stateUpdates.add(() -> fleetState.update(id, s -> {
+                s.setStatus(status);
+                s.setEngineHealth(engineHealth);
+                s.setTirePressure(tirePressure);
+                s.setOilLevel(oilLevel);
+                s.setMileage((s.getMileage() != null ? s.getMileage() : 0) + addedMileage);
+            }));
 
             // Log history
-            logRepository.save(new VehicleHealthLog(v));
+            logs.add(new VehicleHealthLog(v));
         }
+        logRepository.saveAll(logs);
+        applyAfterCommit(stateUpdates);
+        healthRollups.recordAfterCommit(logs);
+    }
+
+    // The live state only takes changes the database kept; now if there is no transaction
+    private static void applyAfterCommit(List<Runnable> updates) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            updates.forEach(Runnable::run);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                updates.forEach(Runnable::run);
+            }
+        });
     }
 
     private void updateVehicleHealth(Vehicle v) {
@@ -61,6 +298,7 @@ public class MaintenanceService {
             v.setMileage(0.0);
 
         // Simulate degradation
+        Random random = ThreadLocalRandom.current();
         double wear = random.nextDouble() * 0.5; // Up to 0.5% wear per cycle
         v.setEngineHealth(Math.max(0, v.getEngineHealth() - wear));
 
@@ -77,20 +315,8 @@ public class MaintenanceService {
     }
 
     private void checkThresholds(Vehicle v) {
-        boolean critical = false;
-        boolean maintenance = false;
-
-        // Engine Health Thresholds
-        if (v.getEngineHealth() < 50)
-            critical = true;
-        else if (v.getEngineHealth() < 80)
-            maintenance = true;
-
-        // Tire Pressure
-        if (v.getTirePressure() < 28 || v.getTirePressure() > 36)
-            maintenance = true;
-        if (v.getTirePressure() < 25)
-            critical = true;
+        boolean critical = isCritical(v.getEngineHealth(), v.getTirePressure());
+        boolean maintenance = needsMaintenance(v.getEngineHealth(), v.getTirePressure());
 
         // Status Logic
         if (critical) {
@@ -113,8 +339,31 @@ public class MaintenanceService {
         }
     }
 
+    /** Health readings that take a vehicle out of service. Null readings are ignored. */
+    public static boolean isCritical(Double engineHealth, Double tirePressure) {
+        return (engineHealth != null && engineHealth < 50) || (tirePressure != null && tirePressure < 25);
+    }
+
+    /** Health readings that call for a service visit. Null readings are ignored. */
+    public static boolean needsMaintenance(Double engineHealth, Double tirePressure) {
+        return (engineHealth != null && engineHealth < 80)
+                || (tirePressure != null && (tirePressure < 28 || tirePressure > 36));
+    }
+
+    /**
+     * Appends history rows for vehicles known by id, e.g. sampled by the telemetry
+     * pipeline. Each log carries its own timestamp and readings.
+     */
+    @Transactional
+    public void appendHealthLogs(Map<Long, VehicleHealthLog> logsByVehicle) {
+        logsByVehicle.forEach((vehicleId, log) -> log.setVehicle(vehicleRepository.getReferenceById(vehicleId)));
+        logRepository.saveAll(logsByVehicle.values());
+        healthRollups.recordAfterCommit(logsByVehicle.values());
+    }
+
     public Map<String, Object> getDashboardAnalytics() {
         List<Vehicle> vehicles = vehicleRepository.findAll();
+        vehicles.forEach(fleetState::overlay);
 
         Map<String, Long> statusCounts = vehicles.stream()
                 .collect(Collectors.groupingBy(v -> v.getStatus().name(), Collectors.counting()));
@@ -161,4 +410,144 @@ public class MaintenanceService {
     public List<VehicleHealthLog> getVehicleHistory(Long vehicleId) {
         return logRepository.findTop20ByVehicleIdOrderByTimestampDesc(vehicleId);
     }
+
+    /** Health over a time range from the rollups, for charts; see {@link HealthRollupStore#series}. */
+    public HealthRollupStore.Series getHealthSeries(Long vehicleId, Instant from, Instant to, Integer points,
+            String resolution) {
+        return healthRollups.series(vehicleId, from, to, points, resolution);
+    }
+
+    public HealthRollupStore.Stats getHealthRollupStats() {
+        return healthRollups.stats();
+    }
+
+    public static class HealthJobStats {
+        private final int chunkSize;
+        private final Long runId;
+        private final long chunks;
+        private final long vehicles;
+        private final long failedChunks;
+        private final long resumedRuns;
+        private final long resumedShards;
+        private final double meanChunkMillis;
+        private final double maxChunkMillis;
+        private final double vehiclesPerSecond;
+        private final List<ChunkStats> recentChunks;
+
+        HealthJobStats(int chunkSize, Long runId, long chunks, long vehicles, long failedChunks, long resumedRuns,
+                long resumedShards, double meanChunkMillis, double maxChunkMillis, double vehiclesPerSecond,
+                List<ChunkStats> recentChunks) {
+            this.chunkSize = chunkSize;
+            this.runId = runId;
+            this.chunks = chunks;
+            this.vehicles = vehicles;
+            this.failedChunks = failedChunks;
+            this.resumedRuns = resumedRuns;
+            this.resumedShards = resumedShards;
+            this.meanChunkMillis = meanChunkMillis;
+            this.maxChunkMillis = maxChunkMillis;
+            this.vehiclesPerSecond = vehiclesPerSecond;
+            this.recentChunks = recentChunks;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        /** Current or last run; null before the first run since startup. */
+        public Long getRunId() {
+            return runId;
+        }
+
+        /** Chunks committed since startup. */
+        public long getChunks() {
+            return chunks;
+        }
+
+        public long getVehicles() {
+            return vehicles;
+        }
+
+        /** Chunks rolled back; their shard resumes from them on the next run. */
+        public long getFailedChunks() {
+            return failedChunks;
+        }
+
+        /** Runs that finished one left unfinished by a failure or a restart. */
+        public long getResumedRuns() {
+            return resumedRuns;
+        }
+
+        /** Shards picked up part way, after the last chunk an unfinished run committed. */
+        public long getResumedShards() {
+            return resumedShards;
+        }
+
+        public double getMeanChunkMillis() {
+            return meanChunkMillis;
+        }
+
+        public double getMaxChunkMillis() {
+            return maxChunkMillis;
+        }
+
+        /** Per worker: vehicles over the time spent in chunks. Shards run in parallel on top of this. */
+        public double getVehiclesPerSecond() {
+            return vehiclesPerSecond;
+        }
+
+        /** The last committed chunks, newest first. */
+        public List<ChunkStats> getRecentChunks() {
+            return recentChunks;
+        }
+    }
+
+    public static class ChunkStats {
+        private final String shard;
+        private final long firstVehicleId;
+        private final long lastVehicleId;
+        private final int vehicles;
+        private final double millis;
+        private final Instant committedAt;
+
+        ChunkStats(String shard, long firstVehicleId, long lastVehicleId, int vehicles, double millis,
+                Instant committedAt) {
+            this.shard = shard;
+            this.firstVehicleId = firstVehicleId;
+            this.lastVehicleId = lastVehicleId;
+            this.vehicles = vehicles;
+            this.millis = millis;
+            this.committedAt = committedAt;
+        }
+
+        /** Checkpoint key, "fleet-health:<shard>/<shards>". */
+        public String getShard() {
+            return shard;
+        }
+
+        public long getFirstVehicleId() {
+            return firstVehicleId;
+        }
+
+        public long getLastVehicleId() {
+            return lastVehicleId;
+        }
+
+        public int getVehicles() {
+            return vehicles;
+        }
+
+        /** Load, update, write and commit. */
+        public double getMillis() {
+            return millis;
+        }
+
+        public double getVehiclesPerSecond() {
+            return millis > 0 ? vehicles * 1000 / millis : 0;
+        }
+
+        public Instant getCommittedAt() {
+            return committedAt;
+        }
+    }
 }
@@ -1,93 +1,175 @@
 package com.neurofleetx.service;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.neurofleetx.cache.BoundedCache;
+import com.neurofleetx.geo.GeoMath;
+import com.neurofleetx.geocoding.Gazetteer;
+import com.neurofleetx.geocoding.Place;
+import com.neurofleetx.routing.Polyline;
+import com.neurofleetx.routing.RoadPath;
+import com.neurofleetx.routing.RouteMetric;
+import com.neurofleetx.routing.RoutingEngine;
+import com.neurofleetx.traffic.TrafficLayer;
+import com.neurofleetx.traffic.TrafficSnapshot;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+
+import java.io.IOException;
 import java.util.*;
 
 @Service
 public class RouteService {
 
+    // Current travel time relative to free-flow at which a route is labelled Moderate / Heavy
+    private static final double MODERATE_DELAY = 1.15;
+    private static final double HEAVY_DELAY = 1.5;
+
+    private final RoutingEngine routingEngine;
+    private final Gazetteer gazetteer;
+    private final TrafficLayer trafficLayer;
+    private final BoundedCache<RouteKey, List<RouteOption>> routeCache;
+
+    public RouteService(RoutingEngine routingEngine, Gazetteer gazetteer, TrafficLayer trafficLayer,
+            @Value("${routing.cache.max-size:10000}") int cacheMaxSize,
+            @Value("${routing.cache.ttl-seconds:300}") long cacheTtlSeconds) {
+        this.routingEngine = routingEngine;
+        this.gazetteer = gazetteer;
+        this.trafficLayer = trafficLayer;
+        this.routeCache = new BoundedCache<>(cacheMaxSize, cacheTtlSeconds * 1000);
+    }
+
+    /**
+     * Route options for an origin/destination pair under current traffic. Results
+     * are deterministic for a given traffic snapshot, so they are served from a
+     * bounded cache keyed by the snapshot version; the returned options are shared
+     * and must not be modified.
+     */
     public List<RouteOption> optimizeRoutes(String origin, String destination, String vehicleType) {
+        TrafficSnapshot traffic = trafficLayer.snapshot();
+        RouteKey key = new RouteKey(placeKey(origin), placeKey(destination),
+                vehicleType == null ? "" : vehicleType.toLowerCase(), traffic.getVersion());
+        return routeCache.get(key, k -> computeRoutes(origin, destination, vehicleType, traffic));
+    }
+
+    // Names that resolve alike share a key; "lat,lng" input keys on the parsed point, not the text before the comma
+    private static String placeKey(String input) {
+        double[] point = parseLatLng(input);
+        return point != null ? point[0] + "," + point[1] : Gazetteer.normalize(input);
+    }
+
+    public BoundedCache.Stats getCacheStats() {
+        return routeCache.stats();
+    }
+
+    public Map<String, Object> getTrafficStats() {
+        TrafficSnapshot traffic = trafficLayer.snapshot();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", traffic.getVersion());
+        stats.put("slot", traffic.getSlot());
+        stats.put("publishedAt", traffic.getCreatedAt());
+        stats.put("observedSegments", traffic.getObservedSegments());
+        stats.put("observations", trafficLayer.getObservationCount());
+        stats.put("hierarchyRoutes", routingEngine.getHierarchyRoutes());
+        stats.put("searchRoutes", routingEngine.getSearchRoutes());
+        stats.put("trafficFallbacks", routingEngine.getTrafficFallbacks());
+        return stats;
+    }
+
+    private List<RouteOption> computeRoutes(String origin, String destination, String vehicleType,
+            TrafficSnapshot traffic) {
         // Deterministically generate slightly different paths for each option
         List<RouteOption> routes = new ArrayList<>();
         double speedMultiplier = "EV".equalsIgnoreCase(vehicleType) ? 0.95 : 1.0; // EVs might drive more conservatively
 
-        routes.add(generateRoute(origin, destination, "fastest", 1.0, speedMultiplier));
-        routes.add(generateRoute(origin, destination, "shortest", 0.9, speedMultiplier));
-        routes.add(generateRoute(origin, destination, "eco-friendly", 1.1, speedMultiplier));
-        return routes;
+        // Resolve both endpoints once; all three options share them
+        double[] start = resolveCoordinates(origin);
+        double[] end = resolveCoordinates(destination);
+
+        routes.add(generateRoute(start, end, "fastest", 1.0, speedMultiplier, traffic));
+        routes.add(generateRoute(start, end, "shortest", 0.9, speedMultiplier, traffic));
+        routes.add(generateRoute(start, end, "eco-friendly", 1.1, speedMultiplier, traffic));
+        return Collections.unmodifiableList(routes);
     }
 
-    private RouteOption generateRoute(String origin, String destination, String type, double curveFactor,
-            double speedMultiplier) {
+    private RouteOption generateRoute(double[] start, double[] end, String type, double curveFactor,
+            double speedMultiplier, TrafficSnapshot traffic) {
         RouteOption route = new RouteOption();
         route.setType(type);
 
-        double[] start = getCoordinates(origin);
-        double[] end = getCoordinates(destination);
+        if (routingEngine.isAvailable()) {
+            RoadPath path = routingEngine.route(start[0], start[1], end[0], end[1], metricFor(type),
+                    traffic.edgeSpeeds());
+            if (path != null) {
+                return fromRoadPath(route, path, type, speedMultiplier);
+            }
+        }
 
-        List<Coordinate> coordinates = generateRealisticPath(start, end, curveFactor);
-        route.setCoordinates(coordinates);
+        double[] path = generateRealisticPath(start, end, curveFactor);
+        route.setPath(path);
 
-        double distance = calculateDistance(coordinates);
+        double distance = calculateDistance(path);
         double baseSpeed = 60.0 * speedMultiplier;
 
         if ("fastest".equals(type)) {
             baseSpeed = 75.0 * speedMultiplier;
-            route.setTrafficLevel("Light");
             route.setDistance(String.format("%.1f km", distance));
         } else if ("shortest".equals(type)) {
             baseSpeed = 50.0 * speedMultiplier;
-            route.setTrafficLevel("Moderate");
             route.setDistance(String.format("%.1f km", distance * 0.95));
         } else {
             baseSpeed = 65.0 * speedMultiplier;
-            route.setTrafficLevel("Efficient");
             route.setDistance(String.format("%.1f km", distance * 1.02));
         }
 
-        double timeInMinutes = (distance / baseSpeed) * 60;
+        double freeFlowMinutes = (distance / baseSpeed) * 60;
+        double timeInMinutes = traffic.hasCellSpeeds() ? travelMinutes(path, baseSpeed, traffic) : freeFlowMinutes;
+        route.setTrafficLevel(trafficLevel(timeInMinutes / freeFlowMinutes));
         route.setEstimatedTime(formatTime(timeInMinutes));
 
         return route;
     }
 
-    private double[] getCoordinates(String input) {
-        Map<String, double[]> cityCoords = new HashMap<>();
-        cityCoords.put("bangalore", new double[] { 12.9716, 77.5946 });
-        cityCoords.put("bengaluru", new double[] { 12.9716, 77.5946 });
-        cityCoords.put("mg road", new double[] { 12.9750, 77.6010 }); // More accurate
-        cityCoords.put("indiranagar", new double[] { 12.9783, 77.6408 });
-        cityCoords.put("indira nagar", new double[] { 12.9783, 77.6408 });
-        cityCoords.put("koramangala", new double[] { 12.9352, 77.6245 });
-        cityCoords.put("whitefield", new double[] { 12.9698, 77.7500 });
-        cityCoords.put("hsr layout", new double[] { 12.9121, 77.6446 });
-        cityCoords.put("electronic city", new double[] { 12.8399, 77.6770 });
-        cityCoords.put("mysore", new double[] { 12.2958, 76.6394 });
-        cityCoords.put("hyderabad", new double[] { 17.3850, 78.4867 });
-        cityCoords.put("secunderabad", new double[] { 17.4399, 78.4983 });
-        cityCoords.put("chennai", new double[] { 13.0827, 80.2707 });
-        cityCoords.put("vijayawada", new double[] { 16.5062, 80.6480 });
-        cityCoords.put("visakhapatnam", new double[] { 17.6868, 83.2185 });
-        cityCoords.put("vizag", new double[] { 17.6868, 83.2185 });
-        cityCoords.put("tirupati", new double[] { 13.6288, 79.4192 });
-        cityCoords.put("coimbatore", new double[] { 11.0168, 76.9558 });
-        cityCoords.put("kochi", new double[] { 9.9312, 76.2673 });
-        cityCoords.put("mumbai", new double[] { 19.0760, 72.8777 });
-        cityCoords.put("pune", new double[] { 18.5204, 73.8567 });
-
-        // Normalize input: remove ", India", ", Karnataka", etc.
-        String cleanInput = input.toLowerCase().split(",")[0].trim();
-
-        if (cityCoords.containsKey(cleanInput)) {
-            return cityCoords.get(cleanInput);
-        }
-
-        // Partial match check
-        for (String key : cityCoords.keySet()) {
-            if (cleanInput.contains(key) || key.contains(cleanInput)) {
-                return cityCoords.get(key);
-            }
+    private RouteMetric metricFor(String type) {
+        if ("shortest".equals(type))
+            return RouteMetric.DISTANCE;
+        if ("eco-friendly".equals(type))
+            return RouteMetric.ECO;
+        return RouteMetric.TIME;
+    }
+
+    private RouteOption fromRoadPath(RouteOption route, RoadPath path, String type, double speedMultiplier) {
+        double[] latLng = new double[path.size() * 2];
+        for (int i = 0; i < path.size(); i++) {
+            latLng[2 * i] = path.lat(i);
+            latLng[2 * i + 1] = path.lng(i);
         }
+        route.setPath(latLng);
+        route.setDistance(String.format("%.1f km", path.getDistanceMeters() / 1000));
+        route.setTrafficLevel(trafficLevel(path.getDurationSeconds() / path.getFreeFlowDurationSeconds()));
+        route.setEstimatedTime(formatTime(path.getDurationSeconds() / 60 / speedMultiplier));
+        return route;
+    }
+
+    /**
+     * Coordinates of a place name as {lat, lng}: taken as given for "lat,lng" input
+     * (e.g. a device's GPS pickup), the gazetteer entry when known, otherwise a
+     * stable pseudo-location derived from the name.
+     */
+    public double[] resolveCoordinates(String input) {
+        double[] point = parseLatLng(input);
+        if (point != null) {
+            return point;
+        }
+        Place place = gazetteer.resolve(input);
+        if (place != null) {
+            return new double[] { place.getLat(), place.getLng() };
+        }
+        String cleanInput = Gazetteer.normalize(input);
 
         // Fallback: Generate consistent random coordinates based on city name hash
         // Bounded to South India approximately (Lat: 8-20, Lng: 74-85)
@@ -98,13 +180,56 @@ public class RouteService {
         return new double[] { lat, lng };
     }
 
-    private List<Coordinate> generateRealisticPath(double[] start, double[] end, double curveFactor) {
-        List<Coordinate> path = new ArrayList<>();
-        path.add(new Coordinate(start[0], start[1]));
+    private static double[] parseLatLng(String input) {
+        if (input == null) {
+            return null;
+        }
+        int comma = input.indexOf(',');
+        if (comma < 0 || input.indexOf(',', comma + 1) >= 0) {
+            return null;
+        }
+        try {
+            double lat = Double.parseDouble(input.substring(0, comma).trim());
+            double lng = Double.parseDouble(input.substring(comma + 1).trim());
+            return Math.abs(lat) <= 90 && Math.abs(lng) <= 180 ? new double[] { lat, lng } : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Minutes to drive an approximate path, each leg at the speed observed around
+     * its midpoint (capped at baseSpeed) or at baseSpeed where nothing is known.
+     */
+    private double travelMinutes(double[] path, double baseSpeed, TrafficSnapshot traffic) {
+        double hours = 0;
+        for (int i = 2; i < path.length; i += 2) {
+            double km = GeoMath.haversineMeters(path[i - 2], path[i - 1], path[i], path[i + 1]) / 1000;
+            double observed = traffic.cellSpeed((path[i - 2] + path[i]) / 2, (path[i - 1] + path[i + 1]) / 2);
+            hours += km / (Double.isNaN(observed) ? baseSpeed : Math.min(observed, baseSpeed));
+        }
+        return hours * 60;
+    }
+
+    private static String trafficLevel(double delay) {
+        if (!(delay >= MODERATE_DELAY)) {
+            return "Light"; // includes NaN for zero-length routes
+        }
+        return delay < HEAVY_DELAY ? "Moderate" : "Heavy";
+    }
+
+    private double[] generateRealisticPath(double[] start, double[] end, double curveFactor) {
+        // Noise is seeded from the endpoints so the same request always yields the same path
+        Random noise = new Random(Arrays.hashCode(new double[] { start[0], start[1], end[0], end[1], curveFactor }));
 
         double dist = Math.sqrt(Math.pow(end[0] - start[0], 2) + Math.pow(end[1] - start[1], 2));
         int segments = Math.max(10, (int) (dist * 10)); // More segments for longer distances
 
+        // Interleaved lat/lng: start, segments - 1 intermediate points, end
+        double[] path = new double[2 * (segments + 1)];
+        path[0] = start[0];
+        path[1] = start[1];
+
         // Generate control points for a Bezier-like curve or randomized deviation
         for (int i = 1; i < segments; i++) {
             double ratio = (double) i / segments;
@@ -127,34 +252,20 @@ public class RouteService {
             }
 
             // Small random road noise
-            lat += (Math.random() - 0.5) * 0.01;
-            lng += (Math.random() - 0.5) * 0.01;
+            lat += (noise.nextDouble() - 0.5) * 0.01;
+            lng += (noise.nextDouble() - 0.5) * 0.01;
 
-            path.add(new Coordinate(lat, lng));
+            path[2 * i] = lat;
+            path[2 * i + 1] = lng;
         }
 
-        path.add(new Coordinate(end[0], end[1]));
+        path[2 * segments] = end[0];
+        path[2 * segments + 1] = end[1];
         return path;
     }
 
-    private double calculateDistance(List<Coordinate> coordinates) {
-        if (coordinates.size() < 2)
-            return 0;
-        double total = 0;
-        for (int i = 0; i < coordinates.size() - 1; i++) {
-            Coordinate c1 = coordinates.get(i);
-            Coordinate c2 = coordinates.get(i + 1);
-            // Haversine approximation
-            double R = 6371; // Earth radius in km
-            double dLat = Math.toRadians(c2.getLat() - c1.getLat());
-            double dLon = Math.toRadians(c2.getLng() - c1.getLng());
-            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                    Math.cos(Math.toRadians(c1.getLat())) * Math.cos(Math.toRadians(c2.getLat())) *
-                            Math.sin(dLon / 2) * Math.sin(dLon / 2);
-            double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-            total += R * c;
-        }
-        return total;
+    private double calculateDistance(double[] path) {
+        return GeoMath.pathLengthMeters(path) / 1000; // km
     }
 
     private String formatTime(double minutes) {
@@ -163,12 +274,43 @@ public class RouteService {
         return hours > 0 ? String.format("%dh %dm", hours, mins) : String.format("%dm", mins);
     }
 
+    private static final class RouteKey {
+        private final String origin;
+        private final String destination;
+        private final String vehicleType;
+        private final long trafficVersion;
+
+        RouteKey(String origin, String destination, String vehicleType, long trafficVersion) {
+            this.origin = origin;
+            this.destination = destination;
+            this.vehicleType = vehicleType;
+            this.trafficVersion = trafficVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof RouteKey))
+                return false;
+            RouteKey other = (RouteKey) o;
+            return origin.equals(other.origin) && destination.equals(other.destination)
+                    && vehicleType.equals(other.vehicleType) && trafficVersion == other.trafficVersion;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(origin, destination, vehicleType, trafficVersion);
+        }
+    }
+
     public static class RouteOption {
         private String type;
         private String distance;
         private String estimatedTime;
         private String trafficLevel;
-        private List<Coordinate> coordinates;
+        private double[] path = new double[0]; // interleaved lat0, lng0, lat1, lng1, ...
+        private volatile String encodedPath;
 
         public String getType() {
             return type;
@@ -202,12 +344,56 @@ public class RouteService {
             this.trafficLevel = trafficLevel;
         }
 
-        public List<Coordinate> getCoordinates() {
-            return coordinates;
+        /**
+         * Geometry as interleaved lat/lng pairs; serialized as the "coordinates"
+         * list of {lat, lng} objects without materializing them.
+         */
+        @JsonProperty("coordinates")
+        @JsonSerialize(using = PathSerializer.class)
+        public double[] getPath() {
+            return path;
+        }
+
+        public void setPath(double[] path) {
+            this.path = path;
+            this.encodedPath = null;
         }
 
-        public void setCoordinates(List<Coordinate> coordinates) {
-            this.coordinates = coordinates;
+        @JsonIgnore
+        public int getPointCount() {
+            return path.length / 2;
+        }
+
+        /** Geometry in encoded polyline format, computed once per option. */
+        @JsonIgnore
+        public String getEncodedPath() {
+            String encoded = encodedPath;
+            if (encoded == null) {
+                encoded = Polyline.encode(path);
+                encodedPath = encoded;
+            }
+            return encoded;
+        }
+    }
+
+    /** Writes an interleaved lat/lng array as [{"lat":..,"lng":..}, ...]. */
+    static class PathSerializer extends StdSerializer<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        PathSerializer() {
+            super(double[].class);
+        }
+
+        @Override
+        public void serialize(double[] path, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray();
+            for (int i = 0; i + 1 < path.length; i += 2) {
+                gen.writeStartObject();
+                gen.writeNumberField("lat", path[i]);
+                gen.writeNumberField("lng", path[i + 1]);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
         }
     }
 
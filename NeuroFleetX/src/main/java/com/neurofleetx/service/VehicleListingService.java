@@ -0,0 +1,340 @@
+package com.neurofleetx.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleSpatialIndex;
+import com.neurofleetx.fleet.VehicleState;
+import com.neurofleetx.model.Vehicle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.function.Function;
+
+/**
+ * Vehicle listing for large fleets: one page at a time by keyset (rows after a
+ * given id, in id order, so a page costs the same however deep it is), with only
+ * the requested columns selected and the rows written to the response as they are
+ * read instead of being collected as entities first. The driver is its id, not a
+ * joined user.
+ *
+ * Telemetry fields are written from {@link FleetStateStore}. Status and type
+ * filters are applied by the query against the stored row, which trails live
+ * telemetry by up to fleet.write-behind.interval-ms, and rows whose live status no
+ * longer matches are left out. A box is looked up in {@link VehicleSpatialIndex}
+ * by live position, and the page's ids are then read by primary key: a small box
+ * would otherwise scan most of the table in id order to fill a page.
+ *
+ * Response: {"vehicles":[{"id":1,...}],"count":1,"nextAfter":1}, where nextAfter
+ * is the after value for the next page, or null on the last page.
+ */
+@Service
+public class VehicleListingService {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 5000;
+    private static final int FETCH_SIZE = 500;
+    private static final Calendar UTC = Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FleetStateStore fleetState;
+    private final VehicleSpatialIndex spatialIndex;
+    private final JsonFactory jsonFactory;
+
+    public VehicleListingService(JdbcTemplate jdbcTemplate, FleetStateStore fleetState,
+            VehicleSpatialIndex spatialIndex, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fleetState = fleetState;
+        this.spatialIndex = spatialIndex;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Validates the request and returns the body that runs the query and writes the
+     * page. fields is a comma-separated list of JSON names (all fields if blank); the
+     * box needs all four coordinates or none.
+     */
+    public StreamingResponseBody listVehicles(Long after, Integer limit, Collection<Vehicle.VehicleStatus> statuses,
+            String type, Double minLat, Double minLng, Double maxLat, Double maxLng, String fields) {
+        int pageSize = limit != null ? limit : DEFAULT_LIMIT;
+        if (pageSize < 1 || pageSize > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        Set<Field> selected = Field.parse(fields);
+        Box box = Box.of(minLat, minLng, maxLat, maxLng);
+        Set<Vehicle.VehicleStatus> statusFilter = statuses == null || statuses.isEmpty() ? null
+                : EnumSet.copyOf(statuses);
+
+        StringBuilder sql = new StringBuilder("SELECT id");
+        for (Field f : selected) {
+            if (f != Field.ID) {
+                sql.append(", ").append(f.column);
+            }
+        }
+        long cursor = after != null ? after : Long.MIN_VALUE;
+        List<Object> args = new ArrayList<>();
+        // Rows the page reads before it is complete; the next page starts after the last of them
+        final int pageRows;
+        if (box != null) {
+            long[] ids = spatialIndex.withinBox(box.minLat, box.minLng, box.maxLat, box.maxLng,
+                    VehicleSpatialIndex.matching(statusFilter, type)).stream()
+                    .mapToLong(VehicleState::getId).filter(id -> id > cursor).sorted().limit(pageSize).toArray();
+            pageRows = ids.length < pageSize ? Integer.MAX_VALUE : pageSize;
+            if (ids.length == 0) {
+                return out -> writePage(out, null, args, selected, statusFilter, box, pageRows);
+            }
+            sql.append(" FROM vehicles WHERE id IN (").append("?, ".repeat(ids.length - 1)).append("?)");
+            Arrays.stream(ids).forEach(args::add);
+        } else {
+            pageRows = pageSize;
+            sql.append(" FROM vehicles WHERE id > ?");
+            args.add(cursor);
+            if (statusFilter != null) {
+                sql.append(" AND status IN (").append("?, ".repeat(statusFilter.size() - 1)).append("?)");
+                statusFilter.forEach(s -> args.add(s.name()));
+            }
+            if (type != null && !type.isBlank()) {
+                sql.append(" AND type = ?");
+                args.add(type);
+            }
+        }
+        sql.append(" ORDER BY id LIMIT ?");
+        args.add(pageSize);
+
+        String query = sql.toString();
+        return out -> writePage(out, query, args, selected, statusFilter, box, pageRows);
+    }
+
+    /** Runs the page query (none if sql is null) and writes each row as it is read. */
+    private void writePage(OutputStream out, String sql, List<Object> args, Set<Field> selected,
+            Set<Vehicle.VehicleStatus> statusFilter, Box box, int pageRows) throws IOException {
+        try (JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("vehicles");
+            Page page = new Page();
+            if (sql != null) {
+                jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(sql);
+                    ps.setFetchSize(FETCH_SIZE);
+                    for (int i = 0; i < args.size(); i++) {
+                        ps.setObject(i + 1, args.get(i));
+                    }
+                    return ps;
+                }, (ResultSet rs) -> {
+                    page.rows++;
+                    page.lastId = rs.getLong(1);
+                    VehicleState live = fleetState.get(page.lastId);
+                    if (live != null && !matchesLive(live, statusFilter, box)) {
+                        return;
+                    }
+                    try {
+                        json.writeStartObject();
+                        int column = 1;
+                        for (Field f : selected) {
+                            json.writeFieldName(f.jsonName);
+                            f.writer.write(json, rs, f == Field.ID ? 1 : ++column, live);
+                        }
+                        json.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    page.count++;
+                });
+            }
+            json.writeEndArray();
+            json.writeNumberField("count", page.count);
+            json.writeFieldName("nextAfter");
+            if (page.rows == pageRows) {
+                json.writeNumber(page.lastId);
+            } else {
+                json.writeNull();
+            }
+            json.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean matchesLive(VehicleState live, Set<Vehicle.VehicleStatus> statuses, Box box) {
+        if (statuses != null && !statuses.contains(live.getStatus())) {
+            return false;
+        }
+        if (box == null) {
+            return true;
+        }
+        Double lat = live.getLatitude();
+        Double lng = live.getLongitude();
+        return lat != null && lng != null && lat >= box.minLat && lat <= box.maxLat && lng >= box.minLng
+                && lng <= box.maxLng;
+    }
+
+    private static final class Page {
+        int rows;
+        int count;
+        long lastId;
+    }
+
+    private static final class Box {
+        final double minLat;
+        final double minLng;
+        final double maxLat;
+        final double maxLng;
+
+        private Box(double minLat, double minLng, double maxLat, double maxLng) {
+            this.minLat = minLat;
+            this.minLng = minLng;
+            this.maxLat = maxLat;
+            this.maxLng = maxLng;
+        }
+
+        static Box of(Double minLat, Double minLng, Double maxLat, Double maxLng) {
+            if (minLat == null && minLng == null && maxLat == null && maxLng == null) {
+                return null;
+            }
+            if (minLat == null || minLng == null || maxLat == null || maxLng == null) {
+                throw new IllegalArgumentException("Box needs minLat, minLng, maxLat and maxLng");
+            }
+            if (Math.abs(minLat) > 90 || Math.abs(maxLat) > 90 || Math.abs(minLng) > 180 || Math.abs(maxLng) > 180
+                    || minLat > maxLat || minLng > maxLng) {
+                throw new IllegalArgumentException("Invalid box: " + minLat + "," + minLng + " to " + maxLat + ","
+                        + maxLng);
+            }
+            return new Box(minLat, minLng, maxLat, maxLng);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueWriter {
+        /** Writes the field's value from the live state if it owns the field, else from the row. */
+        void write(JsonGenerator json, ResultSet rs, int column, VehicleState live) throws SQLException, IOException;
+    }
+
+    /** Listable fields in response order, with their column. */
+    private enum Field {
+        ID("id", "id", (json, rs, c, live) -> json.writeNumber(rs.getLong(c))),
+        NAME("name", "name", Field::string),
+        LICENSE_PLATE("licensePlate", "license_plate", Field::string),
+        TYPE("type", "type", Field::string),
+        STATUS("status", "status", (json, rs, c, live) -> {
+            if (live != null) {
+                json.writeString(live.getStatus() != null ? live.getStatus().name() : null);
+            } else {
+                string(json, rs, c, null);
+            }
+        }),
+        LATITUDE("latitude", "latitude", live(VehicleState::getLatitude)),
+        LONGITUDE("longitude", "longitude", live(VehicleState::getLongitude)),
+        SPEED("speed", "speed", live(VehicleState::getSpeed)),
+        BATTERY("battery", "battery", live(VehicleState::getBattery)),
+        FUEL("fuel", "fuel", live(VehicleState::getFuel)),
+        MILEAGE("mileage", "mileage", live(VehicleState::getMileage)),
+        ENGINE_HEALTH("engineHealth", "engine_health", live(VehicleState::getEngineHealth)),
+        TIRE_PRESSURE("tirePressure", "tire_pressure", live(VehicleState::getTirePressure)),
+        OIL_LEVEL("oilLevel", "oil_level", live(VehicleState::getOilLevel)),
+        NEXT_SERVICE_DATE("nextServiceDate", "next_service_date", Field::date),
+        LAST_MAINTENANCE_DATE("lastMaintenanceDate", "last_maintenance_date", Field::date),
+        LOCATION("location", "location", Field::string),
+        DRIVER_ID("driverId", "driver_id", Field::number),
+        LAST_UPDATED("lastUpdated", "last_updated", (json, rs, c, live) -> {
+            if (live != null) {
+                json.writeString(live.getLastUpdated() != null ? live.getLastUpdated().toString() : null);
+            } else {
+                Timestamp value = rs.getTimestamp(c, (Calendar) UTC.clone());
+                json.writeString(value != null ? value.toInstant().toString() : null);
+            }
+        });
+
+        final String jsonName;
+        final String column;
+        final ValueWriter writer;
+
+        Field(String jsonName, String column, ValueWriter writer) {
+            this.jsonName = jsonName;
+            this.column = column;
+            this.writer = writer;
+        }
+
+        /** The named fields plus id, in response order; every field if names is blank. */
+        static Set<Field> parse(String names) {
+            if (names == null || names.isBlank()) {
+                return EnumSet.allOf(Field.class);
+            }
+            Set<Field> fields = EnumSet.of(ID);
+            for (String name : names.split(",")) {
+                String trimmed = name.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                Field match = null;
+                for (Field f : values()) {
+                    if (f.jsonName.equalsIgnoreCase(trimmed)) {
+                        match = f;
+                    }
+                }
+                if (match == null) {
+                    throw new IllegalArgumentException("Unknown field: " + trimmed + "; fields are "
+                            + String.join(", ", EnumSet.allOf(Field.class).stream().map(f -> f.jsonName).toList()));
+                }
+                fields.add(match);
+            }
+            return fields;
+        }
+
+        private static void string(JsonGenerator json, ResultSet rs, int column, VehicleState live)
+                throws SQLException, IOException {
+            json.writeString(rs.getString(column));
+        }
+
+        private static void date(JsonGenerator json, ResultSet rs, int column, VehicleState live)
+                throws SQLException, IOException {
+            Date value = rs.getDate(column);
+            json.writeString(value != null ? value.toLocalDate().toString() : null);
+        }
+
+        private static void number(JsonGenerator json, ResultSet rs, int column, VehicleState live)
+                throws SQLException, IOException {
+            writeNumber(json, (Number) rs.getObject(column));
+        }
+
+        /** Writes the live value if the vehicle is tracked, else the column. */
+        private static ValueWriter live(Function<VehicleState, Number> getter) {
+            return (json, rs, column, live) -> {
+                if (live != null) {
+                    writeNumber(json, getter.apply(live));
+                } else {
+                    number(json, rs, column, null);
+                }
+            };
+        }
+
+        private static void writeNumber(JsonGenerator json, Number value) throws IOException {
+            if (value == null) {
+                json.writeNull();
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+                json.writeNumber(value.longValue());
+            } else {
+                json.writeNumber(value.doubleValue());
+            }
+        }
+    }
+}
@@ -1,68 +1,158 @@
 package com.neurofleetx.service;
 
+import com.neurofleetx.fleet.FleetJobScheduler;
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleSpatialIndex;
+import com.neurofleetx.fleet.VehicleState;
+import com.neurofleetx.geo.GeoMath;
 import com.neurofleetx.model.Vehicle;
 import com.neurofleetx.repository.VehicleRepository;
+import com.neurofleetx.traffic.TrafficLayer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 public class VehicleService {
 
-    private final VehicleRepository vehicleRepository;
-    private final Random random = new Random();
+    private static final int MAX_NEAREST = 100;
+    private static final double MAX_SEARCH_RADIUS_M = 100_000;
 
-    public VehicleService(VehicleRepository vehicleRepository) {
+    private final VehicleRepository vehicleRepository;
+    private final FleetStateStore fleetState;
+    private final VehicleSpatialIndex spatialIndex;
+    private final TrafficLayer trafficLayer;
+    private final FleetJobScheduler fleetJobs;
+    private final long movementIntervalMs;
+
+    public VehicleService(VehicleRepository vehicleRepository, FleetStateStore fleetState,
+            VehicleSpatialIndex spatialIndex, TrafficLayer trafficLayer, FleetJobScheduler fleetJobs,
+            @Value("${fleet.jobs.movement-interval-ms:30000}") long movementIntervalMs) {
         this.vehicleRepository = vehicleRepository;
+        this.fleetState = fleetState;
+        this.spatialIndex = spatialIndex;
+        this.trafficLayer = trafficLayer;
+        this.fleetJobs = fleetJobs;
+        this.movementIntervalMs = movementIntervalMs;
+    }
+
+    @PostConstruct
+    void registerJobs() {
+        fleetJobs.register("vehicle-movements", movementIntervalMs, this::simulateVehicleMovements);
     }
 
     public List<Vehicle> getAllVehicles() {
-        return vehicleRepository.findAll();
+        List<Vehicle> vehicles = vehicleRepository.findAll();
+        vehicles.forEach(fleetState::overlay); // live telemetry may not be written yet
+        return vehicles;
     }
 
     public Vehicle getVehicleById(Long id) {
         java.util.Objects.requireNonNull(id, "ID cannot be null");
-        return vehicleRepository.findById(id).orElseThrow();
+        return fleetState.overlay(vehicleRepository.findById(id).orElseThrow());
     }
 
     public Vehicle createVehicle(Vehicle vehicle) {
         java.util.Objects.requireNonNull(vehicle, "Vehicle cannot be null");
-        return vehicleRepository.save(vehicle);
+        Vehicle saved = vehicleRepository.save(vehicle);
+        fleetState.register(saved);
+        return saved;
     }
 
-    // Simulate real-time telemetry updates every 30 seconds
-    @Scheduled(fixedRate = 30000)
-    public void simulateVehicleMovements() {
-        List<Vehicle> vehicles = vehicleRepository.findAll();
+    /** Up to k vehicles nearest the point by straight-line distance, from live positions. */
+    public List<VehicleSpatialIndex.Hit> findNearest(double lat, double lng, int k, double maxRadiusMeters,
+            Collection<Vehicle.VehicleStatus> statuses, String type) {
+        checkPoint(lat, lng);
+        if (k < 1 || k > MAX_NEAREST) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_NEAREST);
+        }
+        checkRadius(maxRadiusMeters);
+        return spatialIndex.nearest(lat, lng, k, maxRadiusMeters, VehicleSpatialIndex.matching(statuses, type));
+    }
 
-        for (Vehicle vehicle : vehicles) {
-            if (vehicle.getStatus() == Vehicle.VehicleStatus.IN_USE) {
-                // Simulate movement in NYC area
-                double latDelta = (random.nextDouble() - 0.5) * 0.01;
-                double lngDelta = (random.nextDouble() - 0.5) * 0.01;
+    public List<VehicleSpatialIndex.Hit> findWithinRadius(double lat, double lng, double radiusMeters,
+            Collection<Vehicle.VehicleStatus> statuses, String type) {
+        checkPoint(lat, lng);
+        checkRadius(radiusMeters);
+        return spatialIndex.withinRadius(lat, lng, radiusMeters, VehicleSpatialIndex.matching(statuses, type));
+    }
 
-                vehicle.setLatitude(vehicle.getLatitude() + latDelta);
-                vehicle.setLongitude(vehicle.getLongitude() + lngDelta);
-                vehicle.setSpeed(20 + random.nextInt(60)); // 20-80 km/h
+    public List<VehicleState> findWithinBox(double minLat, double minLng, double maxLat, double maxLng,
+            Collection<Vehicle.VehicleStatus> statuses, String type) {
+        checkPoint(minLat, minLng);
+        checkPoint(maxLat, maxLng);
+        if (minLat > maxLat || minLng > maxLng) {
+            throw new IllegalArgumentException("Box minimum must not exceed its maximum");
+        }
+        return spatialIndex.withinBox(minLat, minLng, maxLat, maxLng, VehicleSpatialIndex.matching(statuses, type));
+    }
+
+    private static void checkPoint(double lat, double lng) {
+        if (Math.abs(lat) > 90 || Math.abs(lng) > 180) {
+            throw new IllegalArgumentException("Coordinates out of range: " + lat + "," + lng);
+        }
+    }
+
+    private static void checkRadius(double radiusMeters) {
+        if (!(radiusMeters > 0 && radiusMeters <= MAX_SEARCH_RADIUS_M)) {
+            throw new IllegalArgumentException("Radius must be between 0 and " + (int) MAX_SEARCH_RADIUS_M + " m");
+        }
+    }
+
+    public FleetStateStore.Stats getFleetStateStats() {
+        return fleetState.stats();
+    }
+
+    public FleetJobScheduler.Stats getFleetJobStats() {
+        return fleetJobs.stats();
+    }
+
+    // Simulate real-time telemetry updates every 30 seconds, one fleet job shard at a
+    // time. Works on the in-memory fleet state only; the database is updated by its write-behind.
+    private void simulateVehicleMovements(List<VehicleState> shard) {
+        Random random = ThreadLocalRandom.current();
+        long now = System.currentTimeMillis();
+        for (VehicleState state : shard) {
+            if (state.getStatus() != Vehicle.VehicleStatus.IN_USE || state.getLatitude() == null
+                    || state.getLongitude() == null) {
+                continue;
+            }
+            // Simulate movement in NYC area
+            double latDelta = (random.nextDouble() - 0.5) * 0.01;
+            double lngDelta = (random.nextDouble() - 0.5) * 0.01;
+            int speed = 20 + random.nextInt(60); // 20-80 km/h
+
+            double fromLat = state.getLatitude();
+            double fromLng = state.getLongitude();
+            double lat = fromLat + latDelta;
+            double lng = fromLng + lngDelta;
+            double movedKm = GeoMath.haversineMeters(fromLat, fromLng, lat, lng) / 1000;
+            fleetState.update(state.getId(), v -> {
+                v.setLatitude(lat);
+                v.setLongitude(lng);
+                v.setMileage((v.getMileage() != null ? v.getMileage() : 0) + movedKm);
+                v.setSpeed(speed);
 
                 // Update battery/fuel
-                if ("EV".equals(vehicle.getType())) {
-                    vehicle.setBattery(Math.max(5, vehicle.getBattery() - 1));
+                if (v.isElectric()) {
+                    v.setBattery(Math.max(5, (v.getBattery() != null ? v.getBattery() : 100) - 1));
                 } else {
-                    vehicle.setFuel(Math.max(5, vehicle.getFuel() - 1));
+                    v.setFuel(Math.max(5, (v.getFuel() != null ? v.getFuel() : 100) - 1));
                 }
 
                 // Update status if critical
-                if (("EV".equals(vehicle.getType()) && vehicle.getBattery() < 15) ||
-                        (!"EV".equals(vehicle.getType()) && vehicle.getFuel() < 15)) {
-                    vehicle.setStatus(Vehicle.VehicleStatus.CRITICAL);
+                if ((v.isElectric() && v.getBattery() < 15) || (!v.isElectric() && v.getFuel() < 15)) {
+                    v.setStatus(Vehicle.VehicleStatus.CRITICAL);
                 }
-
-                vehicleRepository.save(vehicle);
-            }
+            });
+            trafficLayer.recordSpeed(fromLat, fromLng, lat, lng, speed, now);
         }
     }
 
@@ -84,7 +174,7 @@ public class VehicleService {
             v1.setLocation("Manhattan Depot");
             v1.setNextServiceDate(LocalDate.now().plusMonths(3));
             v1.setSpeed(0);
-            vehicleRepository.save(v1);
+            createVehicle(v1);
 
             Vehicle v2 = new Vehicle();
             v2.setName("Ford Transit");
@@ -99,7 +189,7 @@ public class VehicleService {
             v2.setLocation("Midtown NYC");
             v2.setNextServiceDate(LocalDate.now().plusMonths(1));
             v2.setSpeed(45);
-            vehicleRepository.save(v2);
+            createVehicle(v2);
 
             Vehicle v3 = new Vehicle();
             v3.setName("Toyota Camry");
@@ -114,7 +204,7 @@ public class VehicleService {
             v3.setLocation("Service Center");
             v3.setNextServiceDate(LocalDate.now().plusWeeks(1));
             v3.setSpeed(0);
-            vehicleRepository.save(v3);
+            createVehicle(v3);
 
             Vehicle v4 = new Vehicle();
             v4.setName("Nissan Leaf");
@@ -129,7 +219,7 @@ public class VehicleService {
             v4.setLocation("Queens");
             v4.setNextServiceDate(LocalDate.now().plusMonths(2));
             v4.setSpeed(35);
-            vehicleRepository.save(v4);
+            createVehicle(v4);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,858 @@
+package com.neurofleetx.simulation;
+
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleState;
+import com.neurofleetx.geo.GeoMath;
+import com.neurofleetx.model.Booking;
+import com.neurofleetx.model.Role;
+import com.neurofleetx.model.User;
+import com.neurofleetx.model.Vehicle;
+import com.neurofleetx.repository.UserRepository;
+import com.neurofleetx.repository.VehicleRepository;
+import com.neurofleetx.service.BookingCandidateService;
+import com.neurofleetx.service.BookingService;
+import com.neurofleetx.telemetry.TelemetryFrameWriter;
+import com.neurofleetx.telemetry.TelemetryPipeline;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Load simulation for capacity tests: a synthetic fleet with drivers and customers
+ * that sends telemetry, books trips and pings driver locations through the same
+ * services the REST API uses. Off unless simulation.enabled is true (the loadsim
+ * profile); the data it creates is marked (SIM- plates, @loadsim.local emails) and
+ * reused on the next start.
+ *
+ * A discrete tick scheduler drives it. One thread owns the simulated world and
+ * every simulation.tick-ms moves the vehicles whose telemetry slot is due (each
+ * vehicle reports once per simulation.telemetry-interval-ms), creates the bookings
+ * due at simulation.bookings-per-minute and advances trips. The service calls are
+ * handed to a pool of simulation.workers threads; their results come back to the
+ * tick thread through a queue, so the world needs no locking. When the pool has
+ * simulation.max-queued-calls waiting, telemetry frames and pings are shed (and
+ * counted) rather than queued; booking steps always run.
+ *
+ * Bookings follow the driver flow: after simulation.accept-delay-ms a free
+ * simulated driver among the booking's candidates accepts it, drives to the pickup
+ * (ARRIVING), then to the destination (STARTED) and completes it, pinging its
+ * location every simulation.ping-interval-ms. Bookings nobody takes within
+ * simulation.booking-timeout-ms are cancelled.
+ */
+@Component
+public class LoadSimulator {
+
+    public static final int MAX_VEHICLES = 100_000;
+    public static final int MAX_USERS = 100_000;
+
+    private static final String PLATE_PREFIX = "SIM-";
+    private static final String DRIVER_PREFIX = "sim-driver-";
+    private static final String CUSTOMER_PREFIX = "sim-customer-";
+    private static final String EMAIL_DOMAIN = "@loadsim.local";
+    private static final int SAVE_CHUNK = 1000;
+    private static final int FRAME_RECORDS = 1000;
+    private static final int CANDIDATES = 10;
+    private static final double TRIP_SPEED_KMH = 35;
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final VehicleRepository vehicleRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final FleetStateStore fleetState;
+    private final TelemetryPipeline telemetryPipeline;
+    private final BookingService bookingService;
+
+    private final boolean enabled;
+    private final int vehicleCount;
+    private final int driverCount;
+    private final int customerCount;
+    private final long tickMs;
+    private final long telemetryIntervalMs;
+    private final double bookingsPerMinute;
+    private final long pingIntervalMs;
+    private final long acceptDelayMs;
+    private final long bookingTimeoutMs;
+    private final int maxQueuedCalls;
+    private final double centerLat;
+    private final double centerLng;
+    private final double radiusKm;
+    private final Random random;
+
+    private final ScheduledExecutorService ticker;
+    private final ThreadPoolExecutor workers;
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+    private final Set<Integer> busyDrivers = ConcurrentHashMap.newKeySet();
+    private boolean populateScheduled; // guarded by this; the fleet is created once, by the first start
+    private volatile boolean populated;
+    private volatile boolean running;
+
+    // The simulated world, only touched by the tick thread (vehicleIndex is read-only once populated)
+    private long[] vehicleIds;
+    private double[] lat;
+    private double[] lng;
+    private double[] heading;
+    private double[] speedKmh;
+    private double[] energy;
+    private boolean[] electric;
+    private long[] driverUserIds;
+    private long[] customerUserIds;
+    private final Map<Long, Integer> vehicleIndex = new HashMap<>();
+    private Trip[] trips; // by driver, who drives the vehicle with the same index
+    private final List<PendingBooking> pending = new ArrayList<>();
+    private long tick;
+    private long startedAt;
+    private boolean paused; // a tick was skipped while stopped, so the schedule is rebased on resume
+    private double bookingCredit;
+
+    private final OpStats telemetryCalls = new OpStats();
+    private final OpStats createCalls = new OpStats();
+    private final OpStats candidateCalls = new OpStats();
+    private final OpStats acceptCalls = new OpStats();
+    private final OpStats statusCalls = new OpStats();
+    private final OpStats pingCalls = new OpStats();
+    private final AtomicLong readingsSent = new AtomicLong();
+    private final AtomicLong readingsRejected = new AtomicLong();
+    private final AtomicLong shedCalls = new AtomicLong();
+    private final AtomicLong bookingsCompleted = new AtomicLong();
+    private final AtomicLong bookingsCancelled = new AtomicLong();
+    private final AtomicLong lateTicks = new AtomicLong();
+    private final AtomicInteger activeTrips = new AtomicInteger();
+    private volatile int pendingBookings;
+    private volatile long maxTickLagMs;
+    private volatile long lastTickMicros;
+
+    public LoadSimulator(JdbcTemplate jdbcTemplate, UserRepository userRepository,
+            VehicleRepository vehicleRepository, PasswordEncoder passwordEncoder, FleetStateStore fleetState,
+            TelemetryPipeline telemetryPipeline, BookingService bookingService,
+            @Value("${simulation.enabled:false}") boolean enabled,
+            @Value("${simulation.vehicles:10000}") int vehicleCount,
+            @Value("${simulation.drivers:2000}") int driverCount,
+            @Value("${simulation.customers:5000}") int customerCount,
+            @Value("${simulation.tick-ms:100}") long tickMs,
+            @Value("${simulation.telemetry-interval-ms:1000}") long telemetryIntervalMs,
+            @Value("${simulation.bookings-per-minute:120}") double bookingsPerMinute,
+            @Value("${simulation.ping-interval-ms:5000}") long pingIntervalMs,
+            @Value("${simulation.accept-delay-ms:3000}") long acceptDelayMs,
+            @Value("${simulation.booking-timeout-ms:60000}") long bookingTimeoutMs,
+            @Value("${simulation.workers:0}") int workerThreads,
+            @Value("${simulation.max-queued-calls:1000}") int maxQueuedCalls,
+            @Value("${simulation.center-lat:40.73}") double centerLat,
+            @Value("${simulation.center-lng:-73.99}") double centerLng,
+            @Value("${simulation.radius-km:15}") double radiusKm,
+            @Value("${simulation.seed:42}") long seed) {
+        if (vehicleCount < 1 || vehicleCount > MAX_VEHICLES) {
+            throw new IllegalArgumentException("simulation.vehicles must be between 1 and " + MAX_VEHICLES);
+        }
+        if (driverCount < 0 || driverCount > Math.min(vehicleCount, MAX_USERS)) {
+            throw new IllegalArgumentException("simulation.drivers must be between 0 and simulation.vehicles");
+        }
+        if (customerCount < 1 || customerCount > MAX_USERS) {
+            throw new IllegalArgumentException("simulation.customers must be between 1 and " + MAX_USERS);
+        }
+        if (tickMs < 1 || telemetryIntervalMs < tickMs) {
+            throw new IllegalArgumentException("simulation.telemetry-interval-ms must be at least simulation.tick-ms");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.fleetState = fleetState;
+        this.telemetryPipeline = telemetryPipeline;
+        this.bookingService = bookingService;
+        this.enabled = enabled;
+        this.vehicleCount = vehicleCount;
+        this.driverCount = driverCount;
+        this.customerCount = customerCount;
+        this.tickMs = tickMs;
+        this.telemetryIntervalMs = telemetryIntervalMs;
+        this.bookingsPerMinute = bookingsPerMinute;
+        this.pingIntervalMs = pingIntervalMs;
+        this.acceptDelayMs = acceptDelayMs;
+        this.bookingTimeoutMs = bookingTimeoutMs;
+        this.maxQueuedCalls = maxQueuedCalls;
+        this.centerLat = centerLat;
+        this.centerLng = centerLng;
+        this.radiusKm = radiusKm;
+        this.random = new Random(seed);
+        int threads = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "loadsim-tick"));
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                r -> daemon(r, "loadsim-worker-" + workerNumber.incrementAndGet()));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnBoot() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    /** Creates or reloads the simulated fleet on first start, then runs the ticks. */
+    public synchronized void start() {
+        if (!enabled) {
+            throw new IllegalArgumentException("Load simulation is disabled (simulation.enabled)");
+        }
+        if (running) {
+            return;
+        }
+        running = true;
+        if (!populateScheduled) {
+            populateScheduled = true;
+            ticker.execute(() -> {
+                try {
+                    populate();
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        populateScheduled = false;
+                        running = false;
+                    }
+                    System.out.println("Load simulation could not create its fleet: " + e);
+                    return;
+                }
+                populated = true;
+                startedAt = System.currentTimeMillis();
+                ticker.scheduleAtFixedRate(this::tick, 0, tickMs, TimeUnit.MILLISECONDS);
+            });
+        }
+    }
+
+    /** Pauses the ticks; trips in progress continue where they were on the next start. */
+    public synchronized void stop() {
+        if (!enabled) {
+            throw new IllegalArgumentException("Load simulation is disabled (simulation.enabled)");
+        }
+        running = false;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        ticker.shutdownNow();
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void populate() {
+        long start = System.currentTimeMillis();
+        String password = passwordEncoder.encode("loadsim");
+        List<User> drivers = ensureUsers(DRIVER_PREFIX, driverCount, Role.DRIVER, password);
+        List<User> customers = ensureUsers(CUSTOMER_PREFIX, customerCount, Role.CUSTOMER, password);
+        driverUserIds = drivers.stream().mapToLong(User::getId).toArray();
+        customerUserIds = customers.stream().mapToLong(User::getId).toArray();
+
+        vehicleIds = new long[vehicleCount];
+        lat = new double[vehicleCount];
+        lng = new double[vehicleCount];
+        heading = new double[vehicleCount];
+        speedKmh = new double[vehicleCount];
+        energy = new double[vehicleCount];
+        electric = new boolean[vehicleCount];
+        trips = new Trip[driverCount];
+
+        Map<String, Long> existing = new HashMap<>();
+        jdbcTemplate.query("SELECT id, license_plate FROM vehicles WHERE license_plate LIKE ?",
+                rs -> {
+                    existing.put(rs.getString(2), rs.getLong(1));
+                }, PLATE_PREFIX + "%");
+        List<Vehicle> batch = new ArrayList<>();
+        List<Integer> batchIndexes = new ArrayList<>();
+        for (int i = 0; i < vehicleCount; i++) {
+            String plate = plate(i);
+            Long id = existing.get(plate);
+            VehicleState state = id != null ? fleetState.get(id) : null;
+            if (state != null && state.getLatitude() != null && state.getLongitude() != null) {
+                vehicleIds[i] = id;
+                lat[i] = state.getLatitude();
+                lng[i] = state.getLongitude();
+                electric[i] = state.isElectric();
+                Integer level = electric[i] ? state.getBattery() : state.getFuel();
+                energy[i] = level != null ? level : 100;
+            } else {
+                batch.add(newVehicle(i, i < driverCount ? drivers.get(i) : null));
+                batchIndexes.add(i);
+            }
+            heading[i] = random.nextDouble() * 2 * Math.PI;
+            speedKmh[i] = 20 + random.nextDouble() * 30;
+            if (batch.size() == SAVE_CHUNK || (i == vehicleCount - 1 && !batch.isEmpty())) {
+                List<Vehicle> saved = vehicleRepository.saveAll(batch);
+                for (int j = 0; j < saved.size(); j++) {
+                    fleetState.register(saved.get(j));
+                    vehicleIds[batchIndexes.get(j)] = saved.get(j).getId();
+                }
+                batch.clear();
+                batchIndexes.clear();
+            }
+        }
+        for (int i = 0; i < vehicleCount; i++) {
+            vehicleIndex.put(vehicleIds[i], i);
+        }
+        System.out.println("Load simulation ready: " + vehicleCount + " vehicles (" + existing.size()
+                + " existing), " + driverCount + " drivers, " + customerCount + " customers in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private List<User> ensureUsers(String prefix, int count, Role role, String password) {
+        Map<String, Long> existing = new HashMap<>();
+        jdbcTemplate.query("SELECT id, email FROM users WHERE email LIKE ?", rs -> {
+            existing.put(rs.getString(2), rs.getLong(1));
+        }, prefix + "%");
+        List<User> users = new ArrayList<>(count);
+        List<User> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String email = prefix + i + EMAIL_DOMAIN;
+            User user = new User();
+            user.setId(existing.get(email));
+            if (user.getId() == null) {
+                user.setEmail(email);
+                user.setName(role == Role.DRIVER ? "Sim Driver " + i : "Sim Customer " + i);
+                user.setPassword(password);
+                user.setRole(role);
+                batch.add(user);
+            }
+            users.add(user);
+            if (batch.size() == SAVE_CHUNK) {
+                userRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        userRepository.saveAll(batch);
+        return users;
+    }
+
+    private Vehicle newVehicle(int i, User driver) {
+        double[] point = randomPoint();
+        electric[i] = random.nextInt(4) == 0;
+        energy[i] = 40 + random.nextInt(61);
+        lat[i] = point[0];
+        lng[i] = point[1];
+        Vehicle v = new Vehicle();
+        v.setName("Sim Vehicle " + i);
+        v.setLicensePlate(plate(i));
+        v.setType(electric[i] ? "EV" : new String[] { "SEDAN", "SUV", "TRUCK" }[random.nextInt(3)]);
+        v.setStatus(Vehicle.VehicleStatus.AVAILABLE);
+        v.setLatitude(lat[i]);
+        v.setLongitude(lng[i]);
+        v.setSpeed(0);
+        v.setBattery(electric[i] ? (int) energy[i] : 0);
+        v.setFuel(electric[i] ? 0 : (int) energy[i]);
+        v.setMileage(random.nextDouble() * 80_000);
+        v.setEngineHealth(70 + random.nextDouble() * 30);
+        v.setTirePressure(30 + random.nextDouble() * 5);
+        v.setOilLevel(40 + random.nextDouble() * 60);
+        v.setNextServiceDate(LocalDate.now().plusDays(1 + random.nextInt(180)));
+        v.setLocation("Load simulation");
+        v.setDriver(driver);
+        return v;
+    }
+
+    private static String plate(int i) {
+        return String.format(Locale.ROOT, "%s%06d", PLATE_PREFIX, i);
+    }
+
+    /** A uniformly distributed point within radiusKm of the center. */
+    private double[] randomPoint() {
+        double distanceKm = radiusKm * Math.sqrt(random.nextDouble());
+        double bearing = random.nextDouble() * 2 * Math.PI;
+        return new double[] { centerLat + distanceKm * Math.cos(bearing) / KM_PER_DEGREE,
+                centerLng + distanceKm * Math.sin(bearing) / (KM_PER_DEGREE * Math.cos(Math.toRadians(centerLat))) };
+    }
+
+    private void tick() {
+        if (!running) {
+            paused = true;
+            return;
+        }
+        long started = System.nanoTime();
+        long now = System.currentTimeMillis();
+        if (paused) {
+            // Lag counts from the resume, not from a schedule that stood still during the pause
+            startedAt = now - tick * tickMs;
+            paused = false;
+        }
+        try {
+            long lag = now - (startedAt + tick * tickMs);
+            if (lag > tickMs) {
+                lateTicks.incrementAndGet();
+            }
+            maxTickLagMs = Math.max(maxTickLagMs, lag);
+            for (Runnable completion; (completion = completions.poll()) != null;) {
+                completion.run();
+            }
+            moveAndReport(now);
+            createBookings(now);
+            assignBookings(now);
+        } catch (RuntimeException e) {
+            System.out.println("Load simulation tick failed: " + e);
+        }
+        tick++;
+        pendingBookings = pending.size();
+        lastTickMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+    }
+
+    /** Moves the vehicles whose telemetry is due this tick and sends their readings in frames. */
+    private void moveAndReport(long now) {
+        int slots = (int) Math.max(1, telemetryIntervalMs / tickMs);
+        double hours = telemetryIntervalMs / 3_600_000.0;
+        TelemetryFrameWriter frame = new TelemetryFrameWriter(FRAME_RECORDS);
+        for (int i = (int) (tick % slots); i < vehicleCount; i += slots) {
+            Trip trip = i < driverCount ? trips[i] : null;
+            if (trip != null) {
+                driveTrip(i, trip, hours, now);
+            } else {
+                wander(i, hours);
+            }
+            double movedKm = (trip != null ? TRIP_SPEED_KMH : speedKmh[i]) * hours;
+            energy[i] -= movedKm * (electric[i] ? 0.25 : 0.15);
+            if (energy[i] < 10) {
+                energy[i] = 100; // a stop at a charger or pump
+            }
+            int level = (int) Math.round(energy[i]);
+            frame.add(vehicleIds[i], now, lat[i], lng[i], trip != null ? TRIP_SPEED_KMH : speedKmh[i],
+                    electric[i] ? level : -1, electric[i] ? -1 : level);
+            if (frame.isFull()) {
+                sendTelemetry(frame);
+                frame = new TelemetryFrameWriter(FRAME_RECORDS);
+            }
+        }
+        if (frame.size() > 0) {
+            sendTelemetry(frame);
+        }
+    }
+
+    private void sendTelemetry(TelemetryFrameWriter frame) {
+        int records = frame.size();
+        submit(true, () -> {
+            TelemetryPipeline.IngestResult result = telemetryCalls.time(() -> {
+                try {
+                    return telemetryPipeline.ingestBinary(frame.toInputStream());
+                } catch (java.io.IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            });
+            if (result != null) {
+                readingsSent.addAndGet(result.getAccepted());
+                readingsRejected.addAndGet(records - result.getAccepted());
+            }
+        });
+    }
+
+    /** A random walk that turns back toward the center at the edge of the area. */
+    private void wander(int i, double hours) {
+        heading[i] += random.nextGaussian() * 0.3;
+        speedKmh[i] = Math.max(5, Math.min(70, speedKmh[i] + random.nextGaussian() * 3));
+        double stepKm = speedKmh[i] * hours;
+        if (GeoMath.haversineMeters(lat[i], lng[i], centerLat, centerLng) > radiusKm * 1000) {
+            heading[i] = Math.atan2((centerLng - lng[i]) * Math.cos(Math.toRadians(lat[i])), centerLat - lat[i]);
+        }
+        lat[i] += stepKm * Math.cos(heading[i]) / KM_PER_DEGREE;
+        lng[i] += stepKm * Math.sin(heading[i]) / (KM_PER_DEGREE * Math.cos(Math.toRadians(lat[i])));
+    }
+
+    /** Heads for the trip's pickup, then its destination; pings on the way. */
+    private void driveTrip(int driver, Trip trip, double hours, long now) {
+        double targetLat = trip.started ? trip.destinationLat : trip.pickupLat;
+        double targetLng = trip.started ? trip.destinationLng : trip.pickupLng;
+        double remainingKm = GeoMath.haversineMeters(lat[driver], lng[driver], targetLat, targetLng) / 1000;
+        double stepKm = TRIP_SPEED_KMH * hours;
+        if (remainingKm <= stepKm) {
+            lat[driver] = targetLat;
+            lng[driver] = targetLng;
+        } else {
+            double f = stepKm / remainingKm;
+            lat[driver] += (targetLat - lat[driver]) * f;
+            lng[driver] += (targetLng - lng[driver]) * f;
+        }
+        long bookingId = trip.bookingId;
+        if (now >= trip.nextPingAt) {
+            trip.nextPingAt = now + pingIntervalMs;
+            double pingLat = lat[driver];
+            double pingLng = lng[driver];
+            submit(true, () -> pingCalls.time(() -> {
+                bookingService.updateDriverLocation(bookingId, pingLat, pingLng);
+                return null;
+            }));
+        }
+        if (remainingKm > stepKm) {
+            return;
+        }
+        if (!trip.started) {
+            trip.started = true;
+            submit(false, () -> statusCalls.time(() -> bookingService.updateStatus(bookingId, "STARTED")));
+        } else {
+            trips[driver] = null;
+            activeTrips.decrementAndGet();
+            long vehicleId = vehicleIds[driver];
+            submit(false, () -> {
+                if (statusCalls.time(() -> bookingService.updateStatus(bookingId, "COMPLETED")) != null) {
+                    bookingsCompleted.incrementAndGet();
+                }
+                fleetState.update(vehicleId, v -> v.setStatus(Vehicle.VehicleStatus.AVAILABLE));
+                busyDrivers.remove(driver);
+            });
+        }
+    }
+
+    private void createBookings(long now) {
+        bookingCredit += bookingsPerMinute * tickMs / 60_000.0;
+        while (bookingCredit >= 1) {
+            bookingCredit--;
+            double[] pickup = randomPoint();
+            double[] destination = randomPoint();
+            Booking booking = new Booking();
+            booking.setCustomerId(customerUserIds[random.nextInt(customerUserIds.length)]);
+            booking.setOrigin(format(pickup));
+            booking.setDestination(format(destination));
+            double km = GeoMath.haversineMeters(pickup[0], pickup[1], destination[0], destination[1]) / 1000;
+            booking.setDistance(String.format(Locale.ROOT, "%.1f km", km));
+            booking.setPrice(Math.round((3 + km * 1.8) * 100) / 100.0);
+            submit(false, () -> {
+                Booking saved = createCalls.time(() -> bookingService.createBooking(booking));
+                if (saved != null) {
+                    completions.add(() -> pending.add(new PendingBooking(saved.getId(), pickup, destination,
+                            now + acceptDelayMs, now + bookingTimeoutMs)));
+                }
+            });
+        }
+    }
+
+    private static String format(double[] point) {
+        return String.format(Locale.ROOT, "%.6f,%.6f", point[0], point[1]);
+    }
+
+    /** Offers due bookings to the simulated drivers among their candidates; cancels expired ones. */
+    private void assignBookings(long now) {
+        for (Iterator<PendingBooking> it = pending.iterator(); it.hasNext();) {
+            PendingBooking p = it.next();
+            if (p.inFlight || now < p.assignAt) {
+                continue;
+            }
+            if (now >= p.expiresAt) {
+                it.remove();
+                submit(false, () -> {
+                    if (statusCalls.time(() -> bookingService.updateStatus(p.bookingId, "CANCELLED")) != null) {
+                        bookingsCancelled.incrementAndGet();
+                    }
+                });
+                continue;
+            }
+            p.inFlight = true;
+            submit(false, () -> assign(p, now));
+        }
+    }
+
+    // Runs on a worker: claims the first free simulated driver among the candidates
+    private void assign(PendingBooking p, long now) {
+        BookingCandidateService.CandidateList candidates = candidateCalls
+                .time(() -> bookingService.getCandidates(p.bookingId, CANDIDATES));
+        if (candidates == null) {
+            completions.add(() -> pending.remove(p));
+            return;
+        }
+        for (BookingCandidateService.Candidate candidate : candidates.getCandidates()) {
+            Integer driver = vehicleIndex.get(candidate.getVehicleId());
+            if (driver == null || driver >= driverCount || !busyDrivers.add(driver)) {
+                continue;
+            }
+            if (acceptCalls.time(() -> bookingService.acceptBooking(p.bookingId, driverUserIds[driver])) == null) {
+                busyDrivers.remove(driver);
+                completions.add(() -> pending.remove(p));
+                return;
+            }
+            fleetState.update(vehicleIds[driver], v -> v.setStatus(Vehicle.VehicleStatus.IN_USE));
+            statusCalls.time(() -> bookingService.updateStatus(p.bookingId, "ARRIVING"));
+            completions.add(() -> {
+                pending.remove(p);
+                trips[driver] = new Trip(p, now);
+                activeTrips.incrementAndGet();
+            });
+            return;
+        }
+        // No free driver nearby yet; try again after another delay
+        completions.add(() -> {
+            p.inFlight = false;
+            p.assignAt = System.currentTimeMillis() + acceptDelayMs;
+        });
+    }
+
+    private void submit(boolean sheddable, Runnable call) {
+        if (sheddable && workers.getQueue().size() >= maxQueuedCalls) {
+            shedCalls.incrementAndGet();
+            return;
+        }
+        workers.execute(call);
+    }
+
+    public Stats stats() {
+        long runningMs = populated ? System.currentTimeMillis() - startedAt : 0;
+        return new Stats(enabled, running, populated, vehicleCount, driverCount, customerCount, runningMs, tick,
+                lateTicks.get(), maxTickLagMs, lastTickMicros, workers.getQueue().size(), shedCalls.get(),
+                readingsSent.get(), readingsRejected.get(), pendingBookings, activeTrips.get(),
+                bookingsCompleted.get(), bookingsCancelled.get(),
+                Map.of("telemetry", telemetryCalls.snapshot(), "createBooking", createCalls.snapshot(),
+                        "candidates", candidateCalls.snapshot(), "acceptBooking", acceptCalls.snapshot(),
+                        "updateStatus", statusCalls.snapshot(), "driverPing", pingCalls.snapshot()));
+    }
+
+    private static final class PendingBooking {
+        final long bookingId;
+        final double[] pickup;
+        final double[] destination;
+        final long expiresAt;
+        long assignAt;
+        boolean inFlight;
+
+        PendingBooking(long bookingId, double[] pickup, double[] destination, long assignAt, long expiresAt) {
+            this.bookingId = bookingId;
+            this.pickup = pickup;
+            this.destination = destination;
+            this.assignAt = assignAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Trip {
+        final long bookingId;
+        final double pickupLat;
+        final double pickupLng;
+        final double destinationLat;
+        final double destinationLng;
+        boolean started;
+        long nextPingAt;
+
+        Trip(PendingBooking booking, long now) {
+            this.bookingId = booking.bookingId;
+            this.pickupLat = booking.pickup[0];
+            this.pickupLng = booking.pickup[1];
+            this.destinationLat = booking.destination[0];
+            this.destinationLng = booking.destination[1];
+            this.nextPingAt = now;
+        }
+    }
+
+    /** Calls, failures and latency of one kind of service call. */
+    private static final class OpStats {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /** Runs the call and records it; a failure is counted and returns null. */
+        <T> T time(Supplier<T> call) {
+            long start = System.nanoTime();
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                errors.incrementAndGet();
+                return null;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                calls.incrementAndGet();
+                totalNanos.addAndGet(nanos);
+                maxNanos.accumulateAndGet(nanos, Math::max);
+            }
+        }
+
+        CallStats snapshot() {
+            long n = calls.get();
+            return new CallStats(n, errors.get(), n > 0 ? totalNanos.get() / 1000.0 / n / 1000 : 0,
+                    maxNanos.get() / 1_000_000.0);
+        }
+    }
+
+    public static class CallStats {
+        private final long calls;
+        private final long errors;
+        private final double meanMillis;
+        private final double maxMillis;
+
+        CallStats(long calls, long errors, double meanMillis, double maxMillis) {
+            this.calls = calls;
+            this.errors = errors;
+            this.meanMillis = meanMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+    }
+
+    public static class Stats {
+        private final boolean enabled;
+        private final boolean running;
+        private final boolean ready;
+        private final int vehicles;
+        private final int drivers;
+        private final int customers;
+        private final long runningMillis;
+        private final long ticks;
+        private final long lateTicks;
+        private final long maxTickLagMillis;
+        private final long lastTickMicros;
+        private final int queuedCalls;
+        private final long shedCalls;
+        private final long readingsSent;
+        private final long readingsRejected;
+        private final int pendingBookings;
+        private final int activeTrips;
+        private final long bookingsCompleted;
+        private final long bookingsCancelled;
+        private final Map<String, CallStats> calls;
+
+        Stats(boolean enabled, boolean running, boolean ready, int vehicles, int drivers, int customers,
+                long runningMillis, long ticks, long lateTicks, long maxTickLagMillis, long lastTickMicros,
+                int queuedCalls, long shedCalls, long readingsSent, long readingsRejected, int pendingBookings,
+                int activeTrips, long bookingsCompleted, long bookingsCancelled, Map<String, CallStats> calls) {
+            this.enabled = enabled;
+            this.running = running;
+            this.ready = ready;
+            this.vehicles = vehicles;
+            this.drivers = drivers;
+            this.customers = customers;
+            this.runningMillis = runningMillis;
+            this.ticks = ticks;
+            this.lateTicks = lateTicks;
+            this.maxTickLagMillis = maxTickLagMillis;
+            this.lastTickMicros = lastTickMicros;
+            this.queuedCalls = queuedCalls;
+            this.shedCalls = shedCalls;
+            this.readingsSent = readingsSent;
+            this.readingsRejected = readingsRejected;
+            this.pendingBookings = pendingBookings;
+            this.activeTrips = activeTrips;
+            this.bookingsCompleted = bookingsCompleted;
+            this.bookingsCancelled = bookingsCancelled;
+            this.calls = calls;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        /** Whether the simulated fleet has been created and ticks have started. */
+        public boolean isReady() {
+            return ready;
+        }
+
+        public int getVehicles() {
+            return vehicles;
+        }
+
+        public int getDrivers() {
+            return drivers;
+        }
+
+        public int getCustomers() {
+            return customers;
+        }
+
+        public long getRunningMillis() {
+            return runningMillis;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        /** Ticks that started more than one tick late: the tick thread cannot keep up. */
+        public long getLateTicks() {
+            return lateTicks;
+        }
+
+        public long getMaxTickLagMillis() {
+            return maxTickLagMillis;
+        }
+
+        public long getLastTickMicros() {
+            return lastTickMicros;
+        }
+
+        /** Service calls waiting for a worker. */
+        public int getQueuedCalls() {
+            return queuedCalls;
+        }
+
+        /** Telemetry frames and pings dropped because too many calls were waiting. */
+        public long getShedCalls() {
+            return shedCalls;
+        }
+
+        public long getReadingsSent() {
+            return readingsSent;
+        }
+
+        /** Readings the pipeline did not take (ring full, or the frame failed). */
+        public long getReadingsRejected() {
+            return readingsRejected;
+        }
+
+        public int getPendingBookings() {
+            return pendingBookings;
+        }
+
+        public int getActiveTrips() {
+            return activeTrips;
+        }
+
+        public long getBookingsCompleted() {
+            return bookingsCompleted;
+        }
+
+        public long getBookingsCancelled() {
+            return bookingsCancelled;
+        }
+
+        public Map<String, CallStats> getCalls() {
+            return calls;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.neurofleetx.telemetry;
+
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.geo.GeoMath;
+import com.neurofleetx.traffic.TrafficLayer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * First stage: applies each reading to the fleet state store, accumulates mileage
+ * between consecutive positions and feeds the traffic layer. Readings that are not
+ * newer than the vehicle's last applied reading (retries, reordering) are dropped.
+ */
+final class FleetStateStage implements TelemetryHandler {
+
+    // 1 Hz positions are only metres apart; traffic samples span this much time instead
+    private static final long TRAFFIC_SAMPLE_MS = 10_000;
+    private static final long TRAFFIC_MAX_GAP_MS = 5 * 60 * 1000;
+
+    private final FleetStateStore fleetState;
+    private final TrafficLayer trafficLayer;
+    private final Map<Long, Track> tracks = new HashMap<>();
+    private final AtomicLong unknownVehicles = new AtomicLong();
+    private final AtomicLong staleReadings = new AtomicLong();
+
+    FleetStateStage(FleetStateStore fleetState, TrafficLayer trafficLayer) {
+        this.fleetState = fleetState;
+        this.trafficLayer = trafficLayer;
+    }
+
+    long getUnknownVehicles() {
+        return unknownVehicles.get();
+    }
+
+    long getStaleReadings() {
+        return staleReadings.get();
+    }
+
+    @Override
+    public void onReading(TelemetryReading r) {
+        long vehicleId = r.getVehicleId();
+        long timestamp = r.getTimestamp();
+        Track track = tracks.get(vehicleId);
+        if (track != null && timestamp <= track.timestamp) {
+            staleReadings.incrementAndGet();
+            return;
+        }
+        boolean moved = r.hasPosition() && track != null && track.hasPosition;
+        double movedKm = moved
+                ? GeoMath.haversineMeters(track.latitude, track.longitude, r.getLatitude(), r.getLongitude()) / 1000
+                : 0;
+        boolean tracked = fleetState.update(vehicleId, s -> {
+            if (r.hasPosition()) {
+                s.setLatitude(r.getLatitude());
+                s.setLongitude(r.getLongitude());
+                s.setMileage((s.getMileage() != null ? s.getMileage() : 0) + movedKm);
+            }
+            if (!Double.isNaN(r.getSpeed())) {
+                s.setSpeed((int) Math.round(r.getSpeed()));
+            }
+            if (r.getBattery() >= 0) {
+                s.setBattery(r.getBattery());
+            }
+            if (r.getFuel() >= 0) {
+                s.setFuel(r.getFuel());
+            }
+            if (!Double.isNaN(r.getEngineHealth())) {
+                s.setEngineHealth(r.getEngineHealth());
+            }
+            if (!Double.isNaN(r.getTirePressure())) {
+                s.setTirePressure(r.getTirePressure());
+            }
+            if (!Double.isNaN(r.getOilLevel())) {
+                s.setOilLevel(r.getOilLevel());
+            }
+        });
+        if (!tracked) {
+            unknownVehicles.incrementAndGet();
+            tracks.remove(vehicleId);
+            return;
+        }
+
+        if (track == null) {
+            track = new Track();
+            tracks.put(vehicleId, track);
+        }
+        track.timestamp = timestamp;
+        if (r.hasPosition()) {
+            track.hasPosition = true;
+            track.latitude = r.getLatitude();
+            track.longitude = r.getLongitude();
+            sampleTraffic(track, timestamp);
+        }
+    }
+
+    private void sampleTraffic(Track track, long timestamp) {
+        long elapsed = timestamp - track.sampleTimestamp;
+        if (track.sampleTimestamp == 0 || elapsed > TRAFFIC_MAX_GAP_MS) {
+            track.startSample(timestamp);
+            return;
+        }
+        if (elapsed >= TRAFFIC_SAMPLE_MS) {
+            double meters = GeoMath.haversineMeters(track.sampleLatitude, track.sampleLongitude, track.latitude,
+                    track.longitude);
+            trafficLayer.recordSpeed(track.sampleLatitude, track.sampleLongitude, track.latitude, track.longitude,
+                    meters / (elapsed / 1000.0) * 3.6, timestamp);
+            track.startSample(timestamp);
+        }
+    }
+
+    private static final class Track {
+        long timestamp;
+        boolean hasPosition;
+        double latitude;
+        double longitude;
+        // Start of the current traffic sample
+        long sampleTimestamp;
+        double sampleLatitude;
+        double sampleLongitude;
+
+        void startSample(long timestamp) {
+            sampleTimestamp = timestamp;
+            sampleLatitude = latitude;
+            sampleLongitude = longitude;
+        }
+    }
+}
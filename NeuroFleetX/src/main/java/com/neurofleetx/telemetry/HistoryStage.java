@@ -0,0 +1,130 @@
+package com.neurofleetx.telemetry;
+
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleState;
+import com.neurofleetx.model.VehicleHealthLog;
+import com.neurofleetx.service.MaintenanceService;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends health history: at most one row per vehicle per interval, sampled from
+ * readings that carry health values. Values a reading leaves out are taken from the
+ * vehicle's live state. Rows are written in batches, at the latest a second after
+ * the first one was sampled, by a separate writer thread so a slow database never
+ * holds up the ring. If the writer falls a few batches behind, new batches are
+ * dropped and counted instead.
+ */
+final class HistoryStage implements TelemetryHandler {
+
+    private static final long MAX_PENDING_NANOS = 1_000_000_000L;
+    private static final int MAX_QUEUED_BATCHES = 4;
+
+    private final MaintenanceService maintenanceService;
+    private final FleetStateStore fleetState;
+    private final long intervalMs;
+    private final int batchSize;
+    private final Map<Long, Long> lastSampled = new HashMap<>();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final ExecutorService writer;
+    private Map<Long, VehicleHealthLog> pending = new LinkedHashMap<>();
+    private long firstPendingNanos;
+
+    HistoryStage(MaintenanceService maintenanceService, FleetStateStore fleetState, long intervalSeconds,
+            int batchSize) {
+        this.maintenanceService = maintenanceService;
+        this.fleetState = fleetState;
+        this.intervalMs = intervalSeconds * 1000;
+        this.batchSize = batchSize;
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_BATCHES), r -> {
+                    Thread thread = new Thread(r, "telemetry-history-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    long getRows() {
+        return rows.get();
+    }
+
+    /** Rows not written, because of a database error or a writer backlog. */
+    long getFailedRows() {
+        return failedRows.get();
+    }
+
+    @Override
+    public void onReading(TelemetryReading r) {
+        if (!r.hasHealth()) {
+            return;
+        }
+        long vehicleId = r.getVehicleId();
+        Long last = lastSampled.get(vehicleId);
+        if (last != null && r.getTimestamp() - last < intervalMs) {
+            return;
+        }
+        VehicleState state = fleetState.get(vehicleId);
+        if (state == null) {
+            return;
+        }
+        VehicleHealthLog log = new VehicleHealthLog();
+        log.setTimestamp(Instant.ofEpochMilli(r.getTimestamp()));
+        log.setEngineHealth(!Double.isNaN(r.getEngineHealth()) ? r.getEngineHealth() : state.getEngineHealth());
+        log.setTirePressure(!Double.isNaN(r.getTirePressure()) ? r.getTirePressure() : state.getTirePressure());
+        log.setOilLevel(!Double.isNaN(r.getOilLevel()) ? r.getOilLevel() : state.getOilLevel());
+        log.setBatteryHealth(r.getBattery() >= 0 ? r.getBattery() : state.getBattery());
+        if (pending.isEmpty()) {
+            firstPendingNanos = System.nanoTime();
+        }
+        pending.put(vehicleId, log);
+        lastSampled.put(vehicleId, r.getTimestamp());
+        if (pending.size() >= batchSize) {
+            write();
+        }
+    }
+
+    @Override
+    public void onBatchEnd(boolean draining) {
+        if (!pending.isEmpty() && (draining || System.nanoTime() - firstPendingNanos >= MAX_PENDING_NANOS)) {
+            write();
+        }
+        if (draining) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void write() {
+        Map<Long, VehicleHealthLog> batch = pending;
+        pending = new LinkedHashMap<>();
+        try {
+            writer.execute(() -> {
+                try {
+                    maintenanceService.appendHealthLogs(batch);
+                    rows.addAndGet(batch.size());
+                } catch (RuntimeException e) {
+                    // History is best effort; the live state already has the readings
+                    failedRows.addAndGet(batch.size());
+                    System.out.println("Telemetry history write failed for " + batch.size() + " rows: "
+                            + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            failedRows.addAndGet(batch.size());
+        }
+    }
+}
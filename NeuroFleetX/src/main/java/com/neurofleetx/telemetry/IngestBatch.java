@@ -0,0 +1,90 @@
+package com.neurofleetx.telemetry;
+
+/**
+ * Per-request staging area between a decoder and the ring buffer. Decoders fill
+ * {@link #next()} and {@link #commit()} it; valid readings are published in chunks
+ * so producers claim ring slots once per chunk, not once per reading.
+ */
+final class IngestBatch {
+
+    private final TelemetryPipeline pipeline;
+    private final TelemetryReading[] scratch;
+    private final int[] recordIndex; // position in the request of each staged reading
+    private final long receivedAt = System.currentTimeMillis();
+    private int size;
+    private int records;
+    private int accepted;
+    private int invalid;
+    private String firstInvalid;
+    private Integer resumeFrom;
+
+    IngestBatch(TelemetryPipeline pipeline, int chunkSize) {
+        this.pipeline = pipeline;
+        this.scratch = new TelemetryReading[chunkSize];
+        for (int i = 0; i < chunkSize; i++) {
+            scratch[i] = new TelemetryReading();
+        }
+        this.recordIndex = new int[chunkSize];
+    }
+
+    /** Cleared reading to decode the next record into. */
+    TelemetryReading next() {
+        TelemetryReading reading = scratch[size];
+        reading.clear();
+        return reading;
+    }
+
+    /** Number of records taken so far, valid or not. */
+    int records() {
+        return records;
+    }
+
+    /**
+     * Stages the reading filled since {@link #next()}, or counts it as invalid.
+     * Returns false once the ring stayed full: the decoder must stop reading.
+     */
+    boolean commit() {
+        TelemetryReading reading = scratch[size];
+        int index = records++;
+        if (reading.getTimestamp() == 0) {
+            reading.setTimestamp(receivedAt);
+        }
+        String problem = reading.validate();
+        if (problem != null) {
+            countInvalid(index, problem);
+            return true;
+        }
+        recordIndex[size++] = index;
+        return size < scratch.length || flush();
+    }
+
+    /** Skips the record being decoded as invalid instead of committing it. */
+    void skip(String problem) {
+        countInvalid(records++, problem);
+    }
+
+    private void countInvalid(int index, String problem) {
+        invalid++;
+        if (firstInvalid == null) {
+            firstInvalid = "record " + index + ": " + problem;
+        }
+    }
+
+    /** Publishes staged readings. Returns false if the ring stayed full; the rest is not accepted. */
+    boolean flush() {
+        if (size == 0) {
+            return resumeFrom == null;
+        }
+        int published = pipeline.publish(scratch, size);
+        accepted += published;
+        if (published < size) {
+            resumeFrom = recordIndex[published];
+        }
+        size = 0;
+        return resumeFrom == null;
+    }
+
+    TelemetryPipeline.IngestResult result(String error) {
+        return new TelemetryPipeline.IngestResult(accepted, invalid, firstInvalid, resumeFrom, error);
+    }
+}
@@ -0,0 +1,102 @@
+package com.neurofleetx.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs one {@link TelemetryHandler} over the ring buffer. The stage follows either
+ * the producers (no upstream) or another stage's sequence, so a reading reaches it
+ * only after every earlier stage is done with it.
+ */
+final class StageProcessor implements Runnable {
+
+    // Readings handled before the sequence is advanced, so producers get slots back steadily
+    private static final int MAX_RUN = 1024;
+    private static final long IDLE_BATCH_END_NANOS = 250_000_000L;
+
+    private final String name;
+    private final TelemetryRingBuffer ring;
+    private final TelemetryHandler handler;
+    private final AtomicLong upstream;
+    private final AtomicLong sequence = new AtomicLong(-1);
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean running = true;
+
+    StageProcessor(String name, TelemetryRingBuffer ring, TelemetryHandler handler, AtomicLong upstream) {
+        this.name = name;
+        this.ring = ring;
+        this.handler = handler;
+        this.upstream = upstream;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /** Last sequence this stage has finished with. */
+    AtomicLong sequence() {
+        return sequence;
+    }
+
+    long getErrors() {
+        return errors.get();
+    }
+
+    /** Makes the thread exit once it has caught up with everything claimed upstream. */
+    void halt() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        long next = sequence.get() + 1;
+        int idleRounds = 0;
+        long lastBatchEnd = System.nanoTime();
+        while (true) {
+            long limit = next + MAX_RUN - 1;
+            long available = upstream == null ? ring.highestPublished(next, Math.min(ring.cursor(), limit))
+                    : upstream.get();
+            if (available >= next) {
+                long end = Math.min(available, limit);
+                for (long s = next; s <= end; s++) {
+                    try {
+                        handler.onReading(ring.get(s));
+                    } catch (RuntimeException e) {
+                        if (errors.incrementAndGet() == 1) {
+                            System.out.println("Telemetry stage " + name + " failed on a reading: " + e);
+                        }
+                    }
+                }
+                sequence.lazySet(end);
+                next = end + 1;
+                idleRounds = 0;
+                batchEnd(false);
+                lastBatchEnd = System.nanoTime();
+            } else if (!running && next > (upstream == null ? ring.cursor() : upstream.get())) {
+                break;
+            } else {
+                idleRounds++;
+                if (idleRounds < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    // Back off from 50 us to 1 ms while nothing arrives
+                    LockSupport.parkNanos(Math.min(1_000_000L, 50_000L * (idleRounds - 99)));
+                    if (System.nanoTime() - lastBatchEnd >= IDLE_BATCH_END_NANOS) {
+                        batchEnd(false);
+                        lastBatchEnd = System.nanoTime();
+                    }
+                }
+            }
+        }
+        batchEnd(true);
+    }
+
+    private void batchEnd(boolean draining) {
+        try {
+            handler.onBatchEnd(draining);
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+            System.out.println("Telemetry stage " + name + " failed to flush: " + e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.neurofleetx.telemetry;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Streams readings out of a request body into an {@link IngestBatch}, without
+ * buffering the body or building an object per record.
+ *
+ * NDJSON: one object per line,
+ * {"vehicleId":7,"timestamp":1718000000000,"lat":40.71,"lng":-74.0,"speed":42.5,
+ * "battery":80,"fuel":60,"engineHealth":93.5,"tirePressure":32.1,"oilLevel":71}.
+ * Only vehicleId is required; timestamp (epoch millis) defaults to the time of
+ * receipt and unknown fields are ignored.
+ *
+ * Binary: one or more frames, each a big-endian header (int magic "NFT1", int
+ * record count) followed by fixed 44-byte records:
+ * long vehicleId, long timestamp (epoch millis, 0 = time of receipt),
+ * byte flags, byte battery, byte fuel, byte reserved, int lat * 1e7, int lng * 1e7,
+ * float speed, float engineHealth, float tirePressure, float oilLevel.
+ * Flag bits say which values are present: 0 position, 1 speed, 2 battery, 3 fuel,
+ * 4 engine health, 5 tire pressure, 6 oil level.
+ */
+final class TelemetryDecoder {
+
+    static final int MAGIC = 0x4E465431; // "NFT1"
+    static final int HEADER_BYTES = 8;
+    static final int RECORD_BYTES = 44;
+
+    static final int HAS_POSITION = 1;
+    static final int HAS_SPEED = 1 << 1;
+    static final int HAS_BATTERY = 1 << 2;
+    static final int HAS_FUEL = 1 << 3;
+    static final int HAS_ENGINE_HEALTH = 1 << 4;
+    static final int HAS_TIRE_PRESSURE = 1 << 5;
+    static final int HAS_OIL_LEVEL = 1 << 6;
+
+    private TelemetryDecoder() {
+    }
+
+    /**
+     * Decodes NDJSON until the end of the body or until the ring stays full.
+     * Malformed JSON throws IllegalArgumentException; readings before it are kept.
+     */
+    static void readNdjson(JsonFactory factory, InputStream body, IngestBatch batch) throws IOException {
+        try (JsonParser parser = factory.createParser(body)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("record " + batch.records() + ": expected a JSON object");
+                }
+                TelemetryReading reading = batch.next();
+                String problem = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
+                    switch (field) {
+                        case "vehicleId" -> reading.setVehicleId(parser.getLongValue());
+                        case "timestamp" -> reading.setTimestamp(parser.getLongValue());
+                        case "lat" -> reading.setLatitude(parser.getDoubleValue());
+                        case "lng" -> reading.setLongitude(parser.getDoubleValue());
+                        case "speed" -> reading.setSpeed(parser.getDoubleValue());
+                        case "battery" -> {
+                            int battery = parser.getIntValue();
+                            if (battery < 0) {
+                                problem = "value out of range";
+                            }
+                            reading.setBattery(battery);
+                        }
+                        case "fuel" -> {
+                            int fuel = parser.getIntValue();
+                            if (fuel < 0) {
+                                problem = "value out of range";
+                            }
+                            reading.setFuel(fuel);
+                        }
+                        case "engineHealth" -> reading.setEngineHealth(parser.getDoubleValue());
+                        case "tirePressure" -> reading.setTirePressure(parser.getDoubleValue());
+                        case "oilLevel" -> reading.setOilLevel(parser.getDoubleValue());
+                        default -> parser.skipChildren();
+                    }
+                }
+                if (problem != null) {
+                    batch.skip(problem);
+                } else if (!batch.commit()) {
+                    return;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("record " + batch.records() + ": " + e.getOriginalMessage());
+        }
+        batch.flush();
+    }
+
+    /**
+     * Decodes binary frames until the end of the body or until the ring stays full.
+     * A bad header or truncated record throws IllegalArgumentException; readings
+     * before it are kept.
+     */
+    static void readBinary(InputStream body, IngestBatch batch) throws IOException {
+        InputStream in = new BufferedInputStream(body, 64 * 1024);
+        byte[] bytes = new byte[RECORD_BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes); // big-endian by default
+        while (true) {
+            int read = in.readNBytes(bytes, 0, HEADER_BYTES);
+            if (read == 0) {
+                break;
+            }
+            if (read < HEADER_BYTES) {
+                throw new IllegalArgumentException("record " + batch.records() + ": truncated frame header");
+            }
+            int magic = buffer.getInt(0);
+            int count = buffer.getInt(4);
+            if (magic != MAGIC || count < 0) {
+                throw new IllegalArgumentException("record " + batch.records() + ": bad frame header");
+            }
+            for (int i = 0; i < count; i++) {
+                if (in.readNBytes(bytes, 0, RECORD_BYTES) < RECORD_BYTES) {
+                    throw new IllegalArgumentException("record " + batch.records() + ": truncated");
+                }
+                decodeRecord(buffer, batch.next());
+                if (!batch.commit()) {
+                    return;
+                }
+            }
+        }
+        batch.flush();
+    }
+
+    private static void decodeRecord(ByteBuffer buffer, TelemetryReading reading) {
+        reading.setVehicleId(buffer.getLong(0));
+        reading.setTimestamp(buffer.getLong(8));
+        int flags = buffer.get(16);
+        if ((flags & HAS_BATTERY) != 0) {
+            reading.setBattery(buffer.get(17) & 0xff);
+        }
+        if ((flags & HAS_FUEL) != 0) {
+            reading.setFuel(buffer.get(18) & 0xff);
+        }
+        if ((flags & HAS_POSITION) != 0) {
+            reading.setLatitude(buffer.getInt(20) / 1e7);
+            reading.setLongitude(buffer.getInt(24) / 1e7);
+        }
+        if ((flags & HAS_SPEED) != 0) {
+            reading.setSpeed(buffer.getFloat(28));
+        }
+        if ((flags & HAS_ENGINE_HEALTH) != 0) {
+            reading.setEngineHealth(buffer.getFloat(32));
+        }
+        if ((flags & HAS_TIRE_PRESSURE) != 0) {
+            reading.setTirePressure(buffer.getFloat(36));
+        }
+        if ((flags & HAS_OIL_LEVEL) != 0) {
+            reading.setOilLevel(buffer.getFloat(40));
+        }
+    }
+}
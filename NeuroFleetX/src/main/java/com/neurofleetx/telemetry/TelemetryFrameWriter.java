@@ -0,0 +1,71 @@
+package com.neurofleetx.telemetry;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Builds one binary telemetry frame in the format {@link TelemetryDecoder} reads,
+ * for senders inside the application such as the load simulator. Reusable: clear()
+ * starts a new frame in the same buffer.
+ */
+public final class TelemetryFrameWriter {
+
+    private final ByteBuffer buffer;
+    private final int maxRecords;
+    private int records;
+
+    public TelemetryFrameWriter(int maxRecords) {
+        this.maxRecords = maxRecords;
+        this.buffer = ByteBuffer.allocate(TelemetryDecoder.HEADER_BYTES + maxRecords * TelemetryDecoder.RECORD_BYTES);
+        clear();
+    }
+
+    /** Adds a reading with a position and speed; battery and fuel are left out when negative. */
+    public void add(long vehicleId, long timestamp, double lat, double lng, double speed, int battery, int fuel) {
+        if (records == maxRecords) {
+            throw new IllegalStateException("Frame is full");
+        }
+        int flags = TelemetryDecoder.HAS_POSITION | TelemetryDecoder.HAS_SPEED;
+        if (battery >= 0) {
+            flags |= TelemetryDecoder.HAS_BATTERY;
+        }
+        if (fuel >= 0) {
+            flags |= TelemetryDecoder.HAS_FUEL;
+        }
+        buffer.putLong(vehicleId);
+        buffer.putLong(timestamp);
+        buffer.put((byte) flags);
+        buffer.put((byte) Math.max(0, Math.min(255, battery)));
+        buffer.put((byte) Math.max(0, Math.min(255, fuel)));
+        buffer.put((byte) 0);
+        buffer.putInt((int) Math.round(lat * 1e7));
+        buffer.putInt((int) Math.round(lng * 1e7));
+        buffer.putFloat((float) speed);
+        buffer.putFloat(0f);
+        buffer.putFloat(0f);
+        buffer.putFloat(0f);
+        records++;
+    }
+
+    public int size() {
+        return records;
+    }
+
+    public boolean isFull() {
+        return records == maxRecords;
+    }
+
+    /** The frame so far, to pass to {@link TelemetryPipeline#ingestBinary}. */
+    public InputStream toInputStream() {
+        buffer.putInt(4, records);
+        return new ByteArrayInputStream(buffer.array(), 0, buffer.position());
+    }
+
+    public void clear() {
+        buffer.clear();
+        buffer.putInt(TelemetryDecoder.MAGIC);
+        buffer.putInt(0);
+        records = 0;
+    }
+}
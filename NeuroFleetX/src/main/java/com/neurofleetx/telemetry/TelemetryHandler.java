@@ -0,0 +1,18 @@
+package com.neurofleetx.telemetry;
+
+/**
+ * One consumer stage of the telemetry pipeline. Each stage runs on its own thread,
+ * so an implementation needs no synchronization for its own fields. Readings are
+ * ring slots: read them during the call, never keep them.
+ */
+interface TelemetryHandler {
+
+    void onReading(TelemetryReading reading);
+
+    /**
+     * Called after every run of readings, a few times a second while idle, and once
+     * more with draining set when the pipeline stops. Where buffered work is flushed.
+     */
+    default void onBatchEnd(boolean draining) {
+    }
+}
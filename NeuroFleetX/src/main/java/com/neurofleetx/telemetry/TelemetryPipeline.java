@@ -0,0 +1,294 @@
+package com.neurofleetx.telemetry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.service.MaintenanceService;
+import com.neurofleetx.traffic.TrafficLayer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingestion pipeline for vehicle telemetry. Request threads decode readings and
+ * publish them into a pre-allocated {@link TelemetryRingBuffer}; three stages, each
+ * on its own thread, consume them:
+ *
+ *   producers -> fleet state -> history
+ *                            -> thresholds
+ *
+ * The fleet state stage applies readings to {@link FleetStateStore} (and feeds the
+ * traffic layer); history and thresholds run side by side after it. When the
+ * stages fall a full ring behind, producers wait up to telemetry.ingest.max-wait-ms
+ * and then stop taking records: the response says where the client should resume.
+ */
+@Component
+public class TelemetryPipeline {
+
+    private static final int CHUNK_SIZE = 256;
+
+    private final ObjectMapper objectMapper;
+    private final TelemetryRingBuffer ring;
+    private final FleetStateStage fleetStage;
+    private final HistoryStage historyStage;
+    private final ThresholdStage thresholdStage;
+    private final List<StageProcessor> processors = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final long maxWaitNanos;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    private volatile boolean accepting = true;
+
+    public TelemetryPipeline(FleetStateStore fleetState, MaintenanceService maintenanceService,
+            TrafficLayer trafficLayer, SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper,
+            @Value("${telemetry.ring-size:65536}") int ringSize,
+            @Value("${telemetry.ingest.max-wait-ms:100}") long maxWaitMs,
+            @Value("${telemetry.history.interval-seconds:60}") long historyIntervalSeconds,
+            @Value("${telemetry.history.batch-size:500}") int historyBatchSize) {
+        this.objectMapper = objectMapper;
+        this.ring = new TelemetryRingBuffer(ringSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.fleetStage = new FleetStateStage(fleetState, trafficLayer);
+        this.historyStage = new HistoryStage(maintenanceService, fleetState, historyIntervalSeconds, historyBatchSize);
+        this.thresholdStage = new ThresholdStage(fleetState, messagingTemplate);
+
+        StageProcessor fleet = new StageProcessor("fleet-state", ring, fleetStage, null);
+        StageProcessor history = new StageProcessor("history", ring, historyStage, fleet.sequence());
+        StageProcessor thresholds = new StageProcessor("thresholds", ring, thresholdStage, fleet.sequence());
+        processors.add(fleet);
+        processors.add(history);
+        processors.add(thresholds);
+        ring.setGatingSequences(history.sequence(), thresholds.sequence());
+    }
+
+    @PostConstruct
+    void start() {
+        for (StageProcessor processor : processors) {
+            Thread thread = new Thread(processor, "telemetry-" + processor.getName());
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        System.out.println("Telemetry pipeline started: ring of " + ring.capacity() + " readings");
+    }
+
+    /** Stops taking readings and lets every stage drain what was accepted. */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        accepting = false;
+        // The fleet state stage first, so the stages after it have everything before they are told to stop
+        processors.get(0).halt();
+        threads.get(0).join(10_000);
+        for (int i = 1; i < processors.size(); i++) {
+            processors.get(i).halt();
+        }
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+    }
+
+    public IngestResult ingestNdjson(InputStream body) throws IOException {
+        IngestBatch batch = new IngestBatch(this, CHUNK_SIZE);
+        try {
+            TelemetryDecoder.readNdjson(objectMapper.getFactory(), body, batch);
+        } catch (IllegalArgumentException e) {
+            batch.flush();
+            return finish(batch.result(e.getMessage()));
+        }
+        return finish(batch.result(null));
+    }
+
+    public IngestResult ingestBinary(InputStream body) throws IOException {
+        IngestBatch batch = new IngestBatch(this, CHUNK_SIZE);
+        try {
+            TelemetryDecoder.readBinary(body, batch);
+        } catch (IllegalArgumentException e) {
+            batch.flush();
+            return finish(batch.result(e.getMessage()));
+        }
+        return finish(batch.result(null));
+    }
+
+    private IngestResult finish(IngestResult result) {
+        accepted.addAndGet(result.getAccepted());
+        invalid.addAndGet(result.getInvalid());
+        if (result.getResumeFrom() != null) {
+            rejectedRequests.incrementAndGet();
+        }
+        return result;
+    }
+
+    int publish(TelemetryReading[] readings, int count) {
+        if (!accepting) {
+            return 0;
+        }
+        return ring.publish(readings, count, System.nanoTime() + maxWaitNanos);
+    }
+
+    public Stats stats() {
+        long cursor = ring.cursor();
+        List<StageStats> stages = new ArrayList<>();
+        for (StageProcessor processor : processors) {
+            long sequence = processor.sequence().get();
+            stages.add(new StageStats(processor.getName(), sequence + 1, cursor - sequence, processor.getErrors()));
+        }
+        return new Stats(ring.capacity(), cursor - ring.minimumGatingSequence(), accepted.get(), invalid.get(),
+                rejectedRequests.get(), fleetStage.getUnknownVehicles(), fleetStage.getStaleReadings(),
+                historyStage.getRows(), historyStage.getFailedRows(), thresholdStage.getAlerts(), stages);
+    }
+
+    public static class IngestResult {
+        private final int accepted;
+        private final int invalid;
+        private final String firstInvalid;
+        private final Integer resumeFrom;
+        private final String error;
+
+        IngestResult(int accepted, int invalid, String firstInvalid, Integer resumeFrom, String error) {
+            this.accepted = accepted;
+            this.invalid = invalid;
+            this.firstInvalid = firstInvalid;
+            this.resumeFrom = resumeFrom;
+            this.error = error;
+        }
+
+        public int getAccepted() {
+            return accepted;
+        }
+
+        public int getInvalid() {
+            return invalid;
+        }
+
+        /** Why the first invalid record was skipped, or null. */
+        public String getFirstInvalid() {
+            return firstInvalid;
+        }
+
+        /** Index of the first record not taken because the pipeline was full, or null if none. */
+        public Integer getResumeFrom() {
+            return resumeFrom;
+        }
+
+        /** Why decoding stopped early on malformed input, or null. */
+        public String getError() {
+            return error;
+        }
+    }
+
+    public static class Stats {
+        private final int ringCapacity;
+        private final long inFlight;
+        private final long accepted;
+        private final long invalid;
+        private final long rejectedRequests;
+        private final long unknownVehicles;
+        private final long staleReadings;
+        private final long historyRows;
+        private final long failedHistoryRows;
+        private final long alerts;
+        private final List<StageStats> stages;
+
+        Stats(int ringCapacity, long inFlight, long accepted, long invalid, long rejectedRequests,
+                long unknownVehicles, long staleReadings, long historyRows, long failedHistoryRows, long alerts,
+                List<StageStats> stages) {
+            this.ringCapacity = ringCapacity;
+            this.inFlight = inFlight;
+            this.accepted = accepted;
+            this.invalid = invalid;
+            this.rejectedRequests = rejectedRequests;
+            this.unknownVehicles = unknownVehicles;
+            this.staleReadings = staleReadings;
+            this.historyRows = historyRows;
+            this.failedHistoryRows = failedHistoryRows;
+            this.alerts = alerts;
+            this.stages = stages;
+        }
+
+        public int getRingCapacity() {
+            return ringCapacity;
+        }
+
+        /** Readings published but not yet through every stage. */
+        public long getInFlight() {
+            return inFlight;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getInvalid() {
+            return invalid;
+        }
+
+        /** Requests cut short because the ring stayed full. */
+        public long getRejectedRequests() {
+            return rejectedRequests;
+        }
+
+        public long getUnknownVehicles() {
+            return unknownVehicles;
+        }
+
+        public long getStaleReadings() {
+            return staleReadings;
+        }
+
+        public long getHistoryRows() {
+            return historyRows;
+        }
+
+        public long getFailedHistoryRows() {
+            return failedHistoryRows;
+        }
+
+        public long getAlerts() {
+            return alerts;
+        }
+
+        public List<StageStats> getStages() {
+            return stages;
+        }
+    }
+
+    public static class StageStats {
+        private final String name;
+        private final long processed;
+        private final long lag;
+        private final long errors;
+
+        StageStats(String name, long processed, long lag, long errors) {
+            this.name = name;
+            this.processed = processed;
+            this.lag = lag;
+            this.errors = errors;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        /** Readings published that this stage has not handled yet. */
+        public long getLag() {
+            return lag;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.neurofleetx.telemetry;
+
+/**
+ * One telemetry reading. Instances are slots of the ring buffer and decoder scratch
+ * space: they are allocated once and overwritten, never handed out beyond a stage.
+ * Absent values are NaN (decimals) or -1 (percentages).
+ */
+public final class TelemetryReading {
+
+    private long vehicleId;
+    private long timestamp; // epoch millis
+    private double latitude;
+    private double longitude;
+    private double speed; // km/h
+    private int battery;
+    private int fuel;
+    private double engineHealth;
+    private double tirePressure;
+    private double oilLevel;
+
+    TelemetryReading() {
+        clear();
+    }
+
+    void clear() {
+        vehicleId = 0;
+        timestamp = 0;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+        speed = Double.NaN;
+        battery = -1;
+        fuel = -1;
+        engineHealth = Double.NaN;
+        tirePressure = Double.NaN;
+        oilLevel = Double.NaN;
+    }
+
+    void copyFrom(TelemetryReading other) {
+        vehicleId = other.vehicleId;
+        timestamp = other.timestamp;
+        latitude = other.latitude;
+        longitude = other.longitude;
+        speed = other.speed;
+        battery = other.battery;
+        fuel = other.fuel;
+        engineHealth = other.engineHealth;
+        tirePressure = other.tirePressure;
+        oilLevel = other.oilLevel;
+    }
+
+    /** Null if the reading is usable, otherwise why not. */
+    String validate() {
+        if (vehicleId <= 0) {
+            return "missing vehicleId";
+        }
+        if (Double.isNaN(latitude) != Double.isNaN(longitude)) {
+            return "lat and lng must be given together";
+        }
+        if (hasPosition() && (Math.abs(latitude) > 90 || Math.abs(longitude) > 180)) {
+            return "position out of range";
+        }
+        if (speed < 0 || battery > 100 || fuel > 100 || engineHealth < 0 || engineHealth > 100 || tirePressure < 0
+                || oilLevel < 0 || oilLevel > 100) {
+            return "value out of range";
+        }
+        return null;
+    }
+
+    public boolean hasPosition() {
+        return !Double.isNaN(latitude);
+    }
+
+    public boolean hasHealth() {
+        return !Double.isNaN(engineHealth) || !Double.isNaN(tirePressure) || !Double.isNaN(oilLevel);
+    }
+
+    public long getVehicleId() {
+        return vehicleId;
+    }
+
+    void setVehicleId(long vehicleId) {
+        this.vehicleId = vehicleId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    public int getBattery() {
+        return battery;
+    }
+
+    void setBattery(int battery) {
+        this.battery = battery;
+    }
+
+    public int getFuel() {
+        return fuel;
+    }
+
+    void setFuel(int fuel) {
+        this.fuel = fuel;
+    }
+
+    public double getEngineHealth() {
+        return engineHealth;
+    }
+
+    void setEngineHealth(double engineHealth) {
+        this.engineHealth = engineHealth;
+    }
+
+    public double getTirePressure() {
+        return tirePressure;
+    }
+
+    void setTirePressure(double tirePressure) {
+        this.tirePressure = tirePressure;
+    }
+
+    public double getOilLevel() {
+        return oilLevel;
+    }
+
+    void setOilLevel(double oilLevel) {
+        this.oilLevel = oilLevel;
+    }
+}
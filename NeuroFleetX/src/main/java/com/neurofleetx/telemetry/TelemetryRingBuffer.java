@@ -0,0 +1,112 @@
+package com.neurofleetx.telemetry;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pre-allocated ring of readings shared by any number of producers and a fixed set
+ * of consumer stages, after the LMAX Disruptor.
+ *
+ * Producers claim a run of sequence numbers with one compare-and-set, copy their
+ * readings into the slots and mark each slot published with the sequence's lap, so
+ * stages never see a half-written slot and producers never wait for each other.
+ * Each stage owns a sequence: the last reading it has finished with. A producer may
+ * only reuse a slot once every gating (final) stage has passed it; when the ring is
+ * full it waits up to its deadline and then gives up, which is the backpressure
+ * signal callers pass on.
+ */
+final class TelemetryRingBuffer {
+
+    private final TelemetryReading[] slots;
+    private final int mask;
+    private final int shift;
+    private final AtomicIntegerArray published; // lap of the sequence last published in each slot
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private AtomicLong[] gating = new AtomicLong[0];
+
+    TelemetryRingBuffer(int requestedSize) {
+        int size = Math.max(2, Integer.highestOneBit(requestedSize - 1) << 1);
+        slots = new TelemetryReading[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new TelemetryReading();
+        }
+        mask = size - 1;
+        shift = Integer.numberOfTrailingZeros(size);
+        published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /** Sets the sequences of the stages that must pass a slot before it is reused. Call before publishing. */
+    void setGatingSequences(AtomicLong... sequences) {
+        gating = sequences.clone();
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    /** Highest sequence claimed by a producer; published up to it or about to be. */
+    long cursor() {
+        return claimed.get();
+    }
+
+    long minimumGatingSequence() {
+        long min = claimed.get();
+        for (AtomicLong sequence : gating) {
+            min = Math.min(min, sequence.get());
+        }
+        return min;
+    }
+
+    TelemetryReading get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Copies readings[0..count) into the ring, waiting for free slots until
+     * deadlineNanos (System.nanoTime). Returns how many were published, in order;
+     * fewer than count means the ring stayed full.
+     */
+    int publish(TelemetryReading[] readings, int count, long deadlineNanos) {
+        int done = 0;
+        while (done < count) {
+            long current = claimed.get();
+            long free = slots.length - (current - minimumGatingSequence());
+            if (free <= 0) {
+                if (System.nanoTime() >= deadlineNanos) {
+                    break;
+                }
+                LockSupport.parkNanos(50_000);
+                continue;
+            }
+            int n = (int) Math.min(free, count - done);
+            if (!claimed.compareAndSet(current, current + n)) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                long sequence = current + 1 + i;
+                int index = (int) sequence & mask;
+                slots[index].copyFrom(readings[done + i]);
+                published.lazySet(index, (int) (sequence >>> shift));
+            }
+            done += n;
+        }
+        return done;
+    }
+
+    /**
+     * Highest sequence from lowest on whose reading is published, given that
+     * nothing above highest has been claimed; lowest - 1 if lowest itself is not.
+     */
+    long highestPublished(long lowest, long highest) {
+        for (long sequence = lowest; sequence <= highest; sequence++) {
+            if (published.get((int) sequence & mask) != (int) (sequence >>> shift)) {
+                return sequence - 1;
+            }
+        }
+        return highest;
+    }
+}
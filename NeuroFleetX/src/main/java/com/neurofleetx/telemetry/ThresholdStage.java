@@ -0,0 +1,73 @@
+package com.neurofleetx.telemetry;
+
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleState;
+import com.neurofleetx.model.Vehicle;
+import com.neurofleetx.service.MaintenanceService;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks each reading's vehicle against the service thresholds (the limits
+ * {@link MaintenanceService} uses, plus low battery or fuel) and escalates its
+ * status when one is crossed, announcing the change on /topic/alerts. Statuses are
+ * only raised here; clearing them is up to maintenance.
+ */
+final class ThresholdStage implements TelemetryHandler {
+
+    private static final int LOW_ENERGY_PERCENT = 15;
+
+    private final FleetStateStore fleetState;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final AtomicLong alerts = new AtomicLong();
+
+    ThresholdStage(FleetStateStore fleetState, SimpMessagingTemplate messagingTemplate) {
+        this.fleetState = fleetState;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    long getAlerts() {
+        return alerts.get();
+    }
+
+    @Override
+    public void onReading(TelemetryReading r) {
+        if (!r.hasHealth() && r.getBattery() < 0 && r.getFuel() < 0) {
+            return;
+        }
+        VehicleState state = fleetState.get(r.getVehicleId());
+        if (state == null || state.getStatus() == Vehicle.VehicleStatus.CRITICAL) {
+            return;
+        }
+        Vehicle.VehicleStatus target;
+        String reason;
+        Integer energy = state.isElectric() ? state.getBattery() : state.getFuel();
+        if (MaintenanceService.isCritical(state.getEngineHealth(), state.getTirePressure())) {
+            target = Vehicle.VehicleStatus.CRITICAL;
+            reason = "health";
+        } else if (energy != null && energy < LOW_ENERGY_PERCENT) {
+            target = Vehicle.VehicleStatus.CRITICAL;
+            reason = state.isElectric() ? "battery" : "fuel";
+        } else if (state.getStatus() != Vehicle.VehicleStatus.MAINTENANCE
+                && MaintenanceService.needsMaintenance(state.getEngineHealth(), state.getTirePressure())) {
+            target = Vehicle.VehicleStatus.MAINTENANCE;
+            reason = "health";
+        } else {
+            return;
+        }
+
+        fleetState.update(state.getId(), s -> {
+            if (s.getStatus() != Vehicle.VehicleStatus.CRITICAL) {
+                s.setStatus(target);
+            }
+        });
+        alerts.incrementAndGet();
+        messagingTemplate.convertAndSend("/topic/alerts", Map.of(
+                "vehicleId", state.getId(),
+                "status", target.name(),
+                "reason", reason,
+                "timestamp", r.getTimestamp()));
+    }
+}
@@ -0,0 +1,369 @@
+package com.neurofleetx.traffic;
+
+import com.neurofleetx.geo.GeoMath;
+import com.neurofleetx.routing.RoadGraph;
+import com.neurofleetx.routing.RoutingEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live traffic speeds derived from driver location pings and vehicle speed
+ * telemetry.
+ *
+ * Each observation is matched to a road segment (the graph edge the vehicle is
+ * driving along, or a grid cell when no graph is loaded) and folded into two
+ * aggregates:
+ * - a speed profile per hour of the week, the long-run average for that segment
+ *   at that time,
+ * - a live value, an exponential moving average that expires after
+ *   traffic.live-ttl-seconds.
+ *
+ * Writers only touch per-segment atomics (compare-and-set, no locks). Readers never
+ * see the aggregates directly: {@link #publish()} periodically builds an immutable
+ * {@link TrafficSnapshot} for the current hour, live values taking precedence over
+ * the profile, and swaps it in with a single volatile write. A new snapshot, and
+ * with it a new version for route caches to key on, is only published for a new
+ * hour or once traffic.min-changed-share of the segments have moved by at least
+ * traffic.min-speed-change-kmh; noise in the moving averages keeps the old one.
+ */
+@Component
+public class TrafficLayer {
+
+    private static final int SLOTS = 7 * 24;
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final double LIVE_ALPHA = 0.3;
+    private static final double MIN_SPEED_KMH = 3.0;
+    private static final double MAX_SPEED_KMH = 200.0;
+    // Ping pairs further apart than this say little about the road in between
+    private static final long MAX_PING_GAP_MS = 5 * 60 * 1000;
+    private static final long MIN_PING_GAP_MS = 2000;
+    // Shorter moves are GPS jitter or a parked vehicle, and give no usable heading
+    private static final double MIN_MOVE_METERS = 10.0;
+    private static final double MAX_HEADING_DIFF_RAD = Math.toRadians(45);
+
+    private final RoadGraph graph;
+    private final boolean enabled;
+    private final double matchMaxDistance;
+    private final double cellDegrees;
+    private final long liveTtlSeconds;
+    private final int minSamples;
+    private final int maxSegments;
+    private final double minSpeedChange;
+    private final double minChangedShare;
+
+    private final List<ConcurrentHashMap<Long, AtomicLong>> profile; // per slot: packed speed sum and count
+    private final ConcurrentHashMap<Long, AtomicLong> live = new ConcurrentHashMap<>(); // packed speed and time
+    private final ConcurrentHashMap<Long, double[]> lastPings = new ConcurrentHashMap<>(); // {lat, lng, millis}
+    private final AtomicLong observations = new AtomicLong();
+
+    private volatile TrafficSnapshot snapshot;
+
+    public TrafficLayer(RoutingEngine routingEngine,
+            @Value("${traffic.enabled:true}") boolean enabled,
+            @Value("${traffic.match.max-distance-m:250}") double matchMaxDistance,
+            @Value("${traffic.cell-degrees:0.01}") double cellDegrees,
+            @Value("${traffic.live-ttl-seconds:600}") long liveTtlSeconds,
+            @Value("${traffic.min-samples:3}") int minSamples,
+            @Value("${traffic.max-segments:200000}") int maxSegments,
+            @Value("${traffic.min-speed-change-kmh:5}") double minSpeedChange,
+            @Value("${traffic.min-changed-share:0.05}") double minChangedShare) {
+        this.graph = routingEngine.getGraph();
+        this.enabled = enabled;
+        this.matchMaxDistance = matchMaxDistance;
+        this.cellDegrees = cellDegrees;
+        this.liveTtlSeconds = liveTtlSeconds;
+        this.minSamples = minSamples;
+        this.maxSegments = maxSegments;
+        this.minSpeedChange = minSpeedChange;
+        this.minChangedShare = minChangedShare;
+        List<ConcurrentHashMap<Long, AtomicLong>> slots = new ArrayList<>(SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            slots.add(new ConcurrentHashMap<>());
+        }
+        this.profile = Collections.unmodifiableList(slots);
+        this.snapshot = new TrafficSnapshot(0, slotOf(System.currentTimeMillis()), Instant.now(), null,
+                Collections.emptyMap(), cellDegrees, 0);
+    }
+
+    /** Most recently published speeds; never null. */
+    public TrafficSnapshot snapshot() {
+        return snapshot;
+    }
+
+    public long getObservationCount() {
+        return observations.get();
+    }
+
+    /**
+     * Position report from a tracked trip. The speed is derived from the previous
+     * report of the same probe, so the first ping only establishes a baseline.
+     */
+    public void recordPing(long probeId, double lat, double lng, long timestampMillis) {
+        if (!enabled) {
+            return;
+        }
+        double[] previous = lastPings.put(probeId, new double[] { lat, lng, timestampMillis });
+        if (previous == null) {
+            return;
+        }
+        long elapsed = timestampMillis - (long) previous[2];
+        if (elapsed < MIN_PING_GAP_MS || elapsed > MAX_PING_GAP_MS) {
+            return;
+        }
+        double meters = GeoMath.haversineMeters(previous[0], previous[1], lat, lng);
+        recordSpeed(previous[0], previous[1], lat, lng, meters / (elapsed / 1000.0) * 3.6, timestampMillis);
+    }
+
+    /**
+     * Speed reported while moving from one position to another, e.g. vehicle
+     * telemetry. The movement direction picks the segment.
+     */
+    public void recordSpeed(double fromLat, double fromLng, double toLat, double toLng, double speedKmh,
+            long timestampMillis) {
+        if (!enabled || !(speedKmh >= MIN_SPEED_KMH && speedKmh <= MAX_SPEED_KMH)) {
+            return;
+        }
+        if (GeoMath.haversineMeters(fromLat, fromLng, toLat, toLng) < MIN_MOVE_METERS) {
+            return;
+        }
+        long segment = graph != null ? matchEdge(fromLat, fromLng, toLat, toLng)
+                : TrafficSnapshot.cellKey((fromLat + toLat) / 2, (fromLng + toLng) / 2, cellDegrees);
+        if (segment < 0) {
+            return;
+        }
+        AtomicLong profileCell = cell(profile.get(slotOf(timestampMillis)), segment);
+        AtomicLong liveCell = cell(live, segment);
+        if (profileCell == null || liveCell == null) {
+            return;
+        }
+        accumulate(profileCell, speedKmh);
+        blendLive(liveCell, speedKmh, timestampMillis / 1000);
+        // An expired cell dropped while this sample went in is gone for readers; start a new one
+        while (live.get(segment) != liveCell) {
+            liveCell = cell(live, segment);
+            if (liveCell == null) {
+                break;
+            }
+            blendLive(liveCell, speedKmh, timestampMillis / 1000);
+        }
+        observations.incrementAndGet();
+    }
+
+    /**
+     * Rebuilds the snapshot for the current hour and publishes it if the hour or
+     * enough speeds changed. Also drops expired live values and stale pings.
+     */
+    @Scheduled(fixedDelayString = "${traffic.publish-interval-ms:30000}")
+    public synchronized void publish() {
+        long now = System.currentTimeMillis();
+        long nowSeconds = now / 1000;
+        live.forEach((segment, cell) -> {
+            long packed = cell.get();
+            if (packed != 0 && nowSeconds - (packed & 0xffffffffL) > liveTtlSeconds) {
+                // Only if no sample came in since the read
+                live.computeIfPresent(segment, (k, c) -> c == cell && c.get() == packed ? null : c);
+            }
+        });
+        lastPings.entrySet().removeIf(e -> now - (long) e.getValue()[2] > MAX_PING_GAP_MS);
+
+        int slot = slotOf(now);
+        TrafficSnapshot current = snapshot;
+        TrafficSnapshot next;
+        if (graph != null) {
+            float[] speeds = null;
+            BitSet observed = new BitSet();
+            for (Map.Entry<Long, AtomicLong> e : profile.get(slot).entrySet()) {
+                long packed = e.getValue().get();
+                long count = packed & COUNT_MASK;
+                if (count >= minSamples) {
+                    speeds = speeds != null ? speeds : freeFlowSpeeds();
+                    int edge = e.getKey().intValue();
+                    speeds[edge] = clamp((packed >>> COUNT_BITS) / 10.0 / count, graph.speed(edge));
+                    observed.set(edge);
+                }
+            }
+            for (Map.Entry<Long, AtomicLong> e : live.entrySet()) {
+                long packed = e.getValue().get();
+                if (packed == 0) {
+                    continue; // created by a writer that has not stored its sample yet
+                }
+                speeds = speeds != null ? speeds : freeFlowSpeeds();
+                int edge = e.getKey().intValue();
+                speeds[edge] = clamp(Float.intBitsToFloat((int) (packed >>> 32)), graph.speed(edge));
+                observed.set(edge);
+            }
+            if (slot == current.getSlot() && !changedEnough(speeds, current.edgeSpeeds(),
+                    Math.max(observed.cardinality(), current.getObservedSegments()))) {
+                return;
+            }
+            next = new TrafficSnapshot(current.getVersion() + 1, slot, Instant.ofEpochMilli(now), speeds,
+                    Collections.emptyMap(), cellDegrees, observed.cardinality());
+        } else {
+            Map<Long, Float> cells = new HashMap<>();
+            for (Map.Entry<Long, AtomicLong> e : profile.get(slot).entrySet()) {
+                long packed = e.getValue().get();
+                long count = packed & COUNT_MASK;
+                if (count >= minSamples) {
+                    cells.put(e.getKey(), clamp((packed >>> COUNT_BITS) / 10.0 / count, MAX_SPEED_KMH));
+                }
+            }
+            for (Map.Entry<Long, AtomicLong> e : live.entrySet()) {
+                long packed = e.getValue().get();
+                if (packed != 0) {
+                    cells.put(e.getKey(), clamp(Float.intBitsToFloat((int) (packed >>> 32)), MAX_SPEED_KMH));
+                }
+            }
+            if (slot == current.getSlot() && !changedEnough(cells, current.cellSpeedMap())) {
+                return;
+            }
+            next = new TrafficSnapshot(current.getVersion() + 1, slot, Instant.ofEpochMilli(now), null,
+                    Collections.unmodifiableMap(cells), cellDegrees, cells.size());
+        }
+        snapshot = next;
+    }
+
+    // Speeds of edges not observed are free-flow, whether the array is null or not
+    private boolean changedEnough(float[] speeds, float[] published, int segments) {
+        int needed = Math.max(1, (int) Math.ceil(minChangedShare * segments));
+        int changed = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            float speed = speeds != null ? speeds[e] : graph.speed(e);
+            float previous = published != null ? published[e] : graph.speed(e);
+            if (moved(speed, previous) && ++changed >= needed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A cell appearing or expiring counts as a change
+    private boolean changedEnough(Map<Long, Float> cells, Map<Long, Float> published) {
+        int needed = Math.max(1, (int) Math.ceil(minChangedShare * Math.max(cells.size(), published.size())));
+        int changed = 0;
+        for (Map.Entry<Long, Float> e : cells.entrySet()) {
+            Float previous = published.get(e.getKey());
+            if ((previous == null || moved(e.getValue(), previous)) && ++changed >= needed) {
+                return true;
+            }
+        }
+        for (Long cell : published.keySet()) {
+            if (!cells.containsKey(cell) && ++changed >= needed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean moved(float speedKmh, float publishedKmh) {
+        return speedKmh != publishedKmh && Math.abs(speedKmh - publishedKmh) >= minSpeedChange;
+    }
+
+    /**
+     * Edge leaving the node nearest the start position whose direction best matches
+     * the movement: the edge to the node nearest the end position if there is one,
+     * otherwise the closest heading within 45 degrees. Returns -1 if none fits.
+     */
+    private long matchEdge(double fromLat, double fromLng, double toLat, double toLng) {
+        int from = graph.nearestNode(fromLat, fromLng, matchMaxDistance);
+        if (from < 0) {
+            return -1;
+        }
+        int to = graph.nearestNode(toLat, toLng, matchMaxDistance);
+        double heading = bearing(fromLat, fromLng, toLat, toLng);
+        int best = -1;
+        double bestDiff = MAX_HEADING_DIFF_RAD;
+        for (int e = graph.firstOut(from); e < graph.endOut(from); e++) {
+            int head = graph.head(e);
+            if (head == to) {
+                return e;
+            }
+            double diff = Math.abs(heading - bearing(graph.lat(from), graph.lng(from), graph.lat(head),
+                    graph.lng(head)));
+            diff = Math.min(diff, 2 * Math.PI - diff);
+            if (diff <= bestDiff) {
+                bestDiff = diff;
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    private static double bearing(double fromLat, double fromLng, double toLat, double toLng) {
+        double dx = (toLng - fromLng) * GeoMath.cosLat((fromLat + toLat) / 2);
+        return Math.atan2(dx, toLat - fromLat);
+    }
+
+    /** The segment's aggregate, or null when a new segment would exceed traffic.max-segments. */
+    private AtomicLong cell(ConcurrentHashMap<Long, AtomicLong> map, long segment) {
+        AtomicLong cell = map.get(segment);
+        if (cell != null) {
+            return cell;
+        }
+        if (map.size() >= maxSegments) {
+            return null;
+        }
+        return map.computeIfAbsent(segment, k -> new AtomicLong());
+    }
+
+    /** Adds a sample to a packed (sum in 0.1 km/h << 24 | count) cell, halving both when the count saturates. */
+    private static void accumulate(AtomicLong cell, double speedKmh) {
+        long add = Math.round(speedKmh * 10);
+        long prev;
+        long next;
+        do {
+            prev = cell.get();
+            long sum = prev >>> COUNT_BITS;
+            long count = prev & COUNT_MASK;
+            if (count == COUNT_MASK) {
+                sum >>>= 1;
+                count >>>= 1;
+            }
+            next = ((sum + add) << COUNT_BITS) | (count + 1);
+        } while (!cell.compareAndSet(prev, next));
+    }
+
+    /** Folds a sample into a packed (float speed << 32 | epoch seconds) moving average. */
+    private void blendLive(AtomicLong cell, double speedKmh, long epochSeconds) {
+        long prev;
+        long next;
+        do {
+            prev = cell.get();
+            float old = Float.intBitsToFloat((int) (prev >>> 32));
+            boolean fresh = prev != 0 && epochSeconds - (prev & 0xffffffffL) <= liveTtlSeconds;
+            float speed = (float) (fresh ? old + LIVE_ALPHA * (speedKmh - old) : speedKmh);
+            next = ((long) Float.floatToRawIntBits(speed) << 32) | (epochSeconds & 0xffffffffL);
+        } while (!cell.compareAndSet(prev, next));
+    }
+
+    private float[] freeFlowSpeeds() {
+        float[] speeds = new float[graph.edgeCount()];
+        for (int e = 0; e < speeds.length; e++) {
+            speeds[e] = graph.speed(e);
+        }
+        return speeds;
+    }
+
+    // Observed speeds never exceed free-flow, which keeps A* lower bounds valid
+    private static float clamp(double speedKmh, double freeFlowKmh) {
+        return (float) Math.max(Math.min(speedKmh, freeFlowKmh), Math.min(MIN_SPEED_KMH, freeFlowKmh));
+    }
+
+    private static int slotOf(long timestampMillis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault());
+        return (time.getDayOfWeek().getValue() - 1) * 24 + time.getHour();
+    }
+}
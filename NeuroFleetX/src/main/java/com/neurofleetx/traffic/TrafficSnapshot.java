@@ -0,0 +1,84 @@
+package com.neurofleetx.traffic;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Immutable view of observed speeds published by {@link TrafficLayer}. A route
+ * query reads one snapshot for all its lookups, so every edge is costed against
+ * the same moment even while new observations keep arriving.
+ *
+ * With a road graph, speeds are per edge; without one, they are per grid cell of
+ * cellDegrees x cellDegrees.
+ */
+public final class TrafficSnapshot {
+
+    private final long version;
+    private final int slot;
+    private final Instant createdAt;
+    private final float[] edgeSpeeds; // null when no edge has observations
+    private final Map<Long, Float> cellSpeeds;
+    private final double cellDegrees;
+    private final int observedSegments;
+
+    TrafficSnapshot(long version, int slot, Instant createdAt, float[] edgeSpeeds, Map<Long, Float> cellSpeeds,
+            double cellDegrees, int observedSegments) {
+        this.version = version;
+        this.slot = slot;
+        this.createdAt = createdAt;
+        this.edgeSpeeds = edgeSpeeds;
+        this.cellSpeeds = cellSpeeds;
+        this.cellDegrees = cellDegrees;
+        this.observedSegments = observedSegments;
+    }
+
+    static long cellKey(double lat, double lng, double cellDegrees) {
+        long row = (long) Math.floor(lat / cellDegrees);
+        long col = (long) Math.floor(lng / cellDegrees);
+        return (row << 32) | (col & 0xffffffffL);
+    }
+
+    /** Changes whenever the published speeds change; usable as a cache key component. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Hour of the week (0 = Monday 00:00) whose profile the snapshot was built from. */
+    public int getSlot() {
+        return slot;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getObservedSegments() {
+        return observedSegments;
+    }
+
+    /**
+     * Current speed (km/h) of every graph edge: observed where known, free-flow
+     * elsewhere. Null when nothing has been observed, so callers can keep using
+     * structures precomputed for free-flow speeds. Shared; must not be modified.
+     */
+    public float[] edgeSpeeds() {
+        return edgeSpeeds;
+    }
+
+    /** Observed speed (km/h) around a point when no road graph is loaded, or NaN if unknown. */
+    public double cellSpeed(double lat, double lng) {
+        if (cellSpeeds.isEmpty()) {
+            return Double.NaN;
+        }
+        Float speed = cellSpeeds.get(cellKey(lat, lng, cellDegrees));
+        return speed != null ? speed : Double.NaN;
+    }
+
+    Map<Long, Float> cellSpeedMap() {
+        return cellSpeeds;
+    }
+
+    public boolean hasCellSpeeds() {
+        return !cellSpeeds.isEmpty();
+    }
+}
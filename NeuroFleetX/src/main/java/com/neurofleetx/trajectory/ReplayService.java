@@ -0,0 +1,219 @@
+package com.neurofleetx.trajectory;
+
+import com.neurofleetx.cache.BoundedCache;
+import com.neurofleetx.model.Booking;
+import com.neurofleetx.repository.BookingRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trip replay: a vehicle's or booking's recorded path over a time range,
+ * simplified for the map zoom it is drawn at.
+ *
+ * The tolerance is replay.tolerance-pixels pixels at the requested Web Mercator
+ * zoom, so a whole-day track at city zoom comes back as a few hundred points and
+ * zooming in brings back the detail. If the result still has more than maxPoints
+ * points, the tolerance is doubled until it fits. The store is scanned once per
+ * request and simplified as it streams ({@link TrajectorySimplifier}).
+ *
+ * Each zoom tier of a range that can no longer change (it ends in the past, or the
+ * booking is over) is cached, so panning and zooming around a replay does not
+ * rescan it.
+ */
+@Service
+public class ReplayService {
+
+    public static final int DEFAULT_ZOOM = 15;
+    public static final int MAX_ZOOM = 22;
+    private static final int DEFAULT_MAX_POINTS = 5_000;
+    private static final int MAX_POINTS = 50_000;
+    // Web Mercator ground resolution at zoom 0 on the equator, 256-pixel tiles
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156_543.03392;
+    // Slack around a booking's timestamps, which come from a different clock than the pings
+    private static final long BOOKING_MARGIN_MINUTES = 1;
+
+    private final TrajectoryStore trajectoryStore;
+    private final BookingRepository bookingRepository;
+    private final double tolerancePixels;
+    private final BoundedCache<String, Replay> cache;
+
+    public ReplayService(TrajectoryStore trajectoryStore, BookingRepository bookingRepository,
+            @Value("${replay.tolerance-pixels:1.0}") double tolerancePixels,
+            @Value("${replay.cache-size:256}") int cacheSize,
+            @Value("${replay.cache-ttl-minutes:30}") long cacheTtlMinutes) {
+        // The tolerance is doubled until a replay fits its point limit, which never happens from zero
+        if (!(tolerancePixels > 0)) {
+            throw new IllegalArgumentException("replay.tolerance-pixels must be positive");
+        }
+        this.trajectoryStore = trajectoryStore;
+        this.bookingRepository = bookingRepository;
+        this.tolerancePixels = tolerancePixels;
+        this.cache = new BoundedCache<>(cacheSize, TimeUnit.MINUTES.toMillis(cacheTtlMinutes));
+    }
+
+    /** A vehicle's path from from to to (the last hour by default). */
+    public Replay replayVehicle(long vehicleId, Instant from, Instant to, Integer zoom, Integer maxPoints) {
+        Instant now = Instant.now();
+        Instant end = to != null ? to : now;
+        Instant start = from != null ? from : end.minus(1, ChronoUnit.HOURS);
+        return replay("vehicle", vehicleId, start, end, zoom, maxPoints, end.isBefore(now),
+                visitor -> trajectoryStore.scan(vehicleId, start.toEpochMilli(), end.toEpochMilli(), visitor));
+    }
+
+    /** The driver locations reported for a booking, from its creation until it was completed or cancelled. */
+    public Optional<Replay> replayBooking(long bookingId, Integer zoom, Integer maxPoints) {
+        return bookingRepository.findById(bookingId).map(booking -> {
+            Instant start = instant(booking.getCreatedAt(), Instant.EPOCH).minus(BOOKING_MARGIN_MINUTES,
+                    ChronoUnit.MINUTES);
+            boolean over = booking.getStatus() == Booking.BookingStatus.COMPLETED
+                    || booking.getStatus() == Booking.BookingStatus.CANCELLED;
+            Instant end = over ? instant(booking.getUpdatedAt(), Instant.now()).plus(BOOKING_MARGIN_MINUTES,
+                    ChronoUnit.MINUTES) : Instant.now();
+            return replay("booking", bookingId, start, end, zoom, maxPoints, over,
+                    visitor -> trajectoryStore.scanBooking(bookingId, start.toEpochMilli(), end.toEpochMilli(),
+                            visitor));
+        });
+    }
+
+    private static Instant instant(LocalDateTime time, Instant otherwise) {
+        // Booking timestamps are stamped in the server's zone
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant() : otherwise;
+    }
+
+    private interface Scan {
+        void run(TrajectoryStore.PointVisitor visitor);
+    }
+
+    private Replay replay(String kind, long id, Instant from, Instant to, Integer zoom, Integer maxPoints,
+            boolean cacheable, Scan scan) {
+        if (!trajectoryStore.isEnabled()) {
+            throw new IllegalArgumentException("Trajectory recording is disabled (trajectory.enabled=false)");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        int level = zoom != null ? zoom : DEFAULT_ZOOM;
+        if (level < 0 || level > MAX_ZOOM) {
+            throw new IllegalArgumentException("zoom must be between 0 and " + MAX_ZOOM);
+        }
+        int limit = maxPoints != null ? maxPoints : DEFAULT_MAX_POINTS;
+        if (limit < 2 || limit > MAX_POINTS) {
+            throw new IllegalArgumentException("maxPoints must be between 2 and " + MAX_POINTS);
+        }
+        if (!cacheable) {
+            return simplify(kind, id, from, to, level, limit, scan);
+        }
+        String key = kind + ":" + id + ":" + from.toEpochMilli() + ":" + to.toEpochMilli() + ":" + level + ":"
+                + limit;
+        return cache.get(key, k -> simplify(kind, id, from, to, level, limit, scan));
+    }
+
+    private Replay simplify(String kind, long id, Instant from, Instant to, int zoom, int maxPoints, Scan scan) {
+        long started = System.nanoTime();
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(
+                METERS_PER_PIXEL_AT_ZOOM_0 / (1L << zoom) * tolerancePixels);
+        scan.run(simplifier);
+        TrajectorySimplifier.Points points = simplifier.finish();
+        double tolerance = simplifier.tolerance();
+        while (points.size > maxPoints) {
+            tolerance *= 2;
+            points = points.simplify(tolerance);
+        }
+        return new Replay(kind, id, from, to, zoom, tolerance, simplifier.rawPoints(), points,
+                (System.nanoTime() - started) / 1_000_000.0);
+    }
+
+    public BoundedCache.Stats cacheStats() {
+        return cache.stats();
+    }
+
+    public static class Replay {
+        private final String kind;
+        private final long id;
+        private final Instant from;
+        private final Instant to;
+        private final int zoom;
+        private final double toleranceMeters;
+        private final long rawPoints;
+        private final TrajectorySimplifier.Points points;
+        private final double computeMillis;
+
+        Replay(String kind, long id, Instant from, Instant to, int zoom, double toleranceMeters, long rawPoints,
+                TrajectorySimplifier.Points points, double computeMillis) {
+            this.kind = kind;
+            this.id = id;
+            this.from = from;
+            this.to = to;
+            this.zoom = zoom;
+            this.toleranceMeters = toleranceMeters;
+            this.rawPoints = rawPoints;
+            this.points = points;
+            this.computeMillis = computeMillis;
+        }
+
+        /** "vehicle" or "booking". */
+        public String getKind() {
+            return kind;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Instant getFrom() {
+            return from;
+        }
+
+        public Instant getTo() {
+            return to;
+        }
+
+        public int getZoom() {
+            return zoom;
+        }
+
+        /** Largest distance in meters between the raw path and the returned one. */
+        public double getToleranceMeters() {
+            return toleranceMeters;
+        }
+
+        /** Points recorded in the range, before simplification. */
+        public long getRawPoints() {
+            return rawPoints;
+        }
+
+        public int getCount() {
+            return points.size;
+        }
+
+        /** [epochMillis, lat, lng, speed] per point, oldest first; speed is null when unknown. */
+        public List<Object[]> getPoints() {
+            TrajectorySimplifier.Points p = points;
+            return new AbstractList<>() {
+                @Override
+                public Object[] get(int i) {
+                    return new Object[] {p.timestamps[i], p.lat[i], p.lng[i], p.speed[i] < 0 ? null : p.speed[i]};
+                }
+
+                @Override
+                public int size() {
+                    return p.size;
+                }
+            };
+        }
+
+        /** Time spent scanning and simplifying when the replay was computed (cached replays keep theirs). */
+        public double getComputeMillis() {
+            return computeMillis;
+        }
+    }
+}
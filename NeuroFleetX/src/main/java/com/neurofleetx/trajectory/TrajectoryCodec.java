@@ -0,0 +1,288 @@
+package com.neurofleetx.trajectory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bit-packed encoding of one block of a vehicle's trajectory, after Facebook's
+ * Gorilla time-series format.
+ *
+ * The first point is stored whole: timestamp (64 bits), latitude and longitude in
+ * 1e-7 degree fixed point (32 bits each, the binary telemetry resolution) and speed
+ * (8 bits, 255 = unknown). Each later point stores
+ * <ul>
+ * <li>the timestamp as the change in the interval since the previous point
+ * (delta-of-delta): '0' for a steady rate, else '10', '110', '1110' or '1111'
+ * followed by 7, 9, 12 or 32 bits;</li>
+ * <li>latitude and longitude as the XOR with the previous value: '0' when unchanged,
+ * '10' and the meaningful bits when they fit the previous value's window of leading
+ * and trailing zeros, else '11', 5 bits of leading zeros, 5 bits of length and the
+ * bits;</li>
+ * <li>speed as '0' when unchanged, '10' and a 4-bit change, or '11' and the value.</li>
+ * </ul>
+ * The XOR is taken on the fixed-point values, not on the doubles as in Gorilla: GPS
+ * noise reaches into the low mantissa bits of every double, while nearby fixed-point
+ * values differ only in their low bits. A point of a moving vehicle at 1 Hz takes
+ * about 3-4 bytes, a parked one under a byte.
+ */
+final class TrajectoryCodec {
+
+    static final double SCALE = 1e7;
+    static final int UNKNOWN_SPEED = 255;
+
+    private TrajectoryCodec() {
+    }
+
+    static int fixed(double degrees) {
+        return (int) Math.round(degrees * SCALE);
+    }
+
+    /** Appends points to one block in memory. Not thread-safe. */
+    static final class Encoder {
+        private final BitWriter out = new BitWriter();
+        private final long firstTimestamp;
+        private final XorState lat = new XorState();
+        private final XorState lng = new XorState();
+        private long lastTimestamp;
+        private long lastDelta;
+        private int lastSpeed;
+        private int count;
+
+        Encoder(long timestamp, int lat, int lng, int speed) {
+            out.write(timestamp, 64);
+            out.write(lat, 32);
+            out.write(lng, 32);
+            out.write(speed, 8);
+            this.firstTimestamp = timestamp;
+            this.lastTimestamp = timestamp;
+            this.lat.value = lat;
+            this.lng.value = lng;
+            this.lastSpeed = speed;
+            this.count = 1;
+        }
+
+        /** Adds a point after the last one; false, with nothing added, if its timestamp is too far off. */
+        boolean add(long timestamp, int lat, int lng, int speed) {
+            long delta = timestamp - lastTimestamp;
+            long dod = delta - lastDelta;
+            if (delta <= 0 || dod != (int) dod) {
+                return false;
+            }
+            if (dod == 0) {
+                out.write(0, 1);
+            } else if (dod >= -64 && dod <= 63) {
+                out.write(0b10, 2);
+                out.write(dod, 7);
+            } else if (dod >= -256 && dod <= 255) {
+                out.write(0b110, 3);
+                out.write(dod, 9);
+            } else if (dod >= -2048 && dod <= 2047) {
+                out.write(0b1110, 4);
+                out.write(dod, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(dod, 32);
+            }
+            this.lat.write(out, lat);
+            this.lng.write(out, lng);
+            int change = speed - lastSpeed;
+            if (change == 0) {
+                out.write(0, 1);
+            } else if (change >= -8 && change <= 7) {
+                out.write(0b10, 2);
+                out.write(change, 4);
+            } else {
+                out.write(0b11, 2);
+                out.write(speed, 8);
+            }
+            lastTimestamp = timestamp;
+            lastDelta = delta;
+            lastSpeed = speed;
+            count++;
+            return true;
+        }
+
+        long firstTimestamp() {
+            return firstTimestamp;
+        }
+
+        long lastTimestamp() {
+            return lastTimestamp;
+        }
+
+        int count() {
+            return count;
+        }
+
+        int byteLength() {
+            return (out.bits + 7) >>> 3;
+        }
+
+        byte[] toBytes() {
+            return out.toBytes();
+        }
+    }
+
+    /**
+     * Decodes count points of a block starting at offset in buffer (which is not
+     * moved), passing those with from <= timestamp <= to to the visitor. Stops after
+     * the first point past to. Returns false if the visitor stopped the scan.
+     */
+    static boolean decode(ByteBuffer buffer, int offset, int count, long from, long to,
+            TrajectoryStore.PointVisitor visitor) {
+        BitReader in = new BitReader(buffer, offset);
+        long timestamp = in.read(64);
+        int lat = (int) in.read(32);
+        int lng = (int) in.read(32);
+        int speed = (int) in.read(8);
+        long delta = 0;
+        XorState latState = new XorState();
+        XorState lngState = new XorState();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                long dod;
+                if (in.read(1) == 0) {
+                    dod = 0;
+                } else if (in.read(1) == 0) {
+                    dod = in.readSigned(7);
+                } else if (in.read(1) == 0) {
+                    dod = in.readSigned(9);
+                } else if (in.read(1) == 0) {
+                    dod = in.readSigned(12);
+                } else {
+                    dod = in.readSigned(32);
+                }
+                delta += dod;
+                timestamp += delta;
+                lat = latState.read(in, lat);
+                lng = lngState.read(in, lng);
+                if (in.read(1) == 1) {
+                    speed = in.read(1) == 0 ? (speed + (int) in.readSigned(4)) & 0xff : (int) in.read(8);
+                }
+            }
+            if (timestamp > to) {
+                return true;
+            }
+            if (timestamp >= from && !visitor.accept(timestamp, lat / SCALE, lng / SCALE,
+                    speed == UNKNOWN_SPEED ? -1 : speed)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** XOR coding state of one coordinate: its last value and the window of the last written XOR. */
+    private static final class XorState {
+        int value;
+        int leading = -1;
+        int trailing;
+
+        void write(BitWriter out, int next) {
+            int xor = value ^ next;
+            value = next;
+            if (xor == 0) {
+                out.write(0, 1);
+                return;
+            }
+            int lead = Integer.numberOfLeadingZeros(xor);
+            int trail = Integer.numberOfTrailingZeros(xor);
+            if (leading >= 0 && lead >= leading && trail >= trailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 32 - leading - trailing);
+                return;
+            }
+            int length = 32 - lead - trail;
+            out.write(0b11, 2);
+            out.write(lead, 5);
+            out.write(length - 1, 5);
+            out.write(xor >>> trail, length);
+            leading = lead;
+            trailing = trail;
+        }
+
+        int read(BitReader in, int previous) {
+            if (in.read(1) == 0) {
+                return previous;
+            }
+            if (in.read(1) == 1) {
+                leading = (int) in.read(5);
+                int length = (int) in.read(5) + 1;
+                trailing = 32 - leading - length;
+            }
+            return previous ^ ((int) in.read(32 - leading - trailing) << trailing);
+        }
+    }
+
+    private static final class BitWriter {
+        private long[] words = new long[8];
+        private int bits;
+
+        /** Writes the low n bits of value, most significant first. */
+        void write(long value, int n) {
+            if (n == 0) {
+                return;
+            }
+            if ((bits + n + 63) >>> 6 > words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            value &= n == 64 ? -1L : (1L << n) - 1;
+            int used = bits & 63;
+            int index = bits >>> 6;
+            int free = 64 - used;
+            if (n <= free) {
+                words[index] |= value << (free - n);
+            } else {
+                words[index] |= value >>> (n - free);
+                words[index + 1] |= value << (64 - (n - free));
+            }
+            bits += n;
+        }
+
+        byte[] toBytes() {
+            byte[] bytes = new byte[(bits + 7) >>> 3];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3)));
+            }
+            return bytes;
+        }
+    }
+
+    /** Reads bits from a buffer with absolute gets, so one buffer can be shared by readers. */
+    private static final class BitReader {
+        private final ByteBuffer buffer;
+        private int next;
+        private long cache;
+        private int cached;
+
+        BitReader(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.next = offset;
+        }
+
+        long read(int n) {
+            if (n == 0) {
+                return 0;
+            }
+            long result = 0;
+            int wanted = n;
+            while (wanted > 0) {
+                if (cached == 0) {
+                    // Past the block end only happens in the padding of its last byte
+                    cache = next < buffer.limit() ? buffer.get(next) & 0xffL : 0;
+                    next++;
+                    cached = 8;
+                }
+                int take = Math.min(wanted, cached);
+                long bits = (cache >>> (cached - take)) & ((1L << take) - 1);
+                result = (result << take) | bits;
+                cached -= take;
+                wanted -= take;
+            }
+            return result;
+        }
+
+        long readSigned(int n) {
+            return read(n) << (64 - n) >> (64 - n);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.neurofleetx.trajectory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The trajectory blocks of one UTC day, in two files.
+ *
+ * &lt;date&gt;.blocks holds the encoded blocks back to back. It is memory-mapped in
+ * regions of REGION_BYTES (a block never straddles two), which are allocated as
+ * they fill. Readers decode straight from the mapping.
+ *
+ * The index lists every block as a RECORD_BYTES record: vehicle id, first and last
+ * timestamp, offset and length in the data file, and point count. While the day is
+ * written to, records are appended to &lt;date&gt;.index in write order and also
+ * kept in memory by vehicle. Once the day is over, {@link #seal} rewrites them
+ * sorted by vehicle and time into &lt;date&gt;.idx. A sealed day is then searched
+ * in its mapped index with a binary search, with nothing loaded into the heap, and
+ * a scan only decodes the blocks that overlap the range asked for.
+ */
+final class TrajectorySegment {
+
+    static final long REGION_BYTES = 64L << 20;
+    static final int RECORD_BYTES = 40;
+
+    private static final String DATA_SUFFIX = ".blocks";
+    private static final String OPEN_INDEX_SUFFIX = ".index";
+    private static final String SEALED_INDEX_SUFFIX = ".idx";
+
+    private final LocalDate date;
+    private final Path dataPath;
+    private volatile MappedByteBuffer[] regions;
+
+    // Writable days only
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final Map<Long, BlockList> blocks;
+    private long nextOffset;
+    private boolean closed;
+
+    // Sealed days only
+    private final ByteBuffer sortedIndex;
+
+    private TrajectorySegment(LocalDate date, Path dataPath, MappedByteBuffer[] regions, FileChannel dataChannel,
+            FileChannel indexChannel, Map<Long, BlockList> blocks, ByteBuffer sortedIndex) {
+        this.date = date;
+        this.dataPath = dataPath;
+        this.regions = regions;
+        this.dataChannel = dataChannel;
+        this.indexChannel = indexChannel;
+        this.blocks = blocks;
+        this.sortedIndex = sortedIndex;
+    }
+
+    static Path dataPath(Path dir, LocalDate date) {
+        return dir.resolve(date + DATA_SUFFIX);
+    }
+
+    static Path openIndexPath(Path dir, LocalDate date) {
+        return dir.resolve(date + OPEN_INDEX_SUFFIX);
+    }
+
+    static Path sealedIndexPath(Path dir, LocalDate date) {
+        return dir.resolve(date + SEALED_INDEX_SUFFIX);
+    }
+
+    /** The day a file in the store directory belongs to, or null if it is not a segment file. */
+    static LocalDate dateOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        try {
+            return dot > 0 ? LocalDate.parse(name.substring(0, dot)) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Opens a day for writing, recovering the blocks already written if it was written to before. */
+    static TrajectorySegment openWritable(Path dir, LocalDate date) throws IOException {
+        Path dataPath = dataPath(dir, date);
+        FileChannel data = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileChannel index = FileChannel.open(openIndexPath(dir, date), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // A record cut short by a crash is dropped
+        long records = index.size() / RECORD_BYTES;
+        index.truncate(records * RECORD_BYTES);
+        ByteBuffer existing = ByteBuffer.allocate((int) (records * RECORD_BYTES));
+        while (existing.hasRemaining() && index.read(existing, existing.position()) >= 0) {
+        }
+        existing.flip();
+        Map<Long, BlockList> blocks = new ConcurrentHashMap<>();
+        long end = 0;
+        for (int i = 0; i < records; i++) {
+            long vehicleId = existing.getLong();
+            long first = existing.getLong();
+            long last = existing.getLong();
+            long offset = existing.getLong();
+            int length = existing.getInt();
+            int count = existing.getInt();
+            blocks.computeIfAbsent(vehicleId, id -> new BlockList()).add(first, last, offset, count);
+            end = Math.max(end, offset + length);
+        }
+        index.position(index.size());
+        int regionCount = (int) ((end + REGION_BYTES - 1) / REGION_BYTES);
+        MappedByteBuffer[] regions = new MappedByteBuffer[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            regions[i] = data.map(FileChannel.MapMode.READ_WRITE, i * REGION_BYTES, REGION_BYTES);
+        }
+        TrajectorySegment segment = new TrajectorySegment(date, dataPath, regions, data, index, blocks, null);
+        segment.nextOffset = end;
+        return segment;
+    }
+
+    /** Opens a sealed day for reading; null if there is none. */
+    static TrajectorySegment openSealed(Path dir, LocalDate date) {
+        Path dataPath = dataPath(dir, date);
+        Path indexPath = sealedIndexPath(dir, date);
+        if (!Files.exists(indexPath) || !Files.exists(dataPath)) {
+            return null;
+        }
+        // Mappings stay valid after their channels are closed
+        try (FileChannel data = FileChannel.open(dataPath, StandardOpenOption.READ);
+                FileChannel index = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long size = data.size();
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size + REGION_BYTES - 1) / REGION_BYTES)];
+            for (int i = 0; i < regions.length; i++) {
+                regions[i] = data.map(FileChannel.MapMode.READ_ONLY, i * REGION_BYTES,
+                        Math.min(REGION_BYTES, size - i * REGION_BYTES));
+            }
+            ByteBuffer sortedIndex = index.map(FileChannel.MapMode.READ_ONLY, 0,
+                    index.size() / RECORD_BYTES * RECORD_BYTES);
+            return new TrajectorySegment(date, dataPath, regions, null, null, null, sortedIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rewrites a day's open index sorted by vehicle and first timestamp as its sealed
+     * index, then removes the open index. The day must no longer be written to.
+     */
+    static void seal(Path dir, LocalDate date) throws IOException {
+        Path openIndex = openIndexPath(dir, date);
+        byte[] bytes = Files.readAllBytes(openIndex);
+        int records = bytes.length / RECORD_BYTES;
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        Integer[] order = new Integer[records];
+        for (int i = 0; i < records; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byVehicle = Long.compare(in.getLong(a * RECORD_BYTES), in.getLong(b * RECORD_BYTES));
+            return byVehicle != 0 ? byVehicle
+                    : Long.compare(in.getLong(a * RECORD_BYTES + 8), in.getLong(b * RECORD_BYTES + 8));
+        });
+        ByteBuffer out = ByteBuffer.allocate(records * RECORD_BYTES);
+        for (int i : order) {
+            out.put(bytes, i * RECORD_BYTES, RECORD_BYTES);
+        }
+        Path sealed = sealedIndexPath(dir, date);
+        Path temp = dir.resolve(sealed.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, sealed, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(openIndex);
+    }
+
+    LocalDate getDate() {
+        return date;
+    }
+
+    boolean isWritable() {
+        return blocks != null;
+    }
+
+    /**
+     * Writes an encoded block and indexes it. Returns false if the day was closed in
+     * the meantime.
+     */
+    synchronized boolean append(long vehicleId, long first, long last, int count, byte[] bytes) throws IOException {
+        if (closed) {
+            return false;
+        }
+        long offset = nextOffset;
+        if (offset / REGION_BYTES != (offset + bytes.length - 1) / REGION_BYTES) {
+            offset = (offset / REGION_BYTES + 1) * REGION_BYTES;
+        }
+        int region = (int) (offset / REGION_BYTES);
+        MappedByteBuffer[] current = regions;
+        if (region >= current.length) {
+            // Mapping past the end grows the (sparse) file
+            MappedByteBuffer[] grown = Arrays.copyOf(current, region + 1);
+            for (int i = current.length; i <= region; i++) {
+                grown[i] = dataChannel.map(FileChannel.MapMode.READ_WRITE, i * REGION_BYTES, REGION_BYTES);
+            }
+            regions = grown;
+            current = grown;
+        }
+        current[region].put((int) (offset % REGION_BYTES), bytes);
+        nextOffset = offset + bytes.length;
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        record.putLong(vehicleId).putLong(first).putLong(last).putLong(offset).putInt(bytes.length).putInt(count);
+        record.flip();
+        while (record.hasRemaining()) {
+            indexChannel.write(record);
+        }
+        blocks.computeIfAbsent(vehicleId, id -> new BlockList()).add(first, last, offset, count);
+        return true;
+    }
+
+    /** Stops writing; blocks stay readable through this object. */
+    synchronized void close() throws IOException {
+        if (closed || dataChannel == null) {
+            return;
+        }
+        closed = true;
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        indexChannel.force(true);
+        indexChannel.close();
+        // Give back the unused end of the last region; the mapping is only read below it
+        try {
+            dataChannel.truncate(nextOffset);
+        } catch (IOException e) {
+            System.out.println("Could not trim " + dataPath + ": " + e);
+        }
+        dataChannel.close();
+    }
+
+    /** Bytes of encoded blocks in a writable day. */
+    synchronized long getWrittenBytes() {
+        return nextOffset;
+    }
+
+    /**
+     * Decodes the vehicle's points with from <= timestamp <= to, oldest first.
+     * Returns false if the visitor stopped the scan.
+     */
+    boolean scan(long vehicleId, long from, long to, TrajectoryStore.PointVisitor visitor) {
+        if (blocks != null) {
+            BlockList list = blocks.get(vehicleId);
+            return list == null || list.scan(from, to, (offset, count) -> decode(offset, count, from, to, visitor));
+        }
+        int records = sortedIndex.limit() / RECORD_BYTES;
+        // First record of the vehicle
+        int low = 0;
+        int high = records;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedIndex.getLong(mid * RECORD_BYTES) < vehicleId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < records; i++) {
+            int at = i * RECORD_BYTES;
+            if (sortedIndex.getLong(at) != vehicleId || sortedIndex.getLong(at + 8) > to) {
+                break;
+            }
+            if (sortedIndex.getLong(at + 16) >= from
+                    && !decode(sortedIndex.getLong(at + 24), sortedIndex.getInt(at + 36), from, to, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean decode(long offset, int count, long from, long to, TrajectoryStore.PointVisitor visitor) {
+        MappedByteBuffer region = regions[(int) (offset / REGION_BYTES)];
+        return TrajectoryCodec.decode(region, (int) (offset % REGION_BYTES), count, from, to, visitor);
+    }
+
+    @Override
+    public String toString() {
+        return dataPath.toString();
+    }
+
+    private interface BlockVisitor {
+        boolean visit(long offset, int count);
+    }
+
+    /** Index of one vehicle's blocks in a writable day, in write (and so time) order. */
+    private static final class BlockList {
+        private long[] first = new long[8];
+        private long[] last = new long[8];
+        private long[] offsets = new long[8];
+        private int[] counts = new int[8];
+        private int size;
+
+        synchronized void add(long firstTimestamp, long lastTimestamp, long offset, int count) {
+            if (size == first.length) {
+                first = Arrays.copyOf(first, size * 2);
+                last = Arrays.copyOf(last, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            first[size] = firstTimestamp;
+            last[size] = lastTimestamp;
+            offsets[size] = offset;
+            counts[size] = count;
+            size++;
+        }
+
+        boolean scan(long from, long to, BlockVisitor visitor) {
+            long[] matchOffsets;
+            int[] matchCounts;
+            int matches = 0;
+            synchronized (this) {
+                matchOffsets = new long[size];
+                matchCounts = new int[size];
+                for (int i = 0; i < size && first[i] <= to; i++) {
+                    if (last[i] >= from) {
+                        matchOffsets[matches] = offsets[i];
+                        matchCounts[matches++] = counts[i];
+                    }
+                }
+            }
+            for (int i = 0; i < matches; i++) {
+                if (!visitor.visit(matchOffsets[i], matchCounts[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
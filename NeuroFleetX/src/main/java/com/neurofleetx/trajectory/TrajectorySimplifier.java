@@ -0,0 +1,188 @@
+package com.neurofleetx.trajectory;
+
+import com.neurofleetx.geo.GeoMath;
+
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker simplification of a track in one pass over a scan.
+ *
+ * Points are buffered in chunks of CHUNK; each full chunk is simplified on its own
+ * and its last point starts the next one. Memory stays at one chunk plus the kept
+ * points however long the track is, at the cost of keeping the chunk boundaries
+ * (one extra point per CHUNK raw points at most). Distances are measured in a local
+ * equirectangular projection around the chunk's first point, to the segment rather
+ * than its line, so a vehicle doubling back is not flattened onto a straight line.
+ */
+final class TrajectorySimplifier implements TrajectoryStore.PointVisitor {
+
+    static final int CHUNK = 4096;
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoMath.EARTH_RADIUS_M);
+
+    private final double toleranceAtEquator;
+    private final Points buffer = new Points(CHUNK);
+    private final Points kept = new Points(64);
+    private double tolerance = -1;
+    private long rawPoints;
+
+    /** toleranceAtEquator is scaled by the cosine of the first point's latitude, like a map's meters per pixel. */
+    TrajectorySimplifier(double toleranceAtEquator) {
+        this.toleranceAtEquator = toleranceAtEquator;
+    }
+
+    @Override
+    public boolean accept(long timestamp, double lat, double lng, int speed) {
+        if (tolerance < 0) {
+            tolerance = toleranceAtEquator * GeoMath.cosLat(lat);
+        }
+        buffer.add(timestamp, lat, lng, speed);
+        rawPoints++;
+        if (buffer.size == CHUNK) {
+            flush(false);
+        }
+        return true;
+    }
+
+    /** Simplifies what is left and returns the kept points. */
+    Points finish() {
+        if (buffer.size > 0) {
+            flush(true);
+        }
+        return kept;
+    }
+
+    long rawPoints() {
+        return rawPoints;
+    }
+
+    /** Tolerance in meters, once the first point is known. */
+    double tolerance() {
+        return Math.max(tolerance, 0);
+    }
+
+    private void flush(boolean last) {
+        boolean[] keep = douglasPeucker(buffer, tolerance);
+        int end = last ? buffer.size : buffer.size - 1;
+        for (int i = 0; i < end; i++) {
+            if (keep[i]) {
+                kept.add(buffer, i);
+            }
+        }
+        buffer.retainLast();
+    }
+
+    /** Marks the points to keep; the first and last always are. */
+    static boolean[] douglasPeucker(Points points, double tolerance) {
+        int n = points.size;
+        boolean[] keep = new boolean[n];
+        if (n == 0) {
+            return keep;
+        }
+        keep[0] = true;
+        keep[n - 1] = true;
+        double cos = GeoMath.cosLat(points.lat[0]);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = (points.lng[i] - points.lng[0]) * cos * METERS_PER_DEGREE;
+            y[i] = (points.lat[i] - points.lat[0]) * METERS_PER_DEGREE;
+        }
+        double tolerance2 = tolerance * tolerance;
+        // Pending ranges as (first, last) pairs
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            double max = tolerance2;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistance2(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d > max) {
+                    max = d;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) {
+                continue;
+            }
+            keep[farthest] = true;
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = first;
+            stack[top++] = farthest;
+            stack[top++] = farthest;
+            stack[top++] = last;
+        }
+        return keep;
+    }
+
+    private static double segmentDistance2(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double length2 = dx * dx + dy * dy;
+        double t = length2 == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / length2));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    /** Growable columns of points. */
+    static final class Points {
+        long[] timestamps;
+        double[] lat;
+        double[] lng;
+        int[] speed;
+        int size;
+
+        Points(int capacity) {
+            timestamps = new long[capacity];
+            lat = new double[capacity];
+            lng = new double[capacity];
+            speed = new int[capacity];
+        }
+
+        void add(long timestamp, double latitude, double longitude, int pointSpeed) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                lat = Arrays.copyOf(lat, capacity);
+                lng = Arrays.copyOf(lng, capacity);
+                speed = Arrays.copyOf(speed, capacity);
+            }
+            timestamps[size] = timestamp;
+            lat[size] = latitude;
+            lng[size] = longitude;
+            speed[size] = pointSpeed;
+            size++;
+        }
+
+        void add(Points from, int i) {
+            add(from.timestamps[i], from.lat[i], from.lng[i], from.speed[i]);
+        }
+
+        private void retainLast() {
+            timestamps[0] = timestamps[size - 1];
+            lat[0] = lat[size - 1];
+            lng[0] = lng[size - 1];
+            speed[0] = speed[size - 1];
+            size = 1;
+        }
+
+        /** The points Douglas-Peucker keeps at a tolerance in meters. */
+        Points simplify(double tolerance) {
+            boolean[] keep = douglasPeucker(this, tolerance);
+            Points result = new Points(Math.max(size / 2, 1));
+            for (int i = 0; i < size; i++) {
+                if (keep[i]) {
+                    result.add(this, i);
+                }
+            }
+            return result;
+        }
+    }
+}
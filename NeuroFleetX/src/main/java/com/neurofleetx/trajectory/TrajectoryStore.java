@@ -0,0 +1,596 @@
+package com.neurofleetx.trajectory;
+
+import com.neurofleetx.cache.BoundedCache;
+import com.neurofleetx.fleet.FleetStateStore;
+import com.neurofleetx.fleet.VehicleState;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only history of vehicle positions, and of the driver locations reported
+ * for each booking.
+ *
+ * Every change of a vehicle's position or speed in {@link FleetStateStore} is added
+ * to that vehicle's open block, compressed as it goes by {@link TrajectoryCodec}. A
+ * block is closed after trajectory.block-points points, once its first point is
+ * trajectory.block-max-minutes old, or at midnight UTC, and is then written to the
+ * {@link TrajectorySegment} of its day under trajectory.dir. Closed days are sealed
+ * with a sorted index and deleted after trajectory.retention-days. Booking
+ * locations are kept the same way, keyed by booking id, under trajectory.dir/bookings;
+ * a booking's track is dropped from memory once the booking ends, or once its block
+ * is written and no location has come for trajectory.booking-idle-minutes.
+ *
+ * A scan reads only the days in its range and, within them, only the track's
+ * blocks whose time span overlaps it; the open block is read last. Points still in
+ * open blocks are lost on a crash (at most trajectory.block-max-minutes of them);
+ * a normal shutdown writes them out.
+ */
+@Component
+public class TrajectoryStore implements FleetStateStore.Listener {
+
+    /** Receives scanned points; return false to stop the scan. Speed is -1 when unknown. */
+    public interface PointVisitor {
+        boolean accept(long timestamp, double lat, double lng, int speed);
+    }
+
+    private final FleetStateStore fleetState;
+    private final boolean enabled;
+    private final Path dir;
+    private final int blockPoints;
+    private final long blockMaxMillis;
+    private final int retentionDays;
+    private final Series vehicles;
+    private final Series bookings;
+
+    private final AtomicLong pointsRecorded = new AtomicLong();
+    private final AtomicLong blocksWritten = new AtomicLong();
+    private final AtomicLong pointsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong droppedBlocks = new AtomicLong();
+    private final AtomicLong droppedPoints = new AtomicLong();
+
+    public TrajectoryStore(FleetStateStore fleetState,
+            @Value("${trajectory.enabled:true}") boolean enabled,
+            @Value("${trajectory.dir:./data/trajectories}") String dir,
+            @Value("${trajectory.block-points:1024}") int blockPoints,
+            @Value("${trajectory.block-max-minutes:15}") int blockMaxMinutes,
+            @Value("${trajectory.retention-days:120}") int retentionDays,
+            @Value("${trajectory.sealed-days-cached:31}") int sealedDaysCached,
+            @Value("${trajectory.booking-idle-minutes:30}") int bookingIdleMinutes) {
+        if (blockPoints < 2) {
+            throw new IllegalArgumentException("trajectory.block-points must be at least 2");
+        }
+        this.fleetState = fleetState;
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.blockPoints = blockPoints;
+        this.blockMaxMillis = TimeUnit.MINUTES.toMillis(blockMaxMinutes);
+        this.retentionDays = retentionDays;
+        this.vehicles = new Series(this.dir, sealedDaysCached, 0);
+        this.bookings = new Series(this.dir.resolve("bookings"), sealedDaysCached,
+                TimeUnit.MINUTES.toMillis(bookingIdleMinutes));
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        vehicles.start();
+        bookings.start();
+        System.out.println("Trajectory store at " + dir.toAbsolutePath() + ": " + vehicles.storedDays().size()
+                + " days");
+        fleetState.addListener(this);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (enabled) {
+            vehicles.shutdown();
+            bookings.shutdown();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onChange(VehicleState previous, VehicleState current) {
+        if (!enabled || current == null || current.getLatitude() == null || current.getLongitude() == null) {
+            return;
+        }
+        if (previous != null && Objects.equals(previous.getLatitude(), current.getLatitude())
+                && Objects.equals(previous.getLongitude(), current.getLongitude())
+                && Objects.equals(previous.getSpeed(), current.getSpeed())) {
+            return;
+        }
+        long timestamp = current.getLastUpdated() != null ? current.getLastUpdated().toEpochMilli()
+                : System.currentTimeMillis();
+        Integer speed = current.getSpeed();
+        vehicles.record(current.getId(), timestamp, current.getLatitude(), current.getLongitude(),
+                speed == null ? TrajectoryCodec.UNKNOWN_SPEED : Math.max(0, Math.min(speed, 254)));
+    }
+
+    /** Appends a driver location reported for a booking, timestamped now. */
+    public void recordBookingLocation(long bookingId, double lat, double lng) {
+        if (enabled) {
+            bookings.record(bookingId, System.currentTimeMillis(), lat, lng, TrajectoryCodec.UNKNOWN_SPEED);
+        }
+    }
+
+    /**
+     * Writes out the open block of a booking that has completed or been cancelled and
+     * drops its track from memory. Its points stay readable from disk.
+     */
+    public void finishBooking(long bookingId) {
+        if (enabled) {
+            bookings.evict(bookingId);
+        }
+    }
+
+    /** Appends a vehicle point; timestamps that do not move forward are bumped to 1 ms after the last one. */
+    void record(long vehicleId, long timestamp, double lat, double lng, int speed) {
+        vehicles.record(vehicleId, timestamp, lat, lng, speed);
+    }
+
+    /**
+     * Visits the vehicle's points with from <= timestamp <= to (epoch millis), oldest
+     * first, until the visitor returns false.
+     */
+    public void scan(long vehicleId, long from, long to, PointVisitor visitor) {
+        if (enabled) {
+            vehicles.scan(vehicleId, from, to, visitor);
+        }
+    }
+
+    /** Like {@link #scan}, over the driver locations reported for a booking. */
+    public void scanBooking(long bookingId, long from, long to, PointVisitor visitor) {
+        if (enabled) {
+            bookings.scan(bookingId, from, to, visitor);
+        }
+    }
+
+    /**
+     * Writes out blocks that are too old or belong to a past day, seals past days
+     * and deletes days past retention.
+     */
+    @Scheduled(fixedDelayString = "${trajectory.flush-interval-ms:60000}")
+    public void maintain() {
+        if (enabled) {
+            vehicles.maintain();
+            bookings.maintain();
+        }
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    private static LocalDate dayOf(long epochMillis) {
+        return LocalDate.ofEpochDay(Math.floorDiv(epochMillis, TimeUnit.DAYS.toMillis(1)));
+    }
+
+    public Stats stats() {
+        int[] openBlocks = new int[1];
+        long[] openPoints = new long[1];
+        long diskBytes = 0;
+        int days = 0;
+        if (enabled) {
+            vehicles.countOpen(openBlocks, openPoints);
+            bookings.countOpen(openBlocks, openPoints);
+            try {
+                diskBytes = vehicles.diskBytes() + bookings.diskBytes();
+                days = vehicles.storedDays().size();
+            } catch (IOException e) {
+                System.out.println("Failed to read trajectory directory: " + e);
+            }
+        }
+        return new Stats(enabled, vehicles.tracks.size(), bookings.tracks.size(), pointsRecorded.get(),
+                openBlocks[0], openPoints[0], blocksWritten.get(), pointsWritten.get(), bytesWritten.get(),
+                droppedBlocks.get(), droppedPoints.get(), days, vehicles.writable.size(), diskBytes);
+    }
+
+    /** A track's open block and the timestamp of its last point. */
+    private static final class Track {
+        TrajectoryCodec.Encoder open;
+        LocalDate openDay;
+        long lastTimestamp = Long.MIN_VALUE;
+        // Set once the track is dropped from its series; a writer that still holds it looks it up again
+        boolean evicted;
+    }
+
+    /** The tracks of one kind (vehicles or bookings) and their day segments in one directory. */
+    private final class Series {
+        final Path dir;
+        // Tracks idle this long with no open block are dropped; 0 keeps them
+        final long idleMillis;
+        final Map<Long, Track> tracks = new ConcurrentHashMap<>();
+        final Map<LocalDate, TrajectorySegment> writable = new ConcurrentHashMap<>();
+        // Sealed days are mapped on first use; null for days with no data
+        final BoundedCache<LocalDate, TrajectorySegment> sealed;
+
+        Series(Path dir, int sealedDaysCached, long idleMillis) {
+            this.dir = dir;
+            this.idleMillis = idleMillis;
+            this.sealed = new BoundedCache<>(sealedDaysCached, TimeUnit.MINUTES.toMillis(10));
+        }
+
+        void start() throws IOException {
+            Files.createDirectories(dir);
+            // Days left unsealed by the last run: past ones are sealed, today's reopened
+            LocalDate today = today();
+            for (LocalDate date : storedDays()) {
+                if (!Files.exists(TrajectorySegment.openIndexPath(dir, date))) {
+                    continue;
+                }
+                if (date.isBefore(today)) {
+                    seal(date);
+                } else {
+                    writableSegment(date);
+                }
+            }
+        }
+
+        void shutdown() {
+            tracks.forEach((id, track) -> {
+                synchronized (track) {
+                    closeBlock(id, track);
+                }
+            });
+            writable.values().forEach(segment -> {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    System.out.println("Failed to close trajectory segment " + segment + ": " + e);
+                }
+            });
+        }
+
+        void record(long id, long timestamp, double lat, double lng, int speed) {
+            int fixedLat = TrajectoryCodec.fixed(lat);
+            int fixedLng = TrajectoryCodec.fixed(lng);
+            while (!append(tracks.computeIfAbsent(id, key -> new Track()), id, timestamp, fixedLat, fixedLng,
+                    speed)) {
+                // Evicted between the lookup and the lock; the next lookup starts a new track
+            }
+            pointsRecorded.incrementAndGet();
+        }
+
+        private boolean append(Track track, long id, long timestamp, int fixedLat, int fixedLng, int speed) {
+            synchronized (track) {
+                if (track.evicted) {
+                    return false;
+                }
+                if (timestamp <= track.lastTimestamp) {
+                    timestamp = track.lastTimestamp + 1;
+                }
+                LocalDate day = dayOf(timestamp);
+                TrajectoryCodec.Encoder open = track.open;
+                if (open != null && (!day.equals(track.openDay) || open.count() >= blockPoints
+                        || timestamp - open.firstTimestamp() >= blockMaxMillis
+                        || !open.add(timestamp, fixedLat, fixedLng, speed))) {
+                    closeBlock(id, track);
+                }
+                if (track.open == null) {
+                    track.open = new TrajectoryCodec.Encoder(timestamp, fixedLat, fixedLng, speed);
+                    track.openDay = day;
+                }
+                track.lastTimestamp = timestamp;
+                return true;
+            }
+        }
+
+        void evict(long id) {
+            Track track = tracks.get(id);
+            if (track == null) {
+                return;
+            }
+            synchronized (track) {
+                closeBlock(id, track);
+                track.evicted = true;
+                tracks.remove(id, track);
+            }
+        }
+
+        // Caller holds the track's lock
+        private void closeBlock(long id, Track track) {
+            TrajectoryCodec.Encoder open = track.open;
+            if (open == null) {
+                return;
+            }
+            track.open = null;
+            try {
+                TrajectorySegment segment = writableSegment(track.openDay);
+                byte[] bytes = open.toBytes();
+                if (segment != null
+                        && segment.append(id, open.firstTimestamp(), open.lastTimestamp(), open.count(), bytes)) {
+                    blocksWritten.incrementAndGet();
+                    pointsWritten.addAndGet(open.count());
+                    bytesWritten.addAndGet(bytes.length);
+                    return;
+                }
+            } catch (IOException | UncheckedIOException e) {
+                System.out.println("Failed to write trajectory block of " + id + " in " + dir + ": " + e);
+            }
+            droppedBlocks.incrementAndGet();
+            droppedPoints.addAndGet(open.count());
+        }
+
+        /** The open segment of a day; null if the day has already been sealed. */
+        private TrajectorySegment writableSegment(LocalDate date) {
+            return writable.computeIfAbsent(date, d -> {
+                if (Files.exists(TrajectorySegment.sealedIndexPath(dir, d))) {
+                    return null;
+                }
+                try {
+                    return TrajectorySegment.openWritable(dir, d);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        void scan(long id, long from, long to, PointVisitor visitor) {
+            if (from > to) {
+                return;
+            }
+            // The open block is copied first: if it is closed during the scan, its points
+            // are read from the segment and skipped here
+            Track track = tracks.get(id);
+            ByteBuffer openBlock = null;
+            int openCount = 0;
+            if (track != null) {
+                synchronized (track) {
+                    TrajectoryCodec.Encoder open = track.open;
+                    if (open != null && open.firstTimestamp() <= to && open.lastTimestamp() >= from) {
+                        openBlock = ByteBuffer.wrap(open.toBytes());
+                        openCount = open.count();
+                    }
+                }
+            }
+            long[] last = {Long.MIN_VALUE};
+            PointVisitor tracking = (timestamp, lat, lng, speed) -> {
+                last[0] = timestamp;
+                return visitor.accept(timestamp, lat, lng, speed);
+            };
+
+            LocalDate today = today();
+            LocalDate oldest = today.minusDays(retentionDays);
+            LocalDate day = dayOf(from).isBefore(oldest) ? oldest : dayOf(from);
+            LocalDate lastDay = dayOf(to).isAfter(today) ? today : dayOf(to);
+            for (; !day.isAfter(lastDay); day = day.plusDays(1)) {
+                TrajectorySegment segment = segment(day);
+                if (segment != null && !segment.scan(id, from, to, tracking)) {
+                    return;
+                }
+            }
+            if (openBlock != null) {
+                TrajectoryCodec.decode(openBlock, 0, openCount, Math.max(from, last[0] + 1), to, visitor);
+            }
+        }
+
+        private TrajectorySegment segment(LocalDate date) {
+            TrajectorySegment segment = writable.get(date);
+            return segment != null ? segment : sealed.get(date, d -> TrajectorySegment.openSealed(dir, d));
+        }
+
+        void maintain() {
+            long now = System.currentTimeMillis();
+            LocalDate today = today();
+            tracks.forEach((id, track) -> {
+                synchronized (track) {
+                    if (track.open != null && (now - track.open.firstTimestamp() >= blockMaxMillis
+                            || track.openDay.isBefore(today))) {
+                        closeBlock(id, track);
+                    }
+                    if (idleMillis > 0 && track.open == null && now - track.lastTimestamp >= idleMillis) {
+                        track.evicted = true;
+                        tracks.remove(id, track);
+                    }
+                }
+            });
+            for (LocalDate date : List.copyOf(writable.keySet())) {
+                if (date.isBefore(today)) {
+                    try {
+                        seal(date);
+                    } catch (IOException e) {
+                        System.out.println("Failed to seal trajectory day " + date + " in " + dir + ": " + e);
+                    }
+                }
+            }
+            LocalDate oldest = today.minusDays(retentionDays);
+            try {
+                boolean deleted = false;
+                for (LocalDate date : storedDays()) {
+                    if (date.isBefore(oldest)) {
+                        Files.deleteIfExists(TrajectorySegment.sealedIndexPath(dir, date));
+                        Files.deleteIfExists(TrajectorySegment.openIndexPath(dir, date));
+                        Files.deleteIfExists(TrajectorySegment.dataPath(dir, date));
+                        deleted = true;
+                    }
+                }
+                if (deleted) {
+                    sealed.invalidateAll();
+                }
+            } catch (IOException e) {
+                System.out.println("Failed to delete old trajectory days in " + dir + ": " + e);
+            }
+        }
+
+        /**
+         * Closes a day to writes and replaces its open index with a sorted one. The
+         * segment stays in {@link #writable} until the sorted index exists, so scans
+         * always find one of the two and late writes to the day fail instead of
+         * reopening it.
+         */
+        private void seal(LocalDate date) throws IOException {
+            TrajectorySegment segment = writable.get(date);
+            if (segment != null) {
+                segment.close();
+            }
+            TrajectorySegment.seal(dir, date);
+            writable.remove(date);
+            System.out.println("Sealed trajectory day " + date + " in " + dir);
+        }
+
+        TreeSet<LocalDate> storedDays() throws IOException {
+            try (Stream<Path> files = Files.list(dir)) {
+                return files.map(TrajectorySegment::dateOf).filter(Objects::nonNull)
+                        .collect(Collectors.toCollection(TreeSet::new));
+            }
+        }
+
+        void countOpen(int[] openBlocks, long[] openPoints) {
+            for (Track track : tracks.values()) {
+                synchronized (track) {
+                    if (track.open != null) {
+                        openBlocks[0]++;
+                        openPoints[0] += track.open.count();
+                    }
+                }
+            }
+        }
+
+        long diskBytes() throws IOException {
+            long bytes = 0;
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    LocalDate date = TrajectorySegment.dateOf(file);
+                    if (date == null) {
+                        continue;
+                    }
+                    TrajectorySegment segment = writable.get(date);
+                    // Open data files are allocated a region at a time, sparsely
+                    bytes += segment != null && file.equals(TrajectorySegment.dataPath(dir, date))
+                            ? segment.getWrittenBytes() : Files.size(file);
+                }
+            }
+            return bytes;
+        }
+    }
+
+    public static class Stats {
+        private final boolean enabled;
+        private final int trackedVehicles;
+        private final int trackedBookings;
+        private final long pointsRecorded;
+        private final int openBlocks;
+        private final long openPoints;
+        private final long blocksWritten;
+        private final long pointsWritten;
+        private final long bytesWritten;
+        private final long droppedBlocks;
+        private final long droppedPoints;
+        private final int storedDays;
+        private final int writableDays;
+        private final long diskBytes;
+
+        Stats(boolean enabled, int trackedVehicles, int trackedBookings, long pointsRecorded, int openBlocks,
+                long openPoints, long blocksWritten, long pointsWritten, long bytesWritten, long droppedBlocks,
+                long droppedPoints, int storedDays, int writableDays, long diskBytes) {
+            this.enabled = enabled;
+            this.trackedVehicles = trackedVehicles;
+            this.trackedBookings = trackedBookings;
+            this.pointsRecorded = pointsRecorded;
+            this.openBlocks = openBlocks;
+            this.openPoints = openPoints;
+            this.blocksWritten = blocksWritten;
+            this.pointsWritten = pointsWritten;
+            this.bytesWritten = bytesWritten;
+            this.droppedBlocks = droppedBlocks;
+            this.droppedPoints = droppedPoints;
+            this.storedDays = storedDays;
+            this.writableDays = writableDays;
+            this.diskBytes = diskBytes;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getTrackedVehicles() {
+            return trackedVehicles;
+        }
+
+        /** Bookings whose driver locations are held in memory: not yet ended and recently reported. */
+        public int getTrackedBookings() {
+            return trackedBookings;
+        }
+
+        /** Points recorded since startup, vehicles and bookings. */
+        public long getPointsRecorded() {
+            return pointsRecorded;
+        }
+
+        public int getOpenBlocks() {
+            return openBlocks;
+        }
+
+        /** Points held in memory in open blocks. */
+        public long getOpenPoints() {
+            return openPoints;
+        }
+
+        public long getBlocksWritten() {
+            return blocksWritten;
+        }
+
+        public long getPointsWritten() {
+            return pointsWritten;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /** Encoded size of the points written since startup. */
+        public double getBytesPerPoint() {
+            return pointsWritten > 0 ? (double) bytesWritten / pointsWritten : 0;
+        }
+
+        /** Blocks lost because their day was already sealed or the write failed. */
+        public long getDroppedBlocks() {
+            return droppedBlocks;
+        }
+
+        public long getDroppedPoints() {
+            return droppedPoints;
+        }
+
+        /** Days of vehicle history on disk. */
+        public int getStoredDays() {
+            return storedDays;
+        }
+
+        public int getWritableDays() {
+            return writableDays;
+        }
+
+        /** Data and index bytes on disk, all days, vehicles and bookings. */
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+    }
+}